@@ -11,10 +11,12 @@ import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
 import edu.berkeley.cs186.database.concurrency.*;
 import edu.berkeley.cs186.database.databox.DataBox;
 import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.databox.TypeId;
 import edu.berkeley.cs186.database.index.BPlusTree;
 import edu.berkeley.cs186.database.index.BPlusTreeMetadata;
 import edu.berkeley.cs186.database.io.DiskSpaceManager;
 import edu.berkeley.cs186.database.io.DiskSpaceManagerImpl;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.memory.BufferManager;
 import edu.berkeley.cs186.database.memory.ClockEvictionPolicy;
 import edu.berkeley.cs186.database.memory.EvictionPolicy;
@@ -37,6 +39,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Phaser;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
 /**
@@ -78,9 +81,11 @@ public class Database implements AutoCloseable {
     private static final String METADATA_TABLE_PREFIX = "_metadata.";
     private static final String TABLE_INFO_TABLE_NAME = METADATA_TABLE_PREFIX + "tables";
     private static final String INDEX_INFO_TABLE_NAME = METADATA_TABLE_PREFIX + "indices";
-    private static final int DEFAULT_BUFFER_SIZE = 262144; // default of 1G
+    private static final int DEFAULT_BUFFER_SIZE = 262144; // ceiling of 4G, frames are allocated on demand
     // effective page size - table metadata size
-    private static final int MAX_SCHEMA_SIZE = 4006;
+    private static final int MAX_SCHEMA_SIZE = 3986;
+    // number of threads parsing the rows of a file being loaded
+    private static final int LOAD_THREADS = Runtime.getRuntime().availableProcessors();
 
     // _metadata.tables, manages all tables in the database
     private Table tableMetadata;
@@ -106,6 +111,14 @@ public class Database implements AutoCloseable {
     private Phaser activeTransactions = new Phaser(0);
     // Statistics about the contents of the database.
     private Map<String, TableStats> stats = new ConcurrentHashMap<>();
+    // Minimum and maximum values of the columns in each data page of the tables.
+    private Map<String, ZoneMap> zoneMaps = new ConcurrentHashMap<>();
+    // Page directories of the tables, shared by all Table objects of a table so that the
+    // header pages are read (and the free space map built) once rather than per access.
+    private Map<String, PageDirectory> pageDirectories = new ConcurrentHashMap<>();
+    // Dictionaries of the tables with dictionary-encoded columns, shared by all Table
+    // objects of a table so that codes are assigned in one place.
+    private Map<String, TableDictionary> dictionaries = new ConcurrentHashMap<>();
 
     // Names of tables loaded for demo
     private ArrayList<String> demoTables = new ArrayList<>();
@@ -173,6 +186,41 @@ public class Database implements AutoCloseable {
      */
     public Database(String fileDir, int numMemoryPages, LockManager lockManager,
                     EvictionPolicy policy, boolean useRecoveryManager) {
+        this(fileDir, numMemoryPages, lockManager, () -> policy, 1, useRecoveryManager);
+    }
+
+    /**
+     * Creates a new database whose buffer cache is split into independently locked
+     * partitions, each with its own eviction policy.
+     *
+     * @param fileDir the directory to put the table files in
+     * @param numMemoryPages the number of pages of memory in the buffer cache
+     * @param lockManager the lock manager
+     * @param policyFactory creates the eviction policy of each buffer cache partition
+     * @param numBufferPartitions number of partitions to split the buffer cache into
+     * @param useRecoveryManager flag to enable or disable the recovery manager (ARIES)
+     */
+    public Database(String fileDir, int numMemoryPages, LockManager lockManager,
+                    Supplier<EvictionPolicy> policyFactory, int numBufferPartitions,
+                    boolean useRecoveryManager) {
+        this(fileDir, numMemoryPages, lockManager, policyFactory, numBufferPartitions, useRecoveryManager, false);
+    }
+
+    /**
+     * Creates a new database whose buffer cache is split into independently locked
+     * partitions, optionally keeping the buffer cache off the Java heap.
+     *
+     * @param fileDir the directory to put the table files in
+     * @param numMemoryPages the number of pages of memory in the buffer cache
+     * @param lockManager the lock manager
+     * @param policyFactory creates the eviction policy of each buffer cache partition
+     * @param numBufferPartitions number of partitions to split the buffer cache into
+     * @param useRecoveryManager flag to enable or disable the recovery manager (ARIES)
+     * @param offHeapBuffer whether to keep the buffer cache in direct (off-heap) memory
+     */
+    public Database(String fileDir, int numMemoryPages, LockManager lockManager,
+                    Supplier<EvictionPolicy> policyFactory, int numBufferPartitions,
+                    boolean useRecoveryManager, boolean offHeapBuffer) {
         boolean initialized = setupDirectory(fileDir);
 
         numTransactions = 0;
@@ -187,7 +235,7 @@ public class Database implements AutoCloseable {
 
         diskSpaceManager = new DiskSpaceManagerImpl(fileDir, recoveryManager);
         bufferManager = new BufferManager(diskSpaceManager, recoveryManager, numMemoryPages,
-                                              policy);
+                                          numBufferPartitions, policyFactory, offHeapBuffer);
 
         // create log partition
         if (!initialized) diskSpaceManager.allocPart(0);
@@ -331,13 +379,26 @@ public class Database implements AutoCloseable {
      * 1 | part_num     | int
      * 2 | page_num     | long
      * 3 | schema       | byte array(MAX_SCHEMA_SIZE)
+     * 4 | layout       | int
+     * 5 | dict_columns | long
+     * 6 | dict_page    | long
+     *
+     * The layout (the ordinal of the table's PageLayout) takes the last bytes of what
+     * used to be the schema's padding, so that tables created before it was added are
+     * read as having PageLayout.BITMAP. Likewise, dict_columns (a bitmask of the
+     * table's dictionary-encoded columns, see TableDictionary) and dict_page (the page
+     * number of the header page of the dictionary's heap file) take the bytes before
+     * the layout, so that older tables are read as having no encoded columns.
      */
     public Schema getTableInfoSchema() {
         return new Schema()
                 .add("table_name", Type.stringType(32))
                 .add("part_num", Type.intType())
                 .add("page_num", Type.longType())
-                .add("schema", Type.byteArrayType(MAX_SCHEMA_SIZE));
+                .add("schema", Type.byteArrayType(MAX_SCHEMA_SIZE))
+                .add("layout", Type.intType())
+                .add("dict_columns", Type.longType())
+                .add("dict_page", Type.longType());
     }
 
     /**
@@ -371,12 +432,19 @@ public class Database implements AutoCloseable {
         int partNum;
         long pageNum;
         Schema schema;
+        PageLayout layout;
+        // bitmask of the dictionary-encoded columns
+        long dictionaryColumns;
+        long dictionaryPageNum;
 
         TableMetadata(String tableName) {
             this.tableName = tableName;
             this.partNum = -1;
             this.pageNum = -1;
             this.schema = new Schema();
+            this.layout = PageLayout.BITMAP;
+            this.dictionaryColumns = 0;
+            this.dictionaryPageNum = -1;
         }
 
         TableMetadata(Record record) {
@@ -384,13 +452,30 @@ public class Database implements AutoCloseable {
             partNum = record.getValue(1).getInt();
             pageNum = record.getValue(2).getLong();
             schema = Schema.fromBytes(ByteBuffer.wrap(record.getValue(3).toBytes()));
+            layout = PageLayout.fromInt(record.getValue(4).getInt());
+            dictionaryColumns = record.getValue(5).getLong();
+            dictionaryPageNum = record.getValue(6).getLong();
         }
 
         Record toRecord() {
             byte[] schemaBytes = schema.toBytes();
+            if (schemaBytes.length > MAX_SCHEMA_SIZE) {
+                throw new DatabaseException("schema of table `" + tableName + "` is too large");
+            }
             byte[] padded = new byte[MAX_SCHEMA_SIZE];
             System.arraycopy(schemaBytes, 0, padded, 0, schemaBytes.length);
-            return new Record(tableName, partNum, pageNum, padded);
+            return new Record(tableName, partNum, pageNum, padded, layout.ordinal(), dictionaryColumns,
+                              dictionaryPageNum);
+        }
+
+        List<Integer> getDictionaryColumns() {
+            List<Integer> columns = new ArrayList<>();
+            for (int i = 0; i < Long.SIZE; ++i) {
+                if ((dictionaryColumns & (1L << i)) != 0) {
+                    columns.add(i);
+                }
+            }
+            return columns;
         }
     }
 
@@ -451,8 +536,31 @@ public class Database implements AutoCloseable {
         String tableName = normalize(metadata.tableName);
         LockContext tableContext = getTableContext(tableName);
         long page0 = DiskSpaceManager.getVirtualPageNum(metadata.partNum, 0);
-        PageDirectory pd = new PageDirectory(bufferManager, metadata.partNum, page0, (short) 0, tableContext);
-        return new Table(metadata.tableName, metadata.schema, pd, tableContext, stats);
+        PageDirectory pd = pageDirectories.get(metadata.tableName);
+        if (pd == null) {
+            pd = new PageDirectory(bufferManager, metadata.partNum, page0, (short) 0, tableContext);
+            PageDirectory loaded = pageDirectories.putIfAbsent(metadata.tableName, pd);
+            if (loaded != null) {
+                pd = loaded;
+            }
+        }
+        TableDictionary dictionary = null;
+        if (metadata.dictionaryColumns != 0) {
+            dictionary = dictionaries.get(metadata.tableName);
+            if (dictionary == null) {
+                // loaded outside of the map, since reading the dictionary takes locks
+                PageDirectory dictionaryPages = new PageDirectory(bufferManager, metadata.partNum,
+                                                                  metadata.dictionaryPageNum, (short) 0, tableContext);
+                dictionary = new TableDictionary(metadata.tableName, metadata.schema,
+                                                 metadata.getDictionaryColumns(), dictionaryPages, tableContext);
+                TableDictionary loaded = dictionaries.putIfAbsent(metadata.tableName, dictionary);
+                if (loaded != null) {
+                    dictionary = loaded;
+                }
+            }
+        }
+        return new Table(metadata.tableName, metadata.schema, pd, tableContext, stats, zoneMaps, metadata.layout,
+                         dictionary);
     }
 
     /**
@@ -607,6 +715,8 @@ public class Database implements AutoCloseable {
         long transNum;
         Map<String, String> aliases;
         Map<String, Table> tempTables;
+        // names of the (non-temporary) tables used by the transaction
+        Set<String> usedTables;
         long tempTableCounter;
         boolean recoveryTransaction;
 
@@ -614,6 +724,7 @@ public class Database implements AutoCloseable {
             this.transNum = tNum;
             this.aliases = new HashMap<>();
             this.tempTables = new HashMap<>();
+            this.usedTables = new HashSet<>();
             this.tempTableCounter = 0;
             this.recoveryTransaction = recoveryTransaction;
         }
@@ -633,7 +744,8 @@ public class Database implements AutoCloseable {
             String tempTableName = "tempTable" + tempTableCounter++;
             String tableName = prefixTempTableName(tempTableName);
 
-            int partNum = diskSpaceManager.allocPart();
+            // Temporary partitions are not logged, and kept in memory while they fit
+            int partNum = diskSpaceManager.allocTempPart();
             long pageNum = diskSpaceManager.allocPage(partNum);
             // We can use dummy contexts since this table will only be visible from the current transaction
             PageDirectory pageDirectory = new PageDirectory(bufferManager, partNum, pageNum, (short) 0, new DummyLockContext("_dummyPageDir"));
@@ -641,6 +753,14 @@ public class Database implements AutoCloseable {
             return tempTableName;
         }
 
+        // forgets the page directories of the tables used by the transaction, since a
+        // rollback changes their header pages behind their backs
+        private void forgetPageDirectories() {
+            for (String tableName : usedTables) {
+                pageDirectories.remove(tableName);
+            }
+        }
+
         private void deleteTempTable(String tempTableName) {
             if (!this.tempTables.containsKey(tempTableName)) return;
             Table t = tempTables.remove(tempTableName);
@@ -736,6 +856,11 @@ public class Database implements AutoCloseable {
             return getTable(tableName).iterator();
         }
 
+        @Override
+        public BacktrackingIterator<Record> getRecordIterator(String tableName, AccessPattern accessPattern) {
+            return getTable(tableName).iterator(accessPattern);
+        }
+
         @Override
         public boolean contains(String tableName, String columnName, DataBox key) {
             tableName = aliases.getOrDefault(tableName, tableName);
@@ -763,6 +888,20 @@ public class Database implements AutoCloseable {
             return rid;
         }
 
+        @Override
+        public void addRecords(String tableName, Iterator<Record> records) {
+            Table tab = getTable(tableName);
+            if (tab == null) {
+                throw new DatabaseException("table `" + tableName + "` does not exist!");
+            }
+            if (!getTableIndicesMetadata(tab.getName()).isEmpty()) {
+                // indices need the record id of each record
+                super.addRecords(tableName, records);
+                return;
+            }
+            tab.addRecords(records);
+        }
+
         @Override
         public RecordId deleteRecord(String tableName, RecordId rid) {
             Table tab = getTable(tableName);
@@ -981,6 +1120,7 @@ public class Database implements AutoCloseable {
             if (pair == null) {
                 throw new DatabaseException("Table `" + tableName + "` does not exist!");
             }
+            usedTables.add(pair.getSecond().tableName);
             return tableFromMetadata(pair.getSecond());
         }
 
@@ -997,7 +1137,7 @@ public class Database implements AutoCloseable {
     private class TransactionImpl extends Transaction {
         private long transNum;
         private boolean recoveryTransaction;
-        private TransactionContext transactionContext;
+        private TransactionContextImpl transactionContext;
 
         private TransactionImpl(long transNum, boolean recovery) {
             this.transNum = transNum;
@@ -1031,6 +1171,7 @@ public class Database implements AutoCloseable {
         protected void startRollback() {
             recoveryManager.abort(transNum);
             this.cleanup();
+            transactionContext.forgetPageDirectories();
         }
 
         @Override
@@ -1053,7 +1194,7 @@ public class Database implements AutoCloseable {
         }
 
         @Override
-        public void createTable(Schema s, String tableName) {
+        public void createTable(Schema s, String tableName, PageLayout layout, List<String> dictionaryColumns) {
             if (tableName.contains(".") || tableName.contains(" ") || tableName.length() == 0) {
                 throw new IllegalArgumentException("name of new table may not contain '.' or ' ', or be the empty string");
             }
@@ -1070,6 +1211,17 @@ public class Database implements AutoCloseable {
             metadata.partNum = diskSpaceManager.allocPart();
             metadata.pageNum = diskSpaceManager.allocPage(metadata.partNum);
             metadata.schema = s;
+            metadata.layout = layout;
+            for (String columnName : dictionaryColumns) {
+                int column = s.findField(columnName);
+                if (s.getFieldType(column).getTypeId() != TypeId.STRING || column >= Long.SIZE) {
+                    throw new DatabaseException("cannot dictionary-encode column `" + columnName + "`");
+                }
+                metadata.dictionaryColumns |= 1L << column;
+            }
+            if (metadata.dictionaryColumns != 0) {
+                metadata.dictionaryPageNum = diskSpaceManager.allocPage(metadata.partNum);
+            }
             synchronized (tableMetadata) {
                 tableMetadata.addRecord(metadata.toRecord());
             }
@@ -1098,6 +1250,9 @@ public class Database implements AutoCloseable {
             synchronized(tableMetadata) {
                 metadata = new TableMetadata(tableMetadata.deleteRecord(rid));
             }
+            zoneMaps.remove(metadata.tableName);
+            pageDirectories.remove(metadata.tableName);
+            dictionaries.remove(metadata.tableName);
             bufferManager.freePart(metadata.partNum);
         }
 
@@ -1242,6 +1397,7 @@ public class Database implements AutoCloseable {
         @Override
         public void rollbackToSavepoint(String savepointName) {
             recoveryManager.rollbackToSavepoint(transNum, savepointName);
+            transactionContext.forgetPageDirectories();
         }
 
         @Override
@@ -1299,13 +1455,37 @@ public class Database implements AutoCloseable {
     }
 
     public boolean loadDelimitedFile(String prefix, String name, String delimiter, String extension) throws IOException {
-            String fileName = name + extension;
-            if (prefix.length() != 0) {
-                fileName = prefix + "/" + fileName;
-            }
-            InputStream is = Database.class.getClassLoader().getResourceAsStream(fileName);
-            InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-            BufferedReader buffered = new BufferedReader(reader);
+        return this.loadDelimitedFile(prefix, name, delimiter, extension, PageLayout.BITMAP);
+    }
+
+    /**
+     * Loads a delimited file from src/main/resources in as a table whose data pages are
+     * laid out as `layout`. The first line of the file holds the names and types of the
+     * columns. The rest of the file is streamed into the table, with rows parsed in
+     * parallel (see DelimitedFileLoader), and the table's histograms are built from the
+     * values as they are loaded. If a row cannot be parsed, the table is dropped.
+     * @return true if the table already existed in the database, false otherwise
+     */
+    public boolean loadDelimitedFile(String prefix, String name, String delimiter, String extension,
+                                     PageLayout layout) throws IOException {
+        return this.loadDelimitedFile(prefix, name, delimiter, extension, layout, Collections.emptyList());
+    }
+
+    /**
+     * Loads a delimited file as loadDelimitedFile(prefix, name, delimiter, extension,
+     * layout) does, into a table whose columns `dictionaryColumns` (string columns with
+     * few distinct values, e.g. l_shipmode) are dictionary-encoded (see TableDictionary).
+     * @return true if the table already existed in the database, false otherwise
+     */
+    public boolean loadDelimitedFile(String prefix, String name, String delimiter, String extension,
+                                     PageLayout layout, List<String> dictionaryColumns) throws IOException {
+        String fileName = name + extension;
+        if (prefix.length() != 0) {
+            fileName = prefix + "/" + fileName;
+        }
+        InputStream is = Database.class.getClassLoader().getResourceAsStream(fileName);
+        InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+        try (BufferedReader buffered = new BufferedReader(reader)) {
             String[] header = buffered.readLine().split(delimiter);
             Schema schema = new Schema();
             for (int i = 0; i < header.length; i++) {
@@ -1316,21 +1496,9 @@ public class Database implements AutoCloseable {
                 Type fieldType = Type.fromString(parts[1]);
                 schema.add(fieldName, fieldType);
             }
-            List<Record> rows = new ArrayList<>();
-            String row = buffered.readLine();
-            while (row != null) {
-                String[] values = row.split(delimiter);
-                List<DataBox> parsed = new ArrayList<>();
-                assert values.length == schema.size();
-                for (int i = 0; i < values.length; i++) {
-                    parsed.add(DataBox.fromString(schema.getFieldType(i), values[i]));
-                }
-                rows.add(new Record(parsed));
-                row = buffered.readLine();
-            }
 
             try(Transaction t = beginTransaction()) {
-                t.createTable(schema, name);
+                t.createTable(schema, name, layout, dictionaryColumns);
             } catch (DatabaseException e) {
                 if (e.getMessage().contains("already exists")) return true;
                 throw e;
@@ -1343,14 +1511,25 @@ public class Database implements AutoCloseable {
             }
             Table tb = tableFromMetadata(pair.getSecond());
 
+            DelimitedFileLoader loader = new DelimitedFileLoader(schema, delimiter, LOAD_THREADS);
             try (Transaction t = beginTransaction()) {
-                for (Record r : rows) {
-                    t.insert(name, r);
+                try {
+                    // the table was just created, so there are no indices to update,
+                    // and records can be packed into new pages
+                    Table table = t.getTransactionContext().getTable(name);
+                    loader.load(buffered, 2, table::addRecords);
+                } catch (IOException | RuntimeException e) {
+                    t.rollback();
+                    try (Transaction t2 = beginTransaction()) {
+                        t2.dropTable(name);
+                    }
+                    throw e;
                 }
             }
 
             // refresh histograms so that query cost estimation works
-            tb.buildStatistics(10);
+            tb.getStats().refreshHistograms(10, loader.getQuantizedValues(), loader.getNumRecords());
             return false;
+        }
     }
 }
@@ -0,0 +1,264 @@
+package edu.berkeley.cs186.database;
+
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.table.Record;
+import edu.berkeley.cs186.database.table.Schema;
+import edu.berkeley.cs186.database.table.stats.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the rows of a delimited file into records (see Database#loadDelimitedFile).
+ * The file is streamed a chunk of rows at a time: chunks are parsed in parallel by a
+ * pool of threads while the records of earlier chunks are consumed, so that only a
+ * few chunks are in memory at once. Records are consumed in the order of the rows.
+ *
+ * Rows are split with a hand-written scanner when the delimiter matches a single
+ * character (e.g. "," or "\\|"), and with a regular expression otherwise. As with
+ * String#split, empty fields at the end of a row are ignored, so that rows may end
+ * with the delimiter.
+ *
+ * The threads parsing a chunk also quantize the values of its records (see
+ * Histogram#quantization), which are kept so that the table's histograms can be
+ * built without scanning the table again (see TableStats#refreshHistograms).
+ */
+class DelimitedFileLoader {
+    // Number of rows parsed by a task
+    private static final int CHUNK_ROWS = 1024;
+
+    private final Schema schema;
+
+    // The delimiter, if it matches a single character, or 0 to split with delimiterPattern
+    private final char delimiterChar;
+    private final Pattern delimiterPattern;
+
+    private final int numThreads;
+
+    // Quantized values of each column of the records consumed so far
+    private float[][] values;
+    private int numRecords;
+
+    /**
+     * @param schema schema of the records
+     * @param delimiter regular expression matching the delimiter between values
+     * @param numThreads number of threads parsing rows
+     */
+    DelimitedFileLoader(Schema schema, String delimiter, int numThreads) {
+        this.schema = schema;
+        this.delimiterChar = literalChar(delimiter);
+        this.delimiterPattern = Pattern.compile(delimiter);
+        this.numThreads = numThreads;
+        this.values = new float[schema.size()][CHUNK_ROWS];
+        this.numRecords = 0;
+    }
+
+    /**
+     * Parses the remaining rows of `reader` (blank rows are skipped), and passes an
+     * iterator over the records, in order, to `sink`, which is expected to consume it
+     * before returning. Rows are parsed ahead of the iterator.
+     * @param firstLineNum line number of the next row, for error messages
+     * @throws DatabaseException if a row does not match the schema
+     */
+    void load(BufferedReader reader, int firstLineNum, Consumer<Iterator<Record>> sink) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "delimited-file-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            sink.accept(new RecordIterator(reader, firstLineNum, executor));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return quantized values of each column of the records loaded (values[i][j]
+     * is that of column i of the j-th record); only the first getNumRecords() values
+     * of each column are used
+     */
+    float[][] getQuantizedValues() {
+        return values;
+    }
+
+    int getNumRecords() {
+        return numRecords;
+    }
+
+    // Records parsed from a chunk of rows, and their quantized values
+    private static class Chunk {
+        private final List<Record> records = new ArrayList<>();
+        private final float[][] values;
+
+        private Chunk(int numColumns, int numRows) {
+            this.values = new float[numColumns][numRows];
+        }
+    }
+
+    // Iterator over the records of the rows of a reader, which submits chunks of rows
+    // to be parsed as the records of earlier chunks are consumed.
+    private class RecordIterator implements Iterator<Record> {
+        private final BufferedReader reader;
+        private final ExecutorService executor;
+        private final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        private Iterator<Record> records = Collections.emptyIterator();
+        private int lineNum;
+        private boolean eof = false;
+
+        private RecordIterator(BufferedReader reader, int firstLineNum, ExecutorService executor) {
+            this.reader = reader;
+            this.lineNum = firstLineNum;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!records.hasNext()) {
+                while (!eof && pending.size() < 2 * numThreads) {
+                    submitChunk();
+                }
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                records = consume(await(pending.remove()));
+            }
+            return true;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return records.next();
+        }
+
+        private void submitChunk() {
+            List<String> rows = new ArrayList<>(CHUNK_ROWS);
+            try {
+                String row;
+                while (rows.size() < CHUNK_ROWS && (row = reader.readLine()) != null) {
+                    rows.add(row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            eof = rows.size() < CHUNK_ROWS;
+            int chunkLineNum = lineNum;
+            pending.add(executor.submit(() -> parseChunk(rows, chunkLineNum)));
+            lineNum += rows.size();
+        }
+    }
+
+    private Chunk parseChunk(List<String> rows, int firstLineNum) {
+        Chunk chunk = new Chunk(schema.size(), rows.size());
+        List<DataBox> values = new ArrayList<>(schema.size());
+        for (int i = 0; i < rows.size(); i++) {
+            String row = rows.get(i);
+            if (row.trim().isEmpty()) continue;
+            values.clear();
+            try {
+                parseRow(row, values);
+            } catch (RuntimeException e) {
+                String msg = String.format("Line %d: %s", firstLineNum + i, e.getMessage());
+                throw new DatabaseException(msg);
+            }
+            int n = chunk.records.size();
+            for (int j = 0; j < values.size(); j++) {
+                chunk.values[j][n] = Histogram.quantization(values.get(j));
+            }
+            chunk.records.add(new Record(new ArrayList<>(values)));
+        }
+        return chunk;
+    }
+
+    // Splits a row into values of the types of the schema, added to `values`.
+    private void parseRow(String row, List<DataBox> values) {
+        if (delimiterChar == 0) {
+            String[] fields = delimiterPattern.split(row);
+            if (fields.length != schema.size()) {
+                throw new DatabaseException("expected " + schema.size() + " values, found " + fields.length);
+            }
+            for (int i = 0; i < fields.length; i++) {
+                values.add(DataBox.fromString(schema.getFieldType(i), fields[i]));
+            }
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < schema.size(); i++) {
+            if (start > row.length()) {
+                throw new DatabaseException("expected " + schema.size() + " values, found " + i);
+            }
+            int end = row.indexOf(delimiterChar, start);
+            if (end < 0) end = row.length();
+            values.add(DataBox.fromString(schema.getFieldType(i), row.substring(start, end)));
+            start = end + 1;
+        }
+        for (int i = start; i < row.length(); i++) {
+            if (row.charAt(i) != delimiterChar) {
+                throw new DatabaseException("expected " + schema.size() + " values, found more");
+            }
+        }
+    }
+
+    // Keeps the quantized values of a chunk, and returns an iterator over its records.
+    private Iterator<Record> consume(Chunk chunk) {
+        int n = chunk.records.size();
+        if (numRecords + n > values[0].length) {
+            int capacity = Math.max(2 * values[0].length, numRecords + n);
+            for (int j = 0; j < values.length; j++) {
+                values[j] = Arrays.copyOf(values[j], capacity);
+            }
+        }
+        for (int j = 0; j < values.length; j++) {
+            System.arraycopy(chunk.values[j], 0, values[j], numRecords, n);
+        }
+        numRecords += n;
+        return chunk.records.iterator();
+    }
+
+    private static Chunk await(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DatabaseException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(e);
+        }
+    }
+
+    // The character matched by a delimiter regular expression, if it matches a single
+    // character, or 0 otherwise.
+    private static char literalChar(String delimiter) {
+        if (delimiter.length() == 1 && ".$|()[]{}^?*+\\".indexOf(delimiter.charAt(0)) < 0) {
+            return delimiter.charAt(0);
+        }
+        if (delimiter.length() == 2 && delimiter.charAt(0) == '\\'
+                && !Character.isLetterOrDigit(delimiter.charAt(1))) {
+            return delimiter.charAt(1);
+        }
+        return 0;
+    }
+}
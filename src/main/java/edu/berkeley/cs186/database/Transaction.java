@@ -4,9 +4,12 @@ import edu.berkeley.cs186.database.common.PredicateOperator;
 import edu.berkeley.cs186.database.databox.BoolDataBox;
 import edu.berkeley.cs186.database.databox.DataBox;
 import edu.berkeley.cs186.database.query.QueryPlan;
+import edu.berkeley.cs186.database.table.PageLayout;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.Schema;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
@@ -122,7 +125,33 @@ public abstract class Transaction implements AutoCloseable {
      * @param s schema of new table
      * @param tableName name of new table
      */
-    public abstract void createTable(Schema s, String tableName);
+    public void createTable(Schema s, String tableName) {
+        createTable(s, tableName, PageLayout.BITMAP);
+    }
+
+    /**
+     * Creates a table whose data pages are laid out as `layout` (see PageLayout).
+     *
+     * @param s schema of new table
+     * @param tableName name of new table
+     * @param layout layout of the data pages of the new table
+     */
+    public void createTable(Schema s, String tableName, PageLayout layout) {
+        createTable(s, tableName, layout, Collections.emptyList());
+    }
+
+    /**
+     * Creates a table whose data pages are laid out as `layout`, and whose columns
+     * `dictionaryColumns` are dictionary-encoded (see TableDictionary): their values are
+     * stored as int codes into a dictionary of the table. Only string columns can be
+     * encoded, and encoding is meant for columns with a handful of distinct values.
+     *
+     * @param s schema of new table
+     * @param tableName name of new table
+     * @param layout layout of the data pages of the new table
+     * @param dictionaryColumns names of the columns to dictionary-encode
+     */
+    public abstract void createTable(Schema s, String tableName, PageLayout layout, List<String> dictionaryColumns);
 
     /**
      * Drops a table. Equivalent to
@@ -4,18 +4,24 @@ import edu.berkeley.cs186.database.common.PredicateOperator;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
 import edu.berkeley.cs186.database.databox.DataBox;
 import edu.berkeley.cs186.database.index.BPlusTreeMetadata;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.RecordId;
 import edu.berkeley.cs186.database.table.Schema;
 import edu.berkeley.cs186.database.table.Table;
+import edu.berkeley.cs186.database.table.TableDictionary;
+import edu.berkeley.cs186.database.table.ZoneMap;
 import edu.berkeley.cs186.database.table.stats.TableStats;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 import java.util.function.UnaryOperator;
 
 /**
@@ -156,11 +162,61 @@ public abstract class TransactionContext implements AutoCloseable {
      */
     public abstract BacktrackingIterator<Record> getRecordIterator(String tableName);
 
+    /**
+     * Returns a backtracking iterator over all of the records in `tableName`,
+     * hinting to the buffer manager how the table's pages will be accessed.
+     */
+    public BacktrackingIterator<Record> getRecordIterator(String tableName, AccessPattern accessPattern) {
+        return getRecordIterator(tableName);
+    }
+
+    /**
+     * Returns a backtracking iterator over all of the records in `tableName`, with
+     * only the values of `columns` (indices into the table's schema), in that order.
+     */
+    public BacktrackingIterator<Record> getRecordIterator(String tableName, AccessPattern accessPattern,
+                                                          List<Integer> columns) {
+        return getTable(tableName).iterator(accessPattern, columns);
+    }
+
+    /**
+     * Returns a backtracking iterator over the records in the data pages of
+     * `tableName` accepted by `pageFilter` (see getZoneMap), with only the values of
+     * `columns` (or of all columns, if null). The other pages are not read.
+     */
+    public BacktrackingIterator<Record> getRecordIterator(String tableName, AccessPattern accessPattern,
+                                                          List<Integer> columns, LongPredicate pageFilter) {
+        return getTable(tableName).iterator(accessPattern, columns, pageFilter);
+    }
+
+    /**
+     * Returns a backtracking iterator over the records in the data pages of
+     * `tableName` accepted by `pageFilter` whose codes in dictionary-encoded columns
+     * are accepted by `codeFilters` (see getDictionary), with only the values of
+     * `columns` (or of all columns, if null).
+     */
+    public BacktrackingIterator<Record> getRecordIterator(String tableName, AccessPattern accessPattern,
+                                                          List<Integer> columns, LongPredicate pageFilter,
+                                                          Map<Integer, IntPredicate> codeFilters) {
+        return getTable(tableName).iterator(accessPattern, columns, pageFilter, codeFilters);
+    }
+
     public abstract boolean contains(String tableName, String columnName, DataBox key);
 
     // Record Operations ///////////////////////////////////////////////////////
     public abstract RecordId addRecord(String tableName, Record record);
 
+    /**
+     * Adds the records of `records` to `tableName`. Unlike addRecord, the records
+     * may be added to new pages (see Table#addRecords), leaving free space in the
+     * table's existing pages unused.
+     */
+    public void addRecords(String tableName, Iterator<Record> records) {
+        while (records.hasNext()) {
+            addRecord(tableName, records.next());
+        }
+    }
+
     public abstract RecordId deleteRecord(String tableName, RecordId rid);
 
     public abstract void deleteRecordWhere(String tableName, String predColumnName, PredicateOperator predOperator,
@@ -210,6 +266,32 @@ public abstract class TransactionContext implements AutoCloseable {
      */
     public abstract int getNumDataPages(String tableName);
 
+    /**
+     * @param tableName name of table
+     * @param pageFilter filter on page numbers
+     * @return number of data pages used by the table accepted by `pageFilter`
+     */
+    public int getNumDataPages(String tableName, LongPredicate pageFilter) {
+        return getTable(tableName).getNumDataPages(pageFilter);
+    }
+
+    /**
+     * @param tableName name of table to get the zone map of
+     * @return ZoneMap object of the table
+     */
+    public ZoneMap getZoneMap(String tableName) {
+        return getTable(tableName).getZoneMap();
+    }
+
+    /**
+     * @param tableName name of table to get the dictionary of
+     * @return TableDictionary object of the table's dictionary-encoded columns, or null
+     * if it has none
+     */
+    public TableDictionary getDictionary(String tableName) {
+        return getTable(tableName).getDictionary();
+    }
+
     /**
      * @param tableName name of table
      * @param columnName name of column
@@ -3,8 +3,10 @@ package edu.berkeley.cs186.database.cli.visitor;
 import edu.berkeley.cs186.database.Transaction;
 import edu.berkeley.cs186.database.cli.parser.ASTSelectStatement;
 import edu.berkeley.cs186.database.query.QueryPlan;
+import edu.berkeley.cs186.database.table.Record;
 
 import java.io.PrintStream;
+import java.util.Iterator;
 
 class ExplainStatementVisitor extends StatementVisitor {
     StatementVisitor visitor;
@@ -19,8 +21,13 @@ class ExplainStatementVisitor extends StatementVisitor {
     @Override
     public void execute(Transaction transaction, PrintStream out) {
         QueryPlan query = this.visitor.getQueryPlan(transaction).get();
-        query.execute();
-        out.println(query.getFinalOperator());
+        // run the query to completion, so that the plan can be shown with the
+        // buffer activity of each operator
+        Iterator<Record> records = query.execute();
+        while (records.hasNext()) {
+            records.next();
+        }
+        out.println(query.getFinalOperator().toStringWithBufferMetrics());
     }
 
     @Override
@@ -5,7 +5,9 @@ import edu.berkeley.cs186.database.memory.LRUEvictionPolicy;
 
 public class ContestSetup {
 
-    // Select your buffer eviction policy!
+    // Select your buffer eviction policy! Scan-resistant policies (TwoQueueEvictionPolicy,
+    // LRUKEvictionPolicy, ARCEvictionPolicy) are also available; EvictionPolicyComparison
+    // reports the I/Os each policy needs on the contest workloads.
     public static final EvictionPolicy EVICTION_POLICY = new LRUEvictionPolicy();
 
     public static final String[][] INDICES_TO_BUILD = {
@@ -0,0 +1,91 @@
+package edu.berkeley.cs186.database.contest;
+
+import edu.berkeley.cs186.database.concurrency.LockManager;
+import edu.berkeley.cs186.database.memory.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Replays the contest workloads once for each eviction policy, and reports the
+ * number of I/Os (as counted by the buffer manager) that each policy needed to
+ * build the indices and to run each query. Query results are discarded.
+ *
+ * Usage: EvictionPolicyComparison [workload size], where the size is one of
+ * 32 (tiny, the default), 1000, 3000 or 5000.
+ */
+public class EvictionPolicyComparison {
+    private static final Map<String, Supplier<EvictionPolicy>> POLICIES = new LinkedHashMap<>();
+    static {
+        POLICIES.put("LRU", LRUEvictionPolicy::new);
+        POLICIES.put("Clock", ClockEvictionPolicy::new);
+        POLICIES.put("2Q", TwoQueueEvictionPolicy::new);
+        POLICIES.put("LRU-2", LRUKEvictionPolicy::new);
+        POLICIES.put("ARC", ARCEvictionPolicy::new);
+    }
+
+    /**
+     * Runs the workloads of the given size with a fresh database using the given
+     * eviction policy.
+     * @return I/Os for building indices, followed by I/Os for each query
+     */
+    public static long[] runWorkloads(int workloadSize, EvictionPolicy policy) {
+        int numQueries = 0;
+        for (Workload ignored : Workload.getWorkloadsBySize(workloadSize)) {
+            ++numQueries;
+        }
+        long[] numIOs = new long[numQueries + 1];
+        try (ContestRookieDB db = new ContestRookieDB(new LockManager(), policy)) {
+            db.loadWorkloadTables(workloadSize);
+            db.endCurrentTransaction();
+            numIOs[0] = db.buildIndices(ContestSetup.INDICES_TO_BUILD);
+            int i = 1;
+            for (Workload workload : Workload.getWorkloadsBySize(workloadSize)) {
+                long startIOs = db.getCurrentIOCount();
+                Iterator<?> records = db.runWorkload(workload);
+                while (records.hasNext()) {
+                    records.next();
+                }
+                db.endCurrentTransaction();
+                numIOs[i++] = db.getCurrentIOCount() - startIOs;
+            }
+        }
+        return numIOs;
+    }
+
+    public static void main(String[] args) {
+        int workloadSize = args.length > 0 ? Integer.parseInt(args[0]) : Workload.TINY;
+        System.out.println("Running workload size: " + Workload.sizeToString(workloadSize));
+
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<EvictionPolicy>> entry : POLICIES.entrySet()) {
+            System.out.println("Running workloads with " + entry.getKey() + "...");
+            results.put(entry.getKey(), runWorkloads(workloadSize, entry.getValue().get()));
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-8s", ""));
+        for (String name : results.keySet()) {
+            header.append(String.format("%12s", name));
+        }
+        System.out.println(header);
+        int numRows = results.values().iterator().next().length;
+        for (int row = 0; row < numRows; ++row) {
+            StringBuilder line = new StringBuilder(String.format("%-8s", row == 0 ? "Indices" : "Query " + row));
+            for (long[] numIOs : results.values()) {
+                line.append(String.format("%12d", numIOs[row]));
+            }
+            System.out.println(line);
+        }
+        StringBuilder total = new StringBuilder(String.format("%-8s", "Total"));
+        for (long[] numIOs : results.values()) {
+            long sum = 0;
+            for (long n : numIOs) {
+                sum += n;
+            }
+            total.append(String.format("%12d", sum));
+        }
+        System.out.println(total);
+    }
+}
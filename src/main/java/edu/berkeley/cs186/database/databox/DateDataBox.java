@@ -31,9 +31,13 @@ public class DateDataBox extends DataBox {
         }
     }
 
+    // SimpleDateFormat is not thread-safe, so each thread gets its own
+    private static final ThreadLocal<SimpleDateFormat> dateFormatters =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd"));
+
     private static SimpleDateFormat getDateFormatter() {
         // Not very generalizable but good enough for now.
-        return new SimpleDateFormat("yyyy-MM-dd");
+        return dateFormatters.get();
     }
 
     @Override
@@ -20,8 +20,11 @@ public class StringDataBox extends DataBox {
             throw new IllegalArgumentException(msg);
         }
         this.m = m;
-        s = m > s.length() ? s : s.substring(0, m);
-        this.s = s.replaceAll("\0*$", ""); // Trim off null bytes
+        int end = Math.min(s.length(), m);
+        while (end > 0 && s.charAt(end - 1) == '\0') {
+            --end; // Trim off null bytes
+        }
+        this.s = end == s.length() ? s : s.substring(0, end);
     }
 
     public StringDataBox(String s) {
@@ -132,6 +132,7 @@ class InnerNode extends BPlusNode {
 
     private void sync() {
         page.pin();
+        page.latchExclusive();
         try {
             Buffer b = page.getBuffer();
             byte[] newBytes = toBytes();
@@ -141,6 +142,7 @@ class InnerNode extends BPlusNode {
                 page.getBuffer().put(toBytes());
             }
         } finally {
+            page.unlatchExclusive();
             page.unpin();
         }
     }
@@ -342,19 +344,24 @@ class InnerNode extends BPlusNode {
     public static InnerNode fromBytes(BPlusTreeMetadata metadata,
                                       BufferManager bufferManager, LockContext treeContext, long pageNum) {
         Page page = bufferManager.fetchPage(treeContext, pageNum);
-        Buffer buf = page.getBuffer();
-
-        byte nodeType = buf.get();
-        assert(nodeType == (byte) 0);
-
         List<DataBox> keys = new ArrayList<>();
         List<Long> children = new ArrayList<>();
-        int n = buf.getInt();
-        for (int i = 0; i < n; ++i) {
-            keys.add(DataBox.fromBytes(buf, metadata.getKeySchema()));
-        }
-        for (int i = 0; i < n + 1; ++i) {
-            children.add(buf.getLong());
+        page.latchShared();
+        try {
+            Buffer buf = page.getBuffer();
+
+            byte nodeType = buf.get();
+            assert(nodeType == (byte) 0);
+
+            int n = buf.getInt();
+            for (int i = 0; i < n; ++i) {
+                keys.add(DataBox.fromBytes(buf, metadata.getKeySchema()));
+            }
+            for (int i = 0; i < n + 1; ++i) {
+                children.add(buf.getLong());
+            }
+        } finally {
+            page.unlatchShared();
         }
         return new InnerNode(metadata, bufferManager, page, keys, children, treeContext);
     }
@@ -228,6 +228,7 @@ class LeafNode extends BPlusNode {
     /** Serializes this leaf to its page. */
     private void sync() {
         page.pin();
+        page.latchExclusive();
         try {
             Buffer b = page.getBuffer();
             byte[] newBytes = toBytes();
@@ -237,6 +238,7 @@ class LeafNode extends BPlusNode {
                 page.getBuffer().put(toBytes());
             }
         } finally {
+            page.unlatchExclusive();
             page.unpin();
         }
     }
@@ -1,5 +1,7 @@
 package edu.berkeley.cs186.database.io;
 
+import java.nio.ByteBuffer;
+
 public interface DiskSpaceManager extends AutoCloseable {
     short PAGE_SIZE = 4096 * 4; // size of a page in bytes
     long INVALID_PAGE_NUM = -1L; // a page number that is always invalid
@@ -22,6 +24,28 @@ public interface DiskSpaceManager extends AutoCloseable {
      */
     int allocPart(int partNum);
 
+    /**
+     * Allocates a new temporary partition, for data that does not need to survive a
+     * restart, such as temporary tables. Changes to temporary partitions are not logged.
+     * Implementations without separate storage for temporary partitions allocate a
+     * regular partition.
+     *
+     * @return partition number of new partition
+     */
+    default int allocTempPart() {
+        return allocPart();
+    }
+
+    /**
+     * Checks if a partition is a temporary partition (see allocTempPart)
+     *
+     * @param partNum partition number
+     * @return true if the partition is an allocated temporary partition
+     */
+    default boolean isTempPart(int partNum) {
+        return false;
+    }
+
     /**
      * Releases a partition from use.
 
@@ -65,6 +89,46 @@ public interface DiskSpaceManager extends AutoCloseable {
      */
     void writePage(long page, byte[] buf);
 
+    /**
+     * Reads a page into a buffer, from its position to its limit, which must be
+     * PAGE_SIZE bytes apart. Implementations that can read directly into the buffer
+     * should override this; by default, the page is read into a temporary array.
+     *
+     * @param page number of page to be read
+     * @param buf byte buffer whose remaining bytes will be filled with page data
+     */
+    default void readPage(long page, ByteBuffer buf) {
+        if (buf.remaining() != PAGE_SIZE) {
+            throw new IllegalArgumentException("readPage expects a page-sized buffer");
+        }
+        byte[] bytes = new byte[PAGE_SIZE];
+        readPage(page, bytes);
+        buf.put(bytes);
+    }
+
+    /**
+     * Writes to a page from a buffer, from its position to its limit, which must be
+     * PAGE_SIZE bytes apart. Implementations that can write directly from the buffer
+     * should override this; by default, the page is copied into a temporary array.
+     *
+     * @param page number of page to be written
+     * @param buf byte buffer whose remaining bytes are the new page data
+     */
+    default void writePage(long page, ByteBuffer buf) {
+        if (buf.remaining() != PAGE_SIZE) {
+            throw new IllegalArgumentException("writePage expects a page-sized buffer");
+        }
+        byte[] bytes = new byte[PAGE_SIZE];
+        buf.get(bytes);
+        writePage(page, bytes);
+    }
+
+    /**
+     * Forces all writes so far to disk. Implementations that do not force every write
+     * as it happens should override this.
+     */
+    default void sync() {}
+
     /**
      * Checks if a page is allocated
      *
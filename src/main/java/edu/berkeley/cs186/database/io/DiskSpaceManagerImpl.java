@@ -1,14 +1,17 @@
 package edu.berkeley.cs186.database.io;
 
 import edu.berkeley.cs186.database.TransactionContext;
+import edu.berkeley.cs186.database.recovery.LogManager;
 import edu.berkeley.cs186.database.recovery.RecoveryManager;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -44,26 +47,69 @@ import java.util.concurrent.locks.ReentrantLock;
  * - the second header page follows
  * - the next 32K pages are data pages managed by the second header page
  * - etc.
+ *
+ * Partition files may optionally be memory-mapped (in segments of up to 64MB, which grow with
+ * the file), in which case pages are copied to and from the mapping instead of read and written
+ * with system calls. Pages past the mapped part of a file fall back to the file channel.
+ *
+ * By default, every data page write is forced to disk before it returns. With a sync batch size
+ * greater than 1 (see setSyncBatchSize), data page writes to a partition are forced once per
+ * batch, and changes to its master and header pages are written with the batch. Writes are also
+ * forced by sync(), which the recovery manager calls when taking a checkpoint. The log partition
+ * is always forced on every write, since the recovery manager relies on flushed log records.
+ *
+ * Partition files grow by extents of up to 64 contiguous zeroed pages, written at once, and
+ * pages are allocated lowest first, so the pages of a growing partition (a table, or the
+ * temporary table of a sort run or hash partition) are laid out contiguously.
+ *
+ * Partitions are looked up without locking the manager, which is only locked to allocate and
+ * free partitions. Each partition has a read-write lock: page reads (and checks of whether a
+ * page is allocated) share it, and everything else holds it exclusively, so reads of any
+ * partitions, and writes of different partitions, happen in parallel.
+ *
+ * Partitions may be switched to compressed data pages (see compressPart), in which case only the
+ * compressed bytes of each page are written to and read from the start of its slot in the file.
+ *
+ * Temporary partitions (see allocTempPart) hold temporary tables, and are not stored in
+ * partition files: nothing about them is logged or forced, and their pages are kept in memory,
+ * up to a number of pages shared by all temporary partitions (see setTempMemoryBudget), and
+ * written to unsynced spill files in the temp subdirectory beyond that. Spill files left
+ * behind by a crash are deleted on startup.
  */
 public class DiskSpaceManagerImpl implements DiskSpaceManager {
     static final int MAX_HEADER_PAGES = PAGE_SIZE / 2; // 2 bytes per header page
     static final int DATA_PAGES_PER_HEADER = PAGE_SIZE * 8; // 1 bit per data page
+    static final String TEMP_DIR = "temp"; // subdirectory of spill files of temporary partitions
+    static final int DEFAULT_TEMP_MEMORY_PAGES = 1024;
 
     // Name of base directory.
     private String dbDir;
 
     // Info about each partition.
-    private Map<Integer, PartitionHandle> partInfo;
+    private ConcurrentHashMap<Integer, PartitionHandle> partInfo;
 
     // Counter to generate new partition numbers.
     private AtomicInteger partNumCounter;
 
-    // Lock on the entire manager.
+    // Temporary partitions, numbered along with other partitions.
+    private ConcurrentHashMap<Integer, TempPartition> tempPartInfo;
+
+    // Maximum number of, and number of, temporary partition pages kept in memory
+    private volatile int tempMemoryBudget;
+    private AtomicInteger tempMemoryPages;
+
+    // Lock on the entire manager, held to allocate or free partitions.
     private ReentrantLock managerLock;
 
     // recovery manager
     private RecoveryManager recoveryManager;
 
+    // Whether partition files are memory-mapped
+    private boolean memoryMapped;
+
+    // Number of data page writes to a partition to batch before forcing them to disk
+    private int syncBatchSize;
+
     /**
      * Initialize the disk space manager using the given directory. Creates the directory
      * if not present.
@@ -71,10 +117,26 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
      * @param dbDir base directory of the database
      */
     public DiskSpaceManagerImpl(String dbDir, RecoveryManager recoveryManager) {
+        this(dbDir, recoveryManager, false);
+    }
+
+    /**
+     * Initialize the disk space manager using the given directory. Creates the directory
+     * if not present.
+     *
+     * @param dbDir base directory of the database
+     * @param memoryMapped whether to memory-map partition files
+     */
+    public DiskSpaceManagerImpl(String dbDir, RecoveryManager recoveryManager, boolean memoryMapped) {
         this.dbDir = dbDir;
         this.recoveryManager = recoveryManager;
-        this.partInfo = new HashMap<>();
+        this.memoryMapped = memoryMapped;
+        this.syncBatchSize = 1;
+        this.partInfo = new ConcurrentHashMap<>();
         this.partNumCounter = new AtomicInteger(0);
+        this.tempPartInfo = new ConcurrentHashMap<>();
+        this.tempMemoryBudget = DEFAULT_TEMP_MEMORY_PAGES;
+        this.tempMemoryPages = new AtomicInteger(0);
         this.managerLock = new ReentrantLock();
 
         File dir = new File(dbDir);
@@ -89,6 +151,16 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
                 throw new PageException("could not initialize disk space manager - directory is a file");
             }
             for (File f : files) {
+                if (f.getName().equals(TEMP_DIR)) {
+                    // spill files of temporary partitions from before a crash
+                    File[] spillFiles = f.listFiles();
+                    for (File spillFile : spillFiles == null ? new File[0] : spillFiles) {
+                        if (!spillFile.delete()) {
+                            throw new PageException("could not clean up spill file - " + spillFile.getName());
+                        }
+                    }
+                    continue;
+                }
                 if (f.length() == 0) {
                     if (!f.delete()) {
                         throw new PageException("could not clean up unused file - " + f.getName());
@@ -98,7 +170,7 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
                 int fileNum = Integer.parseInt(f.getName());
                 maxFileNum = Math.max(maxFileNum, fileNum);
 
-                PartitionHandle pi = new PartitionHandle(fileNum, recoveryManager);
+                PartitionHandle pi = new PartitionHandle(fileNum, recoveryManager, memoryMapped);
                 pi.open(dbDir + "/" + f.getName());
                 this.partInfo.put(fileNum, pi);
             }
@@ -108,6 +180,9 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
 
     @Override
     public void close() {
+        for (int partNum : this.tempPartInfo.keySet()) {
+            this.freeTempPart(partNum);
+        }
         for (Map.Entry<Integer, PartitionHandle> part : this.partInfo.entrySet()) {
             try {
                 part.getValue().close();
@@ -117,6 +192,93 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
         }
     }
 
+    /**
+     * Sets the number of data page writes to each partition (other than the log) to
+     * batch before forcing them to disk.
+     *
+     * @param syncBatchSize number of writes per batch; 1 to force every write
+     */
+    public void setSyncBatchSize(int syncBatchSize) {
+        if (syncBatchSize < 1) {
+            throw new IllegalArgumentException("sync batch size must be positive");
+        }
+        this.managerLock.lock();
+        try {
+            this.syncBatchSize = syncBatchSize;
+            for (Map.Entry<Integer, PartitionHandle> part : this.partInfo.entrySet()) {
+                if (part.getKey() == LogManager.LOG_PARTITION) {
+                    continue;
+                }
+                PartitionHandle pi = part.getValue();
+                pi.partitionLock.writeLock().lock();
+                try {
+                    pi.setSyncBatchSize(syncBatchSize);
+                } catch (IOException e) {
+                    throw new PageException("could not sync partition " + part.getKey() + ": " + e.getMessage());
+                } finally {
+                    pi.partitionLock.writeLock().unlock();
+                }
+            }
+        } finally {
+            this.managerLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of pages of temporary partitions to keep in memory; pages allocated
+     * beyond this are written to spill files. Pages already allocated are not moved.
+     *
+     * @param numPages number of pages
+     */
+    public void setTempMemoryBudget(int numPages) {
+        if (numPages < 0) {
+            throw new IllegalArgumentException("temporary memory budget must not be negative");
+        }
+        this.tempMemoryBudget = numPages;
+    }
+
+    /**
+     * Switches a partition to compressed data pages, compressing the pages it already
+     * has; later writes are compressed as well. Meant for partitions that are mostly
+     * read, such as tables that have been loaded: scans read only the compressed bytes
+     * of each page, at the cost of decompressing pages as they are read into the buffer.
+     * The log partition cannot be compressed.
+     *
+     * @param partNum partition to compress
+     */
+    public void compressPart(int partNum) {
+        if (partNum == LogManager.LOG_PARTITION) {
+            throw new IllegalArgumentException("the log partition cannot be compressed");
+        }
+        PartitionHandle pi = this.lockPartInfo(partNum, true);
+        try {
+            pi.compress();
+        } catch (IOException e) {
+            throw new PageException("could not compress partition " + partNum + ": " + e.getMessage());
+        } finally {
+            pi.partitionLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void sync() {
+        for (int partNum : this.partInfo.keySet()) {
+            PartitionHandle pi;
+            try {
+                pi = this.lockPartInfo(partNum, true);
+            } catch (NoSuchElementException e) {
+                continue; // freed meanwhile
+            }
+            try {
+                pi.sync();
+            } catch (IOException e) {
+                throw new PageException("could not sync partition " + partNum + ": " + e.getMessage());
+            } finally {
+                pi.partitionLock.writeLock().unlock();
+            }
+        }
+    }
+
     @Override
     public int allocPart() {
         return this.allocPartHelper(this.partNumCounter.getAndIncrement());
@@ -133,14 +295,22 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
 
         this.managerLock.lock();
         try {
-            if (this.partInfo.containsKey(partNum)) {
+            if (this.partInfo.containsKey(partNum) || this.tempPartInfo.containsKey(partNum)) {
                 throw new IllegalStateException("partition number " + partNum + " already exists");
             }
 
-            pi = new PartitionHandle(partNum, recoveryManager);
+            pi = new PartitionHandle(partNum, recoveryManager, memoryMapped);
+            // locked before it is published, so that it is not used before it is opened
+            pi.partitionLock.writeLock().lock();
             this.partInfo.put(partNum, pi);
 
-            pi.partitionLock.lock();
+            if (partNum != LogManager.LOG_PARTITION) {
+                try {
+                    pi.setSyncBatchSize(this.syncBatchSize);
+                } catch (IOException e) {
+                    throw new PageException("could not modify partition " + partNum + ": " + e.getMessage());
+                }
+            }
         } finally {
             this.managerLock.unlock();
         }
@@ -156,12 +326,29 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
             pi.open(dbDir + "/" + partNum);
             return partNum;
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.writeLock().unlock();
         }
     }
 
+    @Override
+    public int allocTempPart() {
+        int partNum = this.partNumCounter.getAndIncrement();
+        String spillPath = dbDir + "/" + TEMP_DIR + "/" + partNum;
+        this.tempPartInfo.put(partNum, new TempPartition(partNum, spillPath));
+        return partNum;
+    }
+
+    @Override
+    public boolean isTempPart(int partNum) {
+        return this.tempPartInfo.containsKey(partNum);
+    }
+
     @Override
     public void freePart(int partNum) {
+        if (this.tempPartInfo.containsKey(partNum)) {
+            this.freeTempPart(partNum);
+            return;
+        }
         PartitionHandle pi;
 
         this.managerLock.lock();
@@ -170,14 +357,14 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
             if (pi == null) {
                 throw new NoSuchElementException("no partition " + partNum);
             }
-            pi.partitionLock.lock();
+            pi.partitionLock.writeLock().lock();
         } finally {
             this.managerLock.unlock();
         }
         try {
             try {
                 pi.freeDataPages();
-                pi.close();
+                pi.close(false);
             } catch (IOException e) {
                 throw new PageException("could not close partition " + partNum + ": " + e.getMessage());
             }
@@ -192,28 +379,25 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
                 throw new PageException("could not delete files for partition " + partNum);
             }
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.writeLock().unlock();
         }
     }
 
     @Override
     public long allocPage(int partNum) {
-        this.managerLock.lock();
-        PartitionHandle pi;
-        try {
-            pi = getPartInfo(partNum);
-            pi.partitionLock.lock();
-        } finally {
-            this.managerLock.unlock();
+        TempPartition tp = this.tempPartInfo.get(partNum);
+        if (tp != null) {
+            return this.allocTempPage(tp, partNum, -1);
         }
+        PartitionHandle pi = this.lockPartInfo(partNum, true);
         try {
             int pageNum = pi.allocPage();
-            pi.writePage(pageNum, new byte[PAGE_SIZE]);
+            pi.zeroPage(pageNum);
             return DiskSpaceManager.getVirtualPageNum(partNum, pageNum);
         } catch (IOException e) {
             throw new PageException("could not modify partition " + partNum + ": " + e.getMessage());
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.writeLock().unlock();
         }
     }
 
@@ -224,22 +408,19 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
         int headerIndex = pageNum / DATA_PAGES_PER_HEADER;
         int pageIndex = pageNum % DATA_PAGES_PER_HEADER;
 
-        this.managerLock.lock();
-        PartitionHandle pi;
-        try {
-            pi = getPartInfo(partNum);
-            pi.partitionLock.lock();
-        } finally {
-            this.managerLock.unlock();
+        TempPartition tp = this.tempPartInfo.get(partNum);
+        if (tp != null) {
+            return this.allocTempPage(tp, partNum, pageNum);
         }
+        PartitionHandle pi = this.lockPartInfo(partNum, true);
         try {
             pi.allocPage(headerIndex, pageIndex);
-            pi.writePage(pageNum, new byte[PAGE_SIZE]);
+            pi.zeroPage(pageNum);
             return DiskSpaceManager.getVirtualPageNum(partNum, pageNum);
         } catch (IOException e) {
             throw new PageException("could not modify partition " + partNum + ": " + e.getMessage());
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.writeLock().unlock();
         }
     }
 
@@ -247,20 +428,20 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
     public void freePage(long page) {
         int partNum = DiskSpaceManager.getPartNum(page);
         int pageNum = DiskSpaceManager.getPageNum(page);
-        this.managerLock.lock();
-        PartitionHandle pi;
-        try {
-            pi = getPartInfo(partNum);
-            pi.partitionLock.lock();
-        } finally {
-            this.managerLock.unlock();
+        TempPartition tp = this.tempPartInfo.get(partNum);
+        if (tp != null) {
+            if (tp.freePage(pageNum)) {
+                this.tempMemoryPages.decrementAndGet();
+            }
+            return;
         }
+        PartitionHandle pi = this.lockPartInfo(partNum, true);
         try {
             pi.freePage(pageNum);
         } catch (IOException e) {
             throw new PageException("could not modify partition " + partNum + ": " + e.getMessage());
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.writeLock().unlock();
         }
     }
 
@@ -269,22 +450,32 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
         if (buf.length != PAGE_SIZE) {
             throw new IllegalArgumentException("readPage expects a page-sized buffer");
         }
+        this.readPage(page, ByteBuffer.wrap(buf));
+    }
+
+    @Override
+    public void readPage(long page, ByteBuffer buf) {
+        if (buf.remaining() != PAGE_SIZE) {
+            throw new IllegalArgumentException("readPage expects a page-sized buffer");
+        }
         int partNum = DiskSpaceManager.getPartNum(page);
         int pageNum = DiskSpaceManager.getPageNum(page);
-        this.managerLock.lock();
-        PartitionHandle pi;
-        try {
-            pi = getPartInfo(partNum);
-            pi.partitionLock.lock();
-        } finally {
-            this.managerLock.unlock();
+        TempPartition tp = this.tempPartInfo.get(partNum);
+        if (tp != null) {
+            try {
+                tp.readPage(pageNum, buf);
+            } catch (IOException e) {
+                throw new PageException("could not read partition " + partNum + ": " + e.getMessage());
+            }
+            return;
         }
+        PartitionHandle pi = this.lockPartInfo(partNum, false);
         try {
             pi.readPage(pageNum, buf);
         } catch (IOException e) {
             throw new PageException("could not read partition " + partNum + ": " + e.getMessage());
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.readLock().unlock();
         }
     }
 
@@ -293,22 +484,32 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
         if (buf.length != PAGE_SIZE) {
             throw new IllegalArgumentException("writePage expects a page-sized buffer");
         }
+        this.writePage(page, ByteBuffer.wrap(buf));
+    }
+
+    @Override
+    public void writePage(long page, ByteBuffer buf) {
+        if (buf.remaining() != PAGE_SIZE) {
+            throw new IllegalArgumentException("writePage expects a page-sized buffer");
+        }
         int partNum = DiskSpaceManager.getPartNum(page);
         int pageNum = DiskSpaceManager.getPageNum(page);
-        this.managerLock.lock();
-        PartitionHandle pi;
-        try {
-            pi = getPartInfo(partNum);
-            pi.partitionLock.lock();
-        } finally {
-            this.managerLock.unlock();
+        TempPartition tp = this.tempPartInfo.get(partNum);
+        if (tp != null) {
+            try {
+                tp.writePage(pageNum, buf);
+            } catch (IOException e) {
+                throw new PageException("could not write partition " + partNum + ": " + e.getMessage());
+            }
+            return;
         }
+        PartitionHandle pi = this.lockPartInfo(partNum, true);
         try {
             pi.writePage(pageNum, buf);
         } catch (IOException e) {
             throw new PageException("could not write partition " + partNum + ": " + e.getMessage());
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.writeLock().unlock();
         }
     }
 
@@ -316,27 +517,78 @@ public class DiskSpaceManagerImpl implements DiskSpaceManager {
     public boolean pageAllocated(long page) {
         int partNum = DiskSpaceManager.getPartNum(page);
         int pageNum = DiskSpaceManager.getPageNum(page);
-        this.managerLock.lock();
-        PartitionHandle pi;
-        try {
-            pi = getPartInfo(partNum);
-            pi.partitionLock.lock();
-        } finally {
-            this.managerLock.unlock();
+        TempPartition tp = this.tempPartInfo.get(partNum);
+        if (tp != null) {
+            return tp.isAllocatedPage(pageNum);
         }
+        PartitionHandle pi = this.lockPartInfo(partNum, false);
         try {
             return !pi.isNotAllocatedPage(pageNum);
         } finally {
-            pi.partitionLock.unlock();
+            pi.partitionLock.readLock().unlock();
         }
     }
 
-    // Gets PartInfo, throws exception if not found.
-    private PartitionHandle getPartInfo(int partNum) {
+    // Gets PartInfo and acquires its lock (exclusively or shared), throws exception if not found.
+    private PartitionHandle lockPartInfo(int partNum, boolean exclusive) {
         PartitionHandle pi = this.partInfo.get(partNum);
         if (pi == null) {
             throw new NoSuchElementException("no partition " + partNum);
         }
+        Lock lock = exclusive ? pi.partitionLock.writeLock() : pi.partitionLock.readLock();
+        lock.lock();
+        if (this.partInfo.get(partNum) != pi) {
+            // freed while waiting for the lock
+            lock.unlock();
+            throw new NoSuchElementException("no partition " + partNum);
+        }
         return pi;
     }
+
+    // Allocates a page (the lowest free page if pageNum is negative) of a temporary
+    // partition, in memory if the budget allows.
+    private long allocTempPage(TempPartition tp, int partNum, int pageNum) {
+        boolean inMemory = this.reserveTempMemoryPage();
+        boolean allocated = false;
+        try {
+            if (pageNum < 0) {
+                pageNum = tp.allocPage(inMemory);
+            } else {
+                tp.allocPage(pageNum, inMemory);
+            }
+            allocated = true;
+            return DiskSpaceManager.getVirtualPageNum(partNum, pageNum);
+        } catch (IOException e) {
+            throw new PageException("could not modify partition " + partNum + ": " + e.getMessage());
+        } finally {
+            if (inMemory && !allocated) {
+                this.tempMemoryPages.decrementAndGet();
+            }
+        }
+    }
+
+    // Reserves memory for a page of a temporary partition, if the budget allows.
+    private boolean reserveTempMemoryPage() {
+        while (true) {
+            int numPages = this.tempMemoryPages.get();
+            if (numPages >= this.tempMemoryBudget) {
+                return false;
+            }
+            if (this.tempMemoryPages.compareAndSet(numPages, numPages + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void freeTempPart(int partNum) {
+        TempPartition tp = this.tempPartInfo.remove(partNum);
+        if (tp == null) {
+            throw new NoSuchElementException("no partition " + partNum);
+        }
+        try {
+            this.tempMemoryPages.addAndGet(-tp.free());
+        } catch (IOException e) {
+            throw new PageException("could not delete files for partition " + partNum + ": " + e.getMessage());
+        }
+    }
 }
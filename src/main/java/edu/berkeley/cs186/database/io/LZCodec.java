@@ -0,0 +1,180 @@
+package edu.berkeley.cs186.database.io;
+
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 codec for pages, in the style of LZ4. Compressed data is a series of
+ * sequences, each of which is a token byte, literals, and a match:
+ * - the high 4 bits of the token are the number of literals, and the low 4 bits the
+ *   match length minus MIN_MATCH; a value of 15 is followed by bytes that are added
+ *   to it, up to and including the first byte that is not 255
+ * - the literals are copied as is
+ * - the match is a 2-byte (little-endian) offset back into the decompressed data,
+ *   followed by the extra bytes of the match length, if any; matches may overlap the
+ *   bytes they produce, so that runs (such as string padding) compress to a few bytes
+ * The last sequence has literals only (possibly none), and no match.
+ *
+ * Matches are found with a hash table of the positions of 4-byte sequences, without
+ * chains, which trades some compression for speed.
+ */
+final class LZCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 12;
+
+    // Hash tables of positions (plus one; 0 is empty), reused by each thread
+    private static final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_BITS]);
+
+    private LZCodec() {}
+
+    /**
+     * Compresses src[0, srcLen) into dst[dstOff, dstEnd).
+     * @return offset in dst after the compressed data, or -1 if it does not fit
+     */
+    static int compress(byte[] src, int srcLen, byte[] dst, int dstOff, int dstEnd) {
+        int[] table = hashTables.get();
+        Arrays.fill(table, 0);
+        int d = dstOff;
+        int anchor = 0;
+        int i = 0;
+        while (i + MIN_MATCH <= srcLen) {
+            int seq = readInt(src, i);
+            int h = hash(seq);
+            int ref = table[h] - 1;
+            table[h] = i + 1;
+            if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                ++i;
+                continue;
+            }
+            int len = MIN_MATCH;
+            while (i + len < srcLen && src[ref + len] == src[i + len]) {
+                ++len;
+            }
+            d = writeSequence(src, anchor, i - anchor, i - ref, len, dst, d, dstEnd);
+            if (d < 0) {
+                return -1;
+            }
+            i += len;
+            anchor = i;
+        }
+        return writeSequence(src, anchor, srcLen - anchor, 0, 0, dst, d, dstEnd);
+    }
+
+    /**
+     * Decompresses src[srcOff, srcEnd) into dst[dstOff, dstOff + dstLen), which the
+     * decompressed data must fill exactly.
+     * @throws IllegalArgumentException if the compressed data is corrupt
+     */
+    static void decompress(byte[] src, int srcOff, int srcEnd, byte[] dst, int dstOff, int dstLen) {
+        int s = srcOff;
+        int d = dstOff;
+        int dstEnd = dstOff + dstLen;
+        try {
+            while (s < srcEnd) {
+                int token = src[s++] & 0xFF;
+                int numLiterals = token >>> 4;
+                if (numLiterals == 15) {
+                    int b;
+                    do {
+                        b = src[checkIndex(s++, srcEnd)] & 0xFF;
+                        numLiterals += b;
+                    } while (b == 255);
+                }
+                if (s + numLiterals > srcEnd || d + numLiterals > dstEnd) {
+                    throw new IllegalArgumentException("corrupt compressed data");
+                }
+                System.arraycopy(src, s, dst, d, numLiterals);
+                s += numLiterals;
+                d += numLiterals;
+                if (s >= srcEnd) {
+                    break;
+                }
+
+                int offset = (src[checkIndex(s++, srcEnd)] & 0xFF) | (src[checkIndex(s++, srcEnd)] & 0xFF) << 8;
+                int len = token & 15;
+                if (len == 15) {
+                    int b;
+                    do {
+                        b = src[checkIndex(s++, srcEnd)] & 0xFF;
+                        len += b;
+                    } while (b == 255);
+                }
+                len += MIN_MATCH;
+                int ref = d - offset;
+                if (offset == 0 || ref < dstOff || d + len > dstEnd) {
+                    throw new IllegalArgumentException("corrupt compressed data");
+                }
+                // A match that overlaps the bytes it produces repeats the last offset bytes;
+                // it is copied in pieces that double in length, each ending before its target.
+                for (int copied = 0; copied < len; ) {
+                    int n = Math.min(len - copied, offset + copied);
+                    System.arraycopy(dst, ref, dst, d + copied, n);
+                    copied += n;
+                }
+                d += len;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("corrupt compressed data");
+        }
+        if (d != dstEnd) {
+            throw new IllegalArgumentException("corrupt compressed data");
+        }
+    }
+
+    // Writes a sequence (without a match if len is 0), returns the offset after it or -1.
+    private static int writeSequence(byte[] src, int literalsOff, int numLiterals, int offset, int len,
+                                     byte[] dst, int d, int dstEnd) {
+        int extraLen = len - MIN_MATCH;
+        // token, literal length bytes, literals, offset, match length bytes
+        int maxSize = 1 + numLiterals / 255 + 1 + numLiterals + 2 + (len > 0 ? extraLen / 255 + 1 : 0);
+        if (d + maxSize > dstEnd) {
+            return -1;
+        }
+        int tokenPos = d++;
+        int token;
+        if (numLiterals >= 15) {
+            token = 15 << 4;
+            d = writeLength(numLiterals - 15, dst, d);
+        } else {
+            token = numLiterals << 4;
+        }
+        System.arraycopy(src, literalsOff, dst, d, numLiterals);
+        d += numLiterals;
+        if (len > 0) {
+            dst[d++] = (byte) offset;
+            dst[d++] = (byte) (offset >>> 8);
+            if (extraLen >= 15) {
+                token |= 15;
+                d = writeLength(extraLen - 15, dst, d);
+            } else {
+                token |= extraLen;
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return d;
+    }
+
+    private static int writeLength(int n, byte[] dst, int d) {
+        while (n >= 255) {
+            dst[d++] = (byte) 255;
+            n -= 255;
+        }
+        dst[d++] = (byte) n;
+        return d;
+    }
+
+    private static int checkIndex(int i, int end) {
+        if (i >= end) {
+            throw new IllegalArgumentException("corrupt compressed data");
+        }
+        return i;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
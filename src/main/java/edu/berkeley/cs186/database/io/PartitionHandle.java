@@ -8,18 +8,45 @@ import edu.berkeley.cs186.database.recovery.RecoveryManager;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.NoSuchElementException;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static edu.berkeley.cs186.database.io.DiskSpaceManager.PAGE_SIZE;
 import static edu.berkeley.cs186.database.io.DiskSpaceManagerImpl.DATA_PAGES_PER_HEADER;
 import static edu.berkeley.cs186.database.io.DiskSpaceManagerImpl.MAX_HEADER_PAGES;
 
 class PartitionHandle implements AutoCloseable {
-    // Lock on the partition.
-    ReentrantLock partitionLock;
+    // Size of the memory-mapped segments of the OS file, in bytes
+    static final long SEGMENT_SIZE = 4096L * PAGE_SIZE;
+
+    // Number of data pages the OS file is first extended by, and at most extended by
+    static final int MIN_EXTENT_PAGES = 8;
+    static final int MAX_EXTENT_PAGES = 64;
+
+    // The last entry of the master page records the page format of the partition rather
+    // than a count, since counts are recomputed from the header pages on open anyway
+    private static final int FORMAT_ENTRY = MAX_HEADER_PAGES - 1;
+    private static final int COMPRESSED_FORMAT = 0xC0DE;
+
+    // Header of a compressed data page: the sign bit, and the compressed length
+    private static final int COMPRESSED_HEADER_SIZE = Integer.BYTES;
+    private static final int COMPRESSED_FLAG = Integer.MIN_VALUE;
+
+    // Number of bytes of a compressed data page's slot read first; larger pages take a
+    // second read
+    private static final int COMPRESSED_READ_SIZE = 4096;
+
+    // Buffers for compressing and decompressing pages, reused by each thread
+    private static final ThreadLocal<byte[][]> compressionBuffers =
+            ThreadLocal.withInitial(() -> new byte[][] {new byte[PAGE_SIZE], new byte[PAGE_SIZE]});
+
+    // Lock on the partition: held shared to read data pages or check whether a page is
+    // allocated, and exclusively for anything else.
+    ReentrantReadWriteLock partitionLock;
 
     // Underlying OS file/file channel.
     private RandomAccessFile file;
@@ -32,18 +59,62 @@ class PartitionHandle implements AutoCloseable {
     // Contents of the various header pages of this partition
     private byte[][] headerPages;
 
+    // Lowest data page number that may be free: every page below it is allocated
+    private int freePageHint;
+
+    // Data pages [extentStart, extentEnd) were zeroed when the OS file was last
+    // extended, and have not been allocated since
+    private int extentStart;
+    private int extentEnd;
+
+    // Number of data pages to extend the OS file by next
+    private int extentPages;
+
     // Recovery manager
     private RecoveryManager recoveryManager;
 
     // Partition number
     private int partNum;
 
-    PartitionHandle(int partNum, RecoveryManager recoveryManager) {
+    // Whether data pages are compressed (see compress)
+    private boolean compressed;
+
+    // Memory-mapped segments of the OS file, or null if pages are read and written
+    // through the file channel. Segment i maps up to SEGMENT_SIZE bytes from offset
+    // i * SEGMENT_SIZE, or is null if not mapped yet. Replaced (never modified) when a
+    // segment is mapped, since reads may map segments with the partition lock shared.
+    private volatile MappedByteBuffer[] segments;
+
+    // Number of data page writes to batch before forcing them to disk; with 1, every
+    // data page write is forced, and master and header pages are written when changed
+    private int syncBatchSize;
+
+    // Number of data page writes since the partition was last forced to disk
+    private int numUnsyncedWrites;
+
+    // Whether the master page, and which header pages, have changes that have not
+    // been written to the OS file yet
+    private boolean masterPageDirty;
+    private BitSet dirtyHeaderPages;
+
+    /**
+     * @param memoryMapped whether to memory-map the OS file, instead of reading and
+     *                     writing it through the file channel
+     */
+    PartitionHandle(int partNum, RecoveryManager recoveryManager, boolean memoryMapped) {
         this.masterPage = new int[MAX_HEADER_PAGES];
         this.headerPages = new byte[MAX_HEADER_PAGES][];
-        this.partitionLock = new ReentrantLock();
+        this.freePageHint = 0;
+        this.extentStart = this.extentEnd = 0;
+        this.extentPages = MIN_EXTENT_PAGES;
+        this.partitionLock = new ReentrantReadWriteLock();
         this.recoveryManager = recoveryManager;
         this.partNum = partNum;
+        this.segments = memoryMapped ? new MappedByteBuffer[0] : null;
+        this.syncBatchSize = 1;
+        this.numUnsyncedWrites = 0;
+        this.masterPageDirty = false;
+        this.dirtyHeaderPages = new BitSet();
     }
 
     /**
@@ -66,11 +137,19 @@ class PartitionHandle implements AutoCloseable {
                 b.position(0);
                 for (int i = 0; i < MAX_HEADER_PAGES; ++i) {
                     this.masterPage[i] = Short.toUnsignedInt(b.getShort());
+                    if (i == FORMAT_ENTRY) {
+                        this.compressed = this.masterPage[i] == COMPRESSED_FORMAT;
+                    }
                     if (PartitionHandle.headerPageOffset(i) < length) {
                         // Load header pages that were already in the file
                         byte[] headerPage = new byte[PAGE_SIZE];
                         this.headerPages[i] = headerPage;
                         this.fileChannel.read(ByteBuffer.wrap(headerPage), PartitionHandle.headerPageOffset(i));
+                        // A full header page's count does not fit in 16 bits, so counts
+                        // are recomputed rather than trusted
+                        this.masterPage[i] = Bits.countBits(headerPage);
+                    } else {
+                        this.masterPage[i] = 0;
                     }
                 }
             }
@@ -81,13 +160,29 @@ class PartitionHandle implements AutoCloseable {
 
     @Override
     public void close() throws IOException {
-        this.partitionLock.lock();
+        this.close(true);
+    }
+
+    /**
+     * Closes the OS file.
+     * @param sync whether to write out and force batched writes first; false if the
+     *             file is about to be deleted
+     */
+    void close(boolean sync) throws IOException {
+        this.partitionLock.writeLock().lock();
         try {
+            if (sync) {
+                this.sync();
+            }
             Arrays.fill(this.headerPages, null);
+            if (this.segments != null) {
+                // mappings stay valid until garbage collected, but are no longer used
+                this.segments = new MappedByteBuffer[0];
+            }
             this.file.close();
             this.fileChannel.close();
         } finally {
-            this.partitionLock.unlock();
+            this.partitionLock.writeLock().unlock();
         }
     }
 
@@ -97,10 +192,14 @@ class PartitionHandle implements AutoCloseable {
     private void writeMasterPage() throws IOException {
         ByteBuffer b = ByteBuffer.wrap(new byte[PAGE_SIZE]);
         for (int i = 0; i < MAX_HEADER_PAGES; ++i) {
-            b.putShort((short) masterPage[i]);
+            if (i == FORMAT_ENTRY && this.compressed) {
+                b.putShort((short) COMPRESSED_FORMAT);
+            } else {
+                b.putShort((short) masterPage[i]);
+            }
         }
         b.position(0);
-        this.fileChannel.write(b, PartitionHandle.masterPageOffset());
+        this.write(b, PartitionHandle.masterPageOffset());
     }
 
     /**
@@ -109,43 +208,194 @@ class PartitionHandle implements AutoCloseable {
      */
     private void writeHeaderPage(int headerIndex) throws IOException {
         ByteBuffer b = ByteBuffer.wrap(this.headerPages[headerIndex]);
-        this.fileChannel.write(b, PartitionHandle.headerPageOffset(headerIndex));
+        this.write(b, PartitionHandle.headerPageOffset(headerIndex));
     }
 
     /**
-     * Allocates a new page in the partition.
-     * @return data page number
+     * Writes the master page and a changed header page to disk, or, if writes are
+     * batched, marks them to be written with the next batch.
+     * @param headerIndex which header page
      */
-    int allocPage() throws IOException {
-        int headerIndex = -1;
-        for (int i = 0; i < MAX_HEADER_PAGES; ++i) {
-            if (this.masterPage[i] < DATA_PAGES_PER_HEADER) {
-                headerIndex = i;
-                break;
-            }
+    private void headerPageChanged(int headerIndex) throws IOException {
+        if (this.syncBatchSize > 1) {
+            this.masterPageDirty = true;
+            this.dirtyHeaderPages.set(headerIndex);
+        } else {
+            this.writeMasterPage();
+            this.writeHeaderPage(headerIndex);
         }
-        if (headerIndex == -1) {
-            throw new PageException("no free pages - partition has reached max size");
+    }
+
+    /**
+     * Sets the number of data page writes to batch before forcing them to disk. Assumes
+     * that the partition lock is held.
+     * @param syncBatchSize number of writes per batch; 1 to force every write
+     */
+    void setSyncBatchSize(int syncBatchSize) throws IOException {
+        this.syncBatchSize = syncBatchSize;
+        if (this.numUnsyncedWrites >= syncBatchSize) {
+            this.sync();
         }
+    }
 
-        byte[] headerBytes = this.headerPages[headerIndex];
+    /**
+     * Writes changed master and header pages, and forces all writes to disk. Assumes
+     * that the partition lock is held.
+     */
+    void sync() throws IOException {
+        if (!this.masterPageDirty && this.numUnsyncedWrites == 0) {
+            return;
+        }
+        for (int i = this.dirtyHeaderPages.nextSetBit(0); i >= 0; i = this.dirtyHeaderPages.nextSetBit(i + 1)) {
+            this.writeHeaderPage(i);
+        }
+        if (this.masterPageDirty) {
+            this.writeMasterPage();
+        }
+        this.dirtyHeaderPages.clear();
+        this.masterPageDirty = false;
+        if (this.segments != null) {
+            for (MappedByteBuffer segment : this.segments) {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+        }
+        this.fileChannel.force(false);
+        this.numUnsyncedWrites = 0;
+    }
 
-        int pageIndex = -1;
-        if (headerBytes == null) {
-            pageIndex = 0;
+    /**
+     * Reads the page at an offset of the OS file, from its memory mapping if the page
+     * is mapped, and through the file channel otherwise.
+     */
+    private void read(ByteBuffer buf, long offset) throws IOException {
+        ByteBuffer page = this.mappedPage(offset);
+        if (page == null) {
+            this.fileChannel.read(buf, offset);
         } else {
-            for (int i = 0; i < DATA_PAGES_PER_HEADER; i++) {
-                if (Bits.getBit(headerBytes, i) == Bits.Bit.ZERO) {
-                    pageIndex = i;
-                    break;
-                }
+            buf.put(page);
+        }
+    }
+
+    /**
+     * Writes the page at an offset of the OS file, to its memory mapping if the page
+     * is mapped, and through the file channel (growing the file if needed) otherwise.
+     * @return the mapping written to, or null if written through the file channel
+     */
+    private MappedByteBuffer write(ByteBuffer buf, long offset) throws IOException {
+        ByteBuffer page = this.mappedPage(offset);
+        if (page == null) {
+            this.fileChannel.write(buf, offset);
+            return null;
+        }
+        page.put(buf);
+        return this.segments[(int) (offset / SEGMENT_SIZE)];
+    }
+
+    /**
+     * Maps (more of) a segment of the OS file, if the file has grown enough for the page
+     * at an offset in the segment to be mapped.
+     * @return the new mapping, or null if the page is not to be mapped
+     */
+    private synchronized MappedByteBuffer mapSegment(int index, int pageOffset) throws IOException {
+        MappedByteBuffer[] segments = this.segments;
+        MappedByteBuffer segment = index < segments.length ? segments[index] : null;
+        if (segment != null && pageOffset + PAGE_SIZE <= segment.capacity()) {
+            // mapped by another reader meanwhile
+            return segment;
+        }
+        long start = index * SEGMENT_SIZE;
+        long length = Math.min(this.fileChannel.size() - start, SEGMENT_SIZE);
+        if (pageOffset + PAGE_SIZE > length) {
+            return null;
+        }
+        if (segment != null && length < Math.min(2L * segment.capacity(), SEGMENT_SIZE)) {
+            return null;
+        }
+        segment = this.fileChannel.map(FileChannel.MapMode.READ_WRITE, start, length);
+        segments = Arrays.copyOf(segments, Math.max(segments.length, index + 1));
+        segments[index] = segment;
+        this.segments = segments;
+        return segment;
+    }
+
+    /**
+     * Finds the page at an offset of the OS file in the memory mapping. The mapping of
+     * a segment that only partly exists in the file (the last one) is grown as the
+     * file grows: pages past the mapped part of the segment are read and written
+     * through the file channel until the file has grown to twice the mapped size (or
+     * the full segment), so that a growing file is only remapped a few times.
+     *
+     * @return a view of the page in the mapping, or null if the file is not memory
+     * mapped or the page is not mapped
+     */
+    private ByteBuffer mappedPage(long offset) throws IOException {
+        MappedByteBuffer[] segments = this.segments;
+        if (segments == null) {
+            return null;
+        }
+        int index = (int) (offset / SEGMENT_SIZE);
+        int pageOffset = (int) (offset - index * SEGMENT_SIZE);
+        MappedByteBuffer segment = index < segments.length ? segments[index] : null;
+        if (segment == null || pageOffset + PAGE_SIZE > segment.capacity()) {
+            segment = this.mapSegment(index, pageOffset);
+            if (segment == null) {
+                return null;
+            }
+        }
+        ByteBuffer page = segment.duplicate();
+        page.position(pageOffset);
+        page.limit(pageOffset + PAGE_SIZE);
+        return page;
+    }
+
+    /**
+     * Allocates a new page in the partition.
+     * @return data page number
+     */
+    int allocPage() throws IOException {
+        // Every page below the hint is allocated, so the first free page is found by
+        // scanning from the hint, skipping full header pages, and 64 pages at a time
+        // within a header page. Pages are allocated lowest first, keeping the pages of
+        // a growing partition contiguous.
+        int pageIndex = this.freePageHint % DATA_PAGES_PER_HEADER;
+        for (int headerIndex = this.freePageHint / DATA_PAGES_PER_HEADER; headerIndex < MAX_HEADER_PAGES;
+                ++headerIndex, pageIndex = 0) {
+            if (this.masterPage[headerIndex] >= DATA_PAGES_PER_HEADER) {
+                continue;
+            }
+            byte[] headerBytes = this.headerPages[headerIndex];
+            if (headerBytes != null) {
+                pageIndex = PartitionHandle.firstFreeIndex(headerBytes, pageIndex);
             }
-            if (pageIndex == -1) {
-                throw new PageException("header page should have free space, but doesn't");
+            if (pageIndex >= 0) {
+                this.freePageHint = headerIndex * DATA_PAGES_PER_HEADER + pageIndex;
+                return this.allocPage(headerIndex, pageIndex);
             }
         }
+        this.freePageHint = MAX_HEADER_PAGES * DATA_PAGES_PER_HEADER;
+        throw new PageException("no free pages - partition has reached max size");
+    }
 
-        return this.allocPage(headerIndex, pageIndex);
+    /**
+     * @param headerBytes header page bitmap
+     * @param from index to start searching from
+     * @return index of the first unallocated page at or after from, or -1 if none
+     */
+    private static int firstFreeIndex(byte[] headerBytes, int from) {
+        // bit i of the bitmap is the (63 - i % 64)-th bit of the i / 64-th big-endian long
+        ByteBuffer words = ByteBuffer.wrap(headerBytes);
+        for (int i = from & ~63; i < DATA_PAGES_PER_HEADER; i += 64) {
+            long free = ~words.getLong(i / 8);
+            if (i < from) {
+                free &= -1L >>> (from - i);
+            }
+            if (free != 0) {
+                return i + Long.numberOfLeadingZeros(free);
+            }
+        }
+        return -1;
     }
 
     /**
@@ -168,9 +418,12 @@ class PartitionHandle implements AutoCloseable {
         }
 
         Bits.setBit(headerBytes, pageIndex, Bits.Bit.ONE);
-        this.masterPage[headerIndex] = Bits.countBits(headerBytes);
+        ++this.masterPage[headerIndex];
 
         int pageNum = pageIndex + headerIndex * DATA_PAGES_PER_HEADER;
+        if (pageNum == this.freePageHint) {
+            ++this.freePageHint;
+        }
 
         TransactionContext transaction = TransactionContext.getTransaction();
         long vpn = DiskSpaceManager.getVirtualPageNum(partNum, pageNum);
@@ -178,8 +431,7 @@ class PartitionHandle implements AutoCloseable {
             recoveryManager.logAllocPage(transaction.getTransNum(), vpn);
         }
         recoveryManager.diskIOHook(vpn);
-        this.writeMasterPage();
-        this.writeHeaderPage(headerIndex);
+        this.headerPageChanged(headerIndex);
 
         return pageNum;
     }
@@ -225,41 +477,292 @@ class PartitionHandle implements AutoCloseable {
         }
         recoveryManager.diskIOHook(vpn);
         Bits.setBit(headerBytes, pageIndex, Bits.Bit.ZERO);
-        this.masterPage[headerIndex] = Bits.countBits(headerBytes);
-        this.writeMasterPage();
-        this.writeHeaderPage(headerIndex);
+        --this.masterPage[headerIndex];
+        this.freePageHint = Math.min(this.freePageHint, pageNum);
+        this.headerPageChanged(headerIndex);
     }
 
     /**
-     * Reads in a data page. Assumes that the partition lock is held.
+     * Reads in a data page. Assumes that the partition lock is held, at least shared.
      * @param pageNum data page number to read in
      * @param buf output buffer to be filled with page - assumed to be page size
      */
     void readPage(int pageNum, byte[] buf) throws IOException {
+        this.readPage(pageNum, ByteBuffer.wrap(buf));
+    }
+
+    /**
+     * Reads in a data page. Assumes that the partition lock is held, at least shared.
+     * Direct buffers are read into without an intermediate copy.
+     * @param pageNum data page number to read in
+     * @param buf output buffer to be filled with page - assumed to have a page of space remaining
+     */
+    void readPage(int pageNum, ByteBuffer buf) throws IOException {
         if (this.isNotAllocatedPage(pageNum)) {
             throw new PageException("page " + pageNum + " is not allocated");
         }
-        ByteBuffer b = ByteBuffer.wrap(buf);
-        this.fileChannel.read(b, PartitionHandle.dataPageOffset(pageNum));
+        if (this.compressed) {
+            this.readCompressed(pageNum, buf);
+        } else {
+            this.read(buf, PartitionHandle.dataPageOffset(pageNum));
+        }
     }
 
     /**
-     * Writes to a data page. Assumes that the partition lock is held.
+     * Writes to a data page. Assumes that the partition lock is held exclusively.
      * @param pageNum data page number to write to
      * @param buf input buffer with new contents of page - assumed to be page size
      */
     void writePage(int pageNum, byte[] buf) throws IOException {
+        this.writePage(pageNum, ByteBuffer.wrap(buf));
+    }
+
+    /**
+     * Writes to a data page. Assumes that the partition lock is held exclusively.
+     * Direct buffers are written from without an intermediate copy.
+     * @param pageNum data page number to write to
+     * @param buf input buffer with new contents of page - assumed to have a page remaining
+     */
+    void writePage(int pageNum, ByteBuffer buf) throws IOException {
         if (this.isNotAllocatedPage(pageNum)) {
             throw new PageException("page " + pageNum + " is not allocated");
         }
-        ByteBuffer b = ByteBuffer.wrap(buf);
-        this.fileChannel.write(b, PartitionHandle.dataPageOffset(pageNum));
-        this.fileChannel.force(false);
+        MappedByteBuffer segment = null;
+        if (this.compressed) {
+            this.writeCompressed(pageNum, buf);
+        } else {
+            segment = this.write(buf, PartitionHandle.dataPageOffset(pageNum));
+        }
+        this.force(segment);
 
         long vpn = DiskSpaceManager.getVirtualPageNum(partNum, pageNum);
         recoveryManager.diskIOHook(vpn);
     }
 
+    /**
+     * Zeroes a newly allocated data page. Assumes that the partition lock is held exclusively.
+     *
+     * Pages past the end of the OS file are zeroed by extending the file by an extent of
+     * contiguous pages (MIN_EXTENT_PAGES at first, doubling up to MAX_EXTENT_PAGES) with
+     * a single write; the rest of the extent is not written again as it is allocated.
+     * Since pages are allocated lowest first, a growing partition fills its extents in
+     * order. Compressed partitions are not extended ahead, since a zeroed page only
+     * takes a few bytes of its slot.
+     * @param pageNum data page number of the newly allocated page
+     */
+    void zeroPage(int pageNum) throws IOException {
+        long vpn = DiskSpaceManager.getVirtualPageNum(partNum, pageNum);
+        if (this.compressed) {
+            this.writePage(pageNum, new byte[PAGE_SIZE]);
+            return;
+        }
+        if (pageNum >= this.extentStart && pageNum < this.extentEnd) {
+            this.extentStart = pageNum + 1;
+            recoveryManager.diskIOHook(vpn);
+            return;
+        }
+        long offset = PartitionHandle.dataPageOffset(pageNum);
+        if (offset < this.fileChannel.size()) {
+            this.writePage(pageNum, new byte[PAGE_SIZE]);
+            return;
+        }
+        // extents end at the next header page, so that they are contiguous in the file
+        int headerEnd = (pageNum / DATA_PAGES_PER_HEADER + 1) * DATA_PAGES_PER_HEADER;
+        int end = Math.min(pageNum + this.extentPages, headerEnd);
+        ByteBuffer zeros = ByteBuffer.allocate((end - pageNum) * PAGE_SIZE);
+        while (zeros.hasRemaining()) {
+            this.fileChannel.write(zeros, offset + zeros.position());
+        }
+        this.force(null);
+        this.extentStart = pageNum + 1;
+        this.extentEnd = end;
+        this.extentPages = Math.min(2 * this.extentPages, MAX_EXTENT_PAGES);
+        recoveryManager.diskIOHook(vpn);
+    }
+
+    /**
+     * @return whether data pages are compressed
+     */
+    boolean isCompressed() {
+        return this.compressed;
+    }
+
+    /**
+     * Switches the partition to compressed data pages, compressing the pages already
+     * allocated. Assumes that the partition lock is held exclusively.
+     *
+     * Each data page keeps its slot in the OS file, but only its compressed form is
+     * written to (and read from) the start of the slot, after a 4-byte header holding
+     * the compressed length with the sign bit set; the rest of the slot is not used, and
+     * is left unallocated in the file system for pages that are compressed when first
+     * written. Pages that do not compress are stored as is, which is told apart from a
+     * header by the sign of the page's first int. Pages written through the buffer
+     * manager start with bytes of its reserved space that are never written (the page
+     * LSN is at offset 8, see BufferManager#RESERVED_SPACE), so their first int is 0.
+     * A page that starts with a negative int and does not compress cannot be stored
+     * in a compressed partition: compress fails before changing anything, and writes
+     * of such a page fail.
+     */
+    void compress() throws IOException {
+        if (this.compressed) {
+            return;
+        }
+        // check that every page can be stored before changing anything
+        byte[][] buffers = compressionBuffers.get();
+        ByteBuffer page = ByteBuffer.wrap(new byte[PAGE_SIZE]);
+        for (int pageNum = this.nextAllocatedPage(0); pageNum >= 0; pageNum = this.nextAllocatedPage(pageNum + 1)) {
+            page.clear();
+            this.read(page, PartitionHandle.dataPageOffset(pageNum));
+            if (page.getInt(0) < 0 && PartitionHandle.compressPage(page.array(), buffers[1]) < 0) {
+                throw new PageException("page " + pageNum + " cannot be stored in a compressed partition");
+            }
+        }
+        // pages not rewritten yet remain readable as is
+        this.compressed = true;
+        this.extentStart = this.extentEnd = 0;
+        this.writeMasterPage();
+        this.fileChannel.force(false);
+        for (int pageNum = this.nextAllocatedPage(0); pageNum >= 0; pageNum = this.nextAllocatedPage(pageNum + 1)) {
+            page.clear();
+            this.read(page, PartitionHandle.dataPageOffset(pageNum));
+            page.flip();
+            this.writeCompressed(pageNum, page);
+        }
+        this.sync();
+    }
+
+    /**
+     * @return the lowest allocated data page number at or after pageNum, or -1 if none
+     */
+    private int nextAllocatedPage(int pageNum) {
+        for (int headerIndex = pageNum / DATA_PAGES_PER_HEADER; headerIndex < MAX_HEADER_PAGES; ++headerIndex) {
+            if (this.masterPage[headerIndex] > 0) {
+                for (int i = Math.max(pageNum - headerIndex * DATA_PAGES_PER_HEADER, 0); i < DATA_PAGES_PER_HEADER; ++i) {
+                    if (Bits.getBit(this.headerPages[headerIndex], i) == Bits.Bit.ONE) {
+                        return headerIndex * DATA_PAGES_PER_HEADER + i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a data page of a compressed partition, from the memory mapping if the whole
+     * slot is mapped, and through the file channel otherwise.
+     */
+    private void readCompressed(int pageNum, ByteBuffer buf) throws IOException {
+        byte[][] buffers = compressionBuffers.get();
+        byte[] slot = buffers[0];
+        long offset = PartitionHandle.dataPageOffset(pageNum);
+        ByteBuffer mapped = this.mappedPage(offset);
+        int numRead;
+        if (mapped != null) {
+            int header = mapped.getInt(mapped.position());
+            numRead = header >= 0 ? PAGE_SIZE : COMPRESSED_HEADER_SIZE
+                    + Math.min(header & ~COMPRESSED_FLAG, PAGE_SIZE - COMPRESSED_HEADER_SIZE);
+            mapped.get(slot, 0, numRead);
+        } else {
+            numRead = this.readFully(slot, 0, COMPRESSED_READ_SIZE, offset);
+        }
+        if (numRead < COMPRESSED_HEADER_SIZE) {
+            throw new IOException("data page " + pageNum + " is truncated");
+        }
+        int header = ByteBuffer.wrap(slot).getInt(0);
+        if (header >= 0) {
+            // stored as is
+            if (this.readFully(slot, numRead, PAGE_SIZE - numRead, offset + numRead) < PAGE_SIZE - numRead) {
+                throw new IOException("data page " + pageNum + " is truncated");
+            }
+            buf.put(slot);
+            return;
+        }
+        int end = COMPRESSED_HEADER_SIZE + (header & ~COMPRESSED_FLAG);
+        if (end > PAGE_SIZE) {
+            throw new IOException("data page " + pageNum + " is corrupt");
+        }
+        if (numRead < end && this.readFully(slot, numRead, end - numRead, offset + numRead) < end - numRead) {
+            throw new IOException("data page " + pageNum + " is truncated");
+        }
+        try {
+            if (buf.hasArray()) {
+                LZCodec.decompress(slot, COMPRESSED_HEADER_SIZE, end, buf.array(),
+                                   buf.arrayOffset() + buf.position(), PAGE_SIZE);
+                buf.position(buf.position() + PAGE_SIZE);
+            } else {
+                LZCodec.decompress(slot, COMPRESSED_HEADER_SIZE, end, buffers[1], 0, PAGE_SIZE);
+                buf.put(buffers[1]);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("data page " + pageNum + " is corrupt");
+        }
+    }
+
+    /**
+     * Writes a data page of a compressed partition, compressed if it compresses.
+     */
+    private void writeCompressed(int pageNum, ByteBuffer buf) throws IOException {
+        byte[][] buffers = compressionBuffers.get();
+        byte[] page = buffers[0];
+        buf.get(page);
+        int length = PartitionHandle.compressPage(page, buffers[1]);
+        ByteBuffer slot;
+        if (length >= 0) {
+            slot = ByteBuffer.wrap(buffers[1], 0, length);
+        } else if (ByteBuffer.wrap(page).getInt(0) >= 0) {
+            slot = ByteBuffer.wrap(page);
+        } else {
+            throw new PageException("page " + pageNum + " cannot be stored in a compressed partition");
+        }
+        long offset = PartitionHandle.dataPageOffset(pageNum);
+        while (slot.hasRemaining()) {
+            this.fileChannel.write(slot, offset + slot.position());
+        }
+    }
+
+    /**
+     * Compresses a page into a slot, after the header.
+     * @return length of the slot's contents, or -1 if the page does not compress
+     */
+    private static int compressPage(byte[] page, byte[] slot) {
+        int end = LZCodec.compress(page, PAGE_SIZE, slot, COMPRESSED_HEADER_SIZE, PAGE_SIZE);
+        if (end < 0) {
+            return -1;
+        }
+        ByteBuffer.wrap(slot).putInt(0, COMPRESSED_FLAG | (end - COMPRESSED_HEADER_SIZE));
+        return end;
+    }
+
+    /**
+     * Reads up to len bytes at an offset of the OS file, stopping early at the end of the file.
+     * @return number of bytes read
+     */
+    private int readFully(byte[] b, int off, int len, long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+        while (buf.hasRemaining()) {
+            if (this.fileChannel.read(buf, offset + buf.position() - off) < 0) {
+                break;
+            }
+        }
+        return buf.position() - off;
+    }
+
+    /**
+     * Forces a data page write to disk, unless writes are batched.
+     * @param segment memory mapping the write went to, or null if through the file channel
+     */
+    private void force(MappedByteBuffer segment) throws IOException {
+        if (this.syncBatchSize > 1) {
+            if (++this.numUnsyncedWrites >= this.syncBatchSize) {
+                this.sync();
+            }
+        } else if (segment == null) {
+            this.fileChannel.force(false);
+        } else {
+            segment.force();
+        }
+    }
+
     /**
      * Checks if page number is for an unallocated data page
      * @param pageNum data page number
@@ -0,0 +1,188 @@
+package edu.berkeley.cs186.database.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static edu.berkeley.cs186.database.io.DiskSpaceManager.PAGE_SIZE;
+
+/**
+ * A temporary partition, holding a temporary table (e.g. a sort run or a hash partition).
+ * Temporary partitions do not survive a restart, so nothing about them is logged, and
+ * nothing is written to disk that does not have to be: there are no master or header
+ * pages, and pages are either kept in memory or written to a spill file that is never
+ * forced. The disk space manager decides which pages are kept in memory.
+ *
+ * All methods are synchronized on the partition.
+ */
+class TempPartition {
+    private final int partNum;
+
+    // Path of the spill file, which is only created once a page is spilled
+    private final String spillPath;
+
+    // Allocated pages
+    private final BitSet allocated;
+
+    // Contents of the allocated pages kept in memory, or null for pages in the spill file
+    private final List<byte[]> pages;
+
+    private RandomAccessFile spillFile;
+    private FileChannel spillChannel;
+
+    private boolean freed;
+
+    TempPartition(int partNum, String spillPath) {
+        this.partNum = partNum;
+        this.spillPath = spillPath;
+        this.allocated = new BitSet();
+        this.pages = new ArrayList<>();
+        this.freed = false;
+    }
+
+    /**
+     * Allocates the lowest free page, zeroed.
+     * @param inMemory whether to keep the page in memory, rather than in the spill file
+     * @return data page number of the page
+     */
+    synchronized int allocPage(boolean inMemory) throws IOException {
+        this.checkNotFreed();
+        int pageNum = this.allocated.nextClearBit(0);
+        this.allocPage(pageNum, inMemory);
+        return pageNum;
+    }
+
+    /**
+     * Allocates a zeroed page.
+     * @param pageNum data page number to allocate
+     * @param inMemory whether to keep the page in memory, rather than in the spill file
+     */
+    synchronized void allocPage(int pageNum, boolean inMemory) throws IOException {
+        this.checkNotFreed();
+        if (this.allocated.get(pageNum)) {
+            throw new IllegalStateException("page at (part=" + partNum + ", page=" + pageNum + ") already allocated");
+        }
+        while (this.pages.size() <= pageNum) {
+            this.pages.add(null);
+        }
+        if (inMemory) {
+            this.pages.set(pageNum, new byte[PAGE_SIZE]);
+        } else {
+            this.spillChannel().write(ByteBuffer.wrap(new byte[PAGE_SIZE]), (long) pageNum * PAGE_SIZE);
+        }
+        this.allocated.set(pageNum);
+    }
+
+    /**
+     * Frees a page.
+     * @param pageNum data page number to free
+     * @return whether the page was kept in memory
+     */
+    synchronized boolean freePage(int pageNum) {
+        this.checkAllocated(pageNum);
+        this.allocated.clear(pageNum);
+        return this.pages.set(pageNum, null) != null;
+    }
+
+    /**
+     * Reads a page.
+     * @param pageNum data page number to read
+     * @param buf output buffer, with a page of space remaining
+     */
+    synchronized void readPage(int pageNum, ByteBuffer buf) throws IOException {
+        this.checkAllocated(pageNum);
+        byte[] page = this.pages.get(pageNum);
+        if (page != null) {
+            buf.put(page);
+        } else {
+            long offset = (long) pageNum * PAGE_SIZE;
+            while (buf.hasRemaining()) {
+                int numRead = this.spillChannel.read(buf, offset);
+                if (numRead < 0) {
+                    throw new IOException("spill file ends before page " + pageNum);
+                }
+                offset += numRead;
+            }
+        }
+    }
+
+    /**
+     * Writes a page.
+     * @param pageNum data page number to write
+     * @param buf input buffer, with a page remaining
+     */
+    synchronized void writePage(int pageNum, ByteBuffer buf) throws IOException {
+        this.checkAllocated(pageNum);
+        byte[] page = this.pages.get(pageNum);
+        if (page != null) {
+            buf.get(page);
+        } else {
+            long offset = (long) pageNum * PAGE_SIZE;
+            while (buf.hasRemaining()) {
+                offset += this.spillChannel.write(buf, offset);
+            }
+        }
+    }
+
+    /**
+     * @return whether a page is allocated
+     */
+    synchronized boolean isAllocatedPage(int pageNum) {
+        this.checkNotFreed();
+        return pageNum >= 0 && this.allocated.get(pageNum);
+    }
+
+    /**
+     * Frees the partition, deleting its spill file.
+     * @return number of allocated pages that were kept in memory
+     */
+    synchronized int free() throws IOException {
+        this.checkNotFreed();
+        this.freed = true;
+        int numInMemory = 0;
+        for (byte[] page : this.pages) {
+            if (page != null) {
+                ++numInMemory;
+            }
+        }
+        this.pages.clear();
+        this.allocated.clear();
+        if (this.spillFile != null) {
+            this.spillFile.close();
+            if (!new File(this.spillPath).delete()) {
+                throw new IOException("could not delete spill file " + this.spillPath);
+            }
+        }
+        return numInMemory;
+    }
+
+    private FileChannel spillChannel() throws IOException {
+        if (this.spillFile == null) {
+            File dir = new File(this.spillPath).getParentFile();
+            if (!dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("could not make directory for spill file " + this.spillPath);
+            }
+            this.spillFile = new RandomAccessFile(this.spillPath, "rw");
+            this.spillChannel = this.spillFile.getChannel();
+        }
+        return this.spillChannel;
+    }
+
+    private void checkNotFreed() {
+        if (this.freed) {
+            throw new NoSuchElementException("no partition " + partNum);
+        }
+    }
+
+    private void checkAllocated(int pageNum) {
+        if (!this.isAllocatedPage(pageNum)) {
+            throw new PageException("page " + pageNum + " is not allocated");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package edu.berkeley.cs186.database.memory;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Implementation of the ARC (adaptive replacement cache) eviction policy
+ * (Megiddo and Modha), which balances between recency and frequency.
+ *
+ * Resident pages are split between T1 (pages referenced once recently) and T2
+ * (pages referenced at least twice), both kept in LRU order. The page numbers of
+ * pages evicted from T1 and T2 are remembered in B1 and B2. A page that is loaded
+ * again while in B1 means T1 was too small, and grows the target size p of T1; a
+ * page loaded while in B2 shrinks it. Eviction takes the LRU page of T1 if T1 is
+ * larger than p, and the LRU page of T2 otherwise.
+ *
+ * The buffer manager asks for a victim before telling the policy which page is
+ * being loaded, so p is adapted when the new page is initialized rather than
+ * before the victim is chosen. As in LRUKEvictionPolicy, hits on a frame with no
+ * page loaded in between count as a single reference.
+ */
+public class ARCEvictionPolicy implements EvictionPolicy {
+    // Sentinels of the doubly-linked lists of frames in T1 and T2, each in
+    // order of least to most recently used
+    private final Tag t1Head;
+    private final Tag t1Tail;
+    private final Tag t2Head;
+    private final Tag t2Tail;
+
+    // Page numbers of pages recently evicted from T1 and T2, oldest first
+    private final LinkedHashSet<Long> b1;
+    private final LinkedHashSet<Long> b2;
+
+    private int t1Size;
+    private int t2Size;
+
+    // Target size of T1
+    private int p;
+
+    // Number of frames initialized so far
+    private long numLoads;
+
+    // Number of frames in the buffer, as seen by this policy so far
+    private int capacity;
+
+    private class Tag {
+        Tag prev = null;
+        Tag next = null;
+        BufferFrame cur = null;
+        boolean frequent = false;
+        long lastLoad = 0;
+
+        @Override
+        public String toString() {
+            String scur = cur == null ? "null" : cur.toString();
+            return scur + (frequent ? " (T2)" : " (T1)");
+        }
+    }
+
+    public ARCEvictionPolicy() {
+        this.t1Head = new Tag();
+        this.t1Tail = new Tag();
+        this.t2Head = new Tag();
+        this.t2Tail = new Tag();
+        this.t1Head.next = this.t1Tail;
+        this.t1Tail.prev = this.t1Head;
+        this.t2Head.next = this.t2Tail;
+        this.t2Tail.prev = this.t2Head;
+        this.b1 = new LinkedHashSet<>();
+        this.b2 = new LinkedHashSet<>();
+        this.p = 0;
+    }
+
+    /**
+     * Called to initiaize a new buffer frame.
+     * @param frame new frame to be initialized
+     */
+    @Override
+    public void init(BufferFrame frame) {
+        ++this.numLoads;
+        this.capacity = Math.max(this.capacity, this.t1Size + this.t2Size + 1);
+        long pageNum = frame.getPageNum();
+        Tag frameTag = new Tag();
+        frameTag.cur = frame;
+        frameTag.lastLoad = this.numLoads;
+        if (this.b1.contains(pageNum)) {
+            this.p = Math.min(this.capacity, this.p + Math.max(this.b2.size() / this.b1.size(), 1));
+            this.b1.remove(pageNum);
+            frameTag.frequent = true;
+        } else if (this.b2.contains(pageNum)) {
+            this.p = Math.max(0, this.p - Math.max(this.b1.size() / this.b2.size(), 1));
+            this.b2.remove(pageNum);
+            frameTag.frequent = true;
+        }
+        if (frameTag.frequent) {
+            append(frameTag, this.t2Tail);
+            ++this.t2Size;
+        } else {
+            append(frameTag, this.t1Tail);
+            ++this.t1Size;
+        }
+        frame.tag = frameTag;
+        trimHistory();
+    }
+
+    /**
+     * Called when a frame is hit.
+     * @param frame Frame object that is being read from/written to
+     */
+    @Override
+    public void hit(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (!frameTag.frequent && frameTag.lastLoad == this.numLoads) {
+            // correlated reference
+            return;
+        }
+        frameTag.lastLoad = this.numLoads;
+        unlink(frameTag);
+        if (!frameTag.frequent) {
+            frameTag.frequent = true;
+            --this.t1Size;
+            ++this.t2Size;
+        }
+        append(frameTag, this.t2Tail);
+    }
+
+    /**
+     * Called when a frame is no longer expected to be used soon: moves the
+     * frame to the LRU end of T1, unless it is in T2.
+     * @param frame Frame object that is no longer needed
+     */
+    @Override
+    public void demote(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (!frameTag.frequent) {
+            unlink(frameTag);
+            append(frameTag, this.t1Head.next);
+        }
+    }
+
+    /**
+     * Called when a frame needs to be evicted.
+     * @param frames Array of all frames (same length every call)
+     * @return index of frame to be evicted
+     * @throws IllegalStateException if everything is pinned
+     */
+    @Override
+    public BufferFrame evict(BufferFrame[] frames) {
+        BufferFrame evicted;
+        if (this.t1Size > 0 && this.t1Size > this.p) {
+            evicted = firstUnpinned(this.t1Head);
+            if (evicted == null) {
+                evicted = firstUnpinned(this.t2Head);
+            }
+        } else {
+            evicted = firstUnpinned(this.t2Head);
+            if (evicted == null) {
+                evicted = firstUnpinned(this.t1Head);
+            }
+        }
+        if (evicted == null) {
+            throw new IllegalStateException("cannot evict anything - everything pinned");
+        }
+        return evicted;
+    }
+
+    /**
+     * Called when a frame is removed, either because it
+     * was returned from a call to evict, or because of other constraints
+     * (e.g. if the page is deleted on disk).
+     * @param frame frame being removed
+     */
+    @Override
+    public void cleanup(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        unlink(frameTag);
+        frameTag.prev = frameTag.next = frameTag;
+        if (frameTag.frequent) {
+            --this.t2Size;
+            this.b2.add(frame.getPageNum());
+        } else {
+            --this.t1Size;
+            this.b1.add(frame.getPageNum());
+        }
+        trimHistory();
+    }
+
+    // Keeps |T1| + |B1| <= c and |T1| + |T2| + |B1| + |B2| <= 2c.
+    private void trimHistory() {
+        removeOldest(this.b1, this.t1Size + this.b1.size() - this.capacity);
+        int excess = this.t1Size + this.t2Size + this.b1.size() + this.b2.size() - 2 * this.capacity;
+        excess -= removeOldest(this.b2, excess);
+        removeOldest(this.b1, excess);
+    }
+
+    private static int removeOldest(LinkedHashSet<Long> history, int n) {
+        int removed = 0;
+        Iterator<Long> iter = history.iterator();
+        while (removed < n && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            ++removed;
+        }
+        return removed;
+    }
+
+    private static BufferFrame firstUnpinned(Tag head) {
+        Tag frameTag = head.next;
+        while (frameTag.cur != null && frameTag.cur.isPinned()) {
+            frameTag = frameTag.next;
+        }
+        return frameTag.cur;
+    }
+
+    private static void append(Tag frameTag, Tag tail) {
+        frameTag.next = tail;
+        frameTag.prev = tail.prev;
+        tail.prev.next = frameTag;
+        tail.prev = frameTag;
+    }
+
+    private static void unlink(Tag frameTag) {
+        frameTag.prev.next = frameTag.next;
+        frameTag.next.prev = frameTag.prev;
+    }
+}
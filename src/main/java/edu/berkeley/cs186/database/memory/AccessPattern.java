@@ -0,0 +1,17 @@
+package edu.berkeley.cs186.database.memory;
+
+/**
+ * How the user of a page expects to access it, passed as a hint when fetching
+ * pages from the buffer manager. Eviction policies may use the hints to keep
+ * pages that are likely to be reused in memory.
+ */
+public enum AccessPattern {
+    // no particular pattern; the default
+    RANDOM,
+    // read once, in order, as part of a scan; the page is not expected to be
+    // used again once the scan has moved past it
+    SEQUENTIAL,
+    // read repeatedly, in the same order each time, e.g. the inner relation of
+    // a nested loop join
+    LOOP
+}
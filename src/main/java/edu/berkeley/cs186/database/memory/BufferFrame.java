@@ -1,35 +1,131 @@
 package edu.berkeley.cs186.database.memory;
 
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Buffer frame.
  */
 abstract class BufferFrame {
+    // Value of the pin count of a frame claimed for eviction; such a frame can no longer be
+    // pinned. Far enough below zero that failed pin attempts (which briefly increment the
+    // count) never bring it back up to zero.
+    private static final int EVICTING = Integer.MIN_VALUE / 2;
+
     Object tag = null;
-    private int pinCount = 0;
+    private final AtomicInteger pinCount = new AtomicInteger(0);
+
+    // Queue that this frame is added to the next time it is fully unpinned, if any
+    private volatile Queue<BufferFrame> unpinQueue = null;
+
+    // How the page in this frame is being accessed
+    private volatile AccessPattern accessPattern = AccessPattern.RANDOM;
 
     /**
      * Pin buffer frame; cannot be evicted while pinned. A "hit" happens when the
      * buffer frame gets pinned.
      */
     void pin() {
-        ++pinCount;
+        if (!tryPin()) {
+            throw new IllegalStateException("cannot pin frame that is being evicted");
+        }
+    }
+
+    /**
+     * Pins the buffer frame, unless it has been claimed for eviction.
+     * @return whether the frame was pinned
+     */
+    boolean tryPin() {
+        if (pinCount.incrementAndGet() > 0) {
+            return true;
+        }
+        pinCount.decrementAndGet();
+        return false;
     }
 
     /**
      * Unpin buffer frame.
      */
     void unpin() {
-        if (!isPinned()) {
+        int count = pinCount.decrementAndGet();
+        if (count < 0) {
+            pinCount.incrementAndGet();
             throw new IllegalStateException("cannot unpin unpinned frame");
         }
-        --pinCount;
+        Queue<BufferFrame> queue = this.unpinQueue;
+        if (count == 0 && queue != null) {
+            this.unpinQueue = null;
+            queue.add(this);
+        }
+    }
+
+    /**
+     * Asks for this frame to be added to a queue the next time its pin count drops
+     * to zero. This happens at most once per call, and only if the frame is pinned
+     * after this call returns: callers should check isPinned() afterwards. The queue
+     * must be thread-safe, since unpinning does not hold any lock.
+     * @param queue queue to add the frame to, or null to cancel
+     */
+    void notifyOnUnpin(Queue<BufferFrame> queue) {
+        this.unpinQueue = queue;
     }
 
+    /**
+     * Takes the latch of the page in this frame, which is held across a sequence of
+     * reads and writes of the page that must not interleave with another thread's
+     * (e.g. reading a bitmap, writing a record, and writing the bitmap back):
+     * exclusively to change the page, shared to read it. Unlike pinning, latching waits
+     * for the threads holding the latch in a conflicting mode. The latch is reentrant,
+     * and a thread holding it exclusively may also take it shared, but not the other
+     * way around. The frame must be pinned.
+     * @param exclusive whether to take the latch exclusively
+     */
+    void latch(boolean exclusive) {}
+
+    /**
+     * Releases the latch of the page in this frame taken with latch(exclusive).
+     */
+    void unlatch(boolean exclusive) {}
+
     /**
      * @return whether this frame is pinned
      */
     boolean isPinned() {
-        return pinCount > 0;
+        return pinCount.get() > 0;
+    }
+
+    /**
+     * Claims an unpinned frame for eviction: once claimed, the frame can never be
+     * pinned again.
+     * @return whether the frame was claimed (false if the frame is pinned)
+     */
+    boolean tryClaimForEviction() {
+        return pinCount.compareAndSet(0, EVICTING);
+    }
+
+    /**
+     * @return how the page in this frame is being accessed
+     */
+    AccessPattern getAccessPattern() {
+        return accessPattern;
+    }
+
+    /**
+     * Sets the access pattern of a newly loaded frame.
+     */
+    void setAccessPattern(AccessPattern accessPattern) {
+        this.accessPattern = accessPattern;
+    }
+
+    /**
+     * Records that the page was fetched again with the given access pattern. A page
+     * accessed with more than one pattern is treated as randomly accessed.
+     * @param accessPattern access pattern of the fetch, or null if none was given
+     */
+    void hintAccessPattern(AccessPattern accessPattern) {
+        if (accessPattern != null && accessPattern != this.accessPattern) {
+            this.accessPattern = AccessPattern.RANDOM;
+        }
     }
 
     /**
@@ -10,80 +10,132 @@ import edu.berkeley.cs186.database.recovery.RecoveryManager;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Implementation of a buffer manager, with configurable page replacement policies.
- * Data is stored in page-sized byte arrays, and returned in a Frame object specific
+ * Data is stored in page-sized buffers, and returned in a Frame object specific
  * to the page loaded (evicting and loading a new page into the frame will result in
- * a new Frame object, with the same underlying byte array), with old Frame objects
- * backed by the same byte array marked as invalid.
+ * a new Frame object, with the same underlying buffer), with old Frame objects
+ * backed by the same buffer marked as invalid.
+ *
+ * Buffers are either heap byte arrays, or (with offHeap set) slices of large direct
+ * buffers allocated by a FrameArena. Off-heap frames keep the buffer pool out of the
+ * garbage collector's way, and pages are read and written straight between the
+ * partition files and the frames rather than through a temporary direct buffer.
+ *
+ * Frames are allocated lazily: the buffer size passed in is a ceiling, and the frame
+ * table (along with each frame's byte array) only grows as pages are first fetched,
+ * so memory use scales with the working set rather than the configured size. Eviction
+ * only starts once all frames up to the ceiling have been allocated.
+ *
+ * The frames may be split into several independently locked partitions of the buffer
+ * pool. Each page is assigned to a partition by a hash of its page number, and each
+ * partition has its own frames, page table, free list, eviction policy and lock, so
+ * fetches of pages in different partitions do not contend with each other.
+ *
+ * Read-ahead of pages fetched in sequence can be turned on with enableReadAhead, in
+ * which case a background thread loads pages ahead of sequential scans. Similarly,
+ * enablePageCleaner starts a background thread that writes out dirty pages that have
+ * not been used recently, so that evicting them later does not need a write.
  */
 public class BufferManager implements AutoCloseable {
     // We reserve 36 bytes on each page for bookkeeping for recovery
     // (used to store the pageLSN, and to ensure that a redo-only/undo-only log record can
-    // fit on one page).
+    // fit on one page). Bytes 0-7 are never written, so a page always starts with a
+    // zero int, which compressed partitions rely on (see PartitionHandle#compress); the
+    // pageLSN is at offset 8.
     public static final short RESERVED_SPACE = 36;
 
     // Effective page size available to users of buffer manager.
     public static final short EFFECTIVE_PAGE_SIZE = (short) (DiskSpaceManager.PAGE_SIZE - RESERVED_SPACE);
 
-    // Buffer frames
-    private Frame[] frames;
+    // Initial length of the frame table of a partition, which is doubled as frames are allocated
+    private static final int INITIAL_FRAME_TABLE_SIZE = 64;
+
+    // Partitions of the buffer pool
+    private PoolPartition[] partitions;
+
+    // Maximum number of frames (the configured buffer size), across all partitions
+    private int maxFrames;
 
     // Reference to the disk space manager underneath this buffer manager instance.
     private DiskSpaceManager diskSpaceManager;
 
-    // Map of page number to frame index
-    private Map<Long, Integer> pageToFrame;
+    // Recovery manager
+    private RecoveryManager recoveryManager;
 
-    // Lock on buffer manager
-    private ReentrantLock managerLock;
+    // Off-heap memory for frames, or null if frames are heap byte arrays
+    private final FrameArena arena;
 
-    // Eviction policy
-    private EvictionPolicy evictionPolicy;
+    // Read-ahead of sequentially fetched pages, or null if disabled
+    private volatile ReadAheadManager readAhead;
 
-    // Index of first free frame
-    private int firstFreeIndex;
+    // Background writer of dirty pages, or null if disabled
+    private PageCleaner pageCleaner;
 
-    // Recovery manager
-    private RecoveryManager recoveryManager;
+    // Buffer activity overall, and for each disk partition (by partition number)
+    private final BufferMetrics metrics = new BufferMetrics();
+    private volatile BufferMetrics[] partitionMetrics = new BufferMetrics[0];
 
-    // Count of number of I/Os
-    private long numIOs = 0;
+    // Number of pages written by the page cleaner, and number of rounds it has run
+    private final AtomicLong numPagesCleaned = new AtomicLong(0);
+    private final AtomicLong numCleanerRounds = new AtomicLong(0);
 
     /**
      * Buffer frame, containing information about the loaded page, wrapped around the
      * underlying byte array. Free frames use the index field to create a (singly) linked
      * list between free frames.
+     *
+     * Pinning and latching are separate: the pin count (see BufferFrame) only keeps the
+     * frame from being evicted, and any number of threads may pin a frame at once. Each
+     * read or write of the contents goes through the frame's content latch, which is held
+     * in shared mode for flushes and in exclusive mode for writes and while the page is
+     * loaded. Reads are optimistic: they copy the bytes without blocking and retry under
+     * the shared latch only if a write overlapped. Users of the page that read or change
+     * it in several steps hold the page latch (see BufferFrame#latch) across the steps.
      */
     class Frame extends BufferFrame {
         private static final int INVALID_INDEX = Integer.MIN_VALUE;
 
-        byte[] contents;
-        private int index;
-        private long pageNum;
-        private boolean dirty;
-        private ReentrantLock frameLock;
+        private final PoolPartition partition;
+        ByteBuffer contents;
+        private volatile int index;
+        private volatile long pageNum;
+        private volatile boolean dirty;
+        private final StampedLock latch;
+        // held by users of the page across a sequence of reads and writes
+        private final ReentrantReadWriteLock pageLatch;
         private boolean logPage;
+        // whether the page belongs to a temporary partition, whose changes are not logged
+        private boolean tempPage;
+        // whether the frame has been used since the page cleaner last looked at it
+        private volatile boolean referenced;
 
-        Frame(byte[] contents, int nextFree) {
-            this(contents, ~nextFree, DiskSpaceManager.INVALID_PAGE_NUM);
+        Frame(PoolPartition partition, ByteBuffer contents, int nextFree) {
+            this(partition, contents, ~nextFree, DiskSpaceManager.INVALID_PAGE_NUM);
         }
 
         Frame(Frame frame) {
-            this(frame.contents, frame.index, frame.pageNum);
+            this(frame.partition, frame.contents, frame.index, frame.pageNum);
         }
 
-        Frame(byte[] contents, int index, long pageNum) {
+        Frame(PoolPartition partition, ByteBuffer contents, int index, long pageNum) {
+            this.partition = partition;
             this.contents = contents;
             this.index = index;
             this.pageNum = pageNum;
             this.dirty = false;
-            this.frameLock = new ReentrantLock();
+            this.latch = new StampedLock();
+            this.pageLatch = new ReentrantReadWriteLock();
             int partNum = DiskSpaceManager.getPartNum(pageNum);
             this.logPage = partNum == LogManager.LOG_PARTITION;
+            this.tempPage = !this.logPage && diskSpaceManager.isTempPart(partNum);
         }
 
         /**
@@ -92,13 +144,25 @@ public class BufferManager implements AutoCloseable {
          */
         @Override
         public void pin() {
-            this.frameLock.lock();
-
-            if (!this.isValid()) {
+            if (!this.tryPin()) {
                 throw new IllegalStateException("pinning invalidated frame");
             }
+        }
 
-            super.pin();
+        /**
+         * Pins the buffer frame if it is valid (loaded and not being evicted).
+         * @return whether the frame was pinned
+         */
+        @Override
+        boolean tryPin() {
+            if (!super.tryPin()) {
+                return false;
+            }
+            if (!this.isValid()) {
+                super.unpin();
+                return false;
+            }
+            return true;
         }
 
         /**
@@ -107,7 +171,24 @@ public class BufferManager implements AutoCloseable {
         @Override
         public void unpin() {
             super.unpin();
-            this.frameLock.unlock();
+        }
+
+        @Override
+        void latch(boolean exclusive) {
+            if (exclusive) {
+                this.pageLatch.writeLock().lock();
+            } else {
+                this.pageLatch.readLock().lock();
+            }
+        }
+
+        @Override
+        void unlatch(boolean exclusive) {
+            if (exclusive) {
+                this.pageLatch.writeLock().unlock();
+            } else {
+                this.pageLatch.readLock().unlock();
+            }
         }
 
         /**
@@ -126,11 +207,12 @@ public class BufferManager implements AutoCloseable {
         }
 
         /**
-         * Invalidates the frame, flushing it if necessary.
+         * Invalidates the frame, flushing it if necessary. The frame must be claimed for
+         * eviction (or otherwise unreachable by other threads).
          */
         private void invalidate() {
             if (this.isValid()) {
-                this.flush();
+                this.writeBack();
             }
             this.index = INVALID_INDEX;
             this.contents = null;
@@ -143,8 +225,8 @@ public class BufferManager implements AutoCloseable {
             if (isFreed()) {
                 throw new IllegalStateException("cannot free free frame");
             }
-            int nextFreeIndex = firstFreeIndex;
-            firstFreeIndex = this.index;
+            int nextFreeIndex = partition.firstFreeIndex;
+            partition.firstFreeIndex = this.index;
             this.index = ~nextFreeIndex;
         }
 
@@ -152,8 +234,8 @@ public class BufferManager implements AutoCloseable {
             if (!isFreed()) {
                 throw new IllegalStateException("cannot unfree used frame");
             }
-            int index = firstFreeIndex;
-            firstFreeIndex = ~this.index;
+            int index = partition.firstFreeIndex;
+            partition.firstFreeIndex = ~this.index;
             this.index = index;
         }
 
@@ -170,24 +252,53 @@ public class BufferManager implements AutoCloseable {
          */
         @Override
         void flush() {
-            this.frameLock.lock();
-            super.pin();
+            // pin to keep the frame from being evicted while we write it out; if it can't
+            // be pinned, it is invalid or is being evicted (which flushes it anyway)
+            if (!this.tryPin()) {
+                return;
+            }
+            try {
+                this.writeBack();
+            } finally {
+                this.unpin();
+            }
+        }
+
+        /**
+         * Writes this buffer frame to disk if it is dirty and nobody is using it.
+         * @return whether the frame was written
+         */
+        private boolean clean() {
+            if (this.isPinned() || !this.tryPin()) {
+                return false;
+            }
+            try {
+                return this.writeBack();
+            } finally {
+                this.unpin();
+            }
+        }
+
+        /**
+         * Writes the page to disk if dirty. The frame must be pinned or claimed for eviction.
+         * @return whether the page was written
+         */
+        private boolean writeBack() {
+            long stamp = this.latch.readLock();
             try {
-                if (!this.isValid()) {
-                    return;
-                }
                 if (!this.dirty) {
-                    return;
+                    return false;
                 }
-                if (!this.logPage) {
-                    recoveryManager.pageFlushHook(this.getPageLSN());
+                if (!this.logPage && !this.tempPage) {
+                    recoveryManager.pageFlushHook(this.readPageLSN());
                 }
-                BufferManager.this.diskSpaceManager.writePage(pageNum, contents);
-                BufferManager.this.incrementIOs();
+                BufferManager.this.writePage(pageNum, contents);
+                partition.incrementIOs();
+                BufferManager.this.record(pageNum, BufferMetrics.WRITE);
                 this.dirty = false;
+                return true;
             } finally {
-                super.unpin();
-                this.frameLock.unlock();
+                this.latch.unlockRead(stamp);
             }
         }
 
@@ -199,13 +310,22 @@ public class BufferManager implements AutoCloseable {
          */
         @Override
         void readBytes(short position, short num, byte[] buf) {
-            this.pin();
+            if (!this.tryPin()) {
+                throw new IllegalStateException("reading from invalid buffer frame");
+            }
             try {
-                if (!this.isValid()) {
-                    throw new IllegalStateException("reading from invalid buffer frame");
+                int offset = position + dataOffset();
+                long stamp = this.latch.tryOptimisticRead();
+                this.copyOut(offset, buf, 0, num);
+                if (!this.latch.validate(stamp)) {
+                    stamp = this.latch.readLock();
+                    try {
+                        this.copyOut(offset, buf, 0, num);
+                    } finally {
+                        this.latch.unlockRead(stamp);
+                    }
                 }
-                System.arraycopy(this.contents, position + dataOffset(), buf, 0, num);
-                BufferManager.this.evictionPolicy.hit(this);
+                partition.hit(this);
             } finally {
                 this.unpin();
             }
@@ -219,28 +339,33 @@ public class BufferManager implements AutoCloseable {
          */
         @Override
         void writeBytes(short position, short num, byte[] buf) {
-            this.pin();
+            if (!this.tryPin()) {
+                throw new IllegalStateException("writing to invalid buffer frame");
+            }
+            long stamp = this.latch.writeLock();
             try {
-                if (!this.isValid()) {
-                    throw new IllegalStateException("writing to invalid buffer frame");
-                }
                 int offset = position + dataOffset();
                 TransactionContext transaction = TransactionContext.getTransaction();
-                if (transaction != null && !logPage) {
+                if (transaction != null && !logPage && !tempPage) {
                     List<Pair<Integer, Integer>> changedRanges = getChangedBytes(offset, num, buf);
                     for (Pair<Integer, Integer> range : changedRanges) {
                         int start = range.getFirst();
                         int len = range.getSecond();
-                        byte[] before = Arrays.copyOfRange(contents, start + offset, start + offset + len);
+                        byte[] before = new byte[len];
+                        this.copyOut(start + offset, before, 0, len);
                         byte[] after = Arrays.copyOfRange(buf, start, start + len);
                         long pageLSN = recoveryManager.logPageWrite(transaction.getTransNum(), pageNum, (short) (start + position), before,
                                        after);
-                        this.setPageLSN(pageLSN);
+                        this.writePageLSN(pageLSN);
                     }
                 }
-                System.arraycopy(buf, 0, this.contents, offset, num);
+                this.copyIn(offset, buf, num);
                 this.dirty = true;
-                BufferManager.this.evictionPolicy.hit(this);
+            } finally {
+                this.latch.unlockWrite(stamp);
+            }
+            try {
+                partition.hit(this);
             } finally {
                 this.unpin();
             }
@@ -252,19 +377,13 @@ public class BufferManager implements AutoCloseable {
          */
         @Override
         Frame requestValidFrame() {
-            this.frameLock.lock();
-            try {
-                if (this.isFreed()) {
-                    throw new PageException("page already freed");
-                }
-                if (this.isValid()) {
-                    this.pin();
-                    return this;
-                }
-                return BufferManager.this.fetchPageFrame(this.pageNum);
-            } finally {
-                this.frameLock.unlock();
+            if (this.tryPin()) {
+                return this;
+            }
+            if (this.isFreed()) {
+                throw new PageException("page already freed");
             }
+            return BufferManager.this.fetchPageFrame(this.pageNum);
         }
 
         @Override
@@ -278,7 +397,46 @@ public class BufferManager implements AutoCloseable {
 
         @Override
         long getPageLSN() {
-            return ByteBuffer.wrap(this.contents).getLong(8);
+            long stamp = this.latch.readLock();
+            try {
+                return this.readPageLSN();
+            } finally {
+                this.latch.unlockRead(stamp);
+            }
+        }
+
+        // The latch is not reentrant; callers that already hold it use these directly.
+        private long readPageLSN() {
+            return this.contents.getLong(8);
+        }
+
+        private void writePageLSN(long pageLSN) {
+            this.contents.putLong(8, pageLSN);
+        }
+
+        // Copies num bytes at offset in the page into buf. Never changes the position of
+        // contents, which concurrent readers share.
+        private void copyOut(int offset, byte[] buf, int bufOffset, int num) {
+            ByteBuffer contents = this.contents;
+            if (contents.hasArray()) {
+                System.arraycopy(contents.array(), offset, buf, bufOffset, num);
+            } else {
+                ByteBuffer view = contents.duplicate();
+                view.position(offset);
+                view.get(buf, bufOffset, num);
+            }
+        }
+
+        // Copies num bytes from buf to offset in the page. Must hold the latch exclusively.
+        private void copyIn(int offset, byte[] buf, int num) {
+            ByteBuffer contents = this.contents;
+            if (contents.hasArray()) {
+                System.arraycopy(buf, 0, contents.array(), offset, num);
+            } else {
+                ByteBuffer view = contents.duplicate();
+                view.position(offset);
+                view.put(buf, 0, num);
+            }
         }
 
         @Override
@@ -307,7 +465,7 @@ public class BufferManager implements AutoCloseable {
                     ranges.add(new Pair<>(startIndex, maxRange));
                     startIndex = -1;
                     skip = -1;
-                } else if (buf[i] == contents[offset + i] && startIndex >= 0) {
+                } else if (buf[i] == contents.get(offset + i) && startIndex >= 0) {
                     if (skip > BufferManager.RESERVED_SPACE) {
                         ranges.add(new Pair<>(startIndex, i - startIndex - skip));
                         startIndex = -1;
@@ -315,7 +473,7 @@ public class BufferManager implements AutoCloseable {
                     } else {
                         ++skip;
                     }
-                } else if (buf[i] != contents[offset + i]) {
+                } else if (buf[i] != contents.get(offset + i)) {
                     if (startIndex < 0) {
                         startIndex = i;
                     }
@@ -329,7 +487,12 @@ public class BufferManager implements AutoCloseable {
         }
 
         void setPageLSN(long pageLSN) {
-            ByteBuffer.wrap(this.contents).putLong(8, pageLSN);
+            long stamp = this.latch.writeLock();
+            try {
+                this.writePageLSN(pageLSN);
+            } finally {
+                this.latch.unlockWrite(stamp);
+            }
         }
 
         private short dataOffset() {
@@ -342,50 +505,529 @@ public class BufferManager implements AutoCloseable {
     }
 
     /**
-     * Creates a new buffer manager.
+     * A partition of the buffer pool: a set of frames (allocated on demand, up to maxFrames),
+     * the page table for pages loaded in those frames, a free list, and an eviction policy, all
+     * guarded by the partition's lock. The page table may be read without the lock.
+     */
+    private class PoolPartition {
+        // Buffer frames; only the first numFrames entries are allocated
+        private volatile Frame[] frames;
+
+        // Number of frames allocated so far
+        private int numFrames;
+
+        // Maximum number of frames in this partition
+        private final int maxFrames;
+
+        // Map of page number to frame index
+        private final PageTable pageToFrame;
+
+        // Lock on the partition
+        private final ReentrantLock lock;
+
+        // Eviction policy, only used for this partition's frames
+        private final EvictionPolicy evictionPolicy;
+
+        // Frame most recently passed to evictionPolicy.hit, if the policy has not been
+        // called with anything else since; hitting it again would not change the policy
+        private volatile Frame lastHit;
+
+        // Index of first free frame; a value of numFrames means that the next frame
+        // should be allocated, and a value of maxFrames means that there are no free frames
+        private int firstFreeIndex;
+
+        // Count of number of I/Os on this partition's frames
+        private final AtomicLong numIOs;
+
+        PoolPartition(int maxFrames, EvictionPolicy evictionPolicy) {
+            this.maxFrames = maxFrames;
+            this.frames = new Frame[Math.min(maxFrames, INITIAL_FRAME_TABLE_SIZE)];
+            this.numFrames = 0;
+            this.firstFreeIndex = 0;
+            this.pageToFrame = new PageTable(Math.min(maxFrames, INITIAL_FRAME_TABLE_SIZE));
+            this.lock = new ReentrantLock();
+            this.evictionPolicy = evictionPolicy;
+            this.numIOs = new AtomicLong(0);
+        }
+
+        /**
+         * Fetches a buffer frame with data for the specified page, which must map to this
+         * partition. Reuses existing buffer frame if page already loaded in memory. Pins the
+         * buffer frame.
+         *
+         * @param accessPattern access pattern hint, or null if none was given
+         * @param readAhead whether the page is being read ahead, rather than fetched
+         *                  for use (read-ahead does not count as a hit or miss)
+         */
+        Frame fetchPageFrame(long pageNum, AccessPattern accessPattern, boolean readAhead) {
+            // fast path: the page is already loaded, which we can check for without
+            // the partition lock
+            Frame loadedFrame = this.pinLoadedFrame(pageNum);
+            if (loadedFrame != null) {
+                loadedFrame.hintAccessPattern(accessPattern);
+                if (!readAhead) {
+                    record(pageNum, BufferMetrics.HIT);
+                }
+                return loadedFrame;
+            }
+
+            this.lock.lock();
+            Frame newFrame;
+            Frame evictedFrame;
+            long loadStamp;
+            // figure out what frame to load data to, and update partition state
+            try {
+                if (!diskSpaceManager.pageAllocated(pageNum)) {
+                    throw new PageException("page " + pageNum + " not allocated");
+                }
+                int loadedIndex = this.pageToFrame.get(pageNum);
+                if (loadedIndex != PageTable.NOT_FOUND) {
+                    newFrame = this.frames[loadedIndex];
+                    newFrame.pin();
+                    newFrame.hintAccessPattern(accessPattern);
+                    if (!readAhead) {
+                        record(pageNum, BufferMetrics.HIT);
+                    }
+                    return newFrame;
+                }
+                // prioritize free frames over eviction, and allocate new frames
+                // (up to the ceiling) before evicting anything
+                if (this.firstFreeIndex < this.maxFrames) {
+                    if (this.firstFreeIndex == this.numFrames) {
+                        this.allocateFrame();
+                    }
+                    evictedFrame = this.frames[this.firstFreeIndex];
+                    evictedFrame.setUsed();
+                } else {
+                    // the policy only returns unpinned frames, but a frame may be pinned
+                    // (without the partition lock) before we claim it, so try again if so
+                    do {
+                        this.lastHit = null;
+                        evictedFrame = (Frame) evictionPolicy.evict(frames);
+                    } while (!evictedFrame.tryClaimForEviction());
+                    this.pageToFrame.remove(evictedFrame.pageNum, evictedFrame.index);
+                    evictionPolicy.cleanup(evictedFrame);
+                    record(evictedFrame.pageNum, BufferMetrics.EVICTION);
+                }
+                int frameIndex = evictedFrame.index;
+                newFrame = new Frame(this, evictedFrame.contents, frameIndex, pageNum);
+                if (accessPattern != null) {
+                    newFrame.setAccessPattern(accessPattern);
+                }
+                this.lastHit = null;
+                evictionPolicy.init(newFrame);
+
+                // hold the new frame's latch until the page is read in, so that other
+                // threads that find the frame wait for its contents
+                newFrame.pin();
+                loadStamp = newFrame.latch.writeLock();
+
+                this.frames[frameIndex] = newFrame;
+                this.pageToFrame.put(pageNum, frameIndex);
+            } finally {
+                this.lock.unlock();
+            }
+            // read new page into frame
+            try {
+                // flush evicted frame
+                evictedFrame.invalidate();
+
+                BufferManager.this.readPage(pageNum, newFrame.contents);
+                this.incrementIOs();
+                if (!readAhead) {
+                    record(pageNum, BufferMetrics.MISS);
+                }
+                record(pageNum, BufferMetrics.READ);
+                return newFrame;
+            } catch (PageException e) {
+                newFrame.unpin();
+                throw e;
+            } finally {
+                newFrame.latch.unlockWrite(loadStamp);
+            }
+        }
+
+        /**
+         * Looks up the frame a page is loaded in without taking the partition lock, and pins
+         * it. The frame may be evicted between the lookup and the pin, so it is checked again
+         * once pinned.
+         *
+         * @param pageNum page number
+         * @return pinned frame holding the page, or null if the page does not appear to be loaded
+         */
+        private Frame pinLoadedFrame(long pageNum) {
+            int frameIndex = this.pageToFrame.get(pageNum);
+            if (frameIndex == PageTable.NOT_FOUND) {
+                return null;
+            }
+            Frame[] frames = this.frames;
+            if (frameIndex >= frames.length || frames[frameIndex] == null) {
+                return null;
+            }
+            Frame frame = frames[frameIndex];
+            if (!frame.tryPin()) {
+                return null;
+            }
+            if (frame.pageNum != pageNum) {
+                frame.unpin();
+                return null;
+            }
+            return frame;
+        }
+
+        /**
+         * Records a hit on a frame with the eviction policy. Policies are not thread-safe, so
+         * this needs the partition lock; if another thread holds it, the hit is dropped rather
+         * than making readers of a hot page wait on each other. Repeated hits on the same
+         * frame are also skipped, as they are for most of a scan of a page.
+         */
+        void hit(Frame frame) {
+            if (!frame.referenced) {
+                frame.referenced = true;
+            }
+            if (this.lastHit == frame) {
+                return;
+            }
+            if (this.lock.tryLock()) {
+                try {
+                    if (frame.isValid()) {
+                        evictionPolicy.hit(frame);
+                        this.lastHit = frame;
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Demotes a loaded page that was only accessed sequentially in the eviction policy.
+         */
+        void demote(long pageNum) {
+            this.lock.lock();
+            try {
+                int frameIndex = this.pageToFrame.get(pageNum);
+                if (frameIndex == PageTable.NOT_FOUND) {
+                    return;
+                }
+                Frame frame = this.frames[frameIndex];
+                if (frame.isValid() && frame.getAccessPattern() == AccessPattern.SEQUENTIAL) {
+                    this.lastHit = null;
+                    evictionPolicy.demote(frame);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Evicts a page from its frame and marks the frame as free, without telling
+         * the disk space manager. Must hold the partition lock.
+         */
+        void freePage(Page page) {
+            TransactionContext transaction = TransactionContext.getTransaction();
+            int frameIndex = this.pageToFrame.get(page.getPageNum());
+
+            Frame frame = this.frames[frameIndex];
+            if (transaction != null) page.flush();
+            this.pageToFrame.remove(page.getPageNum(), frameIndex);
+            evictionPolicy.cleanup(frame);
+            frame.setFree();
+
+            this.frames[frameIndex] = new Frame(frame);
+        }
+
+        /**
+         * Flushes and frees every frame holding a page of the disk partition partNum.
+         * Must hold the partition lock.
+         */
+        void freePart(int partNum) {
+            for (int i = 0; i < numFrames; ++i) {
+                Frame frame = frames[i];
+                if (frame.isValid() && DiskSpaceManager.getPartNum(frame.pageNum) == partNum) {
+                    this.pageToFrame.remove(frame.getPageNum(), i);
+                    evictionPolicy.cleanup(frame);
+                    frame.flush();
+                    frame.setFree();
+                    frames[i] = new Frame(frame);
+                }
+            }
+        }
+
+        /**
+         * Flushes and unloads a page if it is loaded in this partition.
+         */
+        void evict(long pageNum) {
+            this.lock.lock();
+            try {
+                int frameIndex = pageToFrame.get(pageNum);
+                if (frameIndex == PageTable.NOT_FOUND) {
+                    return;
+                }
+                evict(frameIndex);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Flushes and unloads every page in this partition that is not pinned.
+         */
+        void evictAll() {
+            this.lock.lock();
+            try {
+                for (int i = 0; i < numFrames; ++i) {
+                    evict(i);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        // Must hold the partition lock.
+        private void evict(int i) {
+            Frame frame = frames[i];
+            if (frame.isValid() && frame.tryClaimForEviction()) {
+                this.pageToFrame.remove(frame.pageNum, frame.index);
+                evictionPolicy.cleanup(frame);
+                record(frame.pageNum, BufferMetrics.EVICTION);
+
+                frames[i] = new Frame(this, frame.contents, this.firstFreeIndex);
+                this.firstFreeIndex = i;
+
+                frame.invalidate();
+            }
+        }
+
+        /**
+         * Allocates the frame at index numFrames, growing the frame table if necessary.
+         * Must be called with the partition lock held, and only when firstFreeIndex == numFrames.
+         * The new frame is placed at the head of the free list.
+         */
+        private void allocateFrame() {
+            if (this.numFrames == this.frames.length) {
+                int newLength = (int) Math.min((long) this.frames.length * 2, this.maxFrames);
+                this.frames = Arrays.copyOf(this.frames, newLength);
+            }
+            int index = this.numFrames;
+            this.frames[index] = new Frame(this, BufferManager.this.allocateFrameBuffer(), index + 1);
+            ++this.numFrames;
+        }
+
+        /**
+         * @return number of frames currently allocated in this partition
+         */
+        int getNumAllocatedFrames() {
+            this.lock.lock();
+            try {
+                return this.numFrames;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Adds the frames of this partition that are dirty, unpinned, and have not been used
+         * since the last call, to coldFrames; frames that have been used are marked as unused.
+         * Log pages are left to the log manager.
+         */
+        void collectColdDirtyFrames(List<Frame> coldFrames) {
+            Frame[] frames;
+            int numFrames;
+            this.lock.lock();
+            try {
+                frames = this.frames;
+                numFrames = this.numFrames;
+            } finally {
+                this.lock.unlock();
+            }
+            for (int i = 0; i < numFrames; ++i) {
+                Frame frame = frames[i];
+                if (!frame.isValid() || frame.logPage) {
+                    continue;
+                }
+                if (frame.referenced) {
+                    frame.referenced = false;
+                } else if (frame.dirty && !frame.isPinned()) {
+                    coldFrames.add(frame);
+                }
+            }
+        }
+
+        void iterPageNums(BiConsumer<Long, Boolean> process) {
+            Frame[] frames;
+            int numFrames;
+            this.lock.lock();
+            try {
+                frames = this.frames;
+                numFrames = this.numFrames;
+            } finally {
+                this.lock.unlock();
+            }
+            for (int i = 0; i < numFrames; ++i) {
+                Frame frame = frames[i];
+                if (frame.isValid()) {
+                    process.accept(frame.pageNum, frame.dirty);
+                }
+            }
+        }
+
+        void close() {
+            this.lock.lock();
+            try {
+                for (int i = 0; i < this.numFrames; ++i) {
+                    Frame frame = this.frames[i];
+                    if (!frame.isValid()) {
+                        continue;
+                    }
+                    if (!frame.tryClaimForEviction()) {
+                        throw new IllegalStateException("closing buffer manager but frame still pinned");
+                    }
+                    evictionPolicy.cleanup(frame);
+                    frame.invalidate();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void incrementIOs() {
+            if (logIOs) {
+                System.out.println("IO incurred");
+                StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+                for (int i = 0; i < trace.length; i++) {
+                    String s = trace[i].toString();
+                    if (s.startsWith("edu")) {
+                        System.out.println(s);
+                    }
+                }
+            }
+            this.numIOs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a new buffer manager with a single partition.
      *
      * @param diskSpaceManager the underlying disk space manager
-     * @param bufferSize size of buffer (in pages)
+     * @param bufferSize maximum size of buffer (in pages); frames are allocated on demand
      * @param evictionPolicy eviction policy to use
      */
     public BufferManager(DiskSpaceManager diskSpaceManager, RecoveryManager recoveryManager,
                          int bufferSize, EvictionPolicy evictionPolicy) {
-        this.frames = new Frame[bufferSize];
-        for (int i = 0; i < bufferSize; ++i) {
-            this.frames[i] = new Frame(new byte[DiskSpaceManager.PAGE_SIZE], i + 1);
+        this(diskSpaceManager, recoveryManager, bufferSize, 1, () -> evictionPolicy);
+    }
+
+    /**
+     * Creates a new buffer manager, split into numPartitions independently locked partitions.
+     * The buffer size is divided evenly between the partitions.
+     *
+     * @param diskSpaceManager the underlying disk space manager
+     * @param bufferSize maximum size of buffer (in pages); frames are allocated on demand
+     * @param numPartitions number of partitions to split the buffer into
+     * @param evictionPolicyFactory creates the eviction policy of each partition (called once
+     *                              per partition; each call must return a new instance)
+     */
+    public BufferManager(DiskSpaceManager diskSpaceManager, RecoveryManager recoveryManager,
+                         int bufferSize, int numPartitions, Supplier<EvictionPolicy> evictionPolicyFactory) {
+        this(diskSpaceManager, recoveryManager, bufferSize, numPartitions, evictionPolicyFactory, false);
+    }
+
+    /**
+     * Creates a new buffer manager, split into numPartitions independently locked partitions,
+     * with frames either on the heap or off-heap.
+     *
+     * @param diskSpaceManager the underlying disk space manager
+     * @param bufferSize maximum size of buffer (in pages); frames are allocated on demand
+     * @param numPartitions number of partitions to split the buffer into
+     * @param evictionPolicyFactory creates the eviction policy of each partition (called once
+     *                              per partition; each call must return a new instance)
+     * @param offHeap whether to keep frames in direct (off-heap) memory; note that the JVM
+     *                limits direct memory to -XX:MaxDirectMemorySize (by default, the
+     *                maximum heap size)
+     */
+    public BufferManager(DiskSpaceManager diskSpaceManager, RecoveryManager recoveryManager,
+                         int bufferSize, int numPartitions, Supplier<EvictionPolicy> evictionPolicyFactory,
+                         boolean offHeap) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        if (numPartitions <= 0 || numPartitions > bufferSize) {
+            throw new IllegalArgumentException("number of partitions must be between 1 and the buffer size");
+        }
+        this.maxFrames = bufferSize;
+        this.partitions = new PoolPartition[numPartitions];
+        for (int i = 0; i < numPartitions; ++i) {
+            int partitionSize = bufferSize / numPartitions + (i < bufferSize % numPartitions ? 1 : 0);
+            this.partitions[i] = new PoolPartition(partitionSize, evictionPolicyFactory.get());
         }
-        this.firstFreeIndex = 0;
         this.diskSpaceManager = diskSpaceManager;
-        this.pageToFrame = new HashMap<>();
-        this.managerLock = new ReentrantLock();
-        this.evictionPolicy = evictionPolicy;
         this.recoveryManager = recoveryManager;
+        this.arena = offHeap ? new FrameArena(bufferSize) : null;
     }
 
     @Override
     public void close() {
-        this.managerLock.lock();
-        try {
-            for (Frame frame : this.frames) {
-                frame.frameLock.lock();
-                try {
-                    if (frame.isPinned()) {
-                        throw new IllegalStateException("closing buffer manager but frame still pinned");
-                    }
-                    if (!frame.isValid()) {
-                        continue;
-                    }
-                    evictionPolicy.cleanup(frame);
-                    frame.invalidate();
-                } finally {
-                    frame.frameLock.unlock();
-                }
-            }
-        } finally {
-            this.managerLock.unlock();
+        this.disablePageCleaner();
+        this.disableReadAhead();
+        for (PoolPartition partition : this.partitions) {
+            partition.close();
         }
     }
 
+    /**
+     * @return whether frames are kept off-heap
+     */
+    public boolean isOffHeap() {
+        return this.arena != null;
+    }
+
+    /**
+     * @return a new page-sized buffer for a frame
+     */
+    private ByteBuffer allocateFrameBuffer() {
+        if (this.arena != null) {
+            return this.arena.allocate();
+        }
+        return ByteBuffer.wrap(new byte[DiskSpaceManager.PAGE_SIZE]);
+    }
+
+    // Reads a page into a frame's buffer; off-heap buffers are read into directly.
+    private void readPage(long pageNum, ByteBuffer contents) {
+        if (contents.hasArray()) {
+            this.diskSpaceManager.readPage(pageNum, contents.array());
+        } else {
+            ByteBuffer view = contents.duplicate();
+            view.clear();
+            this.diskSpaceManager.readPage(pageNum, view);
+        }
+    }
+
+    // Writes a page from a frame's buffer; off-heap buffers are written from directly.
+    private void writePage(long pageNum, ByteBuffer contents) {
+        if (contents.hasArray()) {
+            this.diskSpaceManager.writePage(pageNum, contents.array());
+        } else {
+            ByteBuffer view = contents.duplicate();
+            view.clear();
+            this.diskSpaceManager.writePage(pageNum, view);
+        }
+    }
+
+    /**
+     * @param pageNum page number
+     * @return partition of the buffer pool that the page is loaded into
+     */
+    private PoolPartition partitionFor(long pageNum) {
+        if (this.partitions.length == 1) {
+            return this.partitions[0];
+        }
+        // Fibonacci hashing, taking the high bits so that the choice of partition is
+        // independent of the slot the page table picks within the partition
+        int hash = (int) ((pageNum * 0x9E3779B97F4A7C15L) >>> 33);
+        return this.partitions[hash % this.partitions.length];
+    }
+
     /**
      * Fetches a buffer frame with data for the specified page. Reuses existing
      * buffer frame if page already loaded in memory. Pins the buffer frame.
@@ -395,58 +1037,7 @@ public class BufferManager implements AutoCloseable {
      * @return buffer frame with specified page loaded
      */
     Frame fetchPageFrame(long pageNum) {
-        this.managerLock.lock();
-        Frame newFrame;
-        Frame evictedFrame;
-        // figure out what frame to load data to, and update manager state
-        try {
-            if (!this.diskSpaceManager.pageAllocated(pageNum)) {
-                throw new PageException("page " + pageNum + " not allocated");
-            }
-            if (this.pageToFrame.containsKey(pageNum)) {
-                newFrame = this.frames[this.pageToFrame.get(pageNum)];
-                newFrame.pin();
-                return newFrame;
-            }
-            // prioritize free frames over eviction
-            if (this.firstFreeIndex < this.frames.length) {
-                evictedFrame = this.frames[this.firstFreeIndex];
-                evictedFrame.setUsed();
-            } else {
-                evictedFrame = (Frame) evictionPolicy.evict(frames);
-                this.pageToFrame.remove(evictedFrame.pageNum, evictedFrame.index);
-                evictionPolicy.cleanup(evictedFrame);
-            }
-            int frameIndex = evictedFrame.index;
-            newFrame = this.frames[frameIndex] = new Frame(evictedFrame.contents, frameIndex, pageNum);
-            evictionPolicy.init(newFrame);
-
-            evictedFrame.frameLock.lock();
-            newFrame.frameLock.lock();
-
-            this.pageToFrame.put(pageNum, frameIndex);
-        } finally {
-            this.managerLock.unlock();
-        }
-        // flush evicted frame
-        try {
-            evictedFrame.invalidate();
-        } finally {
-            evictedFrame.frameLock.unlock();
-        }
-        // read new page into frame
-        try {
-            newFrame.pageNum = pageNum;
-            newFrame.pin();
-            BufferManager.this.diskSpaceManager.readPage(pageNum, newFrame.contents);
-            this.incrementIOs();
-            return newFrame;
-        } catch (PageException e) {
-            newFrame.unpin();
-            throw e;
-        } finally {
-            newFrame.frameLock.unlock();
-        }
+        return this.partitionFor(pageNum).fetchPageFrame(pageNum, null, false);
     }
 
     /**
@@ -457,9 +1048,131 @@ public class BufferManager implements AutoCloseable {
      * @return specified page
      */
     public Page fetchPage(LockContext parentContext, long pageNum) {
+        ReadAheadManager readAhead = this.readAhead;
+        if (readAhead != null) {
+            readAhead.access(pageNum, null);
+        }
         return this.frameToPage(parentContext, pageNum, this.fetchPageFrame(pageNum));
     }
 
+    /**
+     * Fetches the specified page, with a loaded and pinned buffer frame, hinting at
+     * how the page will be accessed. A page fetched with more than one access pattern
+     * is treated as randomly accessed; fetches without a hint do not change it.
+     *
+     * @param parentContext lock context of the **parent** of the page being fetched
+     * @param pageNum       page number
+     * @param accessPattern how the page will be accessed
+     * @return specified page
+     */
+    public Page fetchPage(LockContext parentContext, long pageNum, AccessPattern accessPattern) {
+        ReadAheadManager readAhead = this.readAhead;
+        if (readAhead != null) {
+            readAhead.access(pageNum, accessPattern);
+        }
+        Frame frame = this.partitionFor(pageNum).fetchPageFrame(pageNum, accessPattern, false);
+        return this.frameToPage(parentContext, pageNum, frame);
+    }
+
+    /**
+     * Loads a page into the buffer without keeping it pinned. Used for read-ahead.
+     *
+     * @param pageNum page number
+     * @param accessPattern access pattern hint, or null if none
+     */
+    void prefetchPage(long pageNum, AccessPattern accessPattern) {
+        this.partitionFor(pageNum).fetchPageFrame(pageNum, accessPattern, true).unpin();
+    }
+
+    /**
+     * Turns on read-ahead: once pages of a disk partition are fetched in order by a
+     * transaction, the pages after them are loaded by a background thread. If read-ahead
+     * is already on, it is restarted with the new limits.
+     *
+     * @param maxDepth maximum number of pages to read ahead of a single scan
+     * @param queryQuota maximum number of pages to read ahead for a single transaction,
+     *                   across all of its scans
+     */
+    public synchronized void enableReadAhead(int maxDepth, int queryQuota) {
+        ReadAheadManager readAhead = new ReadAheadManager(this, maxDepth, queryQuota);
+        this.disableReadAhead();
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Turns off read-ahead, waiting for the page being read ahead (if any) to be loaded.
+     */
+    public synchronized void disableReadAhead() {
+        ReadAheadManager readAhead = this.readAhead;
+        if (readAhead != null) {
+            this.readAhead = null;
+            readAhead.close();
+        }
+    }
+
+    /**
+     * Turns on the page cleaner: every intervalMillis milliseconds, a background thread
+     * writes out up to maxPagesPerRound dirty pages that are not pinned and have not been
+     * used since the previous round, in order of page number. If the page cleaner is
+     * already on, it is restarted with the new pacing.
+     *
+     * @param intervalMillis time between rounds of the page cleaner
+     * @param maxPagesPerRound maximum number of pages written per round
+     */
+    public synchronized void enablePageCleaner(long intervalMillis, int maxPagesPerRound) {
+        PageCleaner pageCleaner = new PageCleaner(this, intervalMillis, maxPagesPerRound);
+        this.disablePageCleaner();
+        this.pageCleaner = pageCleaner;
+    }
+
+    /**
+     * Turns off the page cleaner, waiting for its current round (if any) to finish.
+     */
+    public synchronized void disablePageCleaner() {
+        if (this.pageCleaner != null) {
+            this.pageCleaner.close();
+            this.pageCleaner = null;
+        }
+    }
+
+    /**
+     * Runs one round of the page cleaner: writes out up to maxPages dirty pages that are
+     * not pinned and have not been used since the previous round, in order of page number.
+     *
+     * @param maxPages maximum number of pages to write
+     * @return number of pages written
+     */
+    int cleanPages(int maxPages) {
+        List<Frame> coldFrames = new ArrayList<>();
+        for (PoolPartition partition : this.partitions) {
+            partition.collectColdDirtyFrames(coldFrames);
+        }
+        coldFrames.sort(Comparator.comparingLong(Frame::getPageNum));
+        int numWritten = 0;
+        for (Frame frame : coldFrames) {
+            if (numWritten == maxPages) {
+                break;
+            }
+            if (frame.clean()) {
+                ++numWritten;
+            }
+        }
+        this.numPagesCleaned.addAndGet(numWritten);
+        this.numCleanerRounds.incrementAndGet();
+        return numWritten;
+    }
+
+    /**
+     * Tells the buffer manager that a sequential scan has moved past a page, so that
+     * the page can be evicted before others. Does nothing if the page is not loaded,
+     * or was not fetched (only) with AccessPattern.SEQUENTIAL.
+     *
+     * @param pageNum page number
+     */
+    public void demotePage(long pageNum) {
+        this.partitionFor(pageNum).demote(pageNum);
+    }
+
     /**
      * Fetches a buffer frame for a new page. Pins the buffer frame. Cannot be used outside the package.
      *
@@ -468,12 +1181,7 @@ public class BufferManager implements AutoCloseable {
      */
     Frame fetchNewPageFrame(int partNum) {
         long pageNum = this.diskSpaceManager.allocPage(partNum);
-        this.managerLock.lock();
-        try {
-            return fetchPageFrame(pageNum);
-        } finally {
-            this.managerLock.unlock();
-        }
+        return fetchPageFrame(pageNum);
     }
 
     /**
@@ -496,21 +1204,13 @@ public class BufferManager implements AutoCloseable {
      * @param page page to free
      */
     public void freePage(Page page) {
-        this.managerLock.lock();
+        PoolPartition partition = this.partitionFor(page.getPageNum());
+        partition.lock.lock();
         try {
-            TransactionContext transaction = TransactionContext.getTransaction();
-            int frameIndex = this.pageToFrame.get(page.getPageNum());
-
-            Frame frame = this.frames[frameIndex];
-            if (transaction != null) page.flush();
-            this.pageToFrame.remove(page.getPageNum(), frameIndex);
-            evictionPolicy.cleanup(frame);
-            frame.setFree();
-
-            this.frames[frameIndex] = new Frame(frame);
+            partition.freePage(page);
             diskSpaceManager.freePage(page.getPageNum());
         } finally {
-            this.managerLock.unlock();
+            partition.lock.unlock();
         }
     }
 
@@ -522,22 +1222,23 @@ public class BufferManager implements AutoCloseable {
      * @param partNum partition number to free
      */
     public void freePart(int partNum) {
-        this.managerLock.lock();
+        // pages of the partition may be in any partition of the buffer pool; hold every
+        // pool partition's lock (always acquired in order) until the disk partition is gone
+        int numLocked = 0;
         try {
-            for (int i = 0; i < frames.length; ++i) {
-                Frame frame = frames[i];
-                if (DiskSpaceManager.getPartNum(frame.pageNum) == partNum) {
-                    this.pageToFrame.remove(frame.getPageNum(), i);
-                    evictionPolicy.cleanup(frame);
-                    frame.flush();
-                    frame.setFree();
-                    frames[i] = new Frame(frame);
-                }
+            for (PoolPartition partition : this.partitions) {
+                partition.lock.lock();
+                ++numLocked;
+                partition.freePart(partNum);
             }
 
             diskSpaceManager.freePart(partNum);
+            // the partition number may be reused
+            this.resetPartitionMetrics(partNum);
         } finally {
-            this.managerLock.unlock();
+            for (int i = numLocked - 1; i >= 0; --i) {
+                this.partitions[i].lock.unlock();
+            }
         }
     }
 
@@ -547,41 +1248,40 @@ public class BufferManager implements AutoCloseable {
      * @param pageNum page number of page to evict
      */
     public void evict(long pageNum) {
-        managerLock.lock();
-        try {
-            if (!pageToFrame.containsKey(pageNum)) {
-                return;
-            }
-            evict(pageToFrame.get(pageNum));
-        } finally {
-            managerLock.unlock();
-        }
+        this.partitionFor(pageNum).evict(pageNum);
     }
 
-    private void evict(int i) {
-        Frame frame = frames[i];
-        frame.frameLock.lock();
-        try {
-            if (frame.isValid() && !frame.isPinned()) {
-                this.pageToFrame.remove(frame.pageNum, frame.index);
-                evictionPolicy.cleanup(frame);
+    /**
+     * @return number of frames currently allocated (never more than the buffer size)
+     */
+    public int getNumAllocatedFrames() {
+        int numFrames = 0;
+        for (PoolPartition partition : this.partitions) {
+            numFrames += partition.getNumAllocatedFrames();
+        }
+        return numFrames;
+    }
 
-                frames[i] = new Frame(frame.contents, this.firstFreeIndex);
-                this.firstFreeIndex = i;
+    /**
+     * @return maximum number of frames this buffer manager will allocate
+     */
+    public int getMaxFrames() {
+        return this.maxFrames;
+    }
 
-                frame.invalidate();
-            }
-        } finally {
-            frame.frameLock.unlock();
-        }
+    /**
+     * @return number of partitions the buffer pool is split into
+     */
+    public int getNumPartitions() {
+        return this.partitions.length;
     }
 
     /**
      * Calls evict on every frame in sequence.
      */
     public void evictAll() {
-        for (int i = 0; i < frames.length; ++i) {
-            evict(i);
+        for (PoolPartition partition : this.partitions) {
+            partition.evictAll();
         }
     }
 
@@ -592,15 +1292,8 @@ public class BufferManager implements AutoCloseable {
      *                (has an unflushed change).
      */
     public void iterPageNums(BiConsumer<Long, Boolean> process) {
-        for (Frame frame : frames) {
-            frame.frameLock.lock();
-            try {
-                if (frame.isValid()) {
-                    process.accept(frame.pageNum, frame.dirty);
-                }
-            } finally {
-                frame.frameLock.unlock();
-            }
+        for (PoolPartition partition : this.partitions) {
+            partition.iterPageNums(process);
         }
     }
 
@@ -611,24 +1304,81 @@ public class BufferManager implements AutoCloseable {
      * @return number of I/Os
      */
     public long getNumIOs() {
+        long numIOs = 0;
+        for (PoolPartition partition : this.partitions) {
+            numIOs += partition.numIOs.get();
+        }
         return numIOs;
     }
 
-    public static boolean logIOs;
-    private void incrementIOs() {
-        if (logIOs) {
-            System.out.println("IO incurred");
-            StackTraceElement[] trace = Thread.currentThread().getStackTrace();
-            for (int i = 0; i < trace.length; i++) {
-                String s = trace[i].toString();
-                if (s.startsWith("edu")) {
-                    System.out.println(s);
-                }
-            }
+    /**
+     * @return counters of buffer activity on all pages
+     */
+    public BufferMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @param partNum disk partition number
+     * @return counters of buffer activity on pages of the disk partition, since the
+     * partition was allocated
+     */
+    public BufferMetrics getPartitionMetrics(int partNum) {
+        BufferMetrics[] partitionMetrics = this.partitionMetrics;
+        if (partNum < partitionMetrics.length && partitionMetrics[partNum] != null) {
+            return partitionMetrics[partNum];
+        }
+        return this.createPartitionMetrics(partNum);
+    }
+
+    private synchronized BufferMetrics createPartitionMetrics(int partNum) {
+        BufferMetrics[] partitionMetrics = this.partitionMetrics;
+        if (partNum >= partitionMetrics.length) {
+            partitionMetrics = Arrays.copyOf(partitionMetrics, Math.max(partNum + 1, partitionMetrics.length * 2));
+        }
+        if (partitionMetrics[partNum] == null) {
+            partitionMetrics[partNum] = new BufferMetrics();
+        }
+        this.partitionMetrics = partitionMetrics;
+        return partitionMetrics[partNum];
+    }
+
+    private synchronized void resetPartitionMetrics(int partNum) {
+        if (partNum < this.partitionMetrics.length) {
+            this.partitionMetrics[partNum] = null;
+        }
+    }
+
+    /**
+     * Counts buffer activity on a page overall, for the page's disk partition, and for
+     * the counters the current thread attributes its activity to.
+     */
+    private void record(long pageNum, int counter) {
+        this.metrics.record(counter);
+        this.getPartitionMetrics(DiskSpaceManager.getPartNum(pageNum)).record(counter);
+        BufferMetrics current = BufferMetrics.current();
+        if (current != null) {
+            current.record(counter);
         }
-        ++numIOs;
     }
 
+    /**
+     * @return number of pages written out by the page cleaner (these writes are also
+     * counted by getNumIOs)
+     */
+    public long getNumPagesCleaned() {
+        return this.numPagesCleaned.get();
+    }
+
+    /**
+     * @return number of rounds the page cleaner has run
+     */
+    public long getNumCleanerRounds() {
+        return this.numCleanerRounds.get();
+    }
+
+    public static boolean logIOs;
+
     /**
      * Wraps a frame in a page object.
      * @param parentContext parent lock context of the page
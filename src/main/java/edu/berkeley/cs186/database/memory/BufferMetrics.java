@@ -0,0 +1,118 @@
+package edu.berkeley.cs186.database.memory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of buffer pool activity: page fetches that found the page loaded (hits) or
+ * had to load it (misses), pages read from and written to disk, and pages evicted.
+ *
+ * The buffer manager keeps one set of counters overall and one for each disk partition,
+ * and also counts activity towards the counters that the current thread is attributing
+ * its work to (see attributeTo), which query operators use to count their own activity.
+ * Counting does not allocate or lock.
+ */
+public class BufferMetrics {
+    // Counters that activity on each thread is currently attributed to, if any
+    private static final ThreadLocal<BufferMetrics> current = new ThreadLocal<>();
+
+    // Indices of the counters
+    static final int HIT = 0;
+    static final int MISS = 1;
+    static final int READ = 2;
+    static final int WRITE = 3;
+    static final int EVICTION = 4;
+
+    private final LongAdder[] counters;
+
+    public BufferMetrics() {
+        this.counters = new LongAdder[EVICTION + 1];
+        for (int i = 0; i < this.counters.length; ++i) {
+            this.counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Attributes buffer activity of the current thread to the given counters, until
+     * this is called again.
+     *
+     * @param metrics counters to count activity towards, or null for none
+     * @return the counters activity was attributed to before, to be restored afterwards
+     */
+    public static BufferMetrics attributeTo(BufferMetrics metrics) {
+        BufferMetrics previous = current.get();
+        current.set(metrics);
+        return previous;
+    }
+
+    /**
+     * @return the counters the current thread's activity is attributed to, or null if none
+     */
+    static BufferMetrics current() {
+        return current.get();
+    }
+
+    /**
+     * @param counter one of HIT, MISS, READ, WRITE or EVICTION
+     */
+    void record(int counter) {
+        this.counters[counter].increment();
+    }
+
+    /**
+     * @return number of page fetches that found the page already loaded
+     */
+    public long getHits() {
+        return this.counters[HIT].sum();
+    }
+
+    /**
+     * @return number of page fetches that had to load the page
+     */
+    public long getMisses() {
+        return this.counters[MISS].sum();
+    }
+
+    /**
+     * @return number of pages read from disk, including pages read ahead
+     */
+    public long getReads() {
+        return this.counters[READ].sum();
+    }
+
+    /**
+     * @return number of pages written to disk
+     */
+    public long getWrites() {
+        return this.counters[WRITE].sum();
+    }
+
+    /**
+     * @return number of pages evicted from the buffer
+     */
+    public long getEvictions() {
+        return this.counters[EVICTION].sum();
+    }
+
+    /**
+     * @return fraction of page fetches that found the page loaded, or 0 if there were none
+     */
+    public double getHitRatio() {
+        long hits = this.getHits();
+        long fetches = hits + this.getMisses();
+        return fetches == 0 ? 0 : (double) hits / fetches;
+    }
+
+    /**
+     * @return whether nothing has been counted
+     */
+    public boolean isEmpty() {
+        return this.getHits() == 0 && this.getMisses() == 0 && this.getReads() == 0
+               && this.getWrites() == 0 && this.getEvictions() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + this.getHits() + " misses=" + this.getMisses() + " reads=" + this.getReads()
+               + " writes=" + this.getWrites() + " evictions=" + this.getEvictions();
+    }
+}
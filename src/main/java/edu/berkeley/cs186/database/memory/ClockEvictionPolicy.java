@@ -31,6 +31,16 @@ public class ClockEvictionPolicy implements EvictionPolicy {
         frame.tag = ACTIVE;
     }
 
+    /**
+     * Called when a frame is no longer expected to be used soon: clears the
+     * frame's reference bit.
+     * @param frame Frame object that is no longer needed
+     */
+    @Override
+    public void demote(BufferFrame frame) {
+        frame.tag = INACTIVE;
+    }
+
     /**
      * Called when a frame needs to be evicted.
      * @param frames Array of all frames (same length every call)
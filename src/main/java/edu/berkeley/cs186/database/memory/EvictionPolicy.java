@@ -16,6 +16,15 @@ public interface EvictionPolicy {
      */
     void hit(BufferFrame frame);
 
+    /**
+     * Called when a frame is no longer expected to be used soon, e.g. when a
+     * sequential scan has moved past it. Policies may move the frame towards
+     * eviction. The frame's access pattern (see BufferFrame#getAccessPattern)
+     * is also available to policies in the other methods.
+     * @param frame Frame object that is no longer needed
+     */
+    default void demote(BufferFrame frame) {}
+
     /**
      * Called when a frame needs to be evicted.
      * @param frames Array of all frames (same length every call)
@@ -0,0 +1,57 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap memory for buffer frames. Frames are page-sized slices of large direct
+ * buffers (regions), which are allocated as frames are needed: a single direct buffer
+ * can hold at most 2GB, and allocating one zeroes all of it, so large buffer pools
+ * are split into regions of up to FRAMES_PER_REGION frames rather than allocated
+ * all at once.
+ *
+ * Frames are never returned to the arena; the buffer manager reuses them. The memory
+ * is released when the buffer manager (and so every frame) is garbage collected.
+ */
+class FrameArena {
+    // Maximum number of frames in a region (64MB of pages)
+    static final int FRAMES_PER_REGION = 4096;
+
+    // Number of frames that may still be allocated
+    private int remainingFrames;
+
+    // Current region, and number of frames allocated from it so far
+    private ByteBuffer region;
+    private int regionFrames;
+
+    /**
+     * @param maxFrames maximum number of frames to allocate
+     */
+    FrameArena(int maxFrames) {
+        this.remainingFrames = maxFrames;
+        this.region = null;
+        this.regionFrames = 0;
+    }
+
+    /**
+     * @return a new page-sized direct buffer
+     * @throws IllegalStateException if maxFrames frames have already been allocated
+     */
+    synchronized ByteBuffer allocate() {
+        if (this.region == null || this.regionFrames == this.region.capacity() / DiskSpaceManager.PAGE_SIZE) {
+            if (this.remainingFrames == 0) {
+                throw new IllegalStateException("frame arena is full");
+            }
+            int numFrames = Math.min(this.remainingFrames, FRAMES_PER_REGION);
+            this.region = ByteBuffer.allocateDirect(numFrames * DiskSpaceManager.PAGE_SIZE);
+            this.regionFrames = 0;
+            this.remainingFrames -= numFrames;
+        }
+        ByteBuffer frame = this.region.duplicate();
+        frame.position(this.regionFrames * DiskSpaceManager.PAGE_SIZE);
+        frame.limit(frame.position() + DiskSpaceManager.PAGE_SIZE);
+        ++this.regionFrames;
+        return frame.slice();
+    }
+}
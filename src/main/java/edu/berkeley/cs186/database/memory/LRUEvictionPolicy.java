@@ -1,19 +1,64 @@
 package edu.berkeley.cs186.database.memory;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 /**
  * Implementation of LRU eviction policy, which works by creating a
  * doubly-linked list between frames in order of ascending use time.
+ *
+ * Pinned frames that eviction comes across at the head of the list are
+ * parked on a separate list, and the frame asks to be put in a queue
+ * when it is unpinned (see BufferFrame#notifyOnUnpin). Unpinned frames
+ * are taken from that queue before the next eviction, so eviction never
+ * walks over the same pinned frame twice, however many frames are pinned.
+ * Parked frames are older than every frame left in the main list, so once
+ * unpinned they are evicted first, in the order they were unpinned.
+ *
+ * Access pattern hints are used as follows: frames that a sequential scan
+ * has moved past (see #demote) go to the head of the list, and frames of
+ * pages read in a loop are kept on a list of their own. When the least
+ * recently used frame is a loop frame, the loop does not fit in memory, so
+ * the most recently used loop frame (the one the loop needs again last) is
+ * evicted instead.
  */
 public class LRUEvictionPolicy implements EvictionPolicy {
     private Tag listHead;
     private Tag listTail;
 
+    // Frames of pages accessed with AccessPattern.LOOP
+    private final Tag loopHead;
+    private final Tag loopTail;
+
+    // Incremented on every use of a frame, to compare use times across lists
+    private long clock;
+
+    // Frames that were pinned when eviction reached them
+    private final Tag parkedHead;
+    private final Tag parkedTail;
+
+    // Parked frames that have since been unpinned, in order of unpinning
+    private final Tag readyHead;
+    private final Tag readyTail;
+
+    // Parked frames that were unpinned since the last eviction
+    private final Queue<BufferFrame> unpinned;
+
+    // Which list a frame is on
+    private static final int LIST = 0;
+    private static final int PARKED = 1;
+    private static final int READY = 2;
+    private static final int REMOVED = 3;
+    private static final int LOOP = 4;
+
     // Doubly-linked list between frames, in order of least to most
     // recently used.
     private class Tag {
         Tag prev = null;
         Tag next = null;
         BufferFrame cur = null;
+        int state = LIST;
+        long lastUsed = 0;
 
         @Override
         public String toString() {
@@ -29,6 +74,19 @@ public class LRUEvictionPolicy implements EvictionPolicy {
         this.listTail = new Tag();
         this.listHead.next = this.listTail;
         this.listTail.prev = this.listHead;
+        this.loopHead = new Tag();
+        this.loopTail = new Tag();
+        this.loopHead.next = this.loopTail;
+        this.loopTail.prev = this.loopHead;
+        this.parkedHead = new Tag();
+        this.parkedTail = new Tag();
+        this.parkedHead.next = this.parkedTail;
+        this.parkedTail.prev = this.parkedHead;
+        this.readyHead = new Tag();
+        this.readyTail = new Tag();
+        this.readyHead.next = this.readyTail;
+        this.readyTail.prev = this.readyHead;
+        this.unpinned = new ConcurrentLinkedQueue<>();
     }
 
     /**
@@ -38,12 +96,9 @@ public class LRUEvictionPolicy implements EvictionPolicy {
     @Override
     public void init(BufferFrame frame) {
         Tag frameTag = new Tag();
-        frameTag.next = listTail;
-        frameTag.prev = listTail.prev;
-        listTail.prev = frameTag;
-        frameTag.prev.next = frameTag;
         frameTag.cur = frame;
         frame.tag = frameTag;
+        use(frameTag);
     }
 
     /**
@@ -53,12 +108,26 @@ public class LRUEvictionPolicy implements EvictionPolicy {
     @Override
     public void hit(BufferFrame frame) {
         Tag frameTag = (Tag) frame.tag;
-        frameTag.prev.next = frameTag.next;
-        frameTag.next.prev = frameTag.prev;
-        frameTag.next = this.listTail;
-        frameTag.prev = this.listTail.prev;
-        this.listTail.prev.next = frameTag;
-        this.listTail.prev = frameTag;
+        if (frameTag.state == PARKED || frameTag.state == READY) {
+            frame.notifyOnUnpin(null);
+        }
+        unlink(frameTag);
+        use(frameTag);
+    }
+
+    /**
+     * Called when a frame is no longer expected to be used soon: moves the
+     * frame to the head of the list.
+     * @param frame Frame object that is no longer needed
+     */
+    @Override
+    public void demote(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (frameTag.state == LIST) {
+            unlink(frameTag);
+            append(frameTag, this.listHead.next);
+            frameTag.lastUsed = 0;
+        }
     }
 
     /**
@@ -69,11 +138,30 @@ public class LRUEvictionPolicy implements EvictionPolicy {
      */
     @Override
     public BufferFrame evict(BufferFrame[] frames) {
-        Tag frameTag = this.listHead.next;
-        while (frameTag.cur != null && frameTag.cur.isPinned()) {
-            frameTag = frameTag.next;
+        BufferFrame frame;
+        while ((frame = this.unpinned.poll()) != null) {
+            Tag frameTag = (Tag) frame.tag;
+            if (frameTag.state == PARKED && !park(frameTag)) {
+                unlink(frameTag);
+                append(frameTag, this.readyTail);
+                frameTag.state = READY;
+            }
         }
-        if (frameTag.cur == null) {
+        Tag frameTag = firstUnpinned(this.readyHead);
+        if (frameTag != null) {
+            return frameTag.cur;
+        }
+        frameTag = firstUnpinned(this.listHead);
+        Tag loopTag = firstUnpinned(this.loopHead);
+        if (loopTag != null && (frameTag == null || loopTag.lastUsed < frameTag.lastUsed)) {
+            // the loop does not fit: evict the most recently used loop frame instead
+            Tag lastTag = this.loopTail.prev;
+            while (lastTag != loopTag && lastTag.cur.isPinned()) {
+                lastTag = lastTag.prev;
+            }
+            return lastTag.cur;
+        }
+        if (frameTag == null) {
             throw new IllegalStateException("cannot evict anything - everything pinned");
         }
         return frameTag.cur;
@@ -88,8 +176,62 @@ public class LRUEvictionPolicy implements EvictionPolicy {
     @Override
     public void cleanup(BufferFrame frame) {
         Tag frameTag = (Tag) frame.tag;
+        frame.notifyOnUnpin(null);
+        frameTag.state = REMOVED;
         frameTag.prev.next = frameTag.next;
         frameTag.next.prev = frameTag.prev;
         frameTag.prev = frameTag.next = frameTag;
     }
+
+    // Moves a frame that is not on any list to the tail of its list.
+    private void use(Tag frameTag) {
+        frameTag.lastUsed = ++this.clock;
+        if (frameTag.cur.getAccessPattern() == AccessPattern.LOOP) {
+            append(frameTag, this.loopTail);
+            frameTag.state = LOOP;
+        } else {
+            append(frameTag, this.listTail);
+            frameTag.state = LIST;
+        }
+    }
+
+    // Returns the first unpinned frame of a list (or null if there is none),
+    // parking the pinned frames before it.
+    private Tag firstUnpinned(Tag head) {
+        Tag frameTag = head.next;
+        while (frameTag.cur != null && frameTag.cur.isPinned()) {
+            Tag next = frameTag.next;
+            if (!park(frameTag)) {
+                return frameTag;
+            }
+            unlink(frameTag);
+            append(frameTag, this.parkedTail);
+            frameTag.state = PARKED;
+            frameTag = next;
+        }
+        return frameTag.cur == null ? null : frameTag;
+    }
+
+    // Asks to be told when the frame is unpinned. Returns false if it is no longer
+    // pinned, in which case no notification will come.
+    private boolean park(Tag frameTag) {
+        frameTag.cur.notifyOnUnpin(this.unpinned);
+        if (!frameTag.cur.isPinned()) {
+            frameTag.cur.notifyOnUnpin(null);
+            return false;
+        }
+        return true;
+    }
+
+    private static void append(Tag frameTag, Tag tail) {
+        frameTag.next = tail;
+        frameTag.prev = tail.prev;
+        tail.prev.next = frameTag;
+        tail.prev = frameTag;
+    }
+
+    private static void unlink(Tag frameTag) {
+        frameTag.prev.next = frameTag.next;
+        frameTag.next.prev = frameTag.prev;
+    }
 }
@@ -0,0 +1,215 @@
+package edu.berkeley.cs186.database.memory;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+
+/**
+ * Implementation of the LRU-K eviction policy (O'Neil, O'Neil and Weikum), which
+ * evicts the page whose K-th most recent reference is oldest. Pages that have been
+ * referenced fewer than K times are evicted first, in LRU order, so a sequential
+ * scan (which references each page once) cannot push out pages that are used
+ * repeatedly.
+ *
+ * Hits on a frame with no page loaded in between count as a single (correlated)
+ * reference: reading every record off a page during a scan is one reference to it.
+ * The reference history of evicted pages is kept for as many pages as there are
+ * frames, so that a page that is evicted and loaded again is not treated as new.
+ */
+public class LRUKEvictionPolicy implements EvictionPolicy {
+    private final int k;
+
+    // Logical time, advanced on every uncorrelated reference
+    private long time;
+
+    // Number of frames initialized so far
+    private long numLoads;
+
+    // Sentinels of the doubly-linked list of frames with fewer than k references,
+    // in order of least to most recently used
+    private final Tag listHead;
+    private final Tag listTail;
+
+    // Frames with k references, ordered by their k-th most recent reference
+    private final TreeSet<Tag> referenced;
+
+    // Reference history of recently evicted pages, oldest first
+    private final LinkedHashMap<Long, long[]> retained;
+
+    private int numResident;
+
+    // Number of frames in the buffer, as seen by this policy so far
+    private int capacity;
+
+    private class Tag {
+        Tag prev = null;
+        Tag next = null;
+        BufferFrame cur = null;
+        // times of the most recent references, most recent first; 0 for none
+        long[] history = null;
+        int numReferences = 0;
+        long lastLoad = 0;
+
+        @Override
+        public String toString() {
+            String scur = cur == null ? "null" : cur.toString();
+            return scur + " (references=" + numReferences + ")";
+        }
+    }
+
+    public LRUKEvictionPolicy() {
+        this(2);
+    }
+
+    /**
+     * @param k number of references to keep track of for each page
+     */
+    public LRUKEvictionPolicy(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+        this.listHead = new Tag();
+        this.listTail = new Tag();
+        this.listHead.next = this.listTail;
+        this.listTail.prev = this.listHead;
+        this.referenced = new TreeSet<>(Comparator.comparingLong((Tag t) -> t.history[this.k - 1]));
+        this.retained = new LinkedHashMap<>();
+    }
+
+    /**
+     * Called to initiaize a new buffer frame.
+     * @param frame new frame to be initialized
+     */
+    @Override
+    public void init(BufferFrame frame) {
+        ++this.numLoads;
+        Tag frameTag = new Tag();
+        frameTag.cur = frame;
+        frameTag.history = this.retained.remove(frame.getPageNum());
+        if (frameTag.history == null) {
+            frameTag.history = new long[this.k];
+        }
+        for (long t : frameTag.history) {
+            if (t != 0) {
+                ++frameTag.numReferences;
+            }
+        }
+        frame.tag = frameTag;
+        reference(frameTag);
+        ++this.numResident;
+        this.capacity = Math.max(this.capacity, this.numResident);
+    }
+
+    /**
+     * Called when a frame is hit.
+     * @param frame Frame object that is being read from/written to
+     */
+    @Override
+    public void hit(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (frameTag.lastLoad != this.numLoads) {
+            remove(frameTag);
+            reference(frameTag);
+        } else if (frameTag.numReferences < this.k) {
+            // correlated reference: only moves the page up in LRU order
+            unlink(frameTag);
+            append(frameTag);
+        }
+    }
+
+    /**
+     * Called when a frame is no longer expected to be used soon: moves the
+     * frame to the head of the list, unless it has k references.
+     * @param frame Frame object that is no longer needed
+     */
+    @Override
+    public void demote(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (frameTag.numReferences < this.k) {
+            unlink(frameTag);
+            frameTag.next = this.listHead.next;
+            frameTag.prev = this.listHead;
+            this.listHead.next.prev = frameTag;
+            this.listHead.next = frameTag;
+        }
+    }
+
+    /**
+     * Called when a frame needs to be evicted.
+     * @param frames Array of all frames (same length every call)
+     * @return index of frame to be evicted
+     * @throws IllegalStateException if everything is pinned
+     */
+    @Override
+    public BufferFrame evict(BufferFrame[] frames) {
+        Tag frameTag = this.listHead.next;
+        while (frameTag.cur != null && frameTag.cur.isPinned()) {
+            frameTag = frameTag.next;
+        }
+        if (frameTag.cur != null) {
+            return frameTag.cur;
+        }
+        for (Tag t : this.referenced) {
+            if (!t.cur.isPinned()) {
+                return t.cur;
+            }
+        }
+        throw new IllegalStateException("cannot evict anything - everything pinned");
+    }
+
+    /**
+     * Called when a frame is removed, either because it
+     * was returned from a call to evict, or because of other constraints
+     * (e.g. if the page is deleted on disk).
+     * @param frame frame being removed
+     */
+    @Override
+    public void cleanup(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        remove(frameTag);
+        frameTag.prev = frameTag.next = frameTag;
+        this.retained.put(frame.getPageNum(), frameTag.history);
+        Iterator<Long> iter = this.retained.keySet().iterator();
+        for (int n = this.retained.size(); n > this.capacity; --n) {
+            iter.next();
+            iter.remove();
+        }
+        --this.numResident;
+    }
+
+    // Records a new reference to a frame that is not in either list, and adds it
+    // to the appropriate one.
+    private void reference(Tag frameTag) {
+        System.arraycopy(frameTag.history, 0, frameTag.history, 1, this.k - 1);
+        frameTag.history[0] = ++this.time;
+        frameTag.numReferences = Math.min(frameTag.numReferences + 1, this.k);
+        frameTag.lastLoad = this.numLoads;
+        if (frameTag.numReferences == this.k) {
+            this.referenced.add(frameTag);
+        } else {
+            append(frameTag);
+        }
+    }
+
+    private void remove(Tag frameTag) {
+        if (frameTag.numReferences == this.k) {
+            this.referenced.remove(frameTag);
+        } else {
+            unlink(frameTag);
+        }
+    }
+
+    private void append(Tag frameTag) {
+        frameTag.next = this.listTail;
+        frameTag.prev = this.listTail.prev;
+        this.listTail.prev.next = frameTag;
+        this.listTail.prev = frameTag;
+    }
+
+    private static void unlink(Tag frameTag) {
+        frameTag.prev.next = frameTag.next;
+        frameTag.next.prev = frameTag.prev;
+    }
+}
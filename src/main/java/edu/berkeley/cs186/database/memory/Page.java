@@ -147,6 +147,32 @@ public class Page {
         this.frame.unpin();
     }
 
+    /**
+     * Latches the page for a sequence of writes (and reads) that must not interleave
+     * with another thread's use of the page, see BufferFrame#latch. The page must be
+     * pinned, and is unlatched with unlatchExclusive before it is unpinned.
+     */
+    public void latchExclusive() {
+        this.frame.latch(true);
+    }
+
+    public void unlatchExclusive() {
+        this.frame.unlatch(true);
+    }
+
+    /**
+     * Latches the page for a sequence of reads that must not see another thread's
+     * sequence of writes half done. Any number of threads may hold the page latched
+     * shared at once.
+     */
+    public void latchShared() {
+        this.frame.latch(false);
+    }
+
+    public void unlatchShared() {
+        this.frame.unlatch(false);
+    }
+
     /**
      * @return the virtual page number of this page
      */
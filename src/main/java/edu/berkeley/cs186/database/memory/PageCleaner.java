@@ -0,0 +1,90 @@
+package edu.berkeley.cs186.database.memory;
+
+/**
+ * Background writer of dirty pages. Runs a round of BufferManager.cleanPages every
+ * intervalMillis milliseconds, so that dirty pages that are no longer being used are
+ * written out before they are chosen for eviction, instead of by the thread that needs
+ * their frame. Writes go through the same path as eviction, so the log is flushed up
+ * to each page's LSN (through the recovery manager's page flush hook) before the page
+ * is written.
+ */
+class PageCleaner implements AutoCloseable {
+    private final BufferManager bufferManager;
+
+    // Time between rounds
+    private final long intervalMillis;
+
+    // Maximum number of pages written per round
+    private final int maxPagesPerRound;
+
+    private boolean stopped;
+
+    private final Thread thread;
+
+    /**
+     * @param bufferManager buffer manager to clean pages of
+     * @param intervalMillis time between rounds, in milliseconds
+     * @param maxPagesPerRound maximum number of pages written per round
+     */
+    PageCleaner(BufferManager bufferManager, long intervalMillis, int maxPagesPerRound) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("page cleaner interval must be positive");
+        }
+        if (maxPagesPerRound <= 0) {
+            throw new IllegalArgumentException("page cleaner must write at least one page per round");
+        }
+        this.bufferManager = bufferManager;
+        this.intervalMillis = intervalMillis;
+        this.maxPagesPerRound = maxPagesPerRound;
+        this.stopped = false;
+        this.thread = new Thread(this::run, "page-cleaner");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run() {
+        while (true) {
+            // the thread is never interrupted, as that would close the channel of a
+            // partition file that is being written to; close() wakes it instead
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + this.intervalMillis;
+                long remaining = this.intervalMillis;
+                while (!this.stopped && remaining > 0) {
+                    try {
+                        this.wait(remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                if (this.stopped) {
+                    return;
+                }
+            }
+            this.bufferManager.cleanPages(this.maxPagesPerRound);
+        }
+    }
+
+    /**
+     * Stops the background thread, waiting for its current round to finish.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.stopped = true;
+            this.notifyAll();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                this.thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package edu.berkeley.cs186.database.memory;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table from virtual page numbers to frame indices, used by the
+ * buffer manager to find the frame a page is loaded in. Keys and values are kept in
+ * parallel primitive arrays (linear probing, backward-shift deletion), so lookups
+ * neither box the page number nor allocate.
+ *
+ * Lookups do not block: they run as optimistic reads against a StampedLock, and only
+ * fall back to a read lock if a concurrent modification was detected. Modifications
+ * take the write lock.
+ */
+class PageTable {
+    // Returned by get when the page is not in the table.
+    static final int NOT_FOUND = -1;
+
+    // Marks an empty slot. Virtual page numbers are never negative.
+    private static final long EMPTY = -1L;
+
+    // The table is grown once it is more than half full.
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Slots of the table: keys[i] == EMPTY for empty slots. The two arrays are
+    // always replaced together, and always have the same (power of two) length.
+    private long[] keys;
+    private int[] values;
+
+    // Number of entries in the table.
+    private int size;
+
+    /**
+     * @param expectedSize number of entries the table should hold without resizing
+     */
+    PageTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2L * expectedSize && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        this.keys = newKeys(capacity);
+        this.values = new int[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * @param pageNum virtual page number
+     * @return frame index of the page, or NOT_FOUND if the page is not in the table
+     */
+    int get(long pageNum) {
+        long stamp = lock.tryOptimisticRead();
+        int result = find(pageNum);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = find(pageNum);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param pageNum virtual page number
+     * @return whether the page is in the table
+     */
+    boolean containsKey(long pageNum) {
+        return get(pageNum) != NOT_FOUND;
+    }
+
+    /**
+     * Maps pageNum to frameIndex, replacing any existing mapping.
+     */
+    void put(long pageNum, int frameIndex) {
+        if (pageNum < 0) {
+            throw new IllegalArgumentException("invalid page number " + pageNum);
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(pageNum) & mask;
+            while (keys[i] != EMPTY && keys[i] != pageNum) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                ++size;
+            }
+            values[i] = frameIndex;
+            keys[i] = pageNum;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the mapping for pageNum, if it is currently mapped to frameIndex.
+     *
+     * @return whether anything was removed
+     */
+    boolean remove(long pageNum, int frameIndex) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int i = hash(pageNum) & mask;
+            while (keys[i] != EMPTY) {
+                if (keys[i] == pageNum) {
+                    if (values[i] != frameIndex) {
+                        return false;
+                    }
+                    deleteSlot(i);
+                    --size;
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return number of entries in the table
+     */
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Probes for pageNum. May be called without holding the lock (the result must then
+    // be validated), so it reads the arrays once and bounds the number of probes.
+    private int find(long pageNum) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        if (keys.length != values.length) {
+            return NOT_FOUND;
+        }
+        int mask = keys.length - 1;
+        int i = hash(pageNum) & mask;
+        for (int probes = 0; probes < keys.length; ++probes) {
+            long key = keys[i];
+            if (key == pageNum) {
+                return values[i];
+            }
+            if (key == EMPTY) {
+                return NOT_FOUND;
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    // Empties slot i, shifting back any later entries of the same probe sequence so
+    // that lookups never need tombstones. Must hold the write lock.
+    private void deleteSlot(int i) {
+        int mask = keys.length - 1;
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int home = hash(keys[j]) & mask;
+            // move keys[j] into the hole unless its home slot lies cyclically in (hole, j]
+            boolean homeBetween = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!homeBetween) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+    }
+
+    // Rehashes every entry into arrays of the given capacity. Must hold the write lock.
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] newKeys = newKeys(capacity);
+        int[] newValues = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int j = hash(oldKeys[i]) & mask;
+                while (newKeys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                newKeys[j] = oldKeys[i];
+                newValues[j] = oldValues[i];
+            }
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    // Virtual page numbers are partNum * 10^10 + n, so the low bits alone are poorly
+    // distributed across partitions; mix all 64 bits (murmur3 finalizer).
+    private static int hash(long pageNum) {
+        long h = pageNum;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,219 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.TransactionContext;
+import edu.berkeley.cs186.database.common.Pair;
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import edu.berkeley.cs186.database.io.PageException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Sequential read-ahead for the buffer manager. Page fetches are tracked in streams,
+ * one for each query (transaction) and disk partition. Once a stream has fetched two
+ * consecutive pages of its partition, the pages that follow are queued, and loaded
+ * into the buffer by a background thread while the query works on the pages it has.
+ *
+ * The read-ahead depth of a stream adapts to how fast the query consumes pages: it
+ * starts at MIN_DEPTH pages, doubles (up to the maximum depth) whenever the query asks
+ * for a queued page that has not been loaded yet, and shrinks by a page whenever the
+ * query finds everything queued for it already loaded. The number of pages queued or
+ * loaded ahead of a query, across all of its streams, is capped by the query quota.
+ */
+class ReadAheadManager implements AutoCloseable {
+    // Initial read-ahead depth of a stream
+    static final int MIN_DEPTH = 2;
+
+    // Number of streams tracked; the least recently used stream is dropped beyond this
+    private static final int MAX_STREAMS = 64;
+
+    // Request that stops the background thread
+    private static final Request STOP = new Request(null, 0);
+
+    private final BufferManager bufferManager;
+
+    // Maximum read-ahead depth of a stream
+    private final int maxDepth;
+
+    // Maximum number of pages read ahead for a single query
+    private final int queryQuota;
+
+    // Streams, by (transaction number, disk partition number), least recently used first
+    private final LinkedHashMap<Pair<Long, Integer>, Stream> streams;
+
+    // Pages waiting to be loaded by the background thread
+    private final BlockingQueue<Request> requests;
+
+    private final Thread thread;
+
+    /**
+     * A run of page fetches by one query in one disk partition. Page indices below
+     * nextIndex have been fetched by the query, pages in [nextIndex, queuedUpTo) have
+     * been queued for read-ahead, and queued pages below loadedUpTo have been loaded.
+     */
+    private static class Stream {
+        final long transNum;
+        final int partNum;
+        int nextIndex = -1;
+        int queuedUpTo = 0;
+        int loadedUpTo = 0;
+        int depth = MIN_DEPTH;
+        AccessPattern accessPattern = null;
+
+        Stream(long transNum, int partNum) {
+            this.transNum = transNum;
+            this.partNum = partNum;
+        }
+    }
+
+    private static class Request {
+        final Stream stream;
+        final int index;
+
+        Request(Stream stream, int index) {
+            this.stream = stream;
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param bufferManager buffer manager to load pages into
+     * @param maxDepth maximum number of pages to read ahead of a stream
+     * @param queryQuota maximum number of pages to read ahead of a query
+     */
+    ReadAheadManager(BufferManager bufferManager, int maxDepth, int queryQuota) {
+        if (maxDepth < MIN_DEPTH) {
+            throw new IllegalArgumentException("read-ahead depth must be at least " + MIN_DEPTH);
+        }
+        if (queryQuota <= 0) {
+            throw new IllegalArgumentException("read-ahead quota must be positive");
+        }
+        this.bufferManager = bufferManager;
+        this.maxDepth = maxDepth;
+        this.queryQuota = queryQuota;
+        this.streams = new LinkedHashMap<Pair<Long, Integer>, Stream>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pair<Long, Integer>, Stream> eldest) {
+                return size() > MAX_STREAMS;
+            }
+        };
+        this.requests = new LinkedBlockingQueue<>();
+        this.thread = new Thread(this::run, "read-ahead");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Called by the buffer manager before it fetches a page for the current transaction;
+     * queues pages to read ahead if the page continues a sequential run.
+     *
+     * @param pageNum page being fetched
+     * @param accessPattern access pattern the page is fetched with, or null if none
+     */
+    synchronized void access(long pageNum, AccessPattern accessPattern) {
+        TransactionContext transaction = TransactionContext.getTransaction();
+        long transNum = transaction == null ? -1 : transaction.getTransNum();
+        int partNum = DiskSpaceManager.getPartNum(pageNum);
+        int index = DiskSpaceManager.getPageNum(pageNum);
+
+        Pair<Long, Integer> key = new Pair<>(transNum, partNum);
+        Stream stream = this.streams.get(key);
+        if (stream == null) {
+            stream = new Stream(transNum, partNum);
+            this.streams.put(key, stream);
+        }
+        if (index != stream.nextIndex) {
+            // not sequential: start a new run at this page
+            stream.nextIndex = index + 1;
+            stream.queuedUpTo = stream.loadedUpTo = index + 1;
+            stream.depth = MIN_DEPTH;
+            return;
+        }
+        stream.nextIndex = index + 1;
+        stream.accessPattern = accessPattern;
+        if (index < stream.queuedUpTo) {
+            if (index >= stream.loadedUpTo) {
+                // the query caught up with the background thread
+                stream.depth = Math.min(stream.depth * 2, this.maxDepth);
+            } else if (stream.loadedUpTo >= stream.queuedUpTo) {
+                // the background thread is waiting on the query
+                stream.depth = Math.max(stream.depth - 1, MIN_DEPTH);
+            }
+        }
+
+        int start = Math.max(stream.queuedUpTo, stream.nextIndex);
+        int end = Math.min(stream.nextIndex + stream.depth, start + this.remainingQuota(transNum));
+        for (int i = start; i < end; ++i) {
+            this.requests.add(new Request(stream, i));
+        }
+        stream.queuedUpTo = Math.max(stream.queuedUpTo, end);
+    }
+
+    // Number of pages that may still be read ahead for a transaction. Must hold the monitor.
+    private int remainingQuota(long transNum) {
+        int numAhead = 0;
+        for (Stream stream : this.streams.values()) {
+            if (stream.transNum == transNum) {
+                numAhead += Math.max(stream.queuedUpTo - stream.nextIndex, 0);
+            }
+        }
+        return Math.max(this.queryQuota - numAhead, 0);
+    }
+
+    // Loads queued pages until stopped.
+    private void run() {
+        while (true) {
+            Request request;
+            try {
+                request = this.requests.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (request == STOP) {
+                return;
+            }
+            Stream stream = request.stream;
+            AccessPattern accessPattern;
+            synchronized (this) {
+                if (request.index < stream.nextIndex || request.index >= stream.queuedUpTo) {
+                    // the query has already fetched the page, or moved elsewhere
+                    continue;
+                }
+                accessPattern = stream.accessPattern;
+            }
+            try {
+                bufferManager.prefetchPage(DiskSpaceManager.getVirtualPageNum(stream.partNum, request.index),
+                                           accessPattern);
+            } catch (PageException | IllegalStateException e) {
+                // past the end of the partition, freed, or no frame to load the page into;
+                // the query will fetch the page itself if it needs it
+            }
+            synchronized (this) {
+                stream.loadedUpTo = Math.max(stream.loadedUpTo, request.index + 1);
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread, waiting for it to finish loading its current page.
+     */
+    @Override
+    public void close() {
+        this.requests.clear();
+        this.requests.add(STOP);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                this.thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
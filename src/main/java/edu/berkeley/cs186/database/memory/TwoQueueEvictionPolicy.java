@@ -0,0 +1,174 @@
+package edu.berkeley.cs186.database.memory;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Implementation of the 2Q eviction policy (Johnson and Shasha), which keeps
+ * pages that have only been referenced once (e.g. by a sequential scan) from
+ * pushing frequently used pages out of the buffer.
+ *
+ * Newly loaded pages go into a FIFO queue (A1in); hits on them do nothing.
+ * When they are evicted from A1in, their page numbers are remembered in a
+ * second FIFO queue (A1out). Pages that are loaded again while in A1out are
+ * considered hot and go into an LRU list (Am). Pages are evicted from A1in
+ * while it holds more than a quarter of the buffer, and from Am otherwise.
+ */
+public class TwoQueueEvictionPolicy implements EvictionPolicy {
+    // Sentinels of the doubly-linked lists of frames in A1in and in Am, each
+    // in order of least to most recently added (A1in) or used (Am)
+    private final Tag inHead;
+    private final Tag inTail;
+    private final Tag amHead;
+    private final Tag amTail;
+
+    // Page numbers of pages recently evicted from A1in, oldest first
+    private final LinkedHashSet<Long> out;
+
+    private int numIn;
+    private int numResident;
+
+    // Number of frames in the buffer, as seen by this policy so far
+    private int capacity;
+
+    private class Tag {
+        Tag prev = null;
+        Tag next = null;
+        BufferFrame cur = null;
+        boolean hot = false;
+
+        @Override
+        public String toString() {
+            String scur = cur == null ? "null" : cur.toString();
+            return scur + (hot ? " (Am)" : " (A1in)");
+        }
+    }
+
+    public TwoQueueEvictionPolicy() {
+        this.inHead = new Tag();
+        this.inTail = new Tag();
+        this.amHead = new Tag();
+        this.amTail = new Tag();
+        this.inHead.next = this.inTail;
+        this.inTail.prev = this.inHead;
+        this.amHead.next = this.amTail;
+        this.amTail.prev = this.amHead;
+        this.out = new LinkedHashSet<>();
+    }
+
+    /**
+     * Called to initiaize a new buffer frame.
+     * @param frame new frame to be initialized
+     */
+    @Override
+    public void init(BufferFrame frame) {
+        Tag frameTag = new Tag();
+        frameTag.cur = frame;
+        frameTag.hot = this.out.remove(frame.getPageNum());
+        if (frameTag.hot) {
+            append(frameTag, this.amTail);
+        } else {
+            append(frameTag, this.inTail);
+            ++this.numIn;
+        }
+        frame.tag = frameTag;
+        ++this.numResident;
+        this.capacity = Math.max(this.capacity, this.numResident);
+    }
+
+    /**
+     * Called when a frame is hit.
+     * @param frame Frame object that is being read from/written to
+     */
+    @Override
+    public void hit(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (frameTag.hot) {
+            unlink(frameTag);
+            append(frameTag, this.amTail);
+        }
+    }
+
+    /**
+     * Called when a frame is no longer expected to be used soon: moves the
+     * frame to the head of A1in, unless it is in Am.
+     * @param frame Frame object that is no longer needed
+     */
+    @Override
+    public void demote(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        if (!frameTag.hot) {
+            unlink(frameTag);
+            append(frameTag, this.inHead.next);
+        }
+    }
+
+    /**
+     * Called when a frame needs to be evicted.
+     * @param frames Array of all frames (same length every call)
+     * @return index of frame to be evicted
+     * @throws IllegalStateException if everything is pinned
+     */
+    @Override
+    public BufferFrame evict(BufferFrame[] frames) {
+        BufferFrame evicted;
+        if (this.numIn > Math.max(1, this.capacity / 4)) {
+            evicted = firstUnpinned(this.inHead);
+            if (evicted == null) {
+                evicted = firstUnpinned(this.amHead);
+            }
+        } else {
+            evicted = firstUnpinned(this.amHead);
+            if (evicted == null) {
+                evicted = firstUnpinned(this.inHead);
+            }
+        }
+        if (evicted == null) {
+            throw new IllegalStateException("cannot evict anything - everything pinned");
+        }
+        return evicted;
+    }
+
+    /**
+     * Called when a frame is removed, either because it
+     * was returned from a call to evict, or because of other constraints
+     * (e.g. if the page is deleted on disk).
+     * @param frame frame being removed
+     */
+    @Override
+    public void cleanup(BufferFrame frame) {
+        Tag frameTag = (Tag) frame.tag;
+        unlink(frameTag);
+        frameTag.prev = frameTag.next = frameTag;
+        if (!frameTag.hot) {
+            --this.numIn;
+            this.out.add(frame.getPageNum());
+            Iterator<Long> iter = this.out.iterator();
+            for (int n = this.out.size(); n > Math.max(1, this.capacity / 2); --n) {
+                iter.next();
+                iter.remove();
+            }
+        }
+        --this.numResident;
+    }
+
+    private static BufferFrame firstUnpinned(Tag head) {
+        Tag frameTag = head.next;
+        while (frameTag.cur != null && frameTag.cur.isPinned()) {
+            frameTag = frameTag.next;
+        }
+        return frameTag.cur;
+    }
+
+    private static void append(Tag frameTag, Tag tail) {
+        frameTag.next = tail;
+        frameTag.prev = tail.prev;
+        tail.prev.next = frameTag;
+        tail.prev = frameTag;
+    }
+
+    private static void unlink(Tag frameTag) {
+        frameTag.prev.next = frameTag.next;
+        frameTag.next.prev = frameTag.prev;
+    }
+}
@@ -46,7 +46,7 @@ class GroupByOperator extends QueryOperator {
 
     @Override
     public Iterator<Record> iterator() {
-        return new GroupByIterator();
+        return metered(new GroupByIterator());
     }
 
     @Override
@@ -88,7 +88,7 @@ class IndexScanOperator extends QueryOperator {
 
     @Override
     public Iterator<Record> iterator() {
-        return new IndexScanIterator();
+        return metered(new IndexScanIterator());
     }
 
     @Override
@@ -96,6 +96,18 @@ public abstract class JoinOperator extends QueryOperator {
         return r;
     }
 
+    @Override
+    public String toStringWithBufferMetrics() {
+        String r = this.str() + " [" + this.getBufferMetrics() + "]";
+        if (this.leftSource != null) {
+            r += ("\n-> " + this.leftSource.toStringWithBufferMetrics()).replaceAll("\n", "\n\t");
+        }
+        if (this.rightSource != null) {
+            r += ("\n-> " + this.rightSource.toStringWithBufferMetrics()).replaceAll("\n", "\n\t");
+        }
+        return r;
+    }
+
     /**
      * Estimates the table statistics for the result of executing this query operator.
      *
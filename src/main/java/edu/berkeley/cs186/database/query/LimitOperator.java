@@ -30,7 +30,7 @@ public class LimitOperator extends QueryOperator {
 
     @Override
     public Iterator<Record> iterator() {
-        return new LimitIterator(this.limit, this.offset);
+        return metered(new LimitIterator(this.limit, this.offset));
     }
 
     @Override
@@ -1,7 +1,6 @@
 package edu.berkeley.cs186.database.query;
 
 import edu.berkeley.cs186.database.TransactionContext;
-import edu.berkeley.cs186.database.table.Record;
 
 import java.util.List;
 
@@ -21,9 +20,7 @@ public class MaterializeOperator extends SequentialScanOperator {
 
     private static String materializeToTable(QueryOperator source, TransactionContext transaction) {
         String materializedTableName = transaction.createTempTable(source.getSchema());
-        for (Record record : source) {
-            transaction.addRecord(materializedTableName, record);
-        }
+        transaction.addRecords(materializedTableName, source.iterator());
         return materializedTableName;
     }
 
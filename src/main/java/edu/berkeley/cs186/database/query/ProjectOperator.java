@@ -96,7 +96,7 @@ public class ProjectOperator extends QueryOperator {
 
     @Override
     public Iterator<Record> iterator() {
-        return new ProjectIterator();
+        return metered(new ProjectIterator());
     }
 
     @Override
@@ -3,6 +3,7 @@ package edu.berkeley.cs186.database.query;
 import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.iterator.ArrayBacktrackingIterator;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.memory.BufferMetrics;
 import edu.berkeley.cs186.database.table.PageDirectory;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.Schema;
@@ -33,6 +34,9 @@ public abstract class QueryOperator implements Iterable<Record> {
 
     private OperatorType type;
 
+    // Buffer activity while this operator's own code was running
+    private final BufferMetrics bufferMetrics = new BufferMetrics();
+
     /**
      * Creates a QueryOperator without a set source, destination, or schema.
      * @param type the operator's type (Join, Project, Select, etc...)
@@ -203,6 +207,98 @@ public abstract class QueryOperator implements Iterable<Record> {
         return operator;
     }
 
+    /**
+     * @return counters of the buffer activity caused by this operator, not including
+     * activity caused by its source operators
+     */
+    public BufferMetrics getBufferMetrics() {
+        return this.bufferMetrics;
+    }
+
+    /**
+     * Wraps an iterator over this operator's records, so that buffer activity while
+     * it is advanced is counted towards this operator's buffer metrics. Activity of
+     * source operators is counted towards theirs, since they wrap their iterators too.
+     */
+    protected Iterator<Record> metered(Iterator<Record> iterator) {
+        return new MeteredIterator(iterator);
+    }
+
+    /**
+     * Wraps a backtracking iterator over this operator's records, so that buffer
+     * activity while it is used is counted towards this operator's buffer metrics.
+     */
+    protected BacktrackingIterator<Record> metered(BacktrackingIterator<Record> iterator) {
+        return new MeteredBacktrackingIterator(iterator);
+    }
+
+    private class MeteredIterator implements Iterator<Record> {
+        private Iterator<Record> iterator;
+
+        private MeteredIterator(Iterator<Record> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            BufferMetrics previous = BufferMetrics.attributeTo(bufferMetrics);
+            try {
+                return this.iterator.hasNext();
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
+        }
+
+        @Override
+        public Record next() {
+            BufferMetrics previous = BufferMetrics.attributeTo(bufferMetrics);
+            try {
+                return this.iterator.next();
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
+        }
+    }
+
+    private class MeteredBacktrackingIterator extends MeteredIterator implements BacktrackingIterator<Record> {
+        private BacktrackingIterator<Record> iterator;
+
+        private MeteredBacktrackingIterator(BacktrackingIterator<Record> iterator) {
+            super(iterator);
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void markPrev() {
+            BufferMetrics previous = BufferMetrics.attributeTo(bufferMetrics);
+            try {
+                this.iterator.markPrev();
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
+        }
+
+        @Override
+        public void markNext() {
+            BufferMetrics previous = BufferMetrics.attributeTo(bufferMetrics);
+            try {
+                this.iterator.markNext();
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
+        }
+
+        @Override
+        public void reset() {
+            BufferMetrics previous = BufferMetrics.attributeTo(bufferMetrics);
+            try {
+                this.iterator.reset();
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
+        }
+    }
+
     public abstract String str();
 
     public String toString() {
@@ -213,6 +309,18 @@ public abstract class QueryOperator implements Iterable<Record> {
         return r;
     }
 
+    /**
+     * @return the same as toString(), with the buffer activity caused by each operator
+     * (see getBufferMetrics) after the operator
+     */
+    public String toStringWithBufferMetrics() {
+        String r = this.str() + " [" + this.bufferMetrics + "]";
+        if (this.source != null) {
+            r += ("\n-> " + this.source.toStringWithBufferMetrics()).replaceAll("\n", "\n\t");
+        }
+        return r;
+    }
+
     /**
      * Estimates the table statistics for the result of executing this query operator.
      *
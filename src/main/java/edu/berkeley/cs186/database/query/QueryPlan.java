@@ -390,6 +390,28 @@ public class QueryPlan {
         }
     }
 
+    /**
+     * Pushes the select predicates on the table scanned by `scan` down to the
+     * scan, except for the predicate at index except, so that it skips the pages
+     * of the table that have no record satisfying them (see
+     * SequentialScanOperator#pushDownPredicate). The predicates must still be
+     * applied to the records the scan returns.
+     *
+     * @param scan a sequential scan
+     * @param except the index of a selection to skip, or -1
+     */
+    private void pushDownSelections(SequentialScanOperator scan, int except) {
+        for (int i = 0; i < this.selectPredicates.size(); i++) {
+            if (i == except) continue;
+            SelectPredicate curr = this.selectPredicates.get(i);
+            try {
+                scan.pushDownPredicate(curr.tableName + "." + curr.column, curr.operator, curr.value);
+            } catch (RuntimeException err) {
+                /* predicate on another table, do nothing */
+            }
+        }
+    }
+
     // Group By ////////////////////////////////////////////////////////////////
 
     /**
@@ -477,12 +499,14 @@ public class QueryPlan {
     private void addJoinsNaive() {
         int pos = 1;
         for (JoinPredicate predicate : joinPredicates) {
+            SequentialScanOperator scan = new SequentialScanOperator(
+                    this.transaction,
+                    tableNames.get(pos)
+            );
+            this.pushDownSelections(scan, -1);
             this.finalOperator = new SNLJOperator(
                     finalOperator,
-                    new SequentialScanOperator(
-                            this.transaction,
-                            tableNames.get(pos)
-                    ),
+                    scan,
                     predicate.leftColumn,
                     predicate.rightColumn,
                     this.transaction
@@ -541,6 +565,9 @@ public class QueryPlan {
      * @return a new query operator after select predicates have been applied
      */
     private QueryOperator addEligibleSelections(QueryOperator source, int except) {
+        if (source.getType() == QueryOperator.OperatorType.SEQ_SCAN) {
+            this.pushDownSelections((SequentialScanOperator) source, except);
+        }
         for (int i = 0; i < this.selectPredicates.size(); i++) {
             if (i == except) continue;
             SelectPredicate curr = this.selectPredicates.get(i);
@@ -754,6 +781,43 @@ public class QueryPlan {
         this.addProject();
     }
 
+    /**
+     * For a query over a single table without any joins, finds the columns of
+     * the table that the query refers to in its select predicates, group by
+     * columns and projection, so that the scan of the table only reads those.
+     *
+     * @return the referenced columns in the order of the table's schema, or null
+     * if the query may refer to every column
+     */
+    private List<String> getReferencedColumnsNaive() {
+        if (this.joinPredicates.size() > 0 || this.projectColumns.isEmpty()) return null;
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < this.projectColumns.size(); i++) {
+            Expression function = this.projectFunctions == null ? null : this.projectFunctions.get(i);
+            if (function == null) names.add(this.projectColumns.get(i));
+            else names.addAll(function.getDependencies());
+        }
+        for (SelectPredicate predicate : this.selectPredicates) {
+            names.add(predicate.tableName + "." + predicate.column);
+        }
+        names.addAll(this.groupByColumns);
+
+        Schema schema = this.transaction.getFullyQualifiedSchema(this.tableNames.get(0));
+        boolean[] referenced = new boolean[schema.size()];
+        for (String name : names) {
+            try {
+                referenced[schema.findField(name)] = true;
+            } catch (RuntimeException err) {
+                return null; // e.g. an expression we can't resolve, scan everything
+            }
+        }
+        List<String> columns = new ArrayList<>();
+        for (int i = 0; i < schema.size(); i++) {
+            if (referenced[i]) columns.add(schema.getFieldName(i));
+        }
+        return columns.size() < schema.size() ? columns : null;
+    }
+
     /**
      * Generates a naive QueryPlan in which all joins are at the bottom of the
      * DAG followed by all select predicates, an optional group by operator, an
@@ -768,11 +832,24 @@ public class QueryPlan {
         if (indexPredicate != -1) {
             this.generateIndexPlanNaive(indexPredicate);
         } else {
-            // start off with a scan on the first table
-            this.finalOperator = new SequentialScanOperator(
-                    this.transaction,
-                    this.tableNames.get(0)
-            );
+            // start off with a scan on the first table, of only the columns
+            // the query refers to if it has no joins
+            List<String> columns = this.getReferencedColumnsNaive();
+            SequentialScanOperator scan;
+            if (columns == null) {
+                scan = new SequentialScanOperator(
+                        this.transaction,
+                        this.tableNames.get(0)
+                );
+            } else {
+                scan = new SequentialScanOperator(
+                        this.transaction,
+                        this.tableNames.get(0),
+                        columns
+                );
+            }
+            this.pushDownSelections(scan, -1);
+            this.finalOperator = scan;
 
             // add joins, selects, group by's and projects to our plan
             this.addJoinsNaive();
@@ -73,7 +73,7 @@ public class SelectOperator extends QueryOperator {
     }
 
     @Override
-    public Iterator<Record> iterator() { return new SelectIterator(); }
+    public Iterator<Record> iterator() { return metered(new SelectIterator()); }
 
     /**
      * An implementation of Iterator that provides an iterator interface for this operator.
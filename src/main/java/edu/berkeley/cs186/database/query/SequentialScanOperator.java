@@ -1,16 +1,34 @@
 package edu.berkeley.cs186.database.query;
 
 import edu.berkeley.cs186.database.TransactionContext;
+import edu.berkeley.cs186.database.common.PredicateOperator;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.Schema;
+import edu.berkeley.cs186.database.table.TableDictionary;
+import edu.berkeley.cs186.database.table.ZoneMap;
 import edu.berkeley.cs186.database.table.stats.TableStats;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 
 public class SequentialScanOperator extends QueryOperator {
     private TransactionContext transaction;
     private String tableName;
+    // the columns of the table to scan, or null for all columns
+    private List<Integer> columns;
+    // how the table's pages are accessed, passed on to the buffer manager
+    private AccessPattern accessPattern = AccessPattern.SEQUENTIAL;
+    // predicates used to skip pages (and records, on dictionary-encoded columns) of
+    // the table, see pushDownPredicate
+    private List<PageSkipPredicate> predicates = new ArrayList<>();
 
     /**
      * Creates a new SequentialScanOperator that provides an iterator on all
@@ -27,12 +45,42 @@ public class SequentialScanOperator extends QueryOperator {
         this(OperatorType.SEQ_SCAN, transaction, tableName);
     }
 
+    /**
+     * Creates a new SequentialScanOperator that provides an iterator on all
+     * tuples in a table, with only the values of the given columns. Only those
+     * values are read from the table's pages, which saves the most for tables
+     * with PAX pages (see PageLayout.PAX).
+     *
+     * @param transaction
+     * @param tableName
+     * @param columnNames the columns of the table to scan, in the order to output them
+     */
+    public SequentialScanOperator(TransactionContext transaction,
+                                  String tableName,
+                                  List<String> columnNames) {
+        this(OperatorType.SEQ_SCAN, transaction, tableName, columnNames);
+    }
+
     protected SequentialScanOperator(OperatorType type,
                                      TransactionContext transaction,
                                      String tableName) {
+        this(type, transaction, tableName, null);
+    }
+
+    private SequentialScanOperator(OperatorType type,
+                                   TransactionContext transaction,
+                                   String tableName,
+                                   List<String> columnNames) {
         super(type);
         this.transaction = transaction;
         this.tableName = tableName;
+        if (columnNames != null) {
+            Schema schema = this.transaction.getFullyQualifiedSchema(tableName);
+            this.columns = new ArrayList<>();
+            for (String columnName : columnNames) {
+                this.columns.add(schema.findField(columnName));
+            }
+        }
         this.setOutputSchema(this.computeSchema());
 
         this.stats = this.estimateStats();
@@ -42,6 +90,77 @@ public class SequentialScanOperator extends QueryOperator {
         return this.tableName;
     }
 
+    /**
+     * Sets how the table will be scanned: AccessPattern.SEQUENTIAL (the
+     * default) if it is scanned once, AccessPattern.LOOP if it is scanned
+     * repeatedly (e.g. as the inner relation of a nested loop join).
+     */
+    public void setAccessPattern(AccessPattern accessPattern) {
+        this.accessPattern = accessPattern;
+    }
+
+    /**
+     * @return how the table will be scanned (see setAccessPattern)
+     */
+    public AccessPattern getAccessPattern() {
+        return this.accessPattern;
+    }
+
+    /**
+     * Pushes a selection predicate (e.g. l_shipdate >= 1994-01-01) down to the
+     * scan: pages of the table that the table's zone map shows have no record
+     * satisfying it are skipped (see ZoneMap#mayMatch), and are not counted in the
+     * scan's estimated I/O cost. If the column is dictionary-encoded, the records of
+     * the pages read whose codes do not satisfy it are dropped without being decoded
+     * (see TableDictionary#codeFilter); other records are not filtered, so the predicate
+     * must still be applied above the scan, e.g. by a SelectOperator.
+     *
+     * @param columnName the name of the column of the table to evaluate the predicate on
+     * @param operator the actual comparator
+     * @param value the value to compare against
+     */
+    public void pushDownPredicate(String columnName, PredicateOperator operator, DataBox value) {
+        Schema schema = this.transaction.getFullyQualifiedSchema(this.tableName);
+        int column = schema.findField(columnName);
+        this.predicates.add(new PageSkipPredicate(schema.getFieldName(column), column, operator, value));
+    }
+
+    // filter accepting the pages of the table that may have records satisfying the
+    // pushed down predicates, or null if there are none
+    private LongPredicate pageFilter() {
+        if (this.predicates.isEmpty()) {
+            return null;
+        }
+        ZoneMap zoneMap = this.transaction.getZoneMap(this.tableName);
+        List<PageSkipPredicate> predicates = new ArrayList<>(this.predicates);
+        return pageNum -> {
+            for (PageSkipPredicate p : predicates) {
+                if (!zoneMap.mayMatch(pageNum, p.column, p.operator, p.value)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    // filters on the codes of the dictionary-encoded columns of the table, accepting
+    // those of the values satisfying the pushed down predicates, or null if there are
+    // none
+    private Map<Integer, IntPredicate> codeFilters() {
+        TableDictionary dictionary = this.transaction.getDictionary(this.tableName);
+        if (dictionary == null) {
+            return null;
+        }
+        Map<Integer, IntPredicate> filters = new HashMap<>();
+        for (PageSkipPredicate p : this.predicates) {
+            IntPredicate filter = dictionary.codeFilter(p.column, p.operator, p.value);
+            if (filter != null) {
+                filters.merge(p.column, filter, IntPredicate::and);
+            }
+        }
+        return filters.isEmpty() ? null : filters;
+    }
+
     @Override
     public boolean isSequentialScan() {
         return true;
@@ -57,27 +176,78 @@ public class SequentialScanOperator extends QueryOperator {
 
     @Override
     public BacktrackingIterator<Record> backtrackingIterator() {
-        return this.transaction.getRecordIterator(tableName);
+        if (!this.predicates.isEmpty()) {
+            Map<Integer, IntPredicate> codeFilters = codeFilters();
+            if (codeFilters != null) {
+                return metered(this.transaction.getRecordIterator(tableName, accessPattern, columns, pageFilter(),
+                                                                  codeFilters));
+            }
+            return metered(this.transaction.getRecordIterator(tableName, accessPattern, columns, pageFilter()));
+        }
+        if (this.columns != null) {
+            return metered(this.transaction.getRecordIterator(tableName, accessPattern, columns));
+        }
+        return metered(this.transaction.getRecordIterator(tableName, accessPattern));
     }
 
     @Override
     public Schema computeSchema() {
-        return this.transaction.getFullyQualifiedSchema(this.tableName);
+        Schema schema = this.transaction.getFullyQualifiedSchema(this.tableName);
+        if (this.columns == null) {
+            return schema;
+        }
+        Schema projected = new Schema();
+        for (int column : this.columns) {
+            projected.add(schema.getFieldName(column), schema.getFieldType(column));
+        }
+        return projected;
     }
 
     @Override
     public String str() {
-        return "Seq Scan on " + this.tableName + " (cost=" + this.estimateIOCost() + ")";
+        String str = "Seq Scan on " + this.tableName + " (cost=" + this.estimateIOCost() + ")";
+        if (this.columns != null) {
+            str += "\n\tcolumns: (" + String.join(", ", this.getSchema().getFieldNames()) + ")";
+        }
+        if (!this.predicates.isEmpty()) {
+            List<String> predicates = new ArrayList<>();
+            for (PageSkipPredicate p : this.predicates) {
+                predicates.add(p.columnName + p.operator.toSymbol() + p.value);
+            }
+            str += "\n\tskipping pages by: " + String.join(", ", predicates);
+        }
+        return str;
     }
 
     @Override
     public TableStats estimateStats() {
-        return this.transaction.getStats(this.tableName);
+        TableStats stats = this.transaction.getStats(this.tableName);
+        if (this.columns != null) {
+            return stats.copyWithProjection(this.columns);
+        }
+        return stats;
     }
 
     @Override
     public int estimateIOCost() {
+        if (!this.predicates.isEmpty()) {
+            return this.transaction.getNumDataPages(this.tableName, pageFilter());
+        }
         return this.transaction.getNumDataPages(this.tableName);
     }
 
+    private static class PageSkipPredicate {
+        private String columnName;
+        private int column;
+        private PredicateOperator operator;
+        private DataBox value;
+
+        private PageSkipPredicate(String columnName, int column, PredicateOperator operator, DataBox value) {
+            this.columnName = columnName;
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
 }
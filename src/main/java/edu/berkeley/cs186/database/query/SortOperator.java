@@ -3,6 +3,8 @@ package edu.berkeley.cs186.database.query;
 import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.Pair;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.memory.AccessPattern;
+import edu.berkeley.cs186.database.memory.BufferMetrics;
 import edu.berkeley.cs186.database.query.disk.Run;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.Schema;
@@ -68,8 +70,16 @@ public class SortOperator extends QueryOperator {
 
     @Override
     public BacktrackingIterator<Record> backtrackingIterator() {
-        if (this.sortedRecords == null) this.sortedRecords = sort();
-        return sortedRecords.iterator();
+        if (this.sortedRecords == null) {
+            BufferMetrics previous = BufferMetrics.attributeTo(getBufferMetrics());
+            try {
+                this.sortedRecords = sort();
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
+        }
+        // sort merge join backtracks over the sorted records
+        return metered(sortedRecords.iterator(AccessPattern.RANDOM));
     }
 
     @Override
@@ -2,6 +2,7 @@ package edu.berkeley.cs186.database.query.disk;
 
 import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.query.SequentialScanOperator;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.Schema;
@@ -40,14 +41,15 @@ public class Partition implements Iterable<Record> {
      * @param records the records to add
      */
     public void addAll(List<Record> records) {
-        for (Record record : records) this.add(record);
+        this.transaction.addRecords(this.tempTableName, records.iterator());
     }
 
     /**
-     * @return an iterator over the records in this partition
+     * @return an iterator over the records in this partition, which are
+     * expected to be read once
      */
     public BacktrackingIterator<Record> iterator() {
-        return this.transaction.getRecordIterator(this.tempTableName);
+        return this.transaction.getRecordIterator(this.tempTableName, AccessPattern.SEQUENTIAL);
     }
 
     /**
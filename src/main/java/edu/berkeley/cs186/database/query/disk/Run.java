@@ -3,6 +3,7 @@ package edu.berkeley.cs186.database.query.disk;
 import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
 import edu.berkeley.cs186.database.common.iterator.EmptyBacktrackingIterator;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.Schema;
 
@@ -42,15 +43,27 @@ public class Run implements Iterable<Record> {
      * @param records the records to add
      */
     public void addAll(List<Record> records) {
-        for (Record record: records) this.add(record);
+        if (this.tempTableName == null) {
+            this.tempTableName = transaction.createTempTable(schema);
+        }
+        this.transaction.addRecords(this.tempTableName, records.iterator());
     }
 
     /**
-     * @return an iterator over the records in this run
+     * @return an iterator over the records in this run, which are expected to
+     * be read once
      */
     public BacktrackingIterator<Record> iterator() {
+        return iterator(AccessPattern.SEQUENTIAL);
+    }
+
+    /**
+     * @param accessPattern how the run's pages will be accessed
+     * @return an iterator over the records in this run
+     */
+    public BacktrackingIterator<Record> iterator(AccessPattern accessPattern) {
         if (this.tempTableName == null) return new EmptyBacktrackingIterator<>();
-        return this.transaction.getRecordIterator(this.tempTableName);
+        return this.transaction.getRecordIterator(this.tempTableName, accessPattern);
     }
 
     /**
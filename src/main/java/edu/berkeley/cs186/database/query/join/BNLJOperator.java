@@ -2,8 +2,10 @@ package edu.berkeley.cs186.database.query.join;
 
 import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.query.JoinOperator;
 import edu.berkeley.cs186.database.query.QueryOperator;
+import edu.berkeley.cs186.database.query.SequentialScanOperator;
 import edu.berkeley.cs186.database.table.Record;
 
 import java.util.Iterator;
@@ -25,12 +27,16 @@ public class BNLJOperator extends JoinOperator {
                 leftColumnName, rightColumnName, transaction, JoinType.BNLJ
         );
         this.numBuffers = transaction.getWorkMemSize();
+        if (getRightSource() instanceof SequentialScanOperator) {
+            // the right relation is scanned once for each block of the left
+            ((SequentialScanOperator) getRightSource()).setAccessPattern(AccessPattern.LOOP);
+        }
         this.stats = this.estimateStats();
     }
 
     @Override
     public Iterator<Record> iterator() {
-        return new BNLJIterator();
+        return metered(new BNLJIterator());
     }
 
     @Override
@@ -4,6 +4,7 @@ import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.HashFunc;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
 import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.memory.BufferMetrics;
 import edu.berkeley.cs186.database.query.JoinOperator;
 import edu.berkeley.cs186.database.query.QueryOperator;
 import edu.berkeley.cs186.database.query.disk.Partition;
@@ -50,10 +51,15 @@ public class SHJOperator extends JoinOperator {
         if (joinedRecords == null) {
             // Accumulate all of our joined records in this run and return an
             // iterator over it once the algorithm completes
-            this.joinedRecords = new Run(getTransaction(), getSchema());
-            this.run(getLeftSource(), getRightSource(), 1);
+            BufferMetrics previous = BufferMetrics.attributeTo(getBufferMetrics());
+            try {
+                this.joinedRecords = new Run(getTransaction(), getSchema());
+                this.run(getLeftSource(), getRightSource(), 1);
+            } finally {
+                BufferMetrics.attributeTo(previous);
+            }
         };
-        return joinedRecords.iterator();
+        return metered(joinedRecords.iterator());
     }
 
     @Override
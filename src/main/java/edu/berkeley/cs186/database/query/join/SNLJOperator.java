@@ -2,8 +2,10 @@ package edu.berkeley.cs186.database.query.join;
 
 import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.query.JoinOperator;
 import edu.berkeley.cs186.database.query.QueryOperator;
+import edu.berkeley.cs186.database.query.SequentialScanOperator;
 import edu.berkeley.cs186.database.table.Record;
 
 import java.util.Iterator;
@@ -21,12 +23,17 @@ public class SNLJOperator extends JoinOperator {
                         TransactionContext transaction) {
         super(leftSource, materialize(rightSource, transaction),
               leftColumnName, rightColumnName, transaction, JoinType.SNLJ);
+        if (getRightSource() instanceof SequentialScanOperator) {
+            // the right relation (a table, or the temporary table it was materialized
+            // into) is scanned in full once for each record of the left
+            ((SequentialScanOperator) getRightSource()).setAccessPattern(AccessPattern.LOOP);
+        }
         this.stats = this.estimateStats();
     }
 
     @Override
     public Iterator<Record> iterator() {
-        return new SNLJIterator();
+        return metered(new SNLJIterator());
     }
 
     @Override
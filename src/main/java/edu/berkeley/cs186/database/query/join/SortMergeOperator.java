@@ -59,7 +59,7 @@ public class SortMergeOperator extends JoinOperator {
 
     @Override
     public Iterator<Record> iterator() {
-        return new SortMergeIterator();
+        return metered(new SortMergeIterator());
     }
 
     @Override
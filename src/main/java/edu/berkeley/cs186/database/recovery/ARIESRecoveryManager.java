@@ -414,6 +414,9 @@ public class ARIESRecoveryManager implements RecoveryManager {
         logManager.appendToLog(endRecord);
         // Ensure checkpoint is fully flushed before updating the master record
         flushToLSN(endRecord.getLSN());
+        // Pages removed from the DPT before it was copied must be on disk before
+        // the checkpoint is used, in case their writes are being batched
+        diskSpaceManager.sync();
 
         // Update master record
         MasterLogRecord masterRecord = new MasterLogRecord(beginLSN);
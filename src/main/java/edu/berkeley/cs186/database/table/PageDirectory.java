@@ -11,11 +11,20 @@ import edu.berkeley.cs186.database.concurrency.LockType;
 import edu.berkeley.cs186.database.concurrency.LockUtil;
 import edu.berkeley.cs186.database.io.DiskSpaceManager;
 import edu.berkeley.cs186.database.io.PageException;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.memory.BufferManager;
 import edu.berkeley.cs186.database.memory.Page;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Set;
+import java.util.function.LongPredicate;
 
 /**
  * An implementation of a heap file, using a page directory. Assumes data pages are packed (but record
@@ -38,6 +47,13 @@ import java.util.Random;
  *
  * The page directory id is a randomly generated 32-bit integer used to help detect bugs (where we attempt
  * to write to a page that is not managed by the page directory).
+ *
+ * To find a data page with enough free space without walking the header pages, the free space of
+ * the data pages is also kept in memory, in a FreeSpaceMap that is built from the header pages the
+ * first time it is needed.
+ *
+ * A page directory may be shared by all the transactions using a table, so the methods that find,
+ * add or update data pages (and with them the free space map) are synchronized.
  */
 public class PageDirectory implements BacktrackingIterable<Page> {
     // size of the header in header pages
@@ -73,6 +89,9 @@ public class PageDirectory implements BacktrackingIterable<Page> {
     // page directory id
     private int pageDirectoryId;
 
+    // free space of the data pages, or null if not built yet
+    private FreeSpaceMap freeSpaceMap;
+
     /**
      * Creates a new heap file, or loads existing file if one already
      * exists at partNum.
@@ -104,7 +123,7 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         return new DataPage(pageDirectoryId, this.bufferManager.fetchPage(lockContext, pageNum));
     }
 
-    public Page getPageWithSpace(short requiredSpace) {
+    public synchronized Page getPageWithSpace(short requiredSpace) {
         if (requiredSpace <= 0) {
             throw new IllegalArgumentException("cannot request nonpositive amount of space");
         }
@@ -112,7 +131,14 @@ public class PageDirectory implements BacktrackingIterable<Page> {
             throw new IllegalArgumentException("requesting page with more space than the size of the page");
         }
 
-        Page page = this.firstHeader.loadPageWithSpace(requiredSpace);
+        Page page = null;
+        while (page == null) {
+            page = getFreeSpaceMap().loadPageWithSpace(requiredSpace);
+            if (page == null) {
+                // the map is out of date: rebuild it
+                this.freeSpaceMap = null;
+            }
+        }
         LockContext pageContext = lockContext.childContext(page.getPageNum());
         // TODO(proj4_part2): Update the following line
         LockUtil.ensureSufficientLockHeld(pageContext, LockType.NL);
@@ -120,8 +146,50 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         return new DataPage(pageDirectoryId, page);
     }
 
-    public void updateFreeSpace(Page page, short newFreeSpace) {
-        if (newFreeSpace <= 0 || newFreeSpace > EFFECTIVE_PAGE_SIZE - emptyPageMetadataSize) {
+    /**
+     * Allocates a new data page, which is not part of the page directory (it is not
+     * returned by iterators or getPageWithSpace) until it is added with addDataPages.
+     * The page is returned pinned.
+     */
+    public Page newDataPage() {
+        Page page = bufferManager.fetchNewPage(lockContext, partNum);
+        LockContext pageContext = lockContext.childContext(page.getPageNum());
+        // same lock as getPageWithSpace
+        LockUtil.ensureSufficientLockHeld(pageContext, LockType.NL);
+
+        page.getBuffer().putInt(pageDirectoryId);
+        return new DataPage(pageDirectoryId, page);
+    }
+
+    /**
+     * Adds data pages allocated with newDataPage to the page directory, in the first
+     * unused entries of the header pages (adding header pages as needed). Each header
+     * page is updated once for all of the pages it gets.
+     * @param pageNums page numbers of the data pages
+     * @param freeSpace amount of free space of each data page
+     */
+    public synchronized void addDataPages(long[] pageNums, short[] freeSpace) {
+        for (short space : freeSpace) {
+            if (space < 0 || space >= EFFECTIVE_PAGE_SIZE - emptyPageMetadataSize) {
+                throw new IllegalArgumentException("bad size for data page free space");
+            }
+        }
+        int numAdded = 0;
+        HeaderPage headerPage = firstHeader;
+        while (true) {
+            numAdded = headerPage.addDataPages(pageNums, freeSpace, numAdded);
+            if (numAdded == pageNums.length) {
+                return;
+            }
+            if (headerPage.nextPage == null) {
+                headerPage.addNewHeaderPage();
+            }
+            headerPage = headerPage.nextPage;
+        }
+    }
+
+    public synchronized void updateFreeSpace(Page page, short newFreeSpace) {
+        if (newFreeSpace < 0 || newFreeSpace > EFFECTIVE_PAGE_SIZE - emptyPageMetadataSize) {
             throw new IllegalArgumentException("bad size for data page free space");
         }
 
@@ -146,10 +214,54 @@ public class PageDirectory implements BacktrackingIterable<Page> {
 
     @Override
     public BacktrackingIterator<Page> iterator() {
-        return new ConcatBacktrackingIterator<>(new HeaderPageIterator());
+        return new ConcatBacktrackingIterator<>(new HeaderPageIterator(null, null));
+    }
+
+    /**
+     * Returns an iterator over the data pages, which are fetched with the given access
+     * pattern. With AccessPattern.SEQUENTIAL, each data page is demoted in the buffer
+     * manager once the iterator moves on to the next one.
+     */
+    public BacktrackingIterator<Page> iterator(AccessPattern accessPattern) {
+        return new ConcatBacktrackingIterator<>(new HeaderPageIterator(accessPattern, null));
+    }
+
+    /**
+     * Returns an iterator over the data pages whose page numbers are accepted by
+     * `pageFilter`, fetched with the given access pattern. The other data pages are
+     * skipped using their entries in the header pages, without being fetched.
+     */
+    public BacktrackingIterator<Page> iterator(AccessPattern accessPattern, LongPredicate pageFilter) {
+        return new ConcatBacktrackingIterator<>(new HeaderPageIterator(accessPattern, pageFilter));
+    }
+
+    // gets the free space map, building it if needed
+    private FreeSpaceMap getFreeSpaceMap() {
+        if (this.freeSpaceMap == null) {
+            this.freeSpaceMap = new FreeSpaceMap();
+        }
+        return this.freeSpaceMap;
+    }
+
+    /**
+     * Writes the header pages and the data pages of the heap file to disk.
+     */
+    public synchronized void flush() {
+        for (HeaderPage headerPage = firstHeader; headerPage != null; headerPage = headerPage.nextPage) {
+            headerPage.page.flush();
+        }
+        BacktrackingIterator<Page> iter = iterator();
+        while (iter.hasNext()) {
+            Page page = iter.next();
+            try {
+                page.flush();
+            } finally {
+                page.unpin();
+            }
+        }
     }
 
-    public int getNumDataPages() {
+    public synchronized int getNumDataPages() {
         int numDataPages = 0;
         HeaderPage headerPage = firstHeader;
         while (headerPage != null) {
@@ -159,6 +271,26 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         return numDataPages;
     }
 
+    /**
+     * Returns the number of data pages whose page numbers are accepted by `pageFilter`
+     * (the number of data pages iterator(accessPattern, pageFilter) would return).
+     */
+    public int getNumDataPages(LongPredicate pageFilter) {
+        int numDataPages = 0;
+        HeaderPage headerPage = firstHeader;
+        while (headerPage != null) {
+            Buffer b = ByteBuffer.wrap(headerPage.readEntries());
+            for (int i = 0; i < HEADER_ENTRY_COUNT; ++i) {
+                DataPageEntry dpe = DataPageEntry.fromBytes(b);
+                if (dpe.isValid() && pageFilter.test(dpe.pageNum)) {
+                    ++numDataPages;
+                }
+            }
+            headerPage = headerPage.nextPage;
+        }
+        return numDataPages;
+    }
+
     public int getPartNum() {
         return partNum;
     }
@@ -231,11 +363,135 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         }
     }
 
+    /**
+     * In-memory map of the free space of the data pages, and of the unused entries of
+     * the header pages. Data pages are kept in buckets by their amount of free space,
+     * with a bitmap of the amounts that have a nonempty bucket, so that the page with
+     * the least free space that is enough for a request (the first page of the bucket
+     * of the next set bit of the bitmap) is found in time bounded by the page size,
+     * however many pages there are.
+     *
+     * The map is kept up to date as this page directory writes header pages. Other page
+     * directory objects over the same heap file may write them as well, so the entry of
+     * a data page is checked against the header page (which is written anyway) before
+     * the page is used, and the map is rebuilt when it is found to be out of date.
+     */
+    private class FreeSpaceMap {
+        // location of each data page
+        private final Map<Long, DataPageLocation> locations = new HashMap<>();
+        // data pages by amount of free space
+        private final Map<Short, Set<Long>> buckets = new HashMap<>();
+        // amounts of free space with a nonempty bucket
+        private final BitSet nonEmptyBuckets = new BitSet();
+        // used entries of each header page, by header index
+        private final List<BitSet> usedEntries = new ArrayList<>();
+
+        private FreeSpaceMap() {
+            for (HeaderPage headerPage = firstHeader; headerPage != null; headerPage = headerPage.nextPage) {
+                headerPage.addToFreeSpaceMap(this);
+            }
+        }
+
+        private void add(long pageNum, HeaderPage headerPage, short index, short freeSpace) {
+            locations.put(pageNum, new DataPageLocation(headerPage, index, freeSpace));
+            getUsedEntries(headerPage).set(index);
+            addToBucket(pageNum, freeSpace);
+        }
+
+        private void remove(long pageNum) {
+            DataPageLocation location = locations.remove(pageNum);
+            if (location != null) {
+                getUsedEntries(location.headerPage).clear(location.index);
+                removeFromBucket(pageNum, location.freeSpace);
+            }
+        }
+
+        private void update(long pageNum, short freeSpace) {
+            DataPageLocation location = locations.get(pageNum);
+            if (location != null) {
+                removeFromBucket(pageNum, location.freeSpace);
+                location.freeSpace = freeSpace;
+                addToBucket(pageNum, freeSpace);
+            }
+        }
+
+        private BitSet getUsedEntries(HeaderPage headerPage) {
+            while (usedEntries.size() <= headerPage.headerOffset) {
+                usedEntries.add(new BitSet(HEADER_ENTRY_COUNT));
+            }
+            return usedEntries.get(headerPage.headerOffset);
+        }
+
+        private void addToBucket(long pageNum, short freeSpace) {
+            buckets.computeIfAbsent(freeSpace, k -> new LinkedHashSet<>()).add(pageNum);
+            nonEmptyBuckets.set(freeSpace);
+        }
+
+        private void removeFromBucket(long pageNum, short freeSpace) {
+            Set<Long> bucket = buckets.get(freeSpace);
+            bucket.remove(pageNum);
+            if (bucket.isEmpty()) {
+                buckets.remove(freeSpace);
+                nonEmptyBuckets.clear(freeSpace);
+            }
+        }
+
+        /**
+         * Takes requiredSpace bytes of the free space of a data page, allocating a new
+         * data page if no page has enough free space.
+         * @return the data page, or null if the map is out of date
+         */
+        private Page loadPageWithSpace(short requiredSpace) {
+            int freeSpace = nonEmptyBuckets.nextSetBit(requiredSpace);
+            if (freeSpace >= 0) {
+                long pageNum = buckets.get((short) freeSpace).iterator().next();
+                DataPageLocation location = locations.get(pageNum);
+                if (!location.headerPage.takeSpace(location.index, pageNum, location.freeSpace, requiredSpace)) {
+                    return null;
+                }
+                update(pageNum, (short) (location.freeSpace - requiredSpace));
+                return bufferManager.fetchPage(lockContext, pageNum);
+            }
+
+            // allocate a new data page, in the first unused entry of the header pages
+            HeaderPage headerPage = firstHeader;
+            while (getUsedEntries(headerPage).cardinality() == HEADER_ENTRY_COUNT) {
+                if (headerPage.nextPage == null) {
+                    headerPage.addNewHeaderPage();
+                }
+                headerPage = headerPage.nextPage;
+            }
+            short index = (short) getUsedEntries(headerPage).nextClearBit(0);
+            short newFreeSpace = (short) (EFFECTIVE_PAGE_SIZE - emptyPageMetadataSize - requiredSpace);
+            Page page = headerPage.addDataPage(index, newFreeSpace);
+            if (page != null) {
+                add(page.getPageNum(), headerPage, index, newFreeSpace);
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Location of a data page's entry in the header pages, and its free space.
+     */
+    private class DataPageLocation {
+        private final HeaderPage headerPage;
+        private final short index;
+        private short freeSpace;
+
+        private DataPageLocation(HeaderPage headerPage, short index, short freeSpace) {
+            this.headerPage = headerPage;
+            this.index = index;
+            this.freeSpace = freeSpace;
+        }
+    }
+
     /**
      * Represents a single header page.
      */
     private class HeaderPage implements BacktrackingIterable<Page> {
-        private HeaderPage nextPage;
+        // read by iterators without holding the monitor of the page directory
+        private volatile HeaderPage nextPage;
         private Page page;
         private short numDataPages;
         private int headerOffset;
@@ -243,13 +499,14 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         private HeaderPage(long pageNum, int headerOffset, boolean firstHeader) {
             this.page = bufferManager.fetchPage(lockContext, pageNum);
             // We do not lock header pages for the entirety of the transaction. Instead, we simply
-            // use the buffer frame lock (from pinning) to ensure that one transaction writes at a time.
+            // latch the page (see Page#latchExclusive) to ensure that one transaction writes at a time.
             // This does mean that we do not have complete isolation in the header pages, but this does not
             // really matter, as the only observable effect is that a transaction may be told to use a different
             // data page, which is perfectly fine.
             this.page.disableLocking();
             this.numDataPages = 0;
             long nextPageNum;
+            this.page.latchExclusive();
             try {
                 Buffer pageBuffer = this.page.getBuffer();
                 if (pageBuffer.get() != (byte) 1) {
@@ -275,14 +532,18 @@ public class PageDirectory implements BacktrackingIterable<Page> {
                         throw new PageException("header page page directory id does not match");
                     }
                     nextPageNum = pageBuffer.getLong();
+                    byte[] entries = new byte[HEADER_ENTRY_COUNT * DataPageEntry.SIZE];
+                    Buffer b = ByteBuffer.wrap(entries);
+                    pageBuffer.get(entries);
                     for (int i = 0; i < HEADER_ENTRY_COUNT; ++i) {
-                        DataPageEntry dpe = DataPageEntry.fromBytes(pageBuffer);
+                        DataPageEntry dpe = DataPageEntry.fromBytes(b);
                         if (dpe.isValid()) {
                             ++this.numDataPages;
                         }
                     }
                 }
             } finally {
+                this.page.unlatchExclusive();
                 this.page.unpin();
             }
             this.headerOffset = headerOffset;
@@ -301,71 +562,135 @@ public class PageDirectory implements BacktrackingIterable<Page> {
             }
             Page page = bufferManager.fetchNewPage(lockContext, partNum);
             this.page.pin();
+            this.page.latchExclusive();
             try {
                 this.nextPage = new HeaderPage(page.getPageNum(), headerOffset + 1, false);
-                this.page.getBuffer().position(1).putLong(page.getPageNum());
+                this.page.getBuffer().position(5).putLong(page.getPageNum());
             } finally {
+                this.page.unlatchExclusive();
                 this.page.unpin();
                 page.unpin();
             }
         }
 
-        // gets and loads a page with the required free space
-        private Page loadPageWithSpace(short requiredSpace) {
+        // reads the data page entries of this header page
+        private byte[] readEntries() {
+            byte[] entries = new byte[HEADER_ENTRY_COUNT * DataPageEntry.SIZE];
             this.page.pin();
+            this.page.latchShared();
             try {
-                Buffer b = this.page.getBuffer();
-                b.position(HEADER_HEADER_SIZE);
+                this.page.getBuffer().position(HEADER_HEADER_SIZE).get(entries);
+            } finally {
+                this.page.unlatchShared();
+                this.page.unpin();
+            }
+            return entries;
+        }
 
-                // if we have any data page managed by this header page with enough space, return it
-                short unusedSlot = -1;
-                for (short i = 0; i < HEADER_ENTRY_COUNT; ++i) {
-                    DataPageEntry dpe = DataPageEntry.fromBytes(b);
-                    if (!dpe.isValid()) {
-                        if (unusedSlot == -1) {
-                            unusedSlot = i;
-                        }
-                        continue;
-                    }
-                    if (dpe.freeSpace >= requiredSpace) {
-                        dpe.freeSpace -= requiredSpace;
-                        b.position(b.position() - DataPageEntry.SIZE);
-                        dpe.toBytes(b);
+        // adds the data pages managed by this header page to a free space map
+        private void addToFreeSpaceMap(FreeSpaceMap map) {
+            map.getUsedEntries(this);
+            Buffer b = ByteBuffer.wrap(readEntries());
+            for (short i = 0; i < HEADER_ENTRY_COUNT; ++i) {
+                DataPageEntry dpe = DataPageEntry.fromBytes(b);
+                if (dpe.isValid()) {
+                    map.add(dpe.pageNum, this, i, dpe.freeSpace);
+                }
+            }
+        }
 
-                        return bufferManager.fetchPage(lockContext, dpe.pageNum);
-                    }
+        // takes requiredSpace bytes of the free space of the data page in entry index,
+        // if the entry is the data page with the expected free space; returns whether it is
+        private boolean takeSpace(short index, long pageNum, short freeSpace, short requiredSpace) {
+            this.page.pin();
+            this.page.latchExclusive();
+            try {
+                Buffer b = this.page.getBuffer();
+                b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
+                DataPageEntry dpe = DataPageEntry.fromBytes(b);
+                if (dpe.pageNum != pageNum || dpe.freeSpace != freeSpace) {
+                    return false;
                 }
+                dpe.freeSpace -= requiredSpace;
+                b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
+                dpe.toBytes(b);
+                return true;
+            } finally {
+                this.page.unlatchExclusive();
+                this.page.unpin();
+            }
+        }
 
-                // if we have any unused slot in this header page, allocate a new data page
-                if (unusedSlot != -1) {
-                    Page page = bufferManager.fetchNewPage(lockContext, partNum);
-                    DataPageEntry dpe = new DataPageEntry(page.getPageNum(),
-                                                          (short) (EFFECTIVE_PAGE_SIZE - emptyPageMetadataSize - requiredSpace));
+        // allocates a new data page in entry index, if the entry is unused; returns the
+        // data page, or null if the entry is used
+        private Page addDataPage(short index, short freeSpace) {
+            this.page.pin();
+            this.page.latchExclusive();
+            try {
+                Buffer b = this.page.getBuffer();
+                b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
+                if (DataPageEntry.fromBytes(b).isValid()) {
+                    return null;
+                }
+                Page page = bufferManager.fetchNewPage(lockContext, partNum);
+                b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
+                new DataPageEntry(page.getPageNum(), freeSpace).toBytes(b);
 
-                    b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * unusedSlot);
-                    dpe.toBytes(b);
+                page.getBuffer().putInt(pageDirectoryId).putInt(headerOffset).putShort(index);
 
-                    page.getBuffer().putInt(pageDirectoryId).putInt(headerOffset).putShort(unusedSlot);
+                ++this.numDataPages;
+                return page;
+            } finally {
+                this.page.unlatchExclusive();
+                this.page.unpin();
+            }
+        }
 
+        // adds the data pages pageNums[start:] to the unused entries of this header page,
+        // in order, until it is full; returns the index of the first data page not added
+        private int addDataPages(long[] pageNums, short[] freeSpace, int start) {
+            if (this.numDataPages == HEADER_ENTRY_COUNT || start == pageNums.length) {
+                return start;
+            }
+            int next = start;
+            this.page.pin();
+            this.page.latchExclusive();
+            try {
+                byte[] entries = new byte[HEADER_ENTRY_COUNT * DataPageEntry.SIZE];
+                this.page.getBuffer().position(HEADER_HEADER_SIZE).get(entries);
+                Buffer b = ByteBuffer.wrap(entries);
+                for (short i = 0; i < HEADER_ENTRY_COUNT && next < pageNums.length; ++i) {
+                    b.position(DataPageEntry.SIZE * i);
+                    if (DataPageEntry.fromBytes(b).isValid()) {
+                        continue;
+                    }
+                    b.position(DataPageEntry.SIZE * i);
+                    new DataPageEntry(pageNums[next], freeSpace[next]).toBytes(b);
+
+                    Page dataPage = bufferManager.fetchPage(lockContext, pageNums[next]);
+                    try {
+                        dataPage.getBuffer().position(4).putInt(headerOffset).putShort(i);
+                    } finally {
+                        dataPage.unpin();
+                    }
+                    if (freeSpaceMap != null) {
+                        freeSpaceMap.add(pageNums[next], this, i, freeSpace[next]);
+                    }
                     ++this.numDataPages;
-                    return page;
-                }
-
-                // if we have no next header page, make one
-                if (this.nextPage == null) {
-                    this.addNewHeaderPage();
+                    ++next;
                 }
-
-                // no space on this header page, try next one
-                return this.nextPage.loadPageWithSpace(requiredSpace);
+                this.page.getBuffer().position(HEADER_HEADER_SIZE).put(entries);
             } finally {
+                this.page.unlatchExclusive();
                 this.page.unpin();
             }
+            return next;
         }
 
         // updates free space
         private void updateSpace(Page dataPage, short index, short newFreeSpace) {
             this.page.pin();
+            this.page.latchExclusive();
             try {
                 if (newFreeSpace < EFFECTIVE_PAGE_SIZE - emptyPageMetadataSize) {
                     // write new free space to disk
@@ -375,43 +700,57 @@ public class PageDirectory implements BacktrackingIterable<Page> {
                     dpe.freeSpace = newFreeSpace;
                     b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
                     dpe.toBytes(b);
+                    if (freeSpaceMap != null) {
+                        freeSpaceMap.update(dataPage.getPageNum(), newFreeSpace);
+                    }
                 } else {
                     // the entire page is free; free it
                     Buffer b = this.page.getBuffer();
                     b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
                     (new DataPageEntry()).toBytes(b);
                     bufferManager.freePage(dataPage);
+                    --this.numDataPages;
+                    if (freeSpaceMap != null) {
+                        freeSpaceMap.remove(dataPage.getPageNum());
+                    }
                 }
             } finally {
+                this.page.unlatchExclusive();
                 this.page.unpin();
             }
         }
 
         @Override
         public BacktrackingIterator<Page> iterator() {
-            return new HeaderPageIterator();
+            return new HeaderPageIterator(null);
         }
 
         // iterator over the data pages managed by this header page
         private class HeaderPageIterator extends IndexBacktrackingIterator<Page> {
-            private HeaderPageIterator() {
+            // iterator over the whole page directory that this iterator is part of, if any
+            private PageDirectory.HeaderPageIterator scan;
+
+            private HeaderPageIterator(PageDirectory.HeaderPageIterator scan) {
                 super(HEADER_ENTRY_COUNT);
+                this.scan = scan;
             }
 
             @Override
             protected int getNextNonEmpty(int currentIndex) {
                 HeaderPage.this.page.pin();
+                HeaderPage.this.page.latchShared();
                 try {
                     Buffer b = HeaderPage.this.page.getBuffer();
                     b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * ++currentIndex);
                     for (int i = currentIndex; i < HEADER_ENTRY_COUNT; ++i) {
                         DataPageEntry dpe = DataPageEntry.fromBytes(b);
-                        if (dpe.isValid()) {
+                        if (dpe.isValid() && (scan == null || scan.accepts(dpe.pageNum))) {
                             return i;
                         }
                     }
                     return HEADER_ENTRY_COUNT;
                 } finally {
+                    HeaderPage.this.page.unlatchShared();
                     HeaderPage.this.page.unpin();
                 }
             }
@@ -419,12 +758,16 @@ public class PageDirectory implements BacktrackingIterable<Page> {
             @Override
             protected Page getValue(int index) {
                 HeaderPage.this.page.pin();
+                HeaderPage.this.page.latchShared();
                 try {
                     Buffer b = HeaderPage.this.page.getBuffer();
                     b.position(HEADER_HEADER_SIZE + DataPageEntry.SIZE * index);
                     DataPageEntry dpe = DataPageEntry.fromBytes(b);
-                    return new DataPage(pageDirectoryId, bufferManager.fetchPage(lockContext, dpe.pageNum));
+                    Page page = scan == null ? bufferManager.fetchPage(lockContext, dpe.pageNum)
+                                : scan.fetchDataPage(dpe.pageNum);
+                    return new DataPage(pageDirectoryId, page);
                 } finally {
+                    HeaderPage.this.page.unlatchShared();
                     HeaderPage.this.page.unpin();
                 }
             }
@@ -438,11 +781,38 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         private HeaderPage nextPage;
         private HeaderPage prevPage;
         private HeaderPage markedPage;
-
-        private HeaderPageIterator() {
+        // access pattern to fetch data pages with, or null for no hint
+        private AccessPattern accessPattern;
+        // filter on the page numbers of the data pages to return, or null for all
+        private LongPredicate pageFilter;
+        // last data page fetched
+        private long prevDataPageNum;
+
+        private HeaderPageIterator(AccessPattern accessPattern, LongPredicate pageFilter) {
             this.nextPage = firstHeader;
             this.prevPage = null;
             this.markedPage = null;
+            this.accessPattern = accessPattern;
+            this.pageFilter = pageFilter;
+            this.prevDataPageNum = DiskSpaceManager.INVALID_PAGE_NUM;
+        }
+
+        // whether the data page pageNum is returned by this iterator
+        private boolean accepts(long pageNum) {
+            return pageFilter == null || pageFilter.test(pageNum);
+        }
+
+        // fetches a data page, demoting the previous one if scanning sequentially
+        private Page fetchDataPage(long pageNum) {
+            if (accessPattern == null) {
+                return bufferManager.fetchPage(lockContext, pageNum);
+            }
+            if (accessPattern == AccessPattern.SEQUENTIAL && prevDataPageNum != DiskSpaceManager.INVALID_PAGE_NUM
+                    && prevDataPageNum != pageNum) {
+                bufferManager.demotePage(prevDataPageNum);
+            }
+            prevDataPageNum = pageNum;
+            return bufferManager.fetchPage(lockContext, pageNum, accessPattern);
         }
 
         @Override
@@ -451,14 +821,14 @@ public class PageDirectory implements BacktrackingIterable<Page> {
         }
 
         @Override
-        public HeaderPage next() {
+        public BacktrackingIterable<Page> next() {
             if (!this.hasNext()) {
                 throw new NoSuchElementException();
             }
             HeaderPage next = this.nextPage;
             this.prevPage = next;
             this.nextPage = next.nextPage;
-            return next;
+            return () -> next.new HeaderPageIterator(this);
         }
 
         @Override
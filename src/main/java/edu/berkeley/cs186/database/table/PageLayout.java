@@ -0,0 +1,28 @@
+package edu.berkeley.cs186.database.table;
+
+/**
+ * How a table lays out records in its data pages (see Table for details):
+ * - BITMAP: fixed-width records (strings padded to their declared length) in
+ *   fixed slots, with a bitmap of the valid slots
+ * - SLOTTED: variable-length records (strings take their actual length),
+ *   located through a slot array at the start of the page
+ * - PAX: fixed-width records, as in BITMAP, but stored column by column: each
+ *   page holds a minipage per column with the values of that column
+ *
+ * The ordinal of a layout is stored in the table's metadata, so new layouts must
+ * be added at the end.
+ */
+public enum PageLayout {
+    BITMAP,
+    SLOTTED,
+    PAX;
+    private static final PageLayout[] values = PageLayout.values();
+
+    public static PageLayout fromInt(int x) {
+        if (x < 0 || x >= values.length) {
+            String err = String.format("Unknown PageLayout ordinal %d.", x);
+            throw new IllegalArgumentException(err);
+        }
+        return values[x];
+    }
+}
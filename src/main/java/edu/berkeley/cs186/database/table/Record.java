@@ -2,10 +2,12 @@ package edu.berkeley.cs186.database.table;
 
 import edu.berkeley.cs186.database.common.Buffer;
 import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
 import edu.berkeley.cs186.database.databox.Type;
 import edu.berkeley.cs186.database.databox.TypeId;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,6 +51,54 @@ public class Record {
         return byteBuffer.array();
     }
 
+    /**
+     * Serializes this record into a byte array in variable-length form: strings are
+     * stored as their length (see lengthPrefixSize) followed by their bytes, without
+     * the padding to the declared length of their type, and all other values are
+     * stored as in toBytes.
+     */
+    public byte[] toVariableLengthBytes() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(getVariableLengthSizeInBytes());
+        for (DataBox value : values) {
+            if (value.getTypeId() == TypeId.STRING) {
+                byte[] bytes = value.getString().getBytes(StandardCharsets.US_ASCII);
+                if (lengthPrefixSize(value.type()) == 1) {
+                    byteBuffer.put((byte) bytes.length);
+                } else {
+                    byteBuffer.putShort((short) bytes.length);
+                }
+                byteBuffer.put(bytes);
+            } else {
+                byteBuffer.put(value.toBytes());
+            }
+        }
+        return byteBuffer.array();
+    }
+
+    /**
+     * @return the size of this record in bytes after being serialized in
+     * variable-length form
+     */
+    public int getVariableLengthSizeInBytes() {
+        int size = 0;
+        for (DataBox value : values) {
+            if (value.getTypeId() == TypeId.STRING) {
+                size += lengthPrefixSize(value.type()) + value.getString().length();
+            } else {
+                size += value.type().getSizeInBytes();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes of the length stored before a string of the given
+     * type in variable-length form: 1 for strings of up to 255 bytes, 2 otherwise
+     */
+    static int lengthPrefixSize(Type type) {
+        return type.getSizeInBytes() <= 0xFF ? 1 : 2;
+    }
+
     /**
      * Returns a new records consisting of this record's values with the other record's
      * values appended to the right of it. i.e. if record a contains [1,2,3] and record b
@@ -76,6 +126,29 @@ public class Record {
         return new Record(values);
     }
 
+    /**
+     * Takes a buffer holding a record serialized in variable-length form (see
+     * toVariableLengthBytes) and decodes it into a Record.
+     *
+     * @param buf the buffer to decode from
+     * @param schema the schema used for this record
+     * @return the decoded Record
+     */
+    public static Record fromVariableLengthBytes(Buffer buf, Schema schema) {
+        List<DataBox> values = new ArrayList<>();
+        for (Type t : schema.getFieldTypes()) {
+            if (t.getTypeId() == TypeId.STRING) {
+                int length = lengthPrefixSize(t) == 1 ? buf.get() & 0xFF : buf.getShort() & 0xFFFF;
+                byte[] bytes = new byte[length];
+                buf.get(bytes);
+                values.add(new StringDataBox(new String(bytes, StandardCharsets.US_ASCII), t.getSizeInBytes()));
+            } else {
+                values.add(DataBox.fromBytes(buf, t));
+            }
+        }
+        return new Record(values);
+    }
+
     /**
      * @return the number of values in this record
      */
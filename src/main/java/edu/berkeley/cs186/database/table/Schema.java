@@ -86,6 +86,34 @@ public class Schema {
         return sizeInBytes;
     }
 
+    /**
+     * @return the smallest size of a record of this schema in bytes after being
+     * serialized in variable-length form (see Record#toVariableLengthBytes),
+     * which is that of a record whose strings are all empty
+     */
+    public int getMinVariableLengthSizeInBytes() {
+        int size = 0;
+        for (Type t : fieldTypes) {
+            size += t.getTypeId() == TypeId.STRING ? Record.lengthPrefixSize(t) : t.getSizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * @return the largest size of a record of this schema in bytes after being
+     * serialized in variable-length form, which is that of a record whose strings
+     * all have their declared length
+     */
+    public int getMaxVariableLengthSizeInBytes() {
+        int size = sizeInBytes;
+        for (Type t : fieldTypes) {
+            if (t.getTypeId() == TypeId.STRING) {
+                size += Record.lengthPrefixSize(t);
+            }
+        }
+        return size;
+    }
+
     /**
      * @param fromSchema
      * @param specified
@@ -0,0 +1,211 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.common.Bits;
+import edu.berkeley.cs186.database.common.Buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Slotted data pages, which hold variable-length records (see PageLayout.SLOTTED).
+ * A slotted page begins with a 4-byte header:
+ * - 2-byte number of slots
+ * - 2-byte offset of the start of the record data, or 0 if no record was added yet
+ * followed by the slot array, with a 4-byte entry per slot: the 2-byte offset and
+ * 2-byte length of the record in the slot, or 0 and 0 if the slot is empty. Records
+ * are packed at the end of the page, growing down towards the slot array:
+ *
+ *   +--------+--------+--------+--------+------------+----------+----------+
+ *   | header | slot 0 | slot 1 | slot 2 | free space | record 2 | record 0 |
+ *   +--------+--------+--------+--------+------------+----------+----------+
+ *
+ * The entry number of a record (in its RecordId) is its slot number, so records keep
+ * their ids as other records are deleted, or as they are updated to a different
+ * length. Deleting a record empties its slot and leaves a hole in the record data;
+ * trailing empty slots are dropped from the slot array. Holes are reclaimed by
+ * compacting the record data when a record does not fit between the slot array and
+ * the record data.
+ *
+ * Only the bytes that change are written to the page, so that page writes (and the
+ * log records for them) stay small.
+ */
+final class SlottedPage {
+    static final int HEADER_SIZE = 4;
+    static final int SLOT_SIZE = 4;
+
+    private SlottedPage() {}
+
+    /**
+     * Adds a record in the first empty slot of a page, or a new slot at the end of
+     * the slot array. Assumes that the page has enough free space for the record and
+     * a new slot.
+     * @param buf buffer of the page
+     * @param pageSize size of the page
+     * @param record record, serialized in variable-length form
+     * @return slot number of the record
+     */
+    static int insert(Buffer buf, int pageSize, byte[] record) {
+        assert record.length > 0;
+        ByteBuffer slots = readSlots(buf);
+        int numSlots = slots.getShort(0);
+        int slot = 0;
+        while (slot < numSlots && slots.getShort(slotPosition(slot) + 2) != 0) {
+            ++slot;
+        }
+        numSlots = Math.max(numSlots, slot + 1);
+        int dataStart = dataStart(slots, pageSize);
+        if (dataStart - record.length < HEADER_SIZE + SLOT_SIZE * numSlots) {
+            dataStart = compact(buf, pageSize, slots);
+        }
+        int offset = dataStart - record.length;
+        buf.position(offset).put(record);
+        buf.putShort(slotPosition(slot), (short) offset).putShort(slotPosition(slot) + 2, (short) record.length);
+        buf.putShort(0, (short) numSlots).putShort(2, (short) offset);
+        return slot;
+    }
+
+    /**
+     * Replaces the record in a slot. The new record is written over the old one if it
+     * is no longer, and moved elsewhere in the page otherwise.
+     * @param buf buffer of the page
+     * @param pageSize size of the page
+     * @param slot slot number of the record
+     * @param record new record, serialized in variable-length form
+     * @return whether the new record fits in the page (if not, the page is unchanged)
+     */
+    static boolean update(Buffer buf, int pageSize, int slot, byte[] record) {
+        assert record.length > 0;
+        ByteBuffer slots = readSlots(buf);
+        int offset = slots.getShort(slotPosition(slot));
+        int length = slots.getShort(slotPosition(slot) + 2);
+        if (record.length <= length) {
+            buf.position(offset).put(record);
+            buf.putShort(slotPosition(slot) + 2, (short) record.length);
+            return true;
+        }
+        if (record.length - length > freeSpace(slots, pageSize)) {
+            return false;
+        }
+        // empty the slot first, so that compacting drops the old record
+        slots.putShort(slotPosition(slot), (short) 0).putShort(slotPosition(slot) + 2, (short) 0);
+        int dataStart = dataStart(slots, pageSize);
+        if (dataStart - record.length < HEADER_SIZE + SLOT_SIZE * slots.getShort(0)) {
+            dataStart = compact(buf, pageSize, slots);
+        }
+        offset = dataStart - record.length;
+        buf.position(offset).put(record);
+        buf.putShort(slotPosition(slot), (short) offset).putShort(slotPosition(slot) + 2, (short) record.length);
+        buf.putShort(2, (short) offset);
+        return true;
+    }
+
+    /**
+     * Deletes the record in a slot.
+     * @param buf buffer of the page
+     * @param slot slot number of the record
+     */
+    static void delete(Buffer buf, int slot) {
+        ByteBuffer slots = readSlots(buf);
+        int numSlots = slots.getShort(0);
+        buf.putShort(slotPosition(slot), (short) 0).putShort(slotPosition(slot) + 2, (short) 0);
+        if (slot == numSlots - 1) {
+            slots.putShort(slotPosition(slot) + 2, (short) 0);
+            while (numSlots > 0 && slots.getShort(slotPosition(numSlots - 1) + 2) == 0) {
+                --numSlots;
+            }
+            buf.putShort(0, (short) numSlots);
+            if (numSlots == 0) {
+                buf.putShort(2, (short) 0);
+            }
+        }
+    }
+
+    /**
+     * @return offset of the record in a slot, or -1 if there is no such record
+     */
+    static int getOffset(Buffer buf, int slot) {
+        if (slot >= buf.getShort(0) || buf.getShort(slotPosition(slot) + 2) == 0) {
+            return -1;
+        }
+        return buf.getShort(slotPosition(slot));
+    }
+
+    /**
+     * @return bytes of the page not taken by the header, slot array, or records
+     */
+    static int freeSpace(Buffer buf, int pageSize) {
+        return freeSpace(readSlots(buf), pageSize);
+    }
+
+    /**
+     * @return bitmap with bits set for the slots with a record, of maxSlots bits
+     */
+    static byte[] getBitMap(Buffer buf, int maxSlots) {
+        ByteBuffer slots = readSlots(buf);
+        byte[] bitmap = new byte[(maxSlots + 7) / 8];
+        for (int i = 0; i < slots.getShort(0); ++i) {
+            if (slots.getShort(slotPosition(i) + 2) != 0) {
+                Bits.setBit(bitmap, i, Bits.Bit.ONE);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return maximum number of slots of a page, when it holds records of minRecordSize bytes
+     */
+    static int maxSlots(int pageSize, int minRecordSize) {
+        return (pageSize - HEADER_SIZE) / (SLOT_SIZE + Math.max(minRecordSize, 1));
+    }
+
+    // Reads the header and slot array of a page.
+    private static ByteBuffer readSlots(Buffer buf) {
+        byte[] slots = new byte[HEADER_SIZE + SLOT_SIZE * buf.getShort(0)];
+        buf.position(0).get(slots);
+        return ByteBuffer.wrap(slots);
+    }
+
+    private static int freeSpace(ByteBuffer slots, int pageSize) {
+        int numSlots = slots.getShort(0);
+        int free = pageSize - HEADER_SIZE - SLOT_SIZE * numSlots;
+        for (int i = 0; i < numSlots; ++i) {
+            free -= slots.getShort(slotPosition(i) + 2);
+        }
+        return free;
+    }
+
+    private static int dataStart(ByteBuffer slots, int pageSize) {
+        int dataStart = slots.getShort(2);
+        return dataStart == 0 ? pageSize : dataStart;
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + SLOT_SIZE * slot;
+    }
+
+    /**
+     * Moves the records to the end of the page, in slot order, without holes between
+     * them. Writes the record data and slot array to the page, and updates slots.
+     * @return the new offset of the start of the record data
+     */
+    private static int compact(Buffer buf, int pageSize, ByteBuffer slots) {
+        int numSlots = slots.getShort(0);
+        int dataStart = dataStart(slots, pageSize);
+        byte[] data = new byte[pageSize - dataStart];
+        buf.position(dataStart).get(data);
+        byte[] packed = new byte[data.length];
+        int end = packed.length;
+        for (int i = 0; i < numSlots; ++i) {
+            int length = slots.getShort(slotPosition(i) + 2);
+            if (length != 0) {
+                end -= length;
+                System.arraycopy(data, slots.getShort(slotPosition(i)) - dataStart, packed, end, length);
+                slots.putShort(slotPosition(i), (short) (dataStart + end));
+            }
+        }
+        buf.position(dataStart + end).put(Arrays.copyOfRange(packed, end, packed.length));
+        slots.putShort(2, (short) (dataStart + end));
+        buf.position(0).put(slots.array());
+        return dataStart + end;
+    }
+}
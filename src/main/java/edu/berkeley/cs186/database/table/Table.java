@@ -3,6 +3,7 @@ package edu.berkeley.cs186.database.table;
 import edu.berkeley.cs186.database.DatabaseException;
 import edu.berkeley.cs186.database.common.Bits;
 import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.common.ByteBuffer;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterable;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
 import edu.berkeley.cs186.database.common.iterator.ConcatBacktrackingIterator;
@@ -10,13 +11,21 @@ import edu.berkeley.cs186.database.common.iterator.IndexBacktrackingIterator;
 import edu.berkeley.cs186.database.concurrency.LockContext;
 import edu.berkeley.cs186.database.concurrency.LockType;
 import edu.berkeley.cs186.database.concurrency.LockUtil;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.Type;
 import edu.berkeley.cs186.database.io.PageException;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.memory.Page;
 import edu.berkeley.cs186.database.table.stats.TableStats;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 
 /**
  * # Overview
@@ -89,6 +98,50 @@ import java.util.Map;
  * only supports locking at the page level, so in cases where tuple-level locks are
  * necessary even at the cost of an I/O per tuple, a full page record may be desirable),
  * and may be explicitly toggled on with the setFullPageRecords method.
+ *
+ * # Slotted Pages
+ * The layout above gives every record the declared length of its strings, so a
+ * string(117) column takes 117 bytes however short its values are. Tables created
+ * with PageLayout.SLOTTED instead store records in variable-length form (see
+ * Record#toVariableLengthBytes), in slotted pages: each data page begins with an
+ * array of slots, each holding the offset and length of a record, and the records
+ * are packed at the end of the page (see SlottedPage for details). The entry number
+ * of a record is its slot number, and a bitmap of the slots in use stands in for the
+ * bitmap of the layout above (see getBitMap). Records of slotted tables may change
+ * length when updated, as long as the updated record still fits in its page.
+ *
+ * # PAX Pages
+ * Tables created with PageLayout.PAX store the same fixed-width records, bitmap and
+ * number of records per page as the layout above, but group the values of a page by
+ * column: after the bitmap, each column has a minipage holding its value for every
+ * record of the page, in entry order. For a table t(x: int, y: float) with 3 records
+ * per page, a data page looks like:
+ *
+ *   +--------+------+------+------+------+------+------+
+ *   | bitmap | x0   | x1   | x2   | y0   | y1   | y2   |
+ *   +--------+------+------+------+------+------+------+
+ *             \__ minipage x ___/ \__ minipage y ___/
+ *
+ * Scans that only need some of the columns of a table (see iterator(AccessPattern,
+ * List)) read the values of those columns and skip the others, which with PAX pages
+ * are contiguous in memory rather than spread across every record of the page.
+ *
+ * # Zone Maps
+ * Each table keeps the minimum and maximum value of each column over the records
+ * of each data page in a ZoneMap. Scans given a filter on page numbers (see
+ * iterator(AccessPattern, List, LongPredicate)), e.g. one rejecting the pages whose
+ * range of l_shipdate values cannot satisfy l_shipdate >= 1994-01-01, skip the
+ * rejected pages without reading them, and record the ranges of the pages they read
+ * that are not in the zone map yet.
+ *
+ * # Dictionary Encoding
+ * String columns with a handful of distinct values (e.g. l_shipmode) may be
+ * dictionary-encoded: a table constructed with a TableDictionary stores the values
+ * of its encoded columns as int codes in every layout above, in place of the
+ * strings, and decodes them when records are read. Scans given filters on the codes
+ * of encoded columns (see iterator(AccessPattern, List, LongPredicate, Map) and
+ * TableDictionary#codeFilter) skip the records whose codes are rejected without
+ * decoding any of their values.
  */
 public class Table implements BacktrackingIterable<Record> {
     // The name of the table.
@@ -100,37 +153,110 @@ public class Table implements BacktrackingIterable<Record> {
     // The page directory persisting the table.
     private PageDirectory pageDirectory;
 
+    // The layout of the data pages.
+    private PageLayout layout;
+
     // The size (in bytes) of the bitmap found at the beginning of each data page.
     private int bitmapSizeInBytes;
 
-    // The number of records on each data page.
+    // The number of records on each data page (the maximum number, for slotted pages).
     private int numRecordsPerPage;
 
+    // The offset of each column within a fixed-width record.
+    private int[] columnOffsets;
+
     // The lock context of the table.
     private LockContext tableContext;
 
     // Statistics about the contents of the database.
     Map<String, TableStats> stats;
 
+    // The minimum and maximum values of the columns in each data page.
+    private ZoneMap zoneMap;
+
+    // The dictionary of the dictionary-encoded columns, or null if there are none.
+    private TableDictionary dictionary;
+
+    // Whether each column is dictionary-encoded.
+    private boolean[] encoded;
+
+    // The schema of the records as stored in data pages: that of the table, with
+    // int codes in place of the values of the dictionary-encoded columns.
+    private Schema storedSchema;
+
     // Constructors ////////////////////////////////////////////////////////////
     /**
-     * Load a table named `name` with schema `schema` from `pageDirectory`. `lockContext`
-     * is the lock context of the table (use a DummyLockContext() to disable locking). A
-     * new table will be created if none exists in the pageDirectory.
+     * Load a table named `name` with schema `schema` and data pages laid out as
+     * `layout` from `pageDirectory`. `lockContext` is the lock context of the table
+     * (use a DummyLockContext() to disable locking). A new table will be created if
+     * none exists in the pageDirectory. `stats` and `zoneMaps` hold the statistics
+     * and zone map of each table by name, and are shared by the Table objects of a
+     * table. `dictionary` is the dictionary of the table's dictionary-encoded
+     * columns, or null if there are none.
      */
-    public Table(String name, Schema schema, PageDirectory pageDirectory, LockContext lockContext, Map<String, TableStats> stats) {
+    public Table(String name, Schema schema, PageDirectory pageDirectory, LockContext lockContext,
+                 Map<String, TableStats> stats, Map<String, ZoneMap> zoneMaps, PageLayout layout,
+                 TableDictionary dictionary) {
         this.name = name;
         this.pageDirectory = pageDirectory;
         this.schema = schema;
         this.tableContext = lockContext;
+        this.layout = layout;
+        this.dictionary = dictionary;
+        this.encoded = new boolean[schema.size()];
+        this.storedSchema = schema;
+        if (dictionary != null) {
+            this.storedSchema = new Schema();
+            for (int i = 0; i < schema.size(); ++i) {
+                encoded[i] = dictionary.isEncoded(i);
+                storedSchema.add(schema.getFieldName(i), encoded[i] ? Type.intType() : schema.getFieldType(i));
+            }
+        }
+        this.columnOffsets = new int[storedSchema.size()];
+        for (int i = 1; i < storedSchema.size(); ++i) {
+            columnOffsets[i] = columnOffsets[i - 1] + storedSchema.getFieldType(i - 1).getSizeInBytes();
+        }
 
-        this.bitmapSizeInBytes = computeBitmapSizeInBytes(pageDirectory.getEffectivePageSize(), schema);
-        this.numRecordsPerPage = computeNumRecordsPerPage(pageDirectory.getEffectivePageSize(), schema);
-        // mark everything that is not used for records as metadata
-        this.pageDirectory.setEmptyPageMetadataSize((short) (pageDirectory.getEffectivePageSize() - numRecordsPerPage
-                                               * schema.getSizeInBytes()));
+        int pageSize = pageDirectory.getEffectivePageSize();
+        TableStats tableStats;
+        if (layout == PageLayout.SLOTTED) {
+            if (SlottedPage.HEADER_SIZE + SlottedPage.SLOT_SIZE
+                    + storedSchema.getMaxVariableLengthSizeInBytes() > pageSize) {
+                throw new DatabaseException(String.format(
+                        "Schema of size %d bytes is larger than effective page size",
+                        storedSchema.getMaxVariableLengthSizeInBytes()
+                ));
+            }
+            this.bitmapSizeInBytes = 0;
+            this.numRecordsPerPage = SlottedPage.maxSlots(pageSize, storedSchema.getMinVariableLengthSizeInBytes());
+            this.pageDirectory.setEmptyPageMetadataSize((short) SlottedPage.HEADER_SIZE);
+            tableStats = new TableStats(this.schema, this.numRecordsPerPage, pageSize - SlottedPage.HEADER_SIZE,
+                                        SlottedPage.SLOT_SIZE);
+        } else {
+            this.bitmapSizeInBytes = computeBitmapSizeInBytes(pageSize, storedSchema);
+            this.numRecordsPerPage = computeNumRecordsPerPage(pageSize, storedSchema);
+            // mark everything that is not used for records as metadata
+            this.pageDirectory.setEmptyPageMetadataSize((short) (pageSize - numRecordsPerPage
+                                                   * storedSchema.getSizeInBytes()));
+            tableStats = new TableStats(this.schema, this.numRecordsPerPage);
+        }
         this.stats = stats;
-        if (!this.stats.containsKey(name)) this.stats.put(name, new TableStats(this.schema, this.numRecordsPerPage));
+        if (!this.stats.containsKey(name)) this.stats.put(name, tableStats);
+        this.zoneMap = zoneMaps.computeIfAbsent(name, k -> new ZoneMap());
+    }
+
+    public Table(String name, Schema schema, PageDirectory pageDirectory, LockContext lockContext,
+                 Map<String, TableStats> stats, Map<String, ZoneMap> zoneMaps, PageLayout layout) {
+        this(name, schema, pageDirectory, lockContext, stats, zoneMaps, layout, null);
+    }
+
+    public Table(String name, Schema schema, PageDirectory pageDirectory, LockContext lockContext,
+                 Map<String, TableStats> stats, PageLayout layout) {
+        this(name, schema, pageDirectory, lockContext, stats, new HashMap<>(), layout);
+    }
+
+    public Table(String name, Schema schema, PageDirectory pageDirectory, LockContext lockContext, Map<String, TableStats> stats) {
+        this(name, schema, pageDirectory, lockContext, stats, PageLayout.BITMAP);
     }
 
     public Table(String name, Schema schema, PageDirectory pageDirectory, LockContext lockContext) {
@@ -149,27 +275,59 @@ public class Table implements BacktrackingIterable<Record> {
         return numRecordsPerPage;
     }
 
+    public PageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gives each record a full page. Does not apply to tables with PageLayout.SLOTTED.
+     */
     public void setFullPageRecords() {
+        if (layout == PageLayout.SLOTTED) {
+            throw new UnsupportedOperationException("full page records require fixed-width records");
+        }
         numRecordsPerPage = 1;
         bitmapSizeInBytes = 0;
         pageDirectory.setEmptyPageMetadataSize((short) (pageDirectory.getEffectivePageSize() -
-                                          schema.getSizeInBytes()));
+                                          storedSchema.getSizeInBytes()));
     }
 
     public TableStats getStats() {
         return this.stats.get(name);
     }
 
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    /**
+     * @return the dictionary of the table's dictionary-encoded columns, or null if
+     * there are none
+     */
+    public TableDictionary getDictionary() {
+        return dictionary;
+    }
+
     public int getNumDataPages() {
         return this.pageDirectory.getNumDataPages();
     }
 
+    /**
+     * @return the number of data pages accepted by `pageFilter`, i.e. the number of
+     * pages read by iterator(accessPattern, columns, pageFilter)
+     */
+    public int getNumDataPages(LongPredicate pageFilter) {
+        return this.pageDirectory.getNumDataPages(pageFilter);
+    }
+
     public int getPartNum() {
         return pageDirectory.getPartNum();
     }
 
     private byte[] getBitMap(Page page) {
-        if (bitmapSizeInBytes > 0) {
+        if (layout == PageLayout.SLOTTED) {
+            return SlottedPage.getBitMap(page.getBuffer(), numRecordsPerPage);
+        } else if (bitmapSizeInBytes > 0) {
             byte[] bytes = new byte[bitmapSizeInBytes];
             page.getBuffer().get(bytes, 0, bitmapSizeInBytes);
             return bytes;
@@ -231,9 +389,65 @@ public class Table implements BacktrackingIterable<Record> {
         this.stats.get(name).refreshHistograms(buckets, this);
     }
 
+    // Writes a record, as stored (see encode), to fixed-width entry `entryNum` of a page.
     private synchronized void insertRecord(Page page, int entryNum, Record record) {
-        int offset = bitmapSizeInBytes + (entryNum * schema.getSizeInBytes());
-        page.getBuffer().position(offset).put(record.toBytes(schema));
+        if (layout == PageLayout.PAX) {
+            Buffer buf = page.getBuffer();
+            for (int i = 0; i < storedSchema.size(); ++i) {
+                buf.position(valueOffset(entryNum, i)).put(record.getValue(i).toBytes());
+            }
+            return;
+        }
+        int offset = bitmapSizeInBytes + (entryNum * storedSchema.getSizeInBytes());
+        page.getBuffer().position(offset).put(record.toBytes(storedSchema));
+    }
+
+    // Offset in a data page of the value of column `column` of fixed-width record `entryNum`.
+    private int valueOffset(int entryNum, int column) {
+        if (layout == PageLayout.PAX) {
+            return bitmapSizeInBytes + numRecordsPerPage * columnOffsets[column]
+                   + entryNum * storedSchema.getFieldType(column).getSizeInBytes();
+        }
+        return bitmapSizeInBytes + entryNum * storedSchema.getSizeInBytes() + columnOffsets[column];
+    }
+
+    // Replaces the values of the dictionary-encoded columns of a record with their
+    // codes, adding the values not in the dictionary yet to it.
+    private Record encode(Record record) {
+        if (dictionary == null) {
+            return record;
+        }
+        List<DataBox> values = record.getValues();
+        for (int i = 0; i < values.size(); ++i) {
+            if (encoded[i]) {
+                values.set(i, new IntDataBox(dictionary.encode(i, values.get(i))));
+            }
+        }
+        return new Record(values);
+    }
+
+    // Replaces the codes of the dictionary-encoded columns of a record as stored with
+    // their values.
+    private Record decode(Record record) {
+        if (dictionary == null) {
+            return record;
+        }
+        List<DataBox> values = record.getValues();
+        for (int i = 0; i < values.size(); ++i) {
+            if (encoded[i]) {
+                values.set(i, dictionary.decode(i, values.get(i).getInt()));
+            }
+        }
+        return new Record(values);
+    }
+
+    // Reads the value of column `column` at the position of `buf`, decoding its code
+    // if the column is dictionary-encoded.
+    private DataBox readValue(Buffer buf, int column) {
+        if (encoded[column]) {
+            return dictionary.decode(column, buf.getInt());
+        }
+        return DataBox.fromBytes(buf, schema.getFieldType(column));
     }
 
     /**
@@ -246,7 +460,12 @@ public class Table implements BacktrackingIterable<Record> {
      */
     public synchronized RecordId addRecord(Record record) {
         record = schema.verify(record);
-        Page page = pageDirectory.getPageWithSpace(schema.getSizeInBytes());
+        if (layout == PageLayout.SLOTTED) {
+            return addSlottedRecord(record);
+        }
+        Record stored = encode(record);
+        Page page = pageDirectory.getPageWithSpace(storedSchema.getSizeInBytes());
+        page.latchExclusive();
         try {
             // Find the first empty slot in the bitmap.
             // entry number of the first free slot and store it in entryNum; and (2) we
@@ -262,39 +481,183 @@ public class Table implements BacktrackingIterable<Record> {
                 entryNum = 0;
             }
             assert (entryNum < numRecordsPerPage);
+            boolean newPage = numRecordsPerPage == 1 || numRecordsOnPage(page) == 0;
 
             // Insert the record and update the bitmap.
-            insertRecord(page, entryNum, record);
+            insertRecord(page, entryNum, stored);
             Bits.setBit(bitmap, entryNum, Bits.Bit.ONE);
             writeBitMap(page, bitmap);
 
             // Update the metadata.
             stats.get(name).addRecord(record);
+            zoneMap.addRecord(page.getPageNum(), record, newPage);
             return new RecordId(page.getPageNum(), (short) entryNum);
         } finally {
+            page.unlatchExclusive();
+            page.unpin();
+        }
+    }
+
+    // addRecord for slotted pages: adds the record to the first page with space for it
+    // and a new slot, in the first empty slot.
+    private RecordId addSlottedRecord(Record record) {
+        byte[] bytes = encode(record).toVariableLengthBytes();
+        Page page = pageDirectory.getPageWithSpace((short) (bytes.length + SlottedPage.SLOT_SIZE));
+        page.latchExclusive();
+        try {
+            Buffer buf = page.getBuffer();
+            int pageSize = pageDirectory.getEffectivePageSize();
+            boolean newPage = SlottedPage.freeSpace(buf, pageSize) == pageSize - SlottedPage.HEADER_SIZE;
+            int slot = SlottedPage.insert(buf, pageSize, bytes);
+            stats.get(name).addRecord(record);
+            zoneMap.addRecord(page.getPageNum(), record, newPage);
+            return new RecordId(page.getPageNum(), (short) slot);
+        } finally {
+            page.unlatchExclusive();
             page.unpin();
         }
     }
 
+    /**
+     * addRecords adds the records of `records` to this table, in order, as addRecord
+     * would, but in new data pages: each page is filled with records in memory and
+     * written once, and the pages are added to the page directory together after the
+     * last record (see PageDirectory#addDataPages), rather than looking up a page
+     * with space for every record. Free space in the table's existing pages is not
+     * used. If `records` throws, the records of the pages filled so far are still
+     * added.
+     */
+    public synchronized void addRecords(Iterator<Record> records) {
+        int pageSize = pageDirectory.getEffectivePageSize();
+        List<Long> pageNums = new ArrayList<>();
+        List<Short> freeSpace = new ArrayList<>();
+        Record next = null;
+        try {
+            while (next != null || records.hasNext()) {
+                // fill a page in memory
+                byte[] data = new byte[pageSize];
+                Buffer buf = ByteBuffer.wrap(data);
+                List<Record> pageRecords = new ArrayList<>();
+                if (layout == PageLayout.SLOTTED) {
+                    // a record that does not fit goes to the next page
+                    while (next != null || records.hasNext()) {
+                        Record record = next != null ? next : schema.verify(records.next());
+                        byte[] bytes = encode(record).toVariableLengthBytes();
+                        if (!pageRecords.isEmpty()
+                                && SlottedPage.freeSpace(buf, pageSize) < bytes.length + SlottedPage.SLOT_SIZE) {
+                            next = record;
+                            break;
+                        }
+                        next = null;
+                        SlottedPage.insert(buf, pageSize, bytes);
+                        pageRecords.add(record);
+                    }
+                } else {
+                    byte[] bitmap = new byte[bitmapSizeInBytes];
+                    while (pageRecords.size() < numRecordsPerPage && records.hasNext()) {
+                        Record record = schema.verify(records.next());
+                        Record stored = encode(record);
+                        int entryNum = pageRecords.size();
+                        if (layout == PageLayout.PAX) {
+                            for (int i = 0; i < storedSchema.size(); ++i) {
+                                buf.position(valueOffset(entryNum, i)).put(stored.getValue(i).toBytes());
+                            }
+                        } else {
+                            buf.position(valueOffset(entryNum, 0)).put(stored.toBytes(storedSchema));
+                        }
+                        if (bitmapSizeInBytes > 0) {
+                            Bits.setBit(bitmap, entryNum, Bits.Bit.ONE);
+                        }
+                        pageRecords.add(record);
+                    }
+                    buf.position(0).put(bitmap);
+                }
+                short space = (short) (layout == PageLayout.SLOTTED ? SlottedPage.freeSpace(buf, pageSize)
+                                       : (numRecordsPerPage - pageRecords.size()) * storedSchema.getSizeInBytes());
+
+                // write it to a new data page
+                Page page = pageDirectory.newDataPage();
+                try {
+                    page.getBuffer().put(data);
+                    pageNums.add(page.getPageNum());
+                    freeSpace.add(space);
+                } finally {
+                    page.unpin();
+                }
+                for (Record record : pageRecords) {
+                    stats.get(name).addRecord(record);
+                }
+                zoneMap.setPage(pageNums.get(pageNums.size() - 1), pageRecords);
+            }
+        } finally {
+            long[] nums = new long[pageNums.size()];
+            short[] spaces = new short[freeSpace.size()];
+            for (int i = 0; i < nums.length; ++i) {
+                nums[i] = pageNums.get(i);
+                spaces[i] = freeSpace.get(i);
+            }
+            pageDirectory.addDataPages(nums, spaces);
+        }
+    }
+
     /**
      * Retrieves a record from the table, throwing an exception if no such record
      * exists.
      */
     public synchronized Record getRecord(RecordId rid) {
+        return getRecord(rid, null);
+    }
+
+    /**
+     * Retrieves the values of the columns `columns` (indices into the schema, or
+     * null for all columns) of a record, in that order, throwing an exception if no
+     * such record exists. Only the values of those columns are decoded, except in
+     * slotted pages, where the values of a record are not at fixed offsets.
+     */
+    private synchronized Record getRecord(RecordId rid, int[] columns) {
         validateRecordId(rid);
         Page page = fetchPage(rid.getPageNum());
+        page.latchShared();
         try {
+            if (layout == PageLayout.SLOTTED) {
+                Buffer buf = page.getBuffer();
+                int offset = SlottedPage.getOffset(buf, rid.getEntryNum());
+                if (offset < 0) {
+                    String msg = String.format("Record %s does not exist.", rid);
+                    throw new DatabaseException(msg);
+                }
+                buf.position(offset);
+                Record record = decode(Record.fromVariableLengthBytes(buf, storedSchema));
+                if (columns == null) {
+                    return record;
+                }
+                List<DataBox> values = new ArrayList<>();
+                for (int column : columns) {
+                    values.add(record.getValue(column));
+                }
+                return new Record(values);
+            }
             byte[] bitmap = getBitMap(page);
             if (Bits.getBit(bitmap, rid.getEntryNum()) == Bits.Bit.ZERO) {
                 String msg = String.format("Record %s does not exist.", rid);
                 throw new DatabaseException(msg);
             }
 
-            int offset = bitmapSizeInBytes + (rid.getEntryNum() * schema.getSizeInBytes());
             Buffer buf = page.getBuffer();
-            buf.position(offset);
-            return Record.fromBytes(buf, schema);
+            if (columns == null && layout == PageLayout.BITMAP && dictionary == null) {
+                int offset = bitmapSizeInBytes + (rid.getEntryNum() * schema.getSizeInBytes());
+                buf.position(offset);
+                return Record.fromBytes(buf, schema);
+            }
+            List<DataBox> values = new ArrayList<>();
+            for (int i = 0; i < (columns == null ? schema.size() : columns.length); ++i) {
+                int column = columns == null ? i : columns[i];
+                buf.position(valueOffset(rid.getEntryNum(), column));
+                values.add(readValue(buf, column));
+            }
+            return new Record(values);
         } finally {
+            page.unlatchShared();
             page.unpin();
         }
     }
@@ -316,13 +679,26 @@ public class Table implements BacktrackingIterable<Record> {
         Record oldRecord = getRecord(rid);
 
         Page page = fetchPage(rid.getPageNum());
+        page.latchExclusive();
         try {
-            insertRecord(page, rid.getEntryNum(), newRecord);
+            if (layout == PageLayout.SLOTTED) {
+                Buffer buf = page.getBuffer();
+                int pageSize = pageDirectory.getEffectivePageSize();
+                if (!SlottedPage.update(buf, pageSize, rid.getEntryNum(), encode(newRecord).toVariableLengthBytes())) {
+                    String msg = String.format("Updated record %s does not fit in its page.", rid);
+                    throw new DatabaseException(msg);
+                }
+                pageDirectory.updateFreeSpace(page, (short) SlottedPage.freeSpace(buf, pageSize));
+            } else {
+                insertRecord(page, rid.getEntryNum(), encode(newRecord));
+            }
 
             this.stats.get(name).removeRecord(oldRecord);
             this.stats.get(name).addRecord(newRecord);
+            zoneMap.addRecord(rid.getPageNum(), newRecord, false);
             return oldRecord;
         } finally {
+            page.unlatchExclusive();
             page.unpin();
         }
     }
@@ -340,19 +716,39 @@ public class Table implements BacktrackingIterable<Record> {
         LockUtil.ensureSufficientLockHeld(pageContext, LockType.NL);
 
         Page page = fetchPage(rid.getPageNum());
+        page.latchExclusive();
         try {
             Record record = getRecord(rid);
 
+            if (layout == PageLayout.SLOTTED) {
+                Buffer buf = page.getBuffer();
+                SlottedPage.delete(buf, rid.getEntryNum());
+                stats.get(name).removeRecord(record);
+                int pageSize = pageDirectory.getEffectivePageSize();
+                int freeSpace = SlottedPage.freeSpace(buf, pageSize);
+                if (freeSpace == pageSize - SlottedPage.HEADER_SIZE) {
+                    // the page is freed
+                    zoneMap.removePage(rid.getPageNum());
+                }
+                pageDirectory.updateFreeSpace(page, (short) freeSpace);
+                return record;
+            }
+
             byte[] bitmap = getBitMap(page);
             Bits.setBit(bitmap, rid.getEntryNum(), Bits.Bit.ZERO);
             writeBitMap(page, bitmap);
 
             stats.get(name).removeRecord(record);
             int numRecords = numRecordsPerPage == 1 ? 0 : numRecordsOnPage(page);
+            if (numRecords == 0) {
+                // the page is freed
+                zoneMap.removePage(rid.getPageNum());
+            }
             pageDirectory.updateFreeSpace(page,
-                                     (short) ((numRecordsPerPage - numRecords) * schema.getSizeInBytes()));
+                                     (short) ((numRecordsPerPage - numRecords) * storedSchema.getSizeInBytes()));
             return record;
         } finally {
+            page.unlatchExclusive();
             page.unpin();
         }
     }
@@ -382,6 +778,44 @@ public class Table implements BacktrackingIterable<Record> {
         return numRecords;
     }
 
+    // Records the range of the values of the records of a data page in the zone map.
+    private void addToZoneMap(Page page) {
+        long modCount = zoneMap.getModCount();
+        List<Record> records = new ArrayList<>();
+        page.latchShared();
+        try {
+            readRecords(page, records);
+        } finally {
+            page.unlatchShared();
+        }
+        zoneMap.setPage(page.getPageNum(), records, modCount);
+    }
+
+    // Reads the records of a data page into `records`.
+    private void readRecords(Page page, List<Record> records) {
+        byte[] bitmap = getBitMap(page);
+        Buffer buf = page.getBuffer();
+        for (int i = 0; i < numRecordsPerPage; ++i) {
+            if (Bits.getBit(bitmap, i) == Bits.Bit.ZERO) {
+                continue;
+            }
+            if (layout == PageLayout.SLOTTED) {
+                buf.position(SlottedPage.getOffset(buf, i));
+                records.add(decode(Record.fromVariableLengthBytes(buf, storedSchema)));
+            } else if (layout == PageLayout.BITMAP) {
+                buf.position(valueOffset(i, 0));
+                records.add(decode(Record.fromBytes(buf, storedSchema)));
+            } else {
+                List<DataBox> values = new ArrayList<>();
+                for (int column = 0; column < schema.size(); ++column) {
+                    buf.position(valueOffset(i, column));
+                    values.add(readValue(buf, column));
+                }
+                records.add(new Record(values));
+            }
+        }
+    }
+
     private void validateRecordId(RecordId rid) {
         int e = rid.getEntryNum();
 
@@ -412,6 +846,46 @@ public class Table implements BacktrackingIterable<Record> {
         return new ConcatBacktrackingIterator<>(new PageIterator(iter, false));
     }
 
+    /**
+     * @return Performs a full scan on the table to return id's of all existing
+     * records, hinting to the buffer manager that the table's pages are accessed
+     * with the given access pattern
+     */
+    public BacktrackingIterator<RecordId> ridIterator(AccessPattern accessPattern) {
+        return ridIterator(accessPattern, null, null);
+    }
+
+    /**
+     * @return Performs a scan of the data pages whose page numbers are accepted by
+     * `pageFilter` to return id's of the records in them, skipping the other pages;
+     * see iterator(AccessPattern, List, LongPredicate)
+     */
+    public BacktrackingIterator<RecordId> ridIterator(AccessPattern accessPattern, LongPredicate pageFilter) {
+        return ridIterator(accessPattern, pageFilter, null);
+    }
+
+    /**
+     * @return Performs a scan of the data pages whose page numbers are accepted by
+     * `pageFilter` (or of all data pages, if null) to return id's of the records in
+     * them whose codes are accepted by `codeFilters` (or of all records, if null);
+     * see iterator(AccessPattern, List, LongPredicate, Map)
+     */
+    public BacktrackingIterator<RecordId> ridIterator(AccessPattern accessPattern, LongPredicate pageFilter,
+                                                      Map<Integer, IntPredicate> codeFilters) {
+        // same lock as ridIterator()
+        LockUtil.ensureSufficientLockHeld(tableContext, LockType.NL);
+
+        if (codeFilters != null) {
+            for (int column : codeFilters.keySet()) {
+                if (column < 0 || column >= schema.size() || !encoded[column]) {
+                    throw new DatabaseException("Column " + column + " of " + schema + " is not dictionary-encoded");
+                }
+            }
+        }
+        BacktrackingIterator<Page> iter = pageDirectory.iterator(accessPattern, pageFilter);
+        return new ConcatBacktrackingIterator<>(new PageIterator(iter, false, pageFilter != null, codeFilters));
+    }
+
     /**
      * @param rids an iterator of record IDs for records in this table
      * @return an iterator over the records corresponding to the record IDs. If
@@ -434,6 +908,73 @@ public class Table implements BacktrackingIterable<Record> {
         return new RecordIterator(ridIterator());
     }
 
+    /**
+     * @param accessPattern how the table's pages are accessed by the caller, e.g.
+     *                      AccessPattern.LOOP if the table is scanned repeatedly
+     * @return an iterator over all the records in this table
+     */
+    public BacktrackingIterator<Record> iterator(AccessPattern accessPattern) {
+        return new RecordIterator(ridIterator(accessPattern));
+    }
+
+    /**
+     * @param accessPattern how the table's pages are accessed by the caller
+     * @param columns the columns to return, as indices into the table's schema
+     * @return an iterator over all the records in this table, with only the values
+     * of `columns` (in that order). Only those values are decoded (see getRecord).
+     */
+    public BacktrackingIterator<Record> iterator(AccessPattern accessPattern, List<Integer> columns) {
+        return iterator(accessPattern, columns, null);
+    }
+
+    /**
+     * @param accessPattern how the table's pages are accessed by the caller
+     * @param columns the columns to return, as indices into the table's schema, or
+     *                null for all columns
+     * @param pageFilter filter on the page numbers of the data pages to scan (e.g.
+     *                   one calling getZoneMap().mayMatch), or null for all pages
+     * @return an iterator over the records in the data pages of this table accepted
+     * by `pageFilter`, with only the values of `columns` (in that order). The other
+     * pages are skipped without being read. The ranges of the pages read that are
+     * not in the zone map yet are added to it.
+     */
+    public BacktrackingIterator<Record> iterator(AccessPattern accessPattern, List<Integer> columns,
+                                                 LongPredicate pageFilter) {
+        return iterator(accessPattern, columns, pageFilter, null);
+    }
+
+    /**
+     * @param accessPattern how the table's pages are accessed by the caller
+     * @param columns the columns to return, as indices into the table's schema, or
+     *                null for all columns
+     * @param pageFilter filter on the page numbers of the data pages to scan, or null
+     *                   for all pages (see iterator(AccessPattern, List, LongPredicate))
+     * @param codeFilters filters on the codes of dictionary-encoded columns, by column
+     *                    (e.g. one from getDictionary().codeFilter), or null
+     * @return an iterator over the records in the data pages of this table accepted
+     * by `pageFilter` whose codes in the columns of `codeFilters` are accepted by the
+     * filters, with only the values of `columns` (in that order). The codes of the
+     * records are tested as stored in their pages, before any value of the records
+     * is decoded.
+     */
+    public BacktrackingIterator<Record> iterator(AccessPattern accessPattern, List<Integer> columns,
+                                                 LongPredicate pageFilter, Map<Integer, IntPredicate> codeFilters) {
+        BacktrackingIterator<RecordId> rids = pageFilter == null && codeFilters == null
+                                              ? ridIterator(accessPattern)
+                                              : ridIterator(accessPattern, pageFilter, codeFilters);
+        if (columns == null) {
+            return new RecordIterator(rids);
+        }
+        int[] columnIndices = new int[columns.size()];
+        for (int i = 0; i < columnIndices.length; ++i) {
+            if (columns.get(i) < 0 || columns.get(i) >= schema.size()) {
+                throw new DatabaseException("Invalid column " + columns.get(i) + " of " + schema);
+            }
+            columnIndices[i] = columns.get(i);
+        }
+        return new RecordIterator(rids, columnIndices);
+    }
+
     /**
      * RIDPageIterator is a BacktrackingIterator over the RecordIds of a single
      * page of the table.
@@ -446,10 +987,47 @@ public class Table implements BacktrackingIterable<Record> {
         private byte[] bitmap;
 
         RIDPageIterator(Page page) {
+            this(page, null);
+        }
+
+        // iterates over the records of the page whose codes are accepted by `codeFilters`
+        RIDPageIterator(Page page, Map<Integer, IntPredicate> codeFilters) {
             super(numRecordsPerPage);
             this.page = page;
-            this.bitmap = getBitMap(page);
-            page.unpin();
+            page.latchShared();
+            try {
+                this.bitmap = getBitMap(page);
+                if (codeFilters != null && !codeFilters.isEmpty()) {
+                    filter(codeFilters);
+                }
+            } finally {
+                page.unlatchShared();
+                page.unpin();
+            }
+        }
+
+        // clears the bits of the records whose codes are rejected by `codeFilters`
+        private void filter(Map<Integer, IntPredicate> codeFilters) {
+            Buffer buf = page.getBuffer();
+            for (int i = 0; i < numRecordsPerPage; ++i) {
+                if (Bits.getBit(bitmap, i) == Bits.Bit.ZERO) {
+                    continue;
+                }
+                Record stored = null;
+                if (layout == PageLayout.SLOTTED) {
+                    buf.position(SlottedPage.getOffset(buf, i));
+                    stored = Record.fromVariableLengthBytes(buf, storedSchema);
+                }
+                for (Map.Entry<Integer, IntPredicate> filter : codeFilters.entrySet()) {
+                    int column = filter.getKey();
+                    int code = stored != null ? stored.getValue(column).getInt()
+                               : buf.position(valueOffset(i, column)).getInt();
+                    if (!filter.getValue().test(code)) {
+                        Bits.setBit(bitmap, i, Bits.Bit.ZERO);
+                        break;
+                    }
+                }
+            }
         }
 
         @Override
@@ -471,10 +1049,21 @@ public class Table implements BacktrackingIterable<Record> {
     private class PageIterator implements BacktrackingIterator<BacktrackingIterable<RecordId>> {
         private BacktrackingIterator<Page> sourceIterator;
         private boolean pinOnFetch;
+        // whether to add the ranges of the pages not in the zone map to it
+        private boolean addToZoneMap;
+        // filters on the codes of the records to return, or null
+        private Map<Integer, IntPredicate> codeFilters;
 
         private PageIterator(BacktrackingIterator<Page> sourceIterator, boolean pinOnFetch) {
+            this(sourceIterator, pinOnFetch, false, null);
+        }
+
+        private PageIterator(BacktrackingIterator<Page> sourceIterator, boolean pinOnFetch, boolean addToZoneMap,
+                             Map<Integer, IntPredicate> codeFilters) {
             this.sourceIterator = sourceIterator;
             this.pinOnFetch = pinOnFetch;
+            this.addToZoneMap = addToZoneMap;
+            this.codeFilters = codeFilters;
         }
 
         @Override
@@ -507,6 +1096,9 @@ public class Table implements BacktrackingIterable<Record> {
 
             private InnerIterable(Page baseObject) {
                 this.baseObject = baseObject;
+                if (addToZoneMap && !zoneMap.containsPage(baseObject.getPageNum())) {
+                    addToZoneMap(baseObject);
+                }
                 if (!pinOnFetch) {
                     baseObject.unpin();
                 }
@@ -515,7 +1107,7 @@ public class Table implements BacktrackingIterable<Record> {
             @Override
             public BacktrackingIterator<RecordId> iterator() {
                 baseObject.pin();
-                return new RIDPageIterator(baseObject);
+                return new RIDPageIterator(baseObject, codeFilters);
             }
         }
     }
@@ -525,9 +1117,16 @@ public class Table implements BacktrackingIterable<Record> {
      */
     private class RecordIterator implements BacktrackingIterator<Record> {
         private Iterator<RecordId> ridIter;
+        // The columns of the records to return, or null for all columns
+        private int[] columns;
 
         public RecordIterator(Iterator<RecordId> ridIter) {
+            this(ridIter, null);
+        }
+
+        public RecordIterator(Iterator<RecordId> ridIter, int[] columns) {
             this.ridIter = ridIter;
+            this.columns = columns;
         }
 
         @Override
@@ -538,7 +1137,7 @@ public class Table implements BacktrackingIterable<Record> {
         @Override
         public Record next() {
             try {
-                return getRecord(ridIter.next());
+                return getRecord(ridIter.next(), columns);
             } catch (DatabaseException e) {
                 throw new IllegalStateException(e);
             }
@@ -0,0 +1,199 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.DatabaseException;
+import edu.berkeley.cs186.database.TransactionContext;
+import edu.berkeley.cs186.database.common.PredicateOperator;
+import edu.berkeley.cs186.database.concurrency.LockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.databox.TypeId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * The dictionary of a table with dictionary-encoded columns: string columns with a
+ * handful of distinct values (e.g. l_shipmode), whose values are stored in the
+ * table's data pages as integer codes rather than as fixed-width strings (see
+ * Table). The codes of a column are assigned in the order its values are first
+ * added, starting at 0, and are never reassigned.
+ *
+ * Decoding a code returns the same StringDataBox for every record with that value,
+ * so records of a table can be grouped or compared on an encoded column by identity
+ * (see StringDataBox#equals) and with the hash code of the value's string computed
+ * once. Scans evaluate a predicate on an encoded column once per distinct value, and
+ * then test the codes of the records against the result (see codeFilter).
+ *
+ * The dictionary is persisted as rows (column, code, value) of its own heap file,
+ * in the partition of its table. Codes are assigned by encode, so all Table objects
+ * adding records to a table must share one TableDictionary (the Database keeps one
+ * per table): two instances could give the same code to different values. Codes
+ * that are not in memory yet when they are decoded are read from the heap file.
+ *
+ * Once a code is assigned, any transaction may store it, so the addition of a code
+ * must not be undone when the transaction that made it aborts. Rows are therefore
+ * added to the heap file outside of the caller's transaction: the writes are not
+ * logged, and the heap file is flushed before the code is returned. The code of a
+ * value only used by an aborted transaction simply stays unused.
+ */
+public class TableDictionary {
+    // rows (column, code, value) of the codes of the values of the encoded columns
+    private Table table;
+    // the heap file of `table`
+    private PageDirectory pageDirectory;
+    // the declared length of the strings of each column (0 for columns not encoded)
+    private int[] lengths;
+    // the value of each code, by column (null for columns not encoded)
+    private List<List<DataBox>> values = new ArrayList<>();
+    // the code of each value, by column (null for columns not encoded)
+    private List<Map<String, Integer>> codes = new ArrayList<>();
+
+    /**
+     * Load the dictionary of the columns `columns` (indices into `schema`, which must
+     * all be string columns) of table `tableName` with schema `schema`, from the heap
+     * file of `pageDirectory`. A new dictionary is created if none exists in the
+     * pageDirectory.
+     */
+    public TableDictionary(String tableName, Schema schema, List<Integer> columns, PageDirectory pageDirectory,
+                      LockContext lockContext) {
+        this.lengths = new int[schema.size()];
+        int maxLength = 1;
+        for (int column : columns) {
+            Type type = schema.getFieldType(column);
+            if (type.getTypeId() != TypeId.STRING) {
+                throw new DatabaseException("cannot dictionary-encode column `" + schema.getFieldName(column)
+                                            + "` of type " + type);
+            }
+            lengths[column] = type.getSizeInBytes();
+            maxLength = Math.max(maxLength, lengths[column]);
+        }
+        for (int i = 0; i < schema.size(); ++i) {
+            values.add(lengths[i] == 0 ? null : new ArrayList<>());
+            codes.add(lengths[i] == 0 ? null : new HashMap<>());
+        }
+        Schema dictionarySchema = new Schema()
+                .add("column", Type.intType())
+                .add("code", Type.intType())
+                .add("value", Type.stringType(maxLength));
+        this.pageDirectory = pageDirectory;
+        this.table = new Table(tableName + ".dictionary", dictionarySchema, pageDirectory, lockContext);
+        refresh();
+    }
+
+    /**
+     * @return whether column `column` is dictionary-encoded
+     */
+    public boolean isEncoded(int column) {
+        return lengths[column] != 0;
+    }
+
+    /**
+     * @return the number of distinct values of the encoded column `column` known to
+     * this TableDictionary
+     */
+    public synchronized int size(int column) {
+        return values.get(column).size();
+    }
+
+    /**
+     * @return the code of `value` in the encoded column `column`, adding it to the
+     * dictionary if it is not in it yet
+     */
+    synchronized int encode(int column, DataBox value) {
+        String s = value.getString();
+        Integer code = codes.get(column).get(s);
+        if (code == null) {
+            code = values.get(column).size();
+            save(column, code, s);
+            add(column, code, s);
+        }
+        return code;
+    }
+
+    /**
+     * @return the value of code `code` of the encoded column `column`
+     */
+    public synchronized DataBox decode(int column, int code) {
+        List<DataBox> columnValues = values.get(column);
+        if (code >= 0 && (code >= columnValues.size() || columnValues.get(code) == null)) {
+            refresh();
+        }
+        if (code < 0 || code >= columnValues.size() || columnValues.get(code) == null) {
+            throw new DatabaseException("no value with code " + code + " in column " + column);
+        }
+        return columnValues.get(code);
+    }
+
+    /**
+     * @return a filter accepting the codes of the values of the encoded column
+     * `column` satisfying `operator` `value` (e.g. l_shipmode = 'AIR'), or null if the
+     * column is not encoded or `value` is not a string. The predicate is evaluated
+     * once for each code, the first time the filter is tested with it.
+     */
+    public IntPredicate codeFilter(int column, PredicateOperator operator, DataBox value) {
+        if (!isEncoded(column) || value.getTypeId() != TypeId.STRING) {
+            return null;
+        }
+        return new IntPredicate() {
+            // the result of the predicate for each code: 0 if not evaluated yet,
+            // 1 if it is satisfied, -1 if it is not
+            private byte[] results = new byte[0];
+
+            @Override
+            public boolean test(int code) {
+                if (code >= results.length) {
+                    results = Arrays.copyOf(results, Math.max(code + 1, 2 * results.length));
+                }
+                if (results[code] == 0) {
+                    results[code] = (byte) (operator.evaluate(decode(column, code), value) ? 1 : -1);
+                }
+                return results[code] == 1;
+            }
+        };
+    }
+
+    // adds the row of a new code to the heap file, outside of the transaction running on
+    // this thread (if any), so that it is not rolled back with it
+    private void save(int column, int code, String s) {
+        Record record = new Record(Arrays.asList(new IntDataBox(column), new IntDataBox(code),
+                                                 new StringDataBox(s, table.getSchema().getFieldType(2)
+                                                                            .getSizeInBytes())));
+        TransactionContext transaction = TransactionContext.getTransaction();
+        if (transaction != null) {
+            TransactionContext.unsetTransaction();
+        }
+        try {
+            table.addRecord(record);
+            // the writes are not logged, so nothing but the pages on disk can restore them
+            pageDirectory.flush();
+        } finally {
+            if (transaction != null) {
+                TransactionContext.setTransaction(transaction);
+            }
+        }
+    }
+
+    // reads the codes in the heap file that are not in memory yet
+    private void refresh() {
+        for (Record record : table) {
+            add(record.getValue(0).getInt(), record.getValue(1).getInt(), record.getValue(2).getString());
+        }
+    }
+
+    private void add(int column, int code, String s) {
+        List<DataBox> columnValues = values.get(column);
+        while (columnValues.size() <= code) {
+            columnValues.add(null);
+        }
+        if (columnValues.get(code) == null) {
+            columnValues.set(code, new StringDataBox(s, lengths[column]));
+            codes.get(column).put(s, code);
+        }
+    }
+}
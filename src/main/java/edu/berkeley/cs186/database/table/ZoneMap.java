@@ -0,0 +1,159 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.common.PredicateOperator;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.TypeId;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The zone map of a table: for each data page, the minimum and maximum value of
+ * each column over the records of the page. Scans with a selection predicate can
+ * skip the pages whose range of values for the predicate's column cannot satisfy
+ * it (see mayMatch), without reading them.
+ *
+ * The range of a page always contains the values of all of its records, but may
+ * be wider: it is widened as records are added to or updated in the page, but not
+ * narrowed as records are deleted. Pages are only skipped if their range is known;
+ * the range of a page is known if the page was new when its first record was added
+ * (or was filled by Table#addRecords), or once a scan that skips pages has read it.
+ * Like the table's statistics (see TableStats), zone maps are kept in memory, so
+ * after a restart the ranges of the pages are known again as they are read.
+ */
+public class ZoneMap {
+    // ranges of the pages with a known range: {minimums, maximums} of the columns
+    // (null for columns of byte arrays, which cannot be compared)
+    private final Map<Long, DataBox[][]> ranges = new HashMap<>();
+    // number of changes to the records of the pages reported so far
+    private long modCount = 0;
+
+    /**
+     * Sets the range of a page to that of its records.
+     */
+    synchronized void setPage(long pageNum, List<Record> records) {
+        ++modCount;
+        ranges.remove(pageNum);
+        for (Record record : records) {
+            widen(pageNum, record, true);
+        }
+    }
+
+    /**
+     * Sets the range of a page to that of its records, read from the page when
+     * getModCount() returned `modCount`, unless records were added, updated, or
+     * deleted since (in which case `records` may be stale).
+     */
+    synchronized void setPage(long pageNum, List<Record> records, long modCount) {
+        if (modCount == this.modCount) {
+            setPage(pageNum, records);
+        }
+    }
+
+    /**
+     * @return the number of changes to the records of the pages made so far (see
+     * setPage(pageNum, records, modCount))
+     */
+    synchronized long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Widens the range of a page to include a record added to or updated in it.
+     * @param newPage whether the page had no record before this one, in which
+     *                case its range becomes known
+     */
+    synchronized void addRecord(long pageNum, Record record, boolean newPage) {
+        ++modCount;
+        if (newPage) {
+            ranges.remove(pageNum);
+        }
+        widen(pageNum, record, newPage);
+    }
+
+    /**
+     * Forgets the range of a page, e.g. because the page was freed.
+     */
+    synchronized void removePage(long pageNum) {
+        ++modCount;
+        ranges.remove(pageNum);
+    }
+
+    /**
+     * @return whether the range of a page is known
+     */
+    public synchronized boolean containsPage(long pageNum) {
+        return ranges.containsKey(pageNum);
+    }
+
+    /**
+     * @return false if no record of the page can have a value of column `column`
+     * satisfying `operator` `value` (e.g. l_shipdate >= 1994-01-01), or true if one
+     * may (including if the range of the page is not known)
+     */
+    public synchronized boolean mayMatch(long pageNum, int column, PredicateOperator operator, DataBox value) {
+        DataBox[][] range = ranges.get(pageNum);
+        if (range == null) {
+            return true;
+        }
+        DataBox min = range[0][column];
+        DataBox max = range[1][column];
+        if (min == null || value.getTypeId() != min.getTypeId()) {
+            // comparisons between types (e.g. of a float with an int) are not
+            // consistent with the ordering of the column's values
+            return true;
+        }
+        // like SelectOperator, (in)equality is tested with equals, which for floats
+        // differs from compareTo for -0.0 and NaN
+        switch (operator) {
+        case EQUALS:
+            return min.equals(value) || max.equals(value)
+                   || (min.compareTo(value) < 0 && max.compareTo(value) > 0);
+        case NOT_EQUALS:
+            return !min.equals(value) || !max.equals(value);
+        case LESS_THAN:
+        case LESS_THAN_EQUALS:
+            return operator.evaluate(min, value);
+        case GREATER_THAN:
+        case GREATER_THAN_EQUALS:
+            return operator.evaluate(max, value);
+        default:
+            return true;
+        }
+    }
+
+    // widens the range of a page to include a record, if the range is known or
+    // `create` is set
+    private void widen(long pageNum, Record record, boolean create) {
+        DataBox[][] range = ranges.get(pageNum);
+        if (range == null) {
+            if (!create) {
+                return;
+            }
+            int numColumns = record.size();
+            range = new DataBox[][] {new DataBox[numColumns], new DataBox[numColumns]};
+            for (int i = 0; i < numColumns; ++i) {
+                DataBox value = record.getValue(i);
+                if (value.getTypeId() != TypeId.BYTE_ARRAY) {
+                    range[0][i] = value;
+                    range[1][i] = value;
+                }
+            }
+            ranges.put(pageNum, range);
+            return;
+        }
+        for (int i = 0; i < range[0].length; ++i) {
+            DataBox value = record.getValue(i);
+            if (range[0][i] == null) {
+                continue;
+            }
+            if (value.compareTo(range[0][i]) < 0) {
+                range[0][i] = value;
+            }
+            if (value.compareTo(range[1][i]) > 0) {
+                range[1][i] = value;
+            }
+        }
+    }
+}
@@ -89,7 +89,7 @@ public class Histogram {
         return quantization(d);
     }
 
-    private float quantization(DataBox d) {
+    public static float quantization(DataBox d) {
         switch (d.getTypeId()) {
         case BOOL:   { return (d.getBool()) ? 1.0f : 0.0f; }
         case INT:    { return (float) d.getInt(); }
@@ -149,6 +149,38 @@ public class Histogram {
             buckets[bucketIndex].increment(quantizedValue);
         }
     }
+
+    /**
+     * Builds the histogram in the same way as buildHistogram(Table, int), from the
+     * quantized values of the attribute (see quantization) rather than from the
+     * records of a table, e.g. when the values were gathered as the table was loaded.
+     *
+     * @param values quantized values, of which the first numValues are used
+     */
+    public void buildHistogram(float[] values, int numValues) {
+        for (int i = 0; i < numValues; i++) {
+            this.minValue = Math.min(this.minValue, values[i]);
+            this.maxValue = Math.max(this.maxValue, values[i]);
+        }
+
+        this.width = (this.maxValue - this.minValue) / this.buckets.length;
+
+        for (int i = 0; i < this.buckets.length; i++) {
+            buckets[i] = new Bucket(this.minValue + (i) * width, this.minValue + (i + 1) * width);
+        }
+
+        for (int i = 0; i < numValues; i++) {
+            int bucketIndex;
+            if (this.width == 0) {
+                bucketIndex = this.buckets.length - 1; //always put in the last bin
+            } else {
+                bucketIndex = (int) Math.floor((values[i] - this.minValue) / this.width);
+                bucketIndex = Math.max(0, bucketIndex);
+                bucketIndex = Math.min(bucketIndex, this.buckets.length - 1);
+            }
+            buckets[bucketIndex].increment(values[i]);
+        }
+    }
     //Accessor Methods//////////////////////////////////////////////////////////////
     /** Return an estimate of the number of distinct values in the histogram. */
     public int getNumDistinct() {
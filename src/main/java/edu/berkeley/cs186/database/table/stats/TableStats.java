@@ -51,8 +51,26 @@ public class TableStats {
     private int numRecords;
     private List<Histogram> histograms;
 
+    // For tables of variable-length records: the space for records in a page (or 0
+    // for fixed-width records), the space each record takes besides its own size,
+    // and the total space taken by the records
+    private int pageSizeInBytes;
+    private int recordOverheadInBytes;
+    private long numRecordBytes;
+
     /** Construct a TableStats for an empty table with schema `schema`. */
     public TableStats(Schema schema, int numRecordsPerPage) {
+        this(schema, numRecordsPerPage, 0, 0);
+    }
+
+    /**
+     * Construct a TableStats for an empty table with schema `schema`, whose records
+     * are stored in variable-length form (see Record#toVariableLengthBytes) in pages
+     * with `pageSizeInBytes` bytes of space for records, each record taking
+     * `recordOverheadInBytes` bytes of space besides its own (e.g. for a slot).
+     * The number of pages is estimated from the space the records actually take.
+     */
+    public TableStats(Schema schema, int numRecordsPerPage, int pageSizeInBytes, int recordOverheadInBytes) {
         this.schema = schema;
         this.numRecordsPerPage = numRecordsPerPage;
         this.numRecords = 0;
@@ -61,6 +79,9 @@ public class TableStats {
             Histogram h = new Histogram();
             this.histograms.add(h);
         }
+        this.pageSizeInBytes = pageSizeInBytes;
+        this.recordOverheadInBytes = recordOverheadInBytes;
+        this.numRecordBytes = 0;
     }
 
     private TableStats(Schema schema, int numRecordsPerPage, int numRecords,
@@ -74,10 +95,17 @@ public class TableStats {
     // Modifiers /////////////////////////////////////////////////////////////////
     public void addRecord(Record record) {
         numRecords++;
+        if (pageSizeInBytes > 0) {
+            numRecordBytes += record.getVariableLengthSizeInBytes() + recordOverheadInBytes;
+        }
     }
 
     public void removeRecord(Record record) {
         numRecords = Math.max(numRecords - 1, 0);
+        if (pageSizeInBytes > 0) {
+            numRecordBytes = Math.max(numRecordBytes - record.getVariableLengthSizeInBytes()
+                                      - recordOverheadInBytes, 0);
+        }
     }
 
     public void refreshHistograms(int buckets, Table table) {
@@ -93,6 +121,25 @@ public class TableStats {
         this.numRecords = Math.round(((float) totalRecords) / schema.size());
     }
 
+    /**
+     * Refreshes the histograms in the same way as refreshHistograms(int, Table),
+     * from the quantized values of the columns of the table's records (see
+     * Histogram#quantization) rather than from a scan of the table.
+     *
+     * @param values values[i] holds the quantized values of column i
+     * @param numRecords number of records, i.e. of values of each column
+     */
+    public void refreshHistograms(int buckets, float[][] values, int numRecords) {
+        List<Histogram> newHistograms = new ArrayList<>();
+        for (int i = 0; i < schema.size(); i++) {
+            Histogram h = new Histogram(buckets);
+            h.buildHistogram(values[i], numRecords);
+            newHistograms.add(h);
+        }
+        this.histograms = newHistograms;
+        this.numRecords = numRecords;
+    }
+
     // Accessors /////////////////////////////////////////////////////////////////
     public Schema getSchema() { return schema; }
 
@@ -105,10 +152,21 @@ public class TableStats {
      * assuming that all records are stored as densely as possible in the pages.
      */
     public int getNumPages() {
+        int numRecordsPerPage = getNumRecordsPerPage();
         if (numRecords % numRecordsPerPage == 0) return numRecords / numRecordsPerPage;
         return (numRecords / numRecordsPerPage) + 1;
     }
 
+    /**
+     * @return the number of records per page: for variable-length records, the
+     * number of records of the average size of the records added that fit in a page
+     */
+    private int getNumRecordsPerPage() {
+        if (pageSizeInBytes == 0 || numRecordBytes == 0) return numRecordsPerPage;
+        long averageBytes = Math.max(numRecordBytes / Math.max(numRecords, 1), 1);
+        return (int) Math.max(Math.min(pageSizeInBytes / averageBytes, numRecordsPerPage), 1);
+    }
+
     public List<Histogram> getHistograms() {
         return histograms;
     }
@@ -168,7 +226,22 @@ public class TableStats {
             }
         }
         int numRecords = copyHistograms.get(column).getCount();
-        return new TableStats(this.schema, this.numRecordsPerPage, numRecords, copyHistograms);
+        return new TableStats(this.schema, this.getNumRecordsPerPage(), numRecords, copyHistograms);
+    }
+
+    /**
+     * Estimates the table statistics for the table that would be produced by
+     * keeping only the columns `columns` (in that order) of every record. The
+     * number of records and of pages stay the same.
+     */
+    public TableStats copyWithProjection(List<Integer> columns) {
+        Schema projectedSchema = new Schema();
+        List<Histogram> copyHistograms = new ArrayList<>();
+        for (int column : columns) {
+            projectedSchema.add(schema.getFieldName(column), schema.getFieldType(column));
+            copyHistograms.add(histograms.get(column));
+        }
+        return new TableStats(projectedSchema, this.getNumRecordsPerPage(), this.numRecords, copyHistograms);
     }
 
     /**
@@ -0,0 +1,55 @@
+package edu.berkeley.cs186.database;
+
+import edu.berkeley.cs186.database.table.Table;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Benchmark for loading the TPC-H tables of the contest workload
+ * (Database#loadDelimitedFile): loads each table into a new database and reports
+ * the load throughput in rows per second, including building the table's
+ * histograms.
+ *
+ * Usage: LoadBenchmark [workload size], where the size is one of 32, 1000, 3000
+ * or 5000 (the default).
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class LoadBenchmark {
+    private static final String[] TABLES = {"lineitem", "orders", "partsupp", "part", "customer"};
+
+    public static void main(String[] args) throws IOException {
+        String size = args.length > 0 ? args[0] : "5000";
+        for (int run = 0; run < 3; ++run) {
+            File dir = Files.createTempDirectory("load-benchmark").toFile();
+            try {
+                Database db = new Database(dir.getPath(), 1024);
+                long totalRows = 0;
+                long totalNanos = 0;
+                for (String tableName : TABLES) {
+                    long start = System.nanoTime();
+                    db.loadDelimitedFile("contest/tables/", tableName, "\\|", "_" + size + ".tbl");
+                    long nanos = System.nanoTime() - start;
+                    int numRows;
+                    try (Transaction t = db.beginTransaction()) {
+                        Table table = t.getTransactionContext().getTable(tableName);
+                        numRows = table.getStats().getNumRecords();
+                    }
+                    totalRows += numRows;
+                    totalNanos += nanos;
+                    System.out.printf("%-8s %7d rows  %9.0f rows/s%n", tableName, numRows, numRows / (nanos / 1e9));
+                }
+                System.out.printf("total    %7d rows  %9.0f rows/s%n%n", totalRows, totalRows / (totalNanos / 1e9));
+                db.close();
+            } finally {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+}
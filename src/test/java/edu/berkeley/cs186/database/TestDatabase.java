@@ -7,10 +7,15 @@ import edu.berkeley.cs186.database.databox.DataBox;
 import edu.berkeley.cs186.database.databox.IntDataBox;
 import edu.berkeley.cs186.database.databox.StringDataBox;
 import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.memory.BufferMetrics;
 import edu.berkeley.cs186.database.query.QueryPlan;
+import edu.berkeley.cs186.database.table.PageLayout;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.RecordId;
 import edu.berkeley.cs186.database.table.Schema;
+import edu.berkeley.cs186.database.table.Table;
+import edu.berkeley.cs186.database.table.stats.Histogram;
+import edu.berkeley.cs186.database.table.stats.TableStats;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -19,10 +24,17 @@ import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 @Category({Proj99Tests.class, SystemTests.class})
 public class TestDatabase {
@@ -148,6 +160,65 @@ public class TestDatabase {
         }
     }
 
+    @Test
+    public void testSlottedTableDurability() {
+        Schema s = new Schema()
+                .add("id", Type.intType())
+                .add("comment", Type.stringType(100));
+        String tableName = "testTable1";
+
+        RecordId rid;
+        try(Transaction t1 = db.beginTransaction()) {
+            t1.createTable(s, tableName, PageLayout.SLOTTED);
+            t1.insert(tableName, 1, "short");
+            rid = t1.getTransactionContext().addRecord(tableName, new Record(2, "a bit longer"));
+        }
+
+        db.close();
+        db = new Database(this.filename, 32);
+
+        try(Transaction t1 = db.beginTransaction()) {
+            assertEquals(PageLayout.SLOTTED, t1.getTransactionContext().getTable(tableName).getLayout());
+            assertEquals(new Record(2, "a bit longer"), t1.getTransactionContext().getRecord(tableName, rid));
+            Iterator<Record> iter = t1.query(tableName).execute();
+            assertEquals(new Record(1, "short"), iter.next());
+            assertEquals(new Record(2, "a bit longer"), iter.next());
+            assertFalse(iter.hasNext());
+        }
+    }
+
+    /**
+     * Loading a file builds the same histograms as scanning the loaded table.
+     */
+    @Test
+    public void testLoadCSVStatistics() throws Exception {
+        db.loadCSV("Students");
+        try(Transaction t = db.beginTransaction()) {
+            Table table = t.getTransactionContext().getTable("Students");
+            Iterator<Record> iter = table.iterator();
+            assertEquals(new Record(1, "Augustina Mazzoni", "Chemistry", 1.005420210172708f), iter.next());
+            int numRecords = 1;
+            while (iter.hasNext()) {
+                iter.next();
+                ++numRecords;
+            }
+            assertEquals(200, numRecords);
+
+            TableStats stats = table.getStats();
+            assertEquals(200, stats.getNumRecords());
+            List<Histogram> loaded = stats.getHistograms();
+            table.buildStatistics(10);
+            List<Histogram> scanned = stats.getHistograms();
+            assertEquals(200, stats.getNumRecords());
+            for (int i = 0; i < scanned.size(); i++) {
+                for (int j = 0; j < 10; j++) {
+                    assertEquals(scanned.get(i).get(j), loaded.get(i).get(j));
+                    assertEquals(scanned.get(i).get(j).getDistinctCount(), loaded.get(i).get(j).getDistinctCount());
+                }
+            }
+        }
+    }
+
     @Test
     public void testREADMESample() {
         try (Transaction t1 = db.beginTransaction()) {
@@ -306,4 +377,169 @@ public class TestDatabase {
             assertFalse(iter.hasNext());
         }
     }
+
+    @Test
+    public void testRangeQuerySkipsPages() {
+        int numRecords = 2000;
+        try (Transaction t1 = db.beginTransaction()) {
+            Schema s = new Schema()
+                    .add("id", Type.intType())
+                    .add("comment", Type.stringType(100));
+            t1.createTable(s, "table1");
+            for (int i = 0; i < numRecords; ++i) {
+                t1.insert("table1", i, "comment " + i);
+            }
+            t1.commit();
+        }
+
+        try (Transaction t2 = db.beginTransaction()) {
+            QueryPlan scan = t2.query("table1");
+            scan.execute();
+            int numPages = scan.getFinalOperator().estimateIOCost();
+
+            // SELECT * FROM table1 WHERE id >= 1900 AND id < 1950;
+            QueryPlan queryPlan = t2.query("table1");
+            queryPlan.select("id", PredicateOperator.GREATER_THAN_EQUALS, 1900);
+            queryPlan.select("id", PredicateOperator.LESS_THAN, 1950);
+            Iterator<Record> iter = queryPlan.execute();
+            for (int i = 1900; i < 1950; ++i) {
+                assertEquals(new Record(i, "comment " + i), iter.next());
+            }
+            assertFalse(iter.hasNext());
+
+            // only the pages with ids in the range are read
+            assertTrue(queryPlan.getFinalOperator().estimateIOCost() <= 3);
+            assertTrue(numPages > 10);
+            t2.commit();
+        }
+    }
+
+    /**
+     * Queries on a table with a dictionary-encoded column filter and group by the
+     * column, and the table and its dictionary are read again after a restart.
+     */
+    @Test
+    public void testDictionaryEncodedTable() {
+        String[] modes = {"AIR", "MAIL", "SHIP", "TRUCK"};
+        int numRecords = 1000;
+        try (Transaction t1 = db.beginTransaction()) {
+            Schema s = new Schema()
+                    .add("id", Type.intType())
+                    .add("mode", Type.stringType(10));
+            t1.createTable(s, "table1", PageLayout.BITMAP, Arrays.asList("mode"));
+            for (int i = 0; i < numRecords; ++i) {
+                t1.insert("table1", i, modes[i % modes.length]);
+            }
+            t1.commit();
+        }
+
+        db.close();
+        db = new Database(this.filename, 32);
+
+        try (Transaction t2 = db.beginTransaction()) {
+            // SELECT mode, COUNT(*) FROM table1 WHERE mode <> 'MAIL' GROUP BY mode;
+            QueryPlan queryPlan = t2.query("table1");
+            queryPlan.select("mode", PredicateOperator.NOT_EQUALS, "MAIL");
+            queryPlan.project("mode", "COUNT(*)");
+            queryPlan.groupBy("mode");
+            List<Record> groups = new ArrayList<>();
+            queryPlan.execute().forEachRemaining(groups::add);
+            groups.sort(Comparator.comparing(r -> r.getValue(0)));
+            assertEquals(Arrays.asList(new Record("AIR", numRecords / 4), new Record("SHIP", numRecords / 4),
+                                       new Record("TRUCK", numRecords / 4)), groups);
+
+            // SELECT * FROM table1 WHERE mode = 'SHIP' AND id < 20;
+            queryPlan = t2.query("table1");
+            queryPlan.select("mode", PredicateOperator.EQUALS, "SHIP");
+            queryPlan.select("id", PredicateOperator.LESS_THAN, 20);
+            Iterator<Record> iter = queryPlan.execute();
+            for (int i = 2; i < 20; i += modes.length) {
+                assertEquals(new Record(i, "SHIP"), iter.next());
+            }
+            assertFalse(iter.hasNext());
+            t2.commit();
+        }
+    }
+
+    /**
+     * All Table objects of a table with a dictionary-encoded column share its
+     * dictionary, so values added by concurrent transactions get distinct codes.
+     */
+    @Test
+    public void testInsertReusesPageDirectory() {
+        try (Transaction t1 = db.beginTransaction()) {
+            Schema s = new Schema()
+                    .add("id", Type.intType())
+                    .add("name", Type.stringType(10));
+            t1.createTable(s, "table1");
+            // build the page directory, and fill the first data page
+            for (int i = 0; i < 10; ++i) {
+                t1.insert("table1", i, "name " + i);
+            }
+            int partNum = t1.getTransactionContext().getTable("table1").getPartNum();
+            BufferMetrics metrics = db.getBufferManager().getPartitionMetrics(partNum);
+
+            // each insert fetches the data page it goes to, and only that: the header page
+            // is neither reloaded nor read again to find the free space
+            int numInserts = 100;
+            long accesses = metrics.getHits() + metrics.getMisses();
+            for (int i = 0; i < numInserts; ++i) {
+                t1.insert("table1", i, "name " + i);
+            }
+            long insertAccesses = metrics.getHits() + metrics.getMisses() - accesses;
+            assertEquals(numInserts, insertAccesses);
+        }
+    }
+
+    @Test
+    public void testSharedDictionary() throws InterruptedException {
+        try (Transaction t1 = db.beginTransaction()) {
+            Schema s = new Schema()
+                    .add("id", Type.intType())
+                    .add("mode", Type.stringType(10));
+            t1.createTable(s, "table1", PageLayout.BITMAP, Arrays.asList("mode"));
+            TransactionContext context = t1.getTransactionContext();
+            assertSame(context.getDictionary("table1"), context.getDictionary("table1"));
+            t1.commit();
+        }
+
+        // each thread adds records with values of its own, all new to the dictionary
+        Thread[] threads = new Thread[4];
+        Throwable[] errors = new Throwable[threads.length];
+        int numValues = 50;
+        for (int i = 0; i < threads.length; ++i) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                try (Transaction t = db.beginTransaction()) {
+                    for (int j = 0; j < numValues; ++j) {
+                        t.insert("table1", thread * numValues + j, "mode " + (thread * numValues + j));
+                    }
+                    t.commit();
+                } catch (Throwable e) {
+                    errors[thread] = e;
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i].join();
+            assertNull(errors[i]);
+        }
+
+        db.close();
+        db = new Database(this.filename, 32);
+
+        try (Transaction t2 = db.beginTransaction()) {
+            List<Record> records = new ArrayList<>();
+            t2.query("table1").execute().forEachRemaining(records::add);
+            records.sort(Comparator.comparing(r -> r.getValue(0)));
+            assertEquals(threads.length * numValues, records.size());
+            for (int i = 0; i < records.size(); ++i) {
+                assertEquals(new Record(i, "mode " + i), records.get(i));
+            }
+            t2.commit();
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package edu.berkeley.cs186.database;
+
+import edu.berkeley.cs186.database.categories.Proj99Tests;
+import edu.berkeley.cs186.database.categories.SystemTests;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.table.Record;
+import edu.berkeley.cs186.database.table.Schema;
+import edu.berkeley.cs186.database.table.stats.Histogram;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@Category({Proj99Tests.class, SystemTests.class})
+public class TestDelimitedFileLoader {
+    private static final Schema SCHEMA = new Schema()
+            .add("id", Type.intType())
+            .add("name", Type.stringType(10))
+            .add("price", Type.floatType());
+
+    private static List<Record> load(DelimitedFileLoader loader, String rows) throws IOException {
+        List<Record> records = new ArrayList<>();
+        loader.load(new BufferedReader(new StringReader(rows)), 2, iter -> iter.forEachRemaining(records::add));
+        return records;
+    }
+
+    @Test
+    public void testLoadRows() throws IOException {
+        DelimitedFileLoader loader = new DelimitedFileLoader(SCHEMA, "\\|", 2);
+        // rows may end with the delimiter, and blank rows are skipped
+        List<Record> records = load(loader, "1|a b|1.5|\n\n2|c|2.5\n");
+        assertEquals(2, records.size());
+        assertEquals(new Record(1, "a b", 1.5f), SCHEMA.verify(records.get(0)));
+        assertEquals(new Record(2, "c", 2.5f), SCHEMA.verify(records.get(1)));
+        assertEquals(2, loader.getNumRecords());
+    }
+
+    @Test
+    public void testLoadRowsWithRegexDelimiter() throws IOException {
+        DelimitedFileLoader loader = new DelimitedFileLoader(SCHEMA, ",\\s*", 2);
+        List<Record> records = load(loader, "1,  a,1.5\n2,c,   2.5\n");
+        assertEquals(new Record(1, "a", 1.5f), SCHEMA.verify(records.get(0)));
+        assertEquals(new Record(2, "c", 2.5f), SCHEMA.verify(records.get(1)));
+    }
+
+    /**
+     * Rows are parsed in chunks by several threads, but records are passed on in
+     * the order of the rows, along with their quantized values.
+     */
+    @Test
+    public void testLoadManyRowsInOrder() throws IOException {
+        int numRows = 10000;
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < numRows; i++) {
+            rows.append(i).append('|').append("n").append(i % 100).append('|').append(i / 4.0f).append('\n');
+        }
+        DelimitedFileLoader loader = new DelimitedFileLoader(SCHEMA, "\\|", 4);
+        List<Record> records = load(loader, rows.toString());
+        assertEquals(numRows, records.size());
+        assertEquals(numRows, loader.getNumRecords());
+        float[][] values = loader.getQuantizedValues();
+        for (int i = 0; i < numRows; i++) {
+            Record expected = new Record(i, "n" + (i % 100), i / 4.0f);
+            assertEquals(expected, SCHEMA.verify(records.get(i)));
+            for (int j = 0; j < SCHEMA.size(); j++) {
+                assertEquals(Histogram.quantization(expected.getValue(j)), values[j][i], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testLoadBadRow() throws IOException {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            rows.append(i == 2500 ? "x" : Integer.toString(i)).append("|n|1.0\n");
+        }
+        String[] badRows = {rows.toString(), "1|n\n", "1|n|1.0|2\n"};
+        int[] badLines = {2502, 2, 2};
+        for (int i = 0; i < badRows.length; i++) {
+            try {
+                load(new DelimitedFileLoader(SCHEMA, "\\|", 2), badRows[i]);
+                fail();
+            } catch (DatabaseException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line " + badLines[i] + ":"));
+            }
+        }
+    }
+}
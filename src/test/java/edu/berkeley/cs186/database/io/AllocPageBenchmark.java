@@ -0,0 +1,60 @@
+package edu.berkeley.cs186.database.io;
+
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Microbenchmark for page allocation within a partition (PartitionHandle#allocPage),
+ * with master and header page writes batched so that the search for a free page
+ * dominates:
+ * - append: allocates pages into an empty partition
+ * - refill: frees every 16th page of a full header page, and allocates them again
+ * Reports the average time per allocation.
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class AllocPageBenchmark {
+    private static final int APPEND_PAGES = 3 * DiskSpaceManagerImpl.DATA_PAGES_PER_HEADER;
+    private static final int REFILL_STRIDE = 16;
+
+    public static void main(String[] args) throws IOException {
+        for (int i = 0; i < 3; ++i) {
+            run();
+        }
+    }
+
+    private static void run() throws IOException {
+        File file = File.createTempFile("alloc-benchmark", null);
+        PartitionHandle pi = new PartitionHandle(1, new DummyRecoveryManager(), false);
+        pi.partitionLock.writeLock().lock();
+        try {
+            pi.open(file.getPath());
+            pi.setSyncBatchSize(Integer.MAX_VALUE);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < APPEND_PAGES; ++i) {
+                pi.allocPage();
+            }
+            double appendNanos = (double) (System.nanoTime() - start) / APPEND_PAGES;
+
+            int numFreed = DiskSpaceManagerImpl.DATA_PAGES_PER_HEADER / REFILL_STRIDE;
+            for (int i = 0; i < numFreed; ++i) {
+                pi.freePage(i * REFILL_STRIDE);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < numFreed; ++i) {
+                pi.allocPage();
+            }
+            double refillNanos = (double) (System.nanoTime() - start) / numFreed;
+
+            System.out.printf("append: %8.0f ns/page  refill: %8.0f ns/page%n", appendNanos, refillNanos);
+            pi.close(false);
+        } finally {
+            pi.partitionLock.writeLock().unlock();
+            file.delete();
+        }
+    }
+}
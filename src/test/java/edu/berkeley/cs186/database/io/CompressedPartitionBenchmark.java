@@ -0,0 +1,92 @@
+package edu.berkeley.cs186.database.io;
+
+import edu.berkeley.cs186.database.Database;
+import edu.berkeley.cs186.database.table.Record;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Benchmark for compressed partitions (DiskSpaceManagerImpl#compressPart) on the TPC-H
+ * tables of the contest workload with the most pages: loads each table, then reports
+ * - the compression ratio: page bytes over bytes stored (and read) for the pages
+ * - the throughput of scans reading every page of the table from its partition file
+ *   (from the OS page cache), before and after compressing the partition, in MB of
+ *   (uncompressed) pages per second
+ *
+ * Usage: CompressedPartitionBenchmark [workload size], where the size is one of
+ * 32, 1000, 3000 or 5000 (the default).
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class CompressedPartitionBenchmark {
+    private static final String[] TABLES = {"lineitem", "partsupp"};
+    private static final int SCANS = 50;
+
+    public static void main(String[] args) throws IOException {
+        String size = args.length > 0 ? args[0] : "5000";
+        File dir = Files.createTempDirectory("compressed-benchmark").toFile();
+        try {
+            Database db = new Database(dir.getPath(), 256);
+            DiskSpaceManagerImpl diskSpaceManager = (DiskSpaceManagerImpl) db.getDiskSpaceManager();
+            for (String table : TABLES) {
+                db.loadDelimitedFile("contest/tables/", table, "\\|", "_" + size + ".tbl");
+            }
+            db.waitAllTransactions();
+            db.getBufferManager().evictAll();
+
+            for (String table : TABLES) {
+                int partNum = -1;
+                for (Record record : db.scanTableMetadataRecords()) {
+                    if (record.getValue(0).getString().equals(table)) {
+                        partNum = record.getValue(1).getInt();
+                    }
+                }
+                int numPages = 0;
+                while (diskSpaceManager.pageAllocated(DiskSpaceManager.getVirtualPageNum(partNum, numPages))) {
+                    ++numPages;
+                }
+                double rawMBps = scan(diskSpaceManager, partNum, numPages);
+                long storedBytes = storedBytes(diskSpaceManager, partNum, numPages);
+                diskSpaceManager.compressPart(partNum);
+                double compressedMBps = scan(diskSpaceManager, partNum, numPages);
+                System.out.printf("%-8s %5d pages  ratio: %5.2f  scan: %7.1f MB/s raw, %7.1f MB/s compressed%n",
+                                  table, numPages, (double) numPages * DiskSpaceManager.PAGE_SIZE / storedBytes,
+                                  rawMBps, compressedMBps);
+            }
+            db.close();
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static double scan(DiskSpaceManager diskSpaceManager, int partNum, int numPages) {
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        long start = System.nanoTime();
+        for (int scan = 0; scan < SCANS; ++scan) {
+            for (int i = 0; i < numPages; ++i) {
+                diskSpaceManager.readPage(DiskSpaceManager.getVirtualPageNum(partNum, i), buf);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) SCANS * numPages * DiskSpaceManager.PAGE_SIZE / (1 << 20) / seconds;
+    }
+
+    // Bytes each page takes in its slot once the partition is compressed.
+    private static long storedBytes(DiskSpaceManager diskSpaceManager, int partNum, int numPages) {
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        byte[] compressed = new byte[DiskSpaceManager.PAGE_SIZE];
+        long bytes = 0;
+        for (int i = 0; i < numPages; ++i) {
+            diskSpaceManager.readPage(DiskSpaceManager.getVirtualPageNum(partNum, i), buf);
+            int end = LZCodec.compress(buf, buf.length, compressed, Integer.BYTES, compressed.length);
+            bytes += end < 0 ? DiskSpaceManager.PAGE_SIZE : end;
+        }
+        return bytes;
+    }
+}
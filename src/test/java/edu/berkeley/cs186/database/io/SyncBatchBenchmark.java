@@ -0,0 +1,91 @@
+package edu.berkeley.cs186.database.io;
+
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.memory.BufferManager;
+import edu.berkeley.cs186.database.memory.ClockEvictionPolicy;
+import edu.berkeley.cs186.database.memory.Page;
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Benchmark for batching data page writes (DiskSpaceManagerImpl#setSyncBatchSize):
+ * - load: pages are appended to a partition through a small buffer, which writes
+ *   them out as they are evicted
+ * - spill: runs of pages are written to temporary partitions, read back, and freed,
+ *   as by an external sort
+ * Reports pages per second for several batch sizes (1 forces every write).
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class SyncBatchBenchmark {
+    private static final int NUM_FRAMES = 64;
+    private static final int LOAD_PAGES = 2048;
+    private static final int RUNS = 8;
+    private static final int RUN_PAGES = 256;
+
+    public static void main(String[] args) throws IOException {
+        for (int syncBatchSize : new int[] {1, 16, 256}) {
+            File dir = Files.createTempDirectory("sync-benchmark").toFile();
+            try {
+                DiskSpaceManagerImpl diskSpaceManager = new DiskSpaceManagerImpl(dir.getPath(),
+                        new DummyRecoveryManager());
+                diskSpaceManager.allocPart(0); // log partition, always forced
+                diskSpaceManager.setSyncBatchSize(syncBatchSize);
+                BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                        NUM_FRAMES, new ClockEvictionPolicy());
+                System.out.printf("batch %3d  load: %8.0f pages/s  spill: %8.0f pages/s%n", syncBatchSize,
+                                  load(diskSpaceManager, bufferManager), spill(diskSpaceManager, bufferManager));
+                bufferManager.close();
+                diskSpaceManager.close();
+            } finally {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static double load(DiskSpaceManager diskSpaceManager, BufferManager bufferManager) {
+        int partNum = diskSpaceManager.allocPart();
+        long start = System.nanoTime();
+        for (int i = 0; i < LOAD_PAGES; ++i) {
+            writePage(bufferManager, partNum, i);
+        }
+        bufferManager.evictAll();
+        diskSpaceManager.sync();
+        return LOAD_PAGES / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double spill(DiskSpaceManager diskSpaceManager, BufferManager bufferManager) {
+        long start = System.nanoTime();
+        int[] partNums = new int[RUNS];
+        long[][] pageNums = new long[RUNS][RUN_PAGES];
+        for (int run = 0; run < RUNS; ++run) {
+            partNums[run] = diskSpaceManager.allocPart();
+            for (int i = 0; i < RUN_PAGES; ++i) {
+                pageNums[run][i] = writePage(bufferManager, partNums[run], i);
+            }
+        }
+        for (int run = 0; run < RUNS; ++run) {
+            for (long pageNum : pageNums[run]) {
+                Page page = bufferManager.fetchPage(new DummyLockContext(), pageNum);
+                page.getBuffer().getInt();
+                page.unpin();
+            }
+            bufferManager.freePart(partNums[run]);
+        }
+        return RUNS * RUN_PAGES / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static long writePage(BufferManager bufferManager, int partNum, int value) {
+        Page page = bufferManager.fetchNewPage(new DummyLockContext(), partNum);
+        page.getBuffer().putInt(value);
+        page.unpin();
+        return page.getPageNum();
+    }
+}
@@ -0,0 +1,77 @@
+package edu.berkeley.cs186.database.io;
+
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.memory.BufferManager;
+import edu.berkeley.cs186.database.memory.ClockEvictionPolicy;
+import edu.berkeley.cs186.database.memory.Page;
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Benchmark for temporary partitions (DiskSpaceManager#allocTempPart): runs of pages are
+ * written to partitions through a small buffer, read back, and freed, as by an external
+ * sort, using regular partitions and temporary partitions with and without a memory
+ * budget for them. Reports pages per second.
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class TempPartitionBenchmark {
+    private static final int NUM_FRAMES = 64;
+    private static final int RUNS = 8;
+    private static final int RUN_PAGES = 256;
+
+    public static void main(String[] args) throws IOException {
+        for (int i = 0; i < 2; ++i) {
+            run("regular", false, 0);
+            run("temp, spilled", true, 0);
+            run("temp, in memory", true, RUNS * RUN_PAGES);
+        }
+    }
+
+    private static void run(String name, boolean temp, int tempMemoryBudget) throws IOException {
+        File dir = Files.createTempDirectory("temp-benchmark").toFile();
+        try {
+            DiskSpaceManagerImpl diskSpaceManager = new DiskSpaceManagerImpl(dir.getPath(),
+                    new DummyRecoveryManager());
+            diskSpaceManager.allocPart(0);
+            diskSpaceManager.setTempMemoryBudget(tempMemoryBudget);
+            BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                    NUM_FRAMES, new ClockEvictionPolicy());
+
+            long start = System.nanoTime();
+            int[] partNums = new int[RUNS];
+            long[][] pageNums = new long[RUNS][RUN_PAGES];
+            for (int run = 0; run < RUNS; ++run) {
+                partNums[run] = temp ? diskSpaceManager.allocTempPart() : diskSpaceManager.allocPart();
+                for (int i = 0; i < RUN_PAGES; ++i) {
+                    Page page = bufferManager.fetchNewPage(new DummyLockContext(), partNums[run]);
+                    page.getBuffer().putInt(i);
+                    page.unpin();
+                    pageNums[run][i] = page.getPageNum();
+                }
+            }
+            for (int run = 0; run < RUNS; ++run) {
+                for (long pageNum : pageNums[run]) {
+                    Page page = bufferManager.fetchPage(new DummyLockContext(), pageNum);
+                    page.getBuffer().getInt();
+                    page.unpin();
+                }
+                bufferManager.freePart(partNums[run]);
+            }
+            double pagesPerSecond = RUNS * RUN_PAGES / ((System.nanoTime() - start) / 1e9);
+            System.out.printf("%-16s %8.0f pages/s%n", name, pagesPerSecond);
+
+            bufferManager.close();
+            diskSpaceManager.close();
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
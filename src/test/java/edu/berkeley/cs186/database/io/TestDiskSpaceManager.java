@@ -2,6 +2,10 @@ package edu.berkeley.cs186.database.io;
 
 import edu.berkeley.cs186.database.categories.Proj99Tests;
 import edu.berkeley.cs186.database.categories.SystemTests;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.memory.BufferManager;
+import edu.berkeley.cs186.database.memory.ClockEvictionPolicy;
+import edu.berkeley.cs186.database.memory.Page;
 import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
 import org.junit.Before;
 import org.junit.Rule;
@@ -9,9 +13,14 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -201,6 +210,32 @@ public class TestDiskSpaceManager {
         diskSpaceManager.close();
     }
 
+    @Test
+    public void testReadWriteDirectBuffer() {
+        diskSpaceManager = getDiskSpaceManager();
+        int partNum = diskSpaceManager.allocPart();
+        long pageNum = diskSpaceManager.allocPage(partNum);
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(DiskSpaceManager.PAGE_SIZE);
+        for (int i = 0; i < DiskSpaceManager.PAGE_SIZE; ++i) {
+            buf.put(i, (byte) (Integer.valueOf(i).hashCode() & 0xFF));
+        }
+        diskSpaceManager.writePage(pageNum, buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        ByteBuffer readbuf = ByteBuffer.allocateDirect(DiskSpaceManager.PAGE_SIZE);
+        diskSpaceManager.readPage(pageNum, readbuf);
+        readbuf.flip();
+
+        assertEquals(buf, readbuf);
+        byte[] bytes = new byte[DiskSpaceManager.PAGE_SIZE];
+        diskSpaceManager.readPage(pageNum, bytes);
+        assertEquals(buf, ByteBuffer.wrap(bytes));
+
+        diskSpaceManager.freePart(partNum);
+        diskSpaceManager.close();
+    }
+
     @Test
     public void testReadWritePersistent() {
         diskSpaceManager = getDiskSpaceManager();
@@ -298,5 +333,388 @@ public class TestDiskSpaceManager {
         diskSpaceManager.freePart(partNum2);
         diskSpaceManager.close();
     }
-}
 
+    @Test
+    public void testMemoryMappedAllocPart() {
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager(), true);
+        int partNum = diskSpaceManager.allocPart();
+        diskSpaceManager.allocPage(partNum);
+        diskSpaceManager.freePage(DiskSpaceManager.getVirtualPageNum(partNum, 0));
+
+        // mapping a file must not grow it past the master page, header page and first extent
+        assertEquals((2 + PartitionHandle.MIN_EXTENT_PAGES) * DiskSpaceManager.PAGE_SIZE,
+                     managerRoot.resolve("0").toFile().length());
+
+        diskSpaceManager.freePart(partNum);
+        diskSpaceManager.close();
+        assertFalse(managerRoot.resolve("0").toFile().exists());
+    }
+
+    @Test
+    public void testMemoryMappedReadWrite() {
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager(), true);
+        int partNum = diskSpaceManager.allocPart();
+
+        // pages are written both past the end of the file and within the mapping as it grows
+        long[] pageNums = new long[100];
+        byte[][] bufs = new byte[pageNums.length][DiskSpaceManager.PAGE_SIZE];
+        for (int i = 0; i < pageNums.length; ++i) {
+            pageNums[i] = diskSpaceManager.allocPage(partNum);
+            for (int j = 0; j < DiskSpaceManager.PAGE_SIZE; ++j) {
+                bufs[i][j] = (byte) ((i + j) & 0xFF);
+            }
+            diskSpaceManager.writePage(pageNums[i], bufs[i]);
+        }
+        byte[] readbuf = new byte[DiskSpaceManager.PAGE_SIZE];
+        for (int i = 0; i < pageNums.length; ++i) {
+            diskSpaceManager.readPage(pageNums[i], readbuf);
+            assertArrayEquals(bufs[i], readbuf);
+        }
+        diskSpaceManager.close();
+
+        // contents persist, and are the same when read without the mapping
+        diskSpaceManager = getDiskSpaceManager();
+        for (int i = 0; i < pageNums.length; ++i) {
+            diskSpaceManager.readPage(pageNums[i], readbuf);
+            assertArrayEquals(bufs[i], readbuf);
+        }
+        diskSpaceManager.close();
+
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager(), true);
+        ByteBuffer direct = ByteBuffer.allocateDirect(DiskSpaceManager.PAGE_SIZE);
+        diskSpaceManager.readPage(pageNums[42], direct);
+        direct.flip();
+        assertEquals(ByteBuffer.wrap(bufs[42]), direct);
+        assertTrue(diskSpaceManager.pageAllocated(pageNums[99]));
+        assertFalse(diskSpaceManager.pageAllocated(pageNums[99] + 1));
+        diskSpaceManager.freePart(partNum);
+        diskSpaceManager.close();
+    }
+
+    @Test
+    public void testSyncBatch() {
+        DiskSpaceManagerImpl batched = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager());
+        batched.setSyncBatchSize(100);
+        int logPartNum = batched.allocPart(0);
+        int partNum = batched.allocPart();
+        long logPageNum = batched.allocPage(logPartNum);
+        long pageNum = batched.allocPage(partNum);
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        buf[0] = 42;
+        batched.writePage(pageNum, buf);
+
+        // header page changes of the log partition are written right away, others with the batch
+        diskSpaceManager = getDiskSpaceManager();
+        assertTrue(diskSpaceManager.pageAllocated(logPageNum));
+        assertFalse(diskSpaceManager.pageAllocated(pageNum));
+        diskSpaceManager.close();
+
+        batched.sync();
+        diskSpaceManager = getDiskSpaceManager();
+        assertTrue(diskSpaceManager.pageAllocated(pageNum));
+        byte[] readbuf = new byte[DiskSpaceManager.PAGE_SIZE];
+        diskSpaceManager.readPage(pageNum, readbuf);
+        assertArrayEquals(buf, readbuf);
+        diskSpaceManager.close();
+
+        // closing writes out the rest of the batch
+        long pageNum2 = batched.allocPage(partNum);
+        batched.close();
+        diskSpaceManager = getDiskSpaceManager();
+        assertTrue(diskSpaceManager.pageAllocated(pageNum2));
+        diskSpaceManager.close();
+    }
+
+    @Test
+    public void testAllocPageLowestFree() {
+        diskSpaceManager = getDiskSpaceManager();
+        int partNum = diskSpaceManager.allocPart();
+        for (int i = 0; i < 200; ++i) {
+            assertEquals(DiskSpaceManager.getVirtualPageNum(partNum, i), diskSpaceManager.allocPage(partNum));
+        }
+
+        // freed pages are reused lowest first, before the partition grows
+        int[] freed = {5, 63, 64, 130};
+        for (int i = freed.length - 1; i >= 0; --i) {
+            diskSpaceManager.freePage(DiskSpaceManager.getVirtualPageNum(partNum, freed[i]));
+        }
+        for (int pageNum : freed) {
+            assertEquals(DiskSpaceManager.getVirtualPageNum(partNum, pageNum), diskSpaceManager.allocPage(partNum));
+        }
+        assertEquals(DiskSpaceManager.getVirtualPageNum(partNum, 200), diskSpaceManager.allocPage(partNum));
+        diskSpaceManager.freePage(DiskSpaceManager.getVirtualPageNum(partNum, 100));
+        diskSpaceManager.close();
+
+        // the free page is found again after reopening
+        diskSpaceManager = getDiskSpaceManager();
+        assertEquals(DiskSpaceManager.getVirtualPageNum(partNum, 100), diskSpaceManager.allocPage(partNum));
+        assertEquals(DiskSpaceManager.getVirtualPageNum(partNum, 201), diskSpaceManager.allocPage(partNum));
+        diskSpaceManager.close();
+    }
+
+    @Test
+    public void testAllocPageExtents() {
+        diskSpaceManager = getDiskSpaceManager();
+        int partNum = diskSpaceManager.allocPart();
+        File file = managerRoot.resolve(Integer.toString(partNum)).toFile();
+
+        // the file grows by an extent, which then doubles
+        long[] pageNums = new long[PartitionHandle.MIN_EXTENT_PAGES + 1];
+        pageNums[0] = diskSpaceManager.allocPage(partNum);
+        assertEquals((2 + PartitionHandle.MIN_EXTENT_PAGES) * DiskSpaceManager.PAGE_SIZE, file.length());
+        for (int i = 1; i < pageNums.length; ++i) {
+            pageNums[i] = diskSpaceManager.allocPage(partNum);
+        }
+        assertEquals((2 + 3 * PartitionHandle.MIN_EXTENT_PAGES) * DiskSpaceManager.PAGE_SIZE, file.length());
+
+        // pages are zeroed whether allocated from an extent or reused
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        buf[100] = 1;
+        diskSpaceManager.writePage(pageNums[3], buf);
+        diskSpaceManager.freePage(pageNums[3]);
+        assertEquals(pageNums[3], diskSpaceManager.allocPage(partNum));
+        byte[] zeros = new byte[DiskSpaceManager.PAGE_SIZE];
+        for (long pageNum : pageNums) {
+            diskSpaceManager.readPage(pageNum, buf);
+            assertArrayEquals(zeros, buf);
+        }
+        diskSpaceManager.close();
+    }
+
+    @Test
+    public void testConcurrentPartitions() throws InterruptedException {
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager(), true);
+        int sharedPart = diskSpaceManager.allocPart();
+        long[] sharedPages = new long[64];
+        for (int i = 0; i < sharedPages.length; ++i) {
+            sharedPages[i] = diskSpaceManager.allocPage(sharedPart);
+            byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+            buf[0] = (byte) i;
+            diskSpaceManager.writePage(sharedPages[i], buf);
+        }
+
+        // each thread writes its own partition and reads the shared one
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                try {
+                    int partNum = diskSpaceManager.allocPart();
+                    byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+                    for (int i = 0; i < 100; ++i) {
+                        long pageNum = diskSpaceManager.allocPage(partNum);
+                        buf[0] = (byte) partNum;
+                        buf[1] = (byte) i;
+                        diskSpaceManager.writePage(pageNum, buf);
+                        diskSpaceManager.readPage(pageNum, buf);
+                        assertEquals((byte) partNum, buf[0]);
+                        assertEquals((byte) i, buf[1]);
+
+                        int shared = i % sharedPages.length;
+                        diskSpaceManager.readPage(sharedPages[shared], buf);
+                        assertEquals((byte) shared, buf[0]);
+                    }
+                    diskSpaceManager.freePart(partNum);
+                    try {
+                        diskSpaceManager.allocPage(partNum);
+                        fail("allocated page in freed partition");
+                    } catch (NoSuchElementException e) { /* do nothing */ }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        diskSpaceManager.close();
+    }
+
+    @Test
+    public void testTempPartitions() throws IOException {
+        DiskSpaceManagerImpl diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(),
+                new DummyRecoveryManager());
+        diskSpaceManager.setTempMemoryBudget(2);
+        int partNum = diskSpaceManager.allocTempPart();
+        assertTrue(diskSpaceManager.isTempPart(partNum));
+        assertFalse(managerRoot.resolve(Integer.toString(partNum)).toFile().exists());
+
+        // the first two pages are kept in memory, the rest are spilled
+        long[] pageNums = new long[4];
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        for (int i = 0; i < pageNums.length; ++i) {
+            pageNums[i] = diskSpaceManager.allocPage(partNum);
+            assertEquals(DiskSpaceManager.getVirtualPageNum(partNum, i), pageNums[i]);
+            diskSpaceManager.readPage(pageNums[i], buf);
+            assertArrayEquals(new byte[DiskSpaceManager.PAGE_SIZE], buf);
+            buf[0] = (byte) (i + 1);
+            diskSpaceManager.writePage(pageNums[i], buf);
+        }
+        File spillFile = managerRoot.resolve(DiskSpaceManagerImpl.TEMP_DIR).resolve(Integer.toString(partNum)).toFile();
+        assertTrue(spillFile.exists());
+        for (int i = 0; i < pageNums.length; ++i) {
+            diskSpaceManager.readPage(pageNums[i], buf);
+            assertEquals((byte) (i + 1), buf[0]);
+        }
+
+        // freeing a page in memory makes room for another
+        diskSpaceManager.freePage(pageNums[0]);
+        assertFalse(diskSpaceManager.pageAllocated(pageNums[0]));
+        assertEquals(pageNums[0], diskSpaceManager.allocPage(partNum));
+        long spillLength = spillFile.length();
+        diskSpaceManager.allocPage(partNum);
+        assertEquals(spillLength + DiskSpaceManager.PAGE_SIZE, spillFile.length());
+
+        diskSpaceManager.freePart(partNum);
+        assertFalse(spillFile.exists());
+        try {
+            diskSpaceManager.readPage(pageNums[1], buf);
+            fail();
+        } catch (NoSuchElementException e) { /* do nothing */ }
+        assertFalse(diskSpaceManager.isTempPart(partNum));
+
+        // temporary partitions are numbered along with other partitions
+        int nextPartNum = diskSpaceManager.allocPart();
+        assertEquals(partNum + 1, nextPartNum);
+        assertFalse(diskSpaceManager.isTempPart(nextPartNum));
+
+        // spill files left behind are deleted when restarting
+        diskSpaceManager.setTempMemoryBudget(0);
+        partNum = diskSpaceManager.allocTempPart();
+        diskSpaceManager.allocPage(partNum);
+        assertTrue(managerRoot.resolve(DiskSpaceManagerImpl.TEMP_DIR).resolve(Integer.toString(partNum)).toFile().exists());
+        File[] dataFiles = managerRoot.toFile().listFiles();
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager());
+        assertEquals(0, managerRoot.resolve(DiskSpaceManagerImpl.TEMP_DIR).toFile().list().length);
+        assertEquals(dataFiles.length, managerRoot.toFile().listFiles().length);
+        diskSpaceManager.close();
+    }
+
+    @Test
+    public void testCompressedPartition() {
+        DiskSpaceManagerImpl diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(),
+                new DummyRecoveryManager());
+        diskSpaceManager.allocPart(0); // log partition
+        int partNum = diskSpaceManager.allocPart();
+        byte[] padded = new byte[DiskSpaceManager.PAGE_SIZE];
+        for (int offset = 8; offset + 200 <= padded.length; offset += 200) {
+            padded[offset] = (byte) offset;
+            padded[offset + 1] = 'x';
+        }
+        byte[] random = new byte[DiskSpaceManager.PAGE_SIZE];
+        new Random(186).nextBytes(random);
+        Arrays.fill(random, 0, 8, (byte) 0); // starts with the unused bytes of the reserved space
+        long paddedPage = diskSpaceManager.allocPage(partNum);
+        long randomPage = diskSpaceManager.allocPage(partNum);
+        long zeroPage = diskSpaceManager.allocPage(partNum);
+        diskSpaceManager.writePage(paddedPage, padded);
+        diskSpaceManager.writePage(randomPage, random);
+
+        // existing pages are compressed, and new pages are compressed when written
+        diskSpaceManager.compressPart(partNum);
+        long newPage = diskSpaceManager.allocPage(partNum);
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        diskSpaceManager.readPage(newPage, buf);
+        assertArrayEquals(new byte[DiskSpaceManager.PAGE_SIZE], buf);
+        padded[100] = 'y';
+        diskSpaceManager.writePage(newPage, padded);
+        diskSpaceManager.close();
+
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager());
+        diskSpaceManager.readPage(newPage, buf);
+        assertArrayEquals(padded, buf);
+        padded[100] = 0;
+        diskSpaceManager.readPage(paddedPage, buf);
+        assertArrayEquals(padded, buf);
+        diskSpaceManager.readPage(randomPage, buf);
+        assertArrayEquals(random, buf);
+        diskSpaceManager.readPage(zeroPage, ByteBuffer.allocateDirect(DiskSpaceManager.PAGE_SIZE));
+
+        // a page that does not compress must start with a non-negative int
+        random[0] = -1;
+        try {
+            diskSpaceManager.writePage(randomPage, random);
+            fail();
+        } catch (PageException e) { /* do nothing */ }
+        try {
+            diskSpaceManager.compressPart(0);
+            fail();
+        } catch (IllegalArgumentException e) { /* do nothing */ }
+        diskSpaceManager.close();
+    }
+
+    /**
+     * A partition with a page that starts with a negative int and does not compress
+     * is not compressed, and is left as it was.
+     */
+    @Test
+    public void testCompressRejectsNegativeRawPage() {
+        DiskSpaceManagerImpl diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(),
+                new DummyRecoveryManager());
+        diskSpaceManager.allocPart(0); // log partition
+        int partNum = diskSpaceManager.allocPart();
+        byte[] random = new byte[DiskSpaceManager.PAGE_SIZE];
+        new Random(186).nextBytes(random);
+        random[0] = -1;
+        long randomPage = diskSpaceManager.allocPage(partNum);
+        diskSpaceManager.writePage(randomPage, random);
+
+        try {
+            diskSpaceManager.compressPart(partNum);
+            fail();
+        } catch (PageException e) { /* do nothing */ }
+        byte[] buf = new byte[DiskSpaceManager.PAGE_SIZE];
+        diskSpaceManager.readPage(randomPage, buf);
+        assertArrayEquals(random, buf);
+        diskSpaceManager.close();
+
+        // the partition is still uncompressed after a restart
+        diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(), new DummyRecoveryManager());
+        diskSpaceManager.readPage(randomPage, buf);
+        assertArrayEquals(random, buf);
+        random[1] = 0;
+        diskSpaceManager.writePage(randomPage, random);
+        diskSpaceManager.readPage(randomPage, buf);
+        assertArrayEquals(random, buf);
+        diskSpaceManager.close();
+    }
+
+    /**
+     * Pages written through the buffer manager can be stored in a compressed partition
+     * even if they do not compress, whatever their contents.
+     */
+    @Test
+    public void testCompressBufferManagerPages() {
+        DiskSpaceManagerImpl diskSpaceManager = new DiskSpaceManagerImpl(managerRoot.toString(),
+                new DummyRecoveryManager());
+        diskSpaceManager.allocPart(0); // log partition
+        int partNum = diskSpaceManager.allocPart();
+        diskSpaceManager.compressPart(partNum);
+        BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 5,
+                                                        new ClockEvictionPolicy());
+        byte[] random = new byte[BufferManager.EFFECTIVE_PAGE_SIZE];
+        new Random(186).nextBytes(random);
+        random[0] = -1;
+        Page page = bufferManager.fetchNewPage(new DummyLockContext(), partNum);
+        long pageNum = page.getPageNum();
+        page.setPageLSN(Long.MAX_VALUE);
+        page.getBuffer().put(random);
+        page.unpin();
+        bufferManager.close();
+
+        bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 5,
+                                          new ClockEvictionPolicy());
+        page = bufferManager.fetchPage(new DummyLockContext(), pageNum);
+        byte[] buf = new byte[BufferManager.EFFECTIVE_PAGE_SIZE];
+        page.getBuffer().get(buf);
+        assertEquals(Long.MAX_VALUE, page.getPageLSN());
+        page.unpin();
+        assertArrayEquals(random, buf);
+        bufferManager.close();
+        diskSpaceManager.close();
+    }
+}
@@ -0,0 +1,76 @@
+package edu.berkeley.cs186.database.io;
+
+import edu.berkeley.cs186.database.categories.Proj99Tests;
+import edu.berkeley.cs186.database.categories.SystemTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@Category({Proj99Tests.class, SystemTests.class})
+public class TestLZCodec {
+    private static byte[] roundTrip(byte[] src, int maxLength) {
+        byte[] compressed = new byte[maxLength];
+        int length = LZCodec.compress(src, src.length, compressed, 0, maxLength);
+        assertTrue(length >= 0);
+        byte[] decompressed = new byte[src.length];
+        LZCodec.decompress(compressed, 0, length, decompressed, 0, src.length);
+        assertArrayEquals(src, decompressed);
+        return Arrays.copyOf(compressed, length);
+    }
+
+    @Test
+    public void testEmptyAndShort() {
+        assertEquals(1, roundTrip(new byte[0], 16).length);
+        roundTrip(new byte[] {1, 2, 3}, 16);
+        roundTrip(new byte[] {7, 7, 7, 7, 7, 7, 7, 7, 7}, 16);
+    }
+
+    @Test
+    public void testPaddedStrings() {
+        // fixed-width strings padded to their declared length, as in table pages
+        byte[] page = new byte[DiskSpaceManager.PAGE_SIZE];
+        Random random = new Random(186);
+        for (int offset = 8; offset + 200 <= page.length; offset += 200) {
+            int length = 10 + random.nextInt(40);
+            for (int i = 0; i < length; ++i) {
+                page[offset + i] = (byte) ('a' + random.nextInt(26));
+            }
+        }
+        byte[] compressed = roundTrip(page, page.length);
+        assertTrue(compressed.length < page.length / 3);
+    }
+
+    @Test
+    public void testLongRunsAndLiterals() {
+        byte[] page = new byte[DiskSpaceManager.PAGE_SIZE];
+        Random random = new Random(0);
+        // a long run of literals, then a long run of a repeated byte
+        for (int i = 0; i < 1000; ++i) {
+            page[i] = (byte) random.nextInt();
+        }
+        Arrays.fill(page, 1000, page.length, (byte) 42);
+        assertTrue(roundTrip(page, page.length).length < 1100);
+        assertEquals(100, roundTrip(new byte[DiskSpaceManager.PAGE_SIZE], page.length).length, 30);
+    }
+
+    @Test
+    public void testIncompressible() {
+        byte[] page = new byte[DiskSpaceManager.PAGE_SIZE];
+        new Random(1).nextBytes(page);
+        byte[] compressed = new byte[DiskSpaceManager.PAGE_SIZE];
+        assertEquals(-1, LZCodec.compress(page, page.length, compressed, 0, compressed.length));
+        // fits with a little room for sequence overhead
+        roundTrip(page, page.length + page.length / 255 + 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCorrupt() {
+        byte[] page = new byte[DiskSpaceManager.PAGE_SIZE];
+        byte[] compressed = roundTrip(page, page.length);
+        LZCodec.decompress(compressed, 0, compressed.length / 2, new byte[page.length], 0, page.length);
+    }
+}
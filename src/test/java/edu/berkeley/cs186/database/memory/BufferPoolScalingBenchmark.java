@@ -0,0 +1,76 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import edu.berkeley.cs186.database.io.MemoryDiskSpaceManager;
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for hit-path throughput of the buffer manager under concurrent fetches:
+ * every thread repeatedly fetches, reads and unpins random pages that are already
+ * loaded. Reports fetches per second for 1..N threads, for a single-partition buffer
+ * pool and for a pool with one partition per core.
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class BufferPoolScalingBenchmark {
+    private static final int NUM_PAGES = 4096;
+    private static final int FETCHES_PER_THREAD = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int numPartitions : new int[] {1, Math.max(1, cores)}) {
+            for (int numThreads = 1; numThreads <= cores; numThreads *= 2) {
+                double rate = run(numPartitions, numThreads);
+                System.out.printf("%d partition(s), %d thread(s): %.0f fetches/s%n",
+                                  numPartitions, numThreads, rate);
+            }
+        }
+    }
+
+    private static double run(int numPartitions, int numThreads) throws InterruptedException {
+        DiskSpaceManager diskSpaceManager = new MemoryDiskSpaceManager();
+        BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                NUM_PAGES, numPartitions, ClockEvictionPolicy::new);
+        int partNum = diskSpaceManager.allocPart();
+        long[] pageNums = new long[NUM_PAGES / 2];
+        for (int i = 0; i < pageNums.length; ++i) {
+            BufferFrame frame = bufferManager.fetchNewPageFrame(partNum);
+            pageNums[i] = frame.getPageNum();
+            frame.unpin();
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; ++t) {
+            long seed = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                byte[] buf = new byte[8];
+                for (int i = 0; i < FETCHES_PER_THREAD; ++i) {
+                    BufferFrame frame = bufferManager.fetchPageFrame(pageNums[random.nextInt(pageNums.length)]);
+                    try {
+                        frame.readBytes((short) 0, (short) 8, buf);
+                    } finally {
+                        frame.unpin();
+                    }
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        bufferManager.close();
+        diskSpaceManager.close();
+        return (double) numThreads * FETCHES_PER_THREAD / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,67 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import edu.berkeley.cs186.database.io.MemoryDiskSpaceManager;
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Benchmark for the cost of eviction when most of the buffer is pinned, as
+ * during a block nested loop join with a large block: the oldest 90% of the
+ * frames stay pinned, and new pages are fetched (and unpinned) into the rest.
+ * Reports the average time per fetch that has to evict, for several buffer
+ * sizes.
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class EvictionLatencyBenchmark {
+    private static final int FETCHES = 200_000;
+
+    public static void main(String[] args) {
+        for (int numFrames : new int[] {256, 1024, 4096}) {
+            report("LRU", numFrames, LRUEvictionPolicy::new);
+            report("Clock", numFrames, ClockEvictionPolicy::new);
+        }
+    }
+
+    private static void report(String name, int numFrames, Supplier<EvictionPolicy> policyFactory) {
+        run(numFrames, policyFactory); // warm up
+        double nanos = run(numFrames, policyFactory);
+        System.out.printf("%-6s %5d frames, 90%% pinned: %8.0f ns/eviction%n", name, numFrames, nanos);
+    }
+
+    private static double run(int numFrames, Supplier<EvictionPolicy> policyFactory) {
+        DiskSpaceManager diskSpaceManager = new MemoryDiskSpaceManager();
+        BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                numFrames, 1, policyFactory);
+        int partNum = diskSpaceManager.allocPart();
+        int numPinned = numFrames * 9 / 10;
+        BufferFrame[] pinned = new BufferFrame[numPinned];
+        for (int i = 0; i < numPinned; ++i) {
+            pinned[i] = bufferManager.fetchNewPageFrame(partNum);
+        }
+        long[] pageNums = new long[2 * numFrames];
+        for (int i = 0; i < pageNums.length; ++i) {
+            BufferFrame frame = bufferManager.fetchNewPageFrame(partNum);
+            pageNums[i] = frame.getPageNum();
+            frame.unpin();
+        }
+
+        // pages are fetched in a cycle twice the size of the buffer, so every fetch misses
+        long start = System.nanoTime();
+        for (int i = 0; i < FETCHES; ++i) {
+            BufferFrame frame = bufferManager.fetchPageFrame(pageNums[i % pageNums.length]);
+            frame.unpin();
+        }
+        long nanos = System.nanoTime() - start;
+
+        for (BufferFrame frame : pinned) {
+            frame.unpin();
+        }
+        bufferManager.close();
+        diskSpaceManager.close();
+        return (double) nanos / FETCHES;
+    }
+}
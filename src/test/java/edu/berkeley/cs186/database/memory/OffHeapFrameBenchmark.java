@@ -0,0 +1,93 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import edu.berkeley.cs186.database.io.DiskSpaceManagerImpl;
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+/**
+ * Benchmark comparing buffer managers with heap and off-heap (direct) frames:
+ * - read throughput of repeated scans over a partition twice the size of the buffer,
+ *   so that every fetch reads the page from the partition file (from the OS page cache)
+ * - throughput of reads of resident pages
+ * - time spent in full garbage collections while the buffer is full
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class OffHeapFrameBenchmark {
+    private static final int NUM_FRAMES = 8192;
+    private static final int SCANS = 5;
+    private static final int RESIDENT_READS = 2_000_000;
+    private static final int COLLECTIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("offheap-benchmark").toFile();
+        try {
+            DiskSpaceManager diskSpaceManager = new DiskSpaceManagerImpl(dir.getPath(), new DummyRecoveryManager());
+            int partNum = diskSpaceManager.allocPart();
+            long[] pageNums = new long[2 * NUM_FRAMES];
+            for (int i = 0; i < pageNums.length; ++i) {
+                pageNums[i] = diskSpaceManager.allocPage(partNum);
+            }
+            for (boolean offHeap : new boolean[] {false, true, false, true}) {
+                run(diskSpaceManager, pageNums, offHeap);
+            }
+            diskSpaceManager.close();
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static void run(DiskSpaceManager diskSpaceManager, long[] pageNums, boolean offHeap) {
+        BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                NUM_FRAMES, 1, LRUEvictionPolicy::new, offHeap);
+        String name = offHeap ? "off-heap" : "heap";
+
+        long start = System.nanoTime();
+        for (int scan = 0; scan < SCANS; ++scan) {
+            for (long pageNum : pageNums) {
+                bufferManager.fetchPageFrame(pageNum).unpin();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double megabytes = (double) SCANS * pageNums.length * DiskSpaceManager.PAGE_SIZE / (1 << 20);
+        System.out.printf("%-8s scan:     %8.1f MB/s%n", name, megabytes / seconds);
+
+        // the second half of the pages is resident after the last scan
+        byte[] buf = new byte[64];
+        start = System.nanoTime();
+        for (int i = 0; i < RESIDENT_READS; ++i) {
+            BufferFrame frame = bufferManager.fetchPageFrame(pageNums[NUM_FRAMES + i % NUM_FRAMES]);
+            frame.readBytes((short) ((i * 64) % 4096), (short) buf.length, buf);
+            frame.unpin();
+        }
+        System.out.printf("%-8s resident: %8.0f ns/read%n", name,
+                          (double) (System.nanoTime() - start) / RESIDENT_READS);
+
+        long gcMillis = -collectionTime();
+        for (int i = 0; i < COLLECTIONS; ++i) {
+            System.gc();
+        }
+        gcMillis += collectionTime();
+        System.out.printf("%-8s full gc:  %8.1f ms/collection%n", name, (double) gcMillis / COLLECTIONS);
+
+        bufferManager.close();
+    }
+
+    private static long collectionTime() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(bean.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,97 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import edu.berkeley.cs186.database.io.MemoryDiskSpaceManager;
+import edu.berkeley.cs186.database.recovery.DummyRecoveryManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Microbenchmark for buffer manager page lookups on a hit-heavy workload. Compares
+ * the previous lookup scheme (HashMap<Long, Integer> behind the manager lock) against
+ * PageTable, and reports the latency of BufferManager#fetchPageFrame when every
+ * fetch is a hit.
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class PageTableBenchmark {
+    private static final int NUM_PAGES = 4096;
+    private static final int NUM_LOOKUPS = 20_000_000;
+    private static final int NUM_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        long[] pageNums = new long[NUM_PAGES];
+        for (int i = 0; i < NUM_PAGES; ++i) {
+            pageNums[i] = DiskSpaceManager.getVirtualPageNum(1 + i % 8, i);
+        }
+        int[] order = new int[1 << 16];
+        Random random = new Random(186);
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = random.nextInt(NUM_PAGES);
+        }
+
+        Map<Long, Integer> map = new HashMap<>();
+        PageTable table = new PageTable(NUM_PAGES);
+        for (int i = 0; i < NUM_PAGES; ++i) {
+            map.put(pageNums[i], i);
+            table.put(pageNums[i], i);
+        }
+        ReentrantLock lock = new ReentrantLock();
+
+        for (int round = 0; round < NUM_ROUNDS; ++round) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < NUM_LOOKUPS; ++i) {
+                long pageNum = pageNums[order[i & (order.length - 1)]];
+                lock.lock();
+                try {
+                    if (map.containsKey(pageNum)) {
+                        sum += map.get(pageNum);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            long mapNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < NUM_LOOKUPS; ++i) {
+                long pageNum = pageNums[order[i & (order.length - 1)]];
+                int frame = table.get(pageNum);
+                if (frame != PageTable.NOT_FOUND) {
+                    sum -= frame;
+                }
+            }
+            long tableNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: locked HashMap %.2f ns/lookup, PageTable %.2f ns/lookup (%d)%n",
+                              round, (double) mapNanos / NUM_LOOKUPS, (double) tableNanos / NUM_LOOKUPS, sum);
+        }
+
+        DiskSpaceManager diskSpaceManager = new MemoryDiskSpaceManager();
+        BufferManager bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                NUM_PAGES, new LRUEvictionPolicy());
+        int partNum = diskSpaceManager.allocPart();
+        long[] loaded = new long[NUM_PAGES];
+        for (int i = 0; i < NUM_PAGES; ++i) {
+            BufferFrame frame = bufferManager.fetchNewPageFrame(partNum);
+            loaded[i] = frame.getPageNum();
+            frame.unpin();
+        }
+        int numFetches = NUM_LOOKUPS / 10;
+        for (int round = 0; round < NUM_ROUNDS; ++round) {
+            long start = System.nanoTime();
+            for (int i = 0; i < numFetches; ++i) {
+                bufferManager.fetchPageFrame(loaded[order[i & (order.length - 1)]]).unpin();
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("round %d: fetchPageFrame (hit) %.2f ns/fetch%n", round, (double) nanos / numFetches);
+        }
+        bufferManager.close();
+        diskSpaceManager.close();
+    }
+}
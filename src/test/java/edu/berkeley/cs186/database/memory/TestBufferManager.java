@@ -12,7 +12,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -320,6 +323,603 @@ public class TestBufferManager {
         assertTrue(frame7.isValid());
     }
 
+    @Test
+    public void testLazyFrameAllocation() {
+        int partNum = diskSpaceManager.allocPart(1);
+
+        assertEquals(0, bufferManager.getNumAllocatedFrames());
+
+        BufferFrame frame1 = bufferManager.fetchNewPageFrame(partNum);
+        BufferFrame frame2 = bufferManager.fetchNewPageFrame(partNum);
+        frame1.unpin();
+        frame2.unpin();
+        assertEquals(2, bufferManager.getNumAllocatedFrames());
+
+        // re-fetching loaded pages should not allocate anything
+        bufferManager.fetchPageFrame(frame1.getPageNum()).unpin();
+        assertEquals(2, bufferManager.getNumAllocatedFrames());
+
+        for (int i = 0; i < 10; ++i) {
+            bufferManager.fetchNewPageFrame(partNum).unpin();
+        }
+        assertEquals(5, bufferManager.getNumAllocatedFrames());
+        assertEquals(5, bufferManager.getMaxFrames());
+    }
+
+    @Test
+    public void testLazyFrameTableGrowth() {
+        BufferManager bigBufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                200, new ClockEvictionPolicy());
+        try {
+            int partNum = diskSpaceManager.allocPart(1);
+            BufferFrame[] frames = new BufferFrame[200];
+            for (int i = 0; i < 200; ++i) {
+                frames[i] = bigBufferManager.fetchNewPageFrame(partNum);
+                frames[i].unpin();
+            }
+            assertEquals(200, bigBufferManager.getNumAllocatedFrames());
+            for (BufferFrame frame : frames) {
+                assertTrue(frame.isValid());
+            }
+
+            bigBufferManager.fetchNewPageFrame(partNum).unpin();
+            assertEquals(200, bigBufferManager.getNumAllocatedFrames());
+        } finally {
+            bigBufferManager.close();
+        }
+    }
+
+    @Test
+    public void testPartitionedFetch() {
+        BufferManager partitioned = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                8, 4, ClockEvictionPolicy::new);
+        try {
+            assertEquals(4, partitioned.getNumPartitions());
+            int partNum = diskSpaceManager.allocPart(1);
+
+            byte[] expected = new byte[] { (byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF };
+            byte[] actual = new byte[4];
+            long[] pageNums = new long[32];
+            for (int i = 0; i < pageNums.length; ++i) {
+                BufferFrame frame = partitioned.fetchNewPageFrame(partNum);
+                expected[0] = (byte) i;
+                frame.writeBytes((short) 67, (short) 4, expected);
+                pageNums[i] = frame.getPageNum();
+                frame.unpin();
+            }
+            assertTrue(partitioned.getNumAllocatedFrames() <= 8);
+
+            long numIOs = partitioned.getNumIOs();
+            for (int i = 0; i < pageNums.length; ++i) {
+                BufferFrame frame = partitioned.fetchPageFrame(pageNums[i]);
+                frame.readBytes((short) 67, (short) 4, actual);
+                frame.unpin();
+                expected[0] = (byte) i;
+                assertArrayEquals(expected, actual);
+            }
+            // most pages were evicted (and every eviction of a dirty page writes it), so
+            // re-reading them must have cost I/Os, all of which are counted
+            assertTrue(partitioned.getNumIOs() > numIOs + pageNums.length - 8);
+        } finally {
+            partitioned.close();
+        }
+    }
+
+    @Test
+    public void testPartitionedFreePart() {
+        BufferManager partitioned = new BufferManager(diskSpaceManager, new DummyRecoveryManager(),
+                8, 4, ClockEvictionPolicy::new);
+        try {
+            int partNum1 = diskSpaceManager.allocPart(1);
+            int partNum2 = diskSpaceManager.allocPart(2);
+            BufferFrame[] frames = new BufferFrame[6];
+            for (int i = 0; i < frames.length; ++i) {
+                frames[i] = partitioned.fetchNewPageFrame(i % 2 == 0 ? partNum1 : partNum2);
+                frames[i].unpin();
+            }
+            partitioned.freePart(partNum1);
+            for (int i = 0; i < frames.length; ++i) {
+                if (i % 2 == 0) {
+                    assertFalse(frames[i].isValid());
+                }
+            }
+            partitioned.fetchNewPageFrame(partNum2).unpin();
+        } finally {
+            partitioned.close();
+        }
+    }
+
+    // Reads every page in pageNums, in order, numPasses times with the given access
+    // pattern (or none), and returns the number of I/Os this took.
+    private static long scan(BufferManager bufferManager, long[] pageNums, int numPasses,
+                             AccessPattern accessPattern) {
+        long numIOs = bufferManager.getNumIOs();
+        for (int pass = 0; pass < numPasses; ++pass) {
+            for (long pageNum : pageNums) {
+                Page page = accessPattern == null
+                            ? bufferManager.fetchPage(new DummyLockContext(), pageNum)
+                            : bufferManager.fetchPage(new DummyLockContext(), pageNum, accessPattern);
+                page.unpin();
+            }
+        }
+        return bufferManager.getNumIOs() - numIOs;
+    }
+
+    @Test
+    public void testLoopAccessPattern() {
+        BufferManager lruBufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 5,
+                new LRUEvictionPolicy());
+        try {
+            int partNum = diskSpaceManager.allocPart(1);
+            long[] pageNums = new long[8];
+            for (int i = 0; i < pageNums.length; ++i) {
+                BufferFrame frame = lruBufferManager.fetchNewPageFrame(partNum);
+                pageNums[i] = frame.getPageNum();
+                frame.unpin();
+            }
+            lruBufferManager.evictAll();
+
+            // LRU misses on every page of a loop that does not fit in the buffer
+            assertEquals(32, scan(lruBufferManager, pageNums, 4, null));
+            lruBufferManager.evictAll();
+
+            // evicting the most recently used page instead keeps most of the loop loaded
+            long numIOs = scan(lruBufferManager, pageNums, 4, AccessPattern.LOOP);
+            assertTrue(numIOs <= 8 + 3 * 4);
+        } finally {
+            lruBufferManager.close();
+        }
+    }
+
+    @Test
+    public void testSequentialAccessPattern() {
+        BufferManager lruBufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 5,
+                new LRUEvictionPolicy());
+        try {
+            int partNum = diskSpaceManager.allocPart(1);
+            long[] hotPageNums = new long[3];
+            long[] scanPageNums = new long[10];
+            for (int i = 0; i < hotPageNums.length + scanPageNums.length; ++i) {
+                BufferFrame frame = lruBufferManager.fetchNewPageFrame(partNum);
+                if (i < hotPageNums.length) {
+                    hotPageNums[i] = frame.getPageNum();
+                } else {
+                    scanPageNums[i - hotPageNums.length] = frame.getPageNum();
+                }
+                frame.unpin();
+            }
+            lruBufferManager.evictAll();
+
+            scan(lruBufferManager, hotPageNums, 1, null);
+            long prevPageNum = DiskSpaceManager.INVALID_PAGE_NUM;
+            for (long pageNum : scanPageNums) {
+                lruBufferManager.fetchPage(new DummyLockContext(), pageNum, AccessPattern.SEQUENTIAL).unpin();
+                if (prevPageNum != DiskSpaceManager.INVALID_PAGE_NUM) {
+                    lruBufferManager.demotePage(prevPageNum);
+                }
+                prevPageNum = pageNum;
+            }
+
+            // the scan only ever replaced its own pages
+            assertEquals(0, scan(lruBufferManager, hotPageNums, 1, null));
+
+            // demoting a page that was not fetched sequentially does nothing
+            lruBufferManager.demotePage(hotPageNums[0]);
+            lruBufferManager.fetchPage(new DummyLockContext(), scanPageNums[0], AccessPattern.SEQUENTIAL).unpin();
+            assertEquals(0, scan(lruBufferManager, hotPageNums, 1, null));
+        } finally {
+            lruBufferManager.close();
+        }
+    }
+
+    private static boolean isLoaded(BufferManager bufferManager, long pageNum) {
+        boolean[] loaded = new boolean[1];
+        bufferManager.iterPageNums((p, dirty) -> loaded[0] |= p == pageNum);
+        return loaded[0];
+    }
+
+    // Waits up to a second for a page to be loaded.
+    private static boolean awaitLoaded(BufferManager bufferManager, long pageNum) throws InterruptedException {
+        for (int i = 0; i < 100 && !isLoaded(bufferManager, pageNum); ++i) {
+            Thread.sleep(10);
+        }
+        return isLoaded(bufferManager, pageNum);
+    }
+
+    @Test
+    public void testReadAhead() throws InterruptedException {
+        BufferManager bigBufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 32,
+                new LRUEvictionPolicy());
+        try {
+            int partNum = diskSpaceManager.allocPart(1);
+            long[] pageNums = new long[16];
+            for (int i = 0; i < pageNums.length; ++i) {
+                BufferFrame frame = bigBufferManager.fetchNewPageFrame(partNum);
+                pageNums[i] = frame.getPageNum();
+                frame.unpin();
+            }
+            bigBufferManager.evictAll();
+            bigBufferManager.enableReadAhead(8, 16);
+
+            // a single fetch is not a sequential run
+            bigBufferManager.fetchPage(new DummyLockContext(), pageNums[0]).unpin();
+            Thread.sleep(50);
+            assertFalse(isLoaded(bigBufferManager, pageNums[1]));
+
+            bigBufferManager.fetchPage(new DummyLockContext(), pageNums[1]).unpin();
+            assertTrue(awaitLoaded(bigBufferManager, pageNums[2]));
+            assertTrue(awaitLoaded(bigBufferManager, pageNums[3]));
+
+            // reading past the end of the partition
+            for (int i = 2; i < pageNums.length; ++i) {
+                bigBufferManager.fetchPage(new DummyLockContext(), pageNums[i]).unpin();
+            }
+            bigBufferManager.disableReadAhead();
+
+            // pages that were read ahead are not read again
+            long numIOs = bigBufferManager.getNumIOs();
+            for (long pageNum : pageNums) {
+                bigBufferManager.fetchPage(new DummyLockContext(), pageNum).unpin();
+            }
+            assertEquals(numIOs, bigBufferManager.getNumIOs());
+        } finally {
+            bigBufferManager.close();
+        }
+    }
+
+    @Test
+    public void testReadAheadQuota() throws InterruptedException {
+        BufferManager bigBufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 32,
+                new LRUEvictionPolicy());
+        try {
+            int partNum = diskSpaceManager.allocPart(1);
+            long[] pageNums = new long[16];
+            for (int i = 0; i < pageNums.length; ++i) {
+                BufferFrame frame = bigBufferManager.fetchNewPageFrame(partNum);
+                pageNums[i] = frame.getPageNum();
+                frame.unpin();
+            }
+            bigBufferManager.evictAll();
+            bigBufferManager.enableReadAhead(16, 3);
+
+            for (int i = 0; i < 10; ++i) {
+                bigBufferManager.fetchPage(new DummyLockContext(), pageNums[i]).unpin();
+            }
+            assertTrue(awaitLoaded(bigBufferManager, pageNums[10]));
+            Thread.sleep(50);
+            // no more than 3 pages are read ahead of the scan, however deep the read-ahead
+            for (int i = 13; i < pageNums.length; ++i) {
+                assertFalse(isLoaded(bigBufferManager, pageNums[i]));
+            }
+        } finally {
+            bigBufferManager.close();
+        }
+    }
+
+    private static boolean isDirty(BufferManager bufferManager, long pageNum) {
+        boolean[] dirty = new boolean[1];
+        bufferManager.iterPageNums((p, d) -> dirty[0] |= p == pageNum && d);
+        return dirty[0];
+    }
+
+    @Test
+    public void testCleanPages() {
+        int partNum = diskSpaceManager.allocPart(1);
+        byte[] data = new byte[] { (byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF };
+        BufferFrame[] frames = new BufferFrame[3];
+        for (int i = 0; i < frames.length; ++i) {
+            frames[i] = bufferManager.fetchNewPageFrame(partNum);
+            frames[i].writeBytes((short) 67, (short) 4, data);
+        }
+        frames[0].unpin();
+        frames[1].unpin();
+
+        // the pages were just used
+        assertEquals(0, bufferManager.cleanPages(10));
+        // frames[0] is used again, and frames[2] is pinned
+        frames[0].readBytes((short) 67, (short) 4, new byte[4]);
+        long numIOs = bufferManager.getNumIOs();
+        assertEquals(1, bufferManager.cleanPages(10));
+        assertEquals(numIOs + 1, bufferManager.getNumIOs());
+        assertTrue(isDirty(bufferManager, frames[0].getPageNum()));
+        assertFalse(isDirty(bufferManager, frames[1].getPageNum()));
+        assertTrue(isDirty(bufferManager, frames[2].getPageNum()));
+
+        frames[2].unpin();
+        assertEquals(1, bufferManager.cleanPages(1));
+        assertEquals(1, bufferManager.cleanPages(1));
+        assertEquals(0, bufferManager.cleanPages(1));
+        assertEquals(3, bufferManager.getNumPagesCleaned());
+        assertEquals(5, bufferManager.getNumCleanerRounds());
+
+        // clean pages are not written again when evicted
+        numIOs = bufferManager.getNumIOs();
+        bufferManager.evictAll();
+        assertEquals(numIOs, bufferManager.getNumIOs());
+    }
+
+    @Test
+    public void testPageCleaner() throws InterruptedException {
+        int partNum = diskSpaceManager.allocPart(1);
+        BufferFrame frame = bufferManager.fetchNewPageFrame(partNum);
+        frame.writeBytes((short) 67, (short) 4, new byte[] { 1, 2, 3, 4 });
+        frame.unpin();
+
+        bufferManager.enablePageCleaner(5, 10);
+        for (int i = 0; i < 200 && isDirty(bufferManager, frame.getPageNum()); ++i) {
+            Thread.sleep(5);
+        }
+        bufferManager.disablePageCleaner();
+        assertFalse(isDirty(bufferManager, frame.getPageNum()));
+        assertEquals(1, bufferManager.getNumPagesCleaned());
+        assertTrue(bufferManager.getNumCleanerRounds() >= 2);
+    }
+
+    @Test
+    public void testMetrics() {
+        int partNum1 = diskSpaceManager.allocPart(1);
+        int partNum2 = diskSpaceManager.allocPart(2);
+        BufferMetrics attributed = new BufferMetrics();
+
+        // 5 new pages in partition 1; the fifth is fetched with activity attributed elsewhere
+        long[] pageNums = new long[5];
+        for (int i = 0; i < pageNums.length; ++i) {
+            BufferMetrics previous = i == 4 ? BufferMetrics.attributeTo(attributed) : null;
+            BufferFrame frame = bufferManager.fetchNewPageFrame(partNum1);
+            frame.writeBytes((short) 67, (short) 1, new byte[] { 1 });
+            pageNums[i] = frame.getPageNum();
+            frame.unpin();
+            if (i == 4) {
+                assertSame(attributed, BufferMetrics.attributeTo(previous));
+            }
+        }
+        bufferManager.fetchPageFrame(pageNums[0]).unpin();
+
+        // evicts a dirty page of partition 1 to load a page of partition 2
+        BufferMetrics previous = BufferMetrics.attributeTo(attributed);
+        try {
+            bufferManager.fetchNewPageFrame(partNum2).unpin();
+        } finally {
+            BufferMetrics.attributeTo(previous);
+        }
+
+        BufferMetrics metrics = bufferManager.getMetrics();
+        assertEquals(1, metrics.getHits());
+        assertEquals(6, metrics.getMisses());
+        assertEquals(6, metrics.getReads());
+        assertEquals(1, metrics.getWrites());
+        assertEquals(1, metrics.getEvictions());
+        assertEquals(1.0 / 7, metrics.getHitRatio(), 1e-9);
+        assertEquals(bufferManager.getNumIOs(), metrics.getReads() + metrics.getWrites());
+
+        BufferMetrics partition1 = bufferManager.getPartitionMetrics(partNum1);
+        assertEquals(1, partition1.getHits());
+        assertEquals(5, partition1.getMisses());
+        assertEquals(1, partition1.getWrites());
+        assertEquals(1, partition1.getEvictions());
+        BufferMetrics partition2 = bufferManager.getPartitionMetrics(partNum2);
+        assertEquals(1, partition2.getMisses());
+        assertEquals(0, partition2.getWrites());
+
+        assertEquals(0, attributed.getHits());
+        assertEquals(2, attributed.getMisses());
+        assertEquals(1, attributed.getWrites());
+        assertEquals(1, attributed.getEvictions());
+
+        // freed partition numbers start over
+        bufferManager.freePart(partNum2);
+        assertTrue(bufferManager.getPartitionMetrics(partNum2).isEmpty());
+    }
+
+    @Test
+    public void testOffHeap() {
+        BufferManager offHeap = new BufferManager(diskSpaceManager, new DummyRecoveryManager(), 5, 1,
+                                                  ClockEvictionPolicy::new, true);
+        try {
+            assertTrue(offHeap.isOffHeap());
+            assertFalse(bufferManager.isOffHeap());
+            int partNum = diskSpaceManager.allocPart(1);
+
+            byte[] expected = new byte[] { (byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF };
+            BufferFrame frame1 = offHeap.fetchNewPageFrame(partNum);
+            long pageNum = frame1.getPageNum();
+            frame1.writeBytes((short) 67, (short) 4, expected);
+            frame1.setPageLSN(1234);
+            frame1.unpin();
+
+            // evict the page, then read it back
+            offHeap.evict(pageNum);
+            assertFalse(frame1.isValid());
+            byte[] page = new byte[DiskSpaceManager.PAGE_SIZE];
+            diskSpaceManager.readPage(pageNum, page);
+            assertArrayEquals(expected, Arrays.copyOfRange(page, 67 + BufferManager.RESERVED_SPACE,
+                              71 + BufferManager.RESERVED_SPACE));
+
+            BufferFrame frame2 = offHeap.fetchPageFrame(pageNum);
+            byte[] actual = new byte[4];
+            frame2.readBytes((short) 67, (short) 4, actual);
+            assertArrayEquals(expected, actual);
+            assertEquals(1234, frame2.getPageLSN());
+            frame2.unpin();
+        } finally {
+            offHeap.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentPinUnpin() throws InterruptedException {
+        int partNum = diskSpaceManager.allocPart(1);
+        Page page = bufferManager.fetchNewPage(new DummyLockContext(), partNum);
+        long pageNum = page.getPageNum();
+        page.getBuffer().putInt(0, 0);
+        page.unpin();
+
+        // each thread increments a counter on the page, with the page latched
+        // exclusively, so no increment is lost
+        Thread[] threads = new Thread[4];
+        Throwable[] errors = new Throwable[threads.length];
+        for (int i = 0; i < threads.length; ++i) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 500; ++j) {
+                        Page p = bufferManager.fetchPage(new DummyLockContext(), pageNum);
+                        p.latchExclusive();
+                        try {
+                            int count = p.getBuffer().getInt(0);
+                            Thread.yield();
+                            p.getBuffer().putInt(0, count + 1);
+                        } finally {
+                            p.unlatchExclusive();
+                            p.unpin();
+                        }
+                        BufferFrame frame = bufferManager.fetchPageFrame(pageNum);
+                        frame.unpin();
+                    }
+                } catch (Throwable t) {
+                    errors[thread] = t;
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i].join();
+            assertNull(errors[i]);
+        }
+
+        BufferFrame frame = bufferManager.fetchPageFrame(pageNum);
+        byte[] count = new byte[4];
+        frame.readBytes((short) 0, (short) 4, count);
+        frame.unpin();
+        assertEquals(threads.length * 500, ByteBuffer.wrap(count).getInt());
+        assertFalse(frame.isPinned());
+    }
+
+    @Test
+    public void testPageLatch() throws InterruptedException {
+        int partNum = diskSpaceManager.allocPart(1);
+        Page page = bufferManager.fetchNewPage(new DummyLockContext(), partNum);
+        long pageNum = page.getPageNum();
+
+        // while the page is latched shared, other threads can pin it, read it, and
+        // latch it shared, but not exclusively
+        page.latchShared();
+        AtomicInteger step = new AtomicInteger();
+        Thread other = new Thread(() -> {
+            Page p = bufferManager.fetchPage(new DummyLockContext(), pageNum);
+            p.getBuffer().getInt();
+            p.latchShared();
+            p.unlatchShared();
+            step.set(1);
+            p.latchExclusive();
+            step.set(2);
+            p.getBuffer().putInt(0, 186);
+            p.unlatchExclusive();
+            p.unpin();
+        });
+        other.start();
+        while (step.get() < 1) {
+            Thread.yield();
+        }
+        Thread.sleep(50);
+        assertEquals(1, step.get());
+        assertEquals(0, page.getBuffer().getInt(0));
+
+        // the exclusive latch is taken once the shared latch is released
+        page.unlatchShared();
+        other.join();
+        assertEquals(2, step.get());
+        assertEquals(186, page.getBuffer().getInt(0));
+
+        // the latch is reentrant, and can be taken shared while held exclusively
+        page.latchExclusive();
+        page.latchExclusive();
+        page.latchShared();
+        page.unlatchShared();
+        page.unlatchExclusive();
+        page.unlatchExclusive();
+        page.unpin();
+    }
+
+    @Test
+    public void testEvictionClaimRacingPin() throws InterruptedException {
+        for (int round = 0; round < 200; ++round) {
+            BufferFrame frame = new UnpooledFrame();
+            AtomicBoolean claimed = new AtomicBoolean(false);
+            AtomicInteger pinnedWhileClaimed = new AtomicInteger();
+            AtomicInteger claimedWhilePinned = new AtomicInteger();
+
+            Thread pinner = new Thread(() -> {
+                while (!claimed.get()) {
+                    if (frame.tryPin()) {
+                        // the frame cannot be claimed until we unpin it
+                        if (claimed.get()) {
+                            pinnedWhileClaimed.incrementAndGet();
+                        }
+                        Thread.yield();
+                        if (claimed.get()) {
+                            claimedWhilePinned.incrementAndGet();
+                        }
+                        frame.unpin();
+                    }
+                    Thread.yield();
+                }
+            });
+            pinner.start();
+            while (!frame.tryClaimForEviction()) {
+                Thread.yield();
+            }
+            claimed.set(true);
+            pinner.join();
+
+            assertEquals(0, pinnedWhileClaimed.get());
+            assertEquals(0, claimedWhilePinned.get());
+            assertFalse(frame.tryPin());
+            assertFalse(frame.isPinned());
+        }
+
+        BufferFrame frame = new UnpooledFrame();
+        frame.pin();
+        assertFalse(frame.tryClaimForEviction());
+        frame.unpin();
+        assertTrue(frame.tryClaimForEviction());
+        assertFalse(frame.tryPin());
+    }
+
+    @Test
+    public void testOptimisticReadDuringWrite() throws InterruptedException {
+        int partNum = diskSpaceManager.allocPart(1);
+        BufferFrame frame = bufferManager.fetchNewPageFrame(partNum);
+        short length = 2048;
+        frame.writeBytes((short) 0, length, new byte[length]);
+
+        // the writer fills the range with one value at a time; a read that overlaps a
+        // write must be retried rather than return a mix of two values
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            byte[] contents = new byte[length];
+            for (int i = 0; i < 2000; ++i) {
+                Arrays.fill(contents, (byte) i);
+                frame.writeBytes((short) 0, length, contents);
+            }
+            done.set(true);
+        });
+        writer.start();
+        byte[] contents = new byte[length];
+        int reads = 0;
+        while (!done.get() || reads == 0) {
+            frame.readBytes((short) 0, length, contents);
+            for (byte b : contents) {
+                assertEquals(contents[0], b);
+            }
+            ++reads;
+        }
+        writer.join();
+        frame.unpin();
+    }
+
     @Test(expected = PageException.class)
     public void testMissingPart() {
         bufferManager.fetchPageFrame(DiskSpaceManager.getVirtualPageNum(0, 0));
@@ -330,4 +930,41 @@ public class TestBufferManager {
         int partNum = diskSpaceManager.allocPart(1);
         bufferManager.fetchPageFrame(DiskSpaceManager.getVirtualPageNum(partNum, 0));
     }
+
+    /**
+     * Frame outside of any buffer pool, for testing the pin count on its own.
+     */
+    private static class UnpooledFrame extends BufferFrame {
+        @Override
+        boolean isValid() {
+            return true;
+        }
+
+        @Override
+        long getPageNum() {
+            return 0;
+        }
+
+        @Override
+        void flush() {}
+
+        @Override
+        void readBytes(short position, short num, byte[] buf) {}
+
+        @Override
+        void writeBytes(short position, short num, byte[] buf) {}
+
+        @Override
+        BufferFrame requestValidFrame() {
+            return this;
+        }
+
+        @Override
+        void setPageLSN(long pageLSN) {}
+
+        @Override
+        long getPageLSN() {
+            return 0;
+        }
+    }
 }
@@ -6,6 +6,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -32,7 +36,7 @@ public class TestEvictionPolicy {
 
         @Override
         long getPageNum() {
-            return 0;
+            return index;
         }
 
         @Override
@@ -133,6 +137,54 @@ public class TestEvictionPolicy {
         policy.cleanup(frames[3]);
     }
 
+    @Test
+    public void testLRUPolicyPinnedFrames() {
+        EvictionPolicy policy = new LRUEvictionPolicy();
+        for (BufferFrame frame : frames) {
+            policy.init(frame); policy.hit(frame);
+        }
+        for (int i = 0; i < 6; ++i) {
+            frames[i].pin();
+        }
+
+        // pinned frames at the head of the list are skipped (and parked)
+        assertEquals(frames[6], policy.evict(frames));
+        // frames unpinned since are evicted first, in order of unpinning
+        frames[4].unpin();
+        frames[1].unpin();
+        assertEquals(frames[4], policy.evict(frames));
+        policy.cleanup(frames[4]);
+        assertEquals(frames[1], policy.evict(frames));
+        // a frame that was pinned again is skipped
+        frames[1].pin();
+        assertEquals(frames[6], policy.evict(frames));
+        policy.cleanup(frames[6]);
+        // a hit puts a parked frame back in LRU order
+        frames[2].unpin();
+        policy.hit(frames[2]);
+        assertEquals(frames[7], policy.evict(frames));
+        policy.cleanup(frames[7]);
+        assertEquals(frames[2], policy.evict(frames));
+        policy.cleanup(frames[2]);
+
+        frames[1].unpin();
+        assertEquals(frames[1], policy.evict(frames));
+        policy.cleanup(frames[1]);
+        boolean exceptionThrown = false;
+        try {
+            policy.evict(frames);
+        } catch (IllegalStateException e) {
+            exceptionThrown = true;
+        }
+        assertTrue(exceptionThrown);
+        frames[0].unpin();
+        frames[3].unpin();
+        frames[5].unpin();
+        assertEquals(frames[0], policy.evict(frames));
+        policy.cleanup(frames[0]);
+        assertEquals(frames[3], policy.evict(frames));
+    }
+
     @Test
     public void testClockPolicy() {
         EvictionPolicy policy = new ClockEvictionPolicy();
@@ -193,4 +245,108 @@ public class TestEvictionPolicy {
         assertEquals(frames[2], policy.evict(new BufferFrame[] {placeholderFrames[0], placeholderFrames[1], frames[2], placeholderFrames[3]}));
         policy.cleanup(frames[2]);
     }
+
+    /**
+     * Runs accesses to the given pages against a simulated buffer with the given
+     * number of frames, and returns the number of misses. Every access is a
+     * single hit, and every miss loads the page into a new frame.
+     */
+    private int simulate(EvictionPolicy policy, int numFrames, int[] pageNums) {
+        BufferFrame[] slots = new BufferFrame[numFrames];
+        Map<Integer, BufferFrame> resident = new HashMap<>();
+        int misses = 0;
+        for (int pageNum : pageNums) {
+            BufferFrame frame = resident.get(pageNum);
+            if (frame == null) {
+                ++misses;
+                int slot = resident.size();
+                if (slot == numFrames) {
+                    BufferFrame evicted = policy.evict(slots);
+                    policy.cleanup(evicted);
+                    resident.remove((int) evicted.getPageNum());
+                    slot = 0;
+                    while (slots[slot] != evicted) {
+                        ++slot;
+                    }
+                }
+                frame = new TestFrame(pageNum);
+                slots[slot] = frame;
+                resident.put(pageNum, frame);
+                policy.init(frame);
+            }
+            policy.hit(frame);
+        }
+        return misses;
+    }
+
+    // 4 hot pages followed by a sequential scan of 6 pages that are never used
+    // again, repeated 50 times: more distinct pages per round than frames. The
+    // hot pages are used twice in the first round, so that they have been reused
+    // while still in memory at least once.
+    private int[] hotPagesWithScans() {
+        int[] pageNums = new int[4 + 50 * 10];
+        int n = 0;
+        int scanPage = 100;
+        for (int hot = 0; hot < 4; ++hot) {
+            pageNums[n++] = hot;
+        }
+        for (int round = 0; round < 50; ++round) {
+            for (int hot = 0; hot < 4; ++hot) {
+                pageNums[n++] = hot;
+            }
+            for (int i = 0; i < 6; ++i) {
+                pageNums[n++] = scanPage++;
+            }
+        }
+        return pageNums;
+    }
+
+    private void checkScanResistant(Supplier<EvictionPolicy> policyFactory) {
+        int[] pageNums = hotPagesWithScans();
+        // LRU misses on every access: the scan pushes the hot pages out each round
+        assertEquals(500, simulate(new LRUEvictionPolicy(), 8, pageNums));
+        // scan pages always miss, hot pages should only miss while warming up
+        int misses = simulate(policyFactory.get(), 8, pageNums);
+        assertTrue("too many misses: " + misses, misses <= 300 + 3 * 4);
+    }
+
+    private void checkPinned(EvictionPolicy policy) {
+        BufferFrame[] frames = new BufferFrame[4];
+        for (int i = 0; i < frames.length; ++i) {
+            frames[i] = new TestFrame(i);
+            policy.init(frames[i]);
+            policy.hit(frames[i]);
+            frames[i].pin();
+        }
+        boolean exceptionThrown = false;
+        try {
+            policy.evict(frames);
+        } catch (IllegalStateException e) {
+            exceptionThrown = true;
+        }
+        assertTrue(exceptionThrown);
+
+        frames[2].unpin();
+        assertEquals(frames[2], policy.evict(frames));
+        policy.cleanup(frames[2]);
+    }
+
+    @Test
+    public void testTwoQueuePolicy() {
+        checkScanResistant(TwoQueueEvictionPolicy::new);
+        checkPinned(new TwoQueueEvictionPolicy());
+    }
+
+    @Test
+    public void testLRUKPolicy() {
+        checkScanResistant(LRUKEvictionPolicy::new);
+        checkScanResistant(() -> new LRUKEvictionPolicy(3));
+        checkPinned(new LRUKEvictionPolicy());
+    }
+
+    @Test
+    public void testARCPolicy() {
+        checkScanResistant(ARCEvictionPolicy::new);
+        checkPinned(new ARCEvictionPolicy());
+    }
 }
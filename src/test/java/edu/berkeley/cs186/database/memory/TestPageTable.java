@@ -0,0 +1,87 @@
+package edu.berkeley.cs186.database.memory;
+
+import edu.berkeley.cs186.database.categories.Proj99Tests;
+import edu.berkeley.cs186.database.categories.SystemTests;
+import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@Category({Proj99Tests.class, SystemTests.class})
+public class TestPageTable {
+    @Test
+    public void testPutGet() {
+        PageTable table = new PageTable(4);
+        long page1 = DiskSpaceManager.getVirtualPageNum(1, 0);
+        long page2 = DiskSpaceManager.getVirtualPageNum(1, 1);
+        long page3 = DiskSpaceManager.getVirtualPageNum(2, 0);
+
+        assertEquals(PageTable.NOT_FOUND, table.get(page1));
+        table.put(page1, 0);
+        table.put(page2, 1);
+        table.put(page3, 2);
+
+        assertEquals(0, table.get(page1));
+        assertEquals(1, table.get(page2));
+        assertEquals(2, table.get(page3));
+        assertEquals(3, table.size());
+
+        table.put(page2, 5);
+        assertEquals(5, table.get(page2));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void testRemove() {
+        PageTable table = new PageTable(4);
+        long page1 = DiskSpaceManager.getVirtualPageNum(1, 0);
+        long page2 = DiskSpaceManager.getVirtualPageNum(1, 1);
+
+        table.put(page1, 0);
+        table.put(page2, 1);
+
+        // only removed if mapped to the given frame
+        assertFalse(table.remove(page1, 1));
+        assertTrue(table.containsKey(page1));
+
+        assertTrue(table.remove(page1, 0));
+        assertFalse(table.containsKey(page1));
+        assertEquals(1, table.get(page2));
+        assertFalse(table.remove(page1, 0));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        // compare against a HashMap through many inserts/removes, forcing resizes
+        // and backward shifts
+        PageTable table = new PageTable(1);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(186);
+        for (int i = 0; i < 20000; ++i) {
+            long pageNum = DiskSpaceManager.getVirtualPageNum(random.nextInt(4), random.nextInt(500));
+            if (random.nextInt(3) == 0) {
+                Integer frame = expected.get(pageNum);
+                boolean removed = frame != null && table.remove(pageNum, frame);
+                assertEquals(frame != null, removed);
+                expected.remove(pageNum);
+            } else {
+                expected.put(pageNum, i);
+                table.put(pageNum, i);
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (int part = 0; part < 4; ++part) {
+            for (int page = 0; page < 500; ++page) {
+                long pageNum = DiskSpaceManager.getVirtualPageNum(part, page);
+                int frame = table.get(pageNum);
+                assertEquals(expected.getOrDefault(pageNum, PageTable.NOT_FOUND).intValue(), frame);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 
@@ -114,6 +115,35 @@ public class TestBasicQuery {
         }
     }
 
+    @Test
+    @Category(PublicTests.class)
+    public void testProjectScansReferencedColumns() {
+        try(Transaction transaction = db.beginTransaction()) {
+            for (int i = 0; i < 10; ++i) {
+                transaction.insert("table", new Record(false, i, "!", (float) i));
+            }
+            transaction.getTransactionContext().getTable("table").buildStatistics(10);
+
+            // SELECT float FROM table WHERE int >= 5;
+            QueryPlan query = transaction.query("table");
+            query.select("int", PredicateOperator.GREATER_THAN_EQUALS, 5);
+            query.project("float");
+            Iterator<Record> queryOutput = query.execute();
+
+            // the scan at the bottom of the plan only reads the `int` and `float` columns
+            QueryOperator scan = query.getFinalOperator();
+            while (scan.getSource() != null) scan = scan.getSource();
+            assertTrue(scan.isSequentialScan());
+            assertEquals(Arrays.asList("table.int", "table.float"), scan.getSchema().getFieldNames());
+            assertEquals(2, scan.estimateStats().getHistograms().size());
+
+            for (int i = 5; i < 10; ++i) {
+                assertEquals(new Record((float) i), queryOutput.next());
+            }
+            assertFalse(queryOutput.hasNext());
+        }
+    }
+
     @Test
     @Category(PublicTests.class)
     public void testGroupBy() {
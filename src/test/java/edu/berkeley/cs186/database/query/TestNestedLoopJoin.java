@@ -8,6 +8,7 @@ import edu.berkeley.cs186.database.categories.*;
 import edu.berkeley.cs186.database.concurrency.DummyLockContext;
 import edu.berkeley.cs186.database.databox.*;
 import edu.berkeley.cs186.database.io.DiskSpaceManager;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.memory.Page;
 import edu.berkeley.cs186.database.query.join.BNLJOperator;
 import edu.berkeley.cs186.database.query.join.PNLJOperator;
@@ -159,6 +160,21 @@ public class TestNestedLoopJoin {
         }
     }
 
+    /**
+     * The inner relation of a SNLJ, once materialized, is scanned as a loop.
+     */
+    @Test
+    @Category(SystemTests.class)
+    public void testSNLJInnerRelationLoops() {
+        try(Transaction transaction = d.beginTransaction()) {
+            JoinOperator joinOperator = new SNLJOperator(TestUtils.createSourceWithAllTypes(10),
+                    TestUtils.createSourceWithAllTypes(10), "int", "int", transaction.getTransactionContext());
+            assertTrue(joinOperator.getRightSource() instanceof MaterializeOperator);
+            assertEquals(AccessPattern.LOOP,
+                         ((SequentialScanOperator) joinOperator.getRightSource()).getAccessPattern());
+        }
+    }
+
     @Test
     @Category(SystemTests.class)
     public void testNonEmptyWithEmptySNLJ() {
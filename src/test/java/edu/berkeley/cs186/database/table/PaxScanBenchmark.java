@@ -0,0 +1,79 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.Database;
+import edu.berkeley.cs186.database.Transaction;
+import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+import edu.berkeley.cs186.database.memory.AccessPattern;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark for PAX pages (PageLayout.PAX) on the lineitem table of the contest
+ * workload: loads the table with each layout, then reports the time per record of
+ * - a scan of every column
+ * - a scan of the four columns of contest query 6 (l_quantity, l_extendedprice,
+ *   l_discount and l_shipdate)
+ * with the table's pages in the buffer pool, so that the time is that of decoding
+ * the records.
+ *
+ * Usage: PaxScanBenchmark [workload size], where the size is one of 32, 1000,
+ * 3000 or 5000 (the default).
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class PaxScanBenchmark {
+    private static final String[] COLUMNS = {"l_quantity", "l_extendedprice", "l_discount", "l_shipdate"};
+    private static final int SCANS = 20;
+
+    public static void main(String[] args) throws IOException {
+        String size = args.length > 0 ? args[0] : "5000";
+        for (PageLayout layout : new PageLayout[] {PageLayout.BITMAP, PageLayout.PAX}) {
+            File dir = Files.createTempDirectory("pax-benchmark").toFile();
+            try {
+                Database db = new Database(dir.getPath(), 1024);
+                db.loadDelimitedFile("contest/tables/", "lineitem", "\\|", "_" + size + ".tbl", layout);
+                db.waitAllTransactions();
+                try (Transaction t = db.beginTransaction()) {
+                    Table table = t.getTransactionContext().getTable("lineitem");
+                    List<Integer> columns = new ArrayList<>();
+                    for (String column : COLUMNS) {
+                        columns.add(table.getSchema().findField(column));
+                    }
+                    // once to warm up, then measured
+                    scan(table, null);
+                    scan(table, columns);
+                    double allNanos = scan(table, null);
+                    double someNanos = scan(table, columns);
+                    System.out.printf("%-6s %5d pages  all columns: %6.0f ns/record  %d columns: %6.0f ns/record%n",
+                                      layout, table.getNumDataPages(), allNanos, columns.size(), someNanos);
+                }
+                db.close();
+            } finally {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    // Scans the table (of the given columns, or all if null), returns the time per record.
+    private static double scan(Table table, List<Integer> columns) {
+        long numRecords = 0;
+        long start = System.nanoTime();
+        for (int scan = 0; scan < SCANS; ++scan) {
+            BacktrackingIterator<Record> iter = columns == null ? table.iterator(AccessPattern.SEQUENTIAL)
+                                                : table.iterator(AccessPattern.SEQUENTIAL, columns);
+            while (iter.hasNext()) {
+                iter.next();
+                ++numRecords;
+            }
+        }
+        return (double) (System.nanoTime() - start) / numRecords;
+    }
+}
@@ -0,0 +1,71 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.Database;
+import edu.berkeley.cs186.database.Transaction;
+import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Benchmark for slotted pages (PageLayout.SLOTTED) on the TPC-H tables of the contest
+ * workload with the longest strings: loads each table with each layout, then reports
+ * - the number of data pages, and the number estimated by the table's stats
+ * - the time of a full scan of the table, starting with an empty buffer pool
+ *
+ * Usage: SlottedTableBenchmark [workload size], where the size is one of 32, 1000,
+ * 3000 or 5000 (the default).
+ *
+ * Not run as part of the test suite; run the main method directly after
+ * `mvn test-compile`.
+ */
+public class SlottedTableBenchmark {
+    private static final String[] TABLES = {"lineitem", "orders", "customer", "partsupp"};
+    private static final int SCANS = 5;
+
+    public static void main(String[] args) throws IOException {
+        String size = args.length > 0 ? args[0] : "5000";
+        for (PageLayout layout : PageLayout.values()) {
+            File dir = Files.createTempDirectory("slotted-benchmark").toFile();
+            try {
+                Database db = new Database(dir.getPath(), 256);
+                for (String table : TABLES) {
+                    db.loadDelimitedFile("contest/tables/", table, "\\|", "_" + size + ".tbl", layout);
+                }
+                db.waitAllTransactions();
+                for (String table : TABLES) {
+                    run(db, table, layout);
+                }
+                db.close();
+            } finally {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static void run(Database db, String tableName, PageLayout layout) {
+        try (Transaction t = db.beginTransaction()) {
+            Table table = t.getTransactionContext().getTable(tableName);
+            long nanos = 0;
+            int numRecords = 0;
+            for (int scan = 0; scan < SCANS; ++scan) {
+                db.getBufferManager().evictAll();
+                long start = System.nanoTime();
+                numRecords = 0;
+                BacktrackingIterator<Record> iter = table.iterator();
+                while (iter.hasNext()) {
+                    iter.next();
+                    ++numRecords;
+                }
+                nanos += System.nanoTime() - start;
+            }
+            System.out.printf("%-8s %-7s %7d records  %5d pages (%5d estimated)  scan: %7.2f ms%n",
+                              tableName, layout, numRecords, table.getNumDataPages(),
+                              table.getStats().getNumPages(), nanos / 1e6 / SCANS);
+        }
+    }
+}
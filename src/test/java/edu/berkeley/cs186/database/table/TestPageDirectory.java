@@ -72,6 +72,92 @@ public class TestPageDirectory {
         assertNotEquals(p4, p5);
     }
 
+    /**
+     * Of the pages with enough free space, the one with the least is used.
+     */
+    @Test
+    public void testGetPageWithSpaceLeastFreeSpace() {
+        createPageDirectory((short) 10);
+
+        short pageSize = (short) (pageDirectory.getEffectivePageSize() - 10);
+        Page p1 = pageDirectory.getPageWithSpace((short) (pageSize - 100));
+        Page p2 = pageDirectory.getPageWithSpace((short) (pageSize - 300));
+        Page p3 = pageDirectory.getPageWithSpace((short) (pageSize - 200));
+        Page p4 = pageDirectory.getPageWithSpace((short) 150);
+        Page p5 = pageDirectory.getPageWithSpace((short) 250);
+        Page p6 = pageDirectory.getPageWithSpace((short) 120);
+        Page p7 = pageDirectory.getPageWithSpace((short) 100);
+
+        p1.unpin(); p2.unpin(); p3.unpin(); p4.unpin(); p5.unpin(); p6.unpin(); p7.unpin();
+
+        assertEquals(p3, p4);
+        assertEquals(p2, p5);
+        assertNotEquals(p1, p6);
+        assertNotEquals(p2, p6);
+        assertNotEquals(p3, p6);
+        assertEquals(p1, p7);
+    }
+
+    /**
+     * The free space of the data pages is kept in memory, but pages whose free space
+     * was taken through another page directory object are not used.
+     */
+    @Test
+    public void testGetPageWithSpaceOtherPageDirectory() {
+        Page headerPage = bufferManager.fetchNewPage(new DummyLockContext("_dummyPageDirectoryRecord"), 0);
+        headerPage.unpin();
+        createPageDirectory(headerPage.getPageNum(), (short) 10);
+        PageDirectory other = new PageDirectory(bufferManager, 0, headerPage.getPageNum(), (short) 10,
+                                                new DummyLockContext());
+
+        short pageSize = (short) (pageDirectory.getEffectivePageSize() - 10);
+        Page p1 = pageDirectory.getPageWithSpace((short) (pageSize - 100));
+        Page p2 = other.getPageWithSpace((short) 50);
+        Page p3 = pageDirectory.getPageWithSpace((short) 80);
+        Page p4 = pageDirectory.getPageWithSpace((short) 50);
+
+        p1.unpin(); p2.unpin(); p3.unpin(); p4.unpin();
+
+        assertEquals(p1, p2);
+        assertNotEquals(p1, p3);
+        assertEquals(p1, p4);
+    }
+
+    /**
+     * Free space is found in data pages of any header page, also after the page
+     * directory is loaded again.
+     */
+    @Test
+    public void testGetPageWithSpaceManyHeaderPages() {
+        Page headerPage = bufferManager.fetchNewPage(new DummyLockContext("_dummyPageDirectoryRecord"), 0);
+        headerPage.unpin();
+        createPageDirectory(headerPage.getPageNum(), (short) 10);
+
+        short pageSize = (short) (pageDirectory.getEffectivePageSize() - 10);
+        int numPages = 2 * (BufferManager.EFFECTIVE_PAGE_SIZE / 10);
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < numPages; ++i) {
+            Page page = pageDirectory.getPageWithSpace(pageSize);
+            page.unpin();
+            pages.add(page);
+        }
+        assertEquals(numPages, pageDirectory.getNumDataPages());
+
+        pageDirectory.updateFreeSpace(pages.get(numPages - 1), (short) 20);
+        pageDirectory.updateFreeSpace(pages.get(0), (short) 30);
+        Page p1 = pageDirectory.getPageWithSpace((short) 25);
+        p1.unpin();
+        assertEquals(pages.get(0), p1);
+
+        createPageDirectory(headerPage.getPageNum(), (short) 10);
+        assertEquals(numPages, pageDirectory.getNumDataPages());
+        Page p2 = pageDirectory.getPageWithSpace((short) 20);
+        Page p3 = pageDirectory.getPageWithSpace((short) 5);
+        p2.unpin(); p3.unpin();
+        assertEquals(pages.get(numPages - 1), p2);
+        assertEquals(pages.get(0), p3);
+    }
+
     @Test
     public void testGetPageWithSpaceInvalid() {
         createPageDirectory((short) 1000);
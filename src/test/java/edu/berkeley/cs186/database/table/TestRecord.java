@@ -42,6 +42,29 @@ public class TestRecord {
         }
     }
 
+    @Test
+    public void testToAndFromVariableLengthBytes() {
+        Schema s = new Schema()
+            .add("w", Type.boolType())
+            .add("x", Type.stringType(10))
+            .add("y", Type.stringType(300))
+            .add("z", Type.intType());
+        Record[] records = {
+            s.verify(new Record(false, " ", " ", 0)),
+            s.verify(new Record(true, "foo", "bar", 42)),
+            s.verify(new Record(true, "0123456789", new String(new char[300]).replace('\0', 'y'), -1))
+        };
+        for (Record r : records) {
+            byte[] bytes = r.toVariableLengthBytes();
+            assertEquals(r.getVariableLengthSizeInBytes(), bytes.length);
+            assertEquals(r, Record.fromVariableLengthBytes(ByteBuffer.wrap(bytes), s));
+        }
+        // 1-byte length for string(10), 2-byte length for string(300)
+        assertEquals(1 + 1 + 2 + 4, s.getMinVariableLengthSizeInBytes());
+        assertEquals(s.getSizeInBytes() + 3, s.getMaxVariableLengthSizeInBytes());
+        assertEquals(1 + 4 + 5 + 4, records[1].getVariableLengthSizeInBytes());
+    }
+
     @Test
     public void testEquals() {
         Record a = new Record(false);
@@ -2,12 +2,20 @@ package edu.berkeley.cs186.database.table;
 
 import edu.berkeley.cs186.database.DatabaseException;
 import edu.berkeley.cs186.database.TestUtils;
+import edu.berkeley.cs186.database.TransactionContext;
 import edu.berkeley.cs186.database.categories.Proj99Tests;
 import edu.berkeley.cs186.database.categories.SystemTests;
+import edu.berkeley.cs186.database.common.PredicateOperator;
 import edu.berkeley.cs186.database.common.iterator.BacktrackingIterator;
 import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.concurrency.DummyTransactionContext;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
 import edu.berkeley.cs186.database.io.DiskSpaceManager;
 import edu.berkeley.cs186.database.io.MemoryDiskSpaceManager;
+import edu.berkeley.cs186.database.memory.AccessPattern;
 import edu.berkeley.cs186.database.memory.BufferManager;
 import edu.berkeley.cs186.database.memory.ClockEvictionPolicy;
 import edu.berkeley.cs186.database.memory.Page;
@@ -20,8 +28,14 @@ import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
 
 import static org.junit.Assert.*;
 
@@ -29,6 +43,7 @@ import static org.junit.Assert.*;
 public class TestTable {
     private static final String TABLENAME = "testtable";
     private PageDirectory pageDirectory;
+    private long headerPageNum;
     private Table table;
     private Schema schema;
     private BufferManager bufferManager;
@@ -45,6 +60,7 @@ public class TestTable {
         this.schema = TestUtils.createSchemaWithAllTypes();
         Page page = bufferManager.fetchNewPage(new DummyLockContext(), 1);
         try {
+            this.headerPageNum = page.getPageNum();
             this.pageDirectory = new PageDirectory(bufferManager, 1, page.getPageNum(), (short) 0, new DummyLockContext());
         } finally {
             page.unpin();
@@ -406,6 +422,346 @@ public class TestTable {
         assertFalse(iter.hasNext());
     }
 
+    private Table createTable(String name, Schema schema, PageLayout layout) {
+        Page page = bufferManager.fetchNewPage(new DummyLockContext(), 1);
+        try {
+            PageDirectory pageDirectory = new PageDirectory(bufferManager, 1, page.getPageNum(), (short) 0,
+                                                            new DummyLockContext());
+            return new Table(name, schema, pageDirectory, new DummyLockContext(), new HashMap<>(), layout);
+        } finally {
+            page.unpin();
+        }
+    }
+
+    private static String repeat(char c, int n) {
+        return new String(new char[n]).replace('\0', c);
+    }
+
+    /**
+     * Records of a slotted table take the actual length of their strings, so that a
+     * table of short strings takes far fewer pages than with fixed-width records.
+     */
+    @Test
+    public void testSlottedPagesPackVariableLengthRecords() {
+        Schema schema = new Schema().add("id", Type.intType()).add("comment", Type.stringType(117));
+        Table slotted = createTable("slottedtable", schema, PageLayout.SLOTTED);
+        Table fixed = createTable("fixedtable", schema, PageLayout.BITMAP);
+        int numRecords = fixed.getNumRecordsPerPage() * 10;
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < numRecords; ++i) {
+            Record r = new Record(i, repeat('c', i % 20 + 1));
+            rids.add(slotted.addRecord(r));
+            fixed.addRecord(r);
+        }
+        for (int i = 0; i < numRecords; ++i) {
+            assertEquals(new Record(i, repeat('c', i % 20 + 1)), slotted.getRecord(rids.get(i)));
+        }
+        // 4 + 1 + 10.5 bytes of record and 4 bytes of slot on average, against 121 bytes
+        assertEquals(10, fixed.getNumDataPages());
+        assertEquals(2, slotted.getNumDataPages());
+        assertEquals(2, slotted.getStats().getNumPages());
+
+        // shorter records may go to earlier pages than longer ones added before them
+        List<Record> scanned = new ArrayList<>();
+        slotted.iterator().forEachRemaining(scanned::add);
+        scanned.sort(Comparator.comparing(r -> r.getValue(0)));
+        for (int i = 0; i < numRecords; ++i) {
+            assertEquals(new Record(i, repeat('c', i % 20 + 1)), scanned.get(i));
+        }
+        assertEquals(numRecords, scanned.size());
+    }
+
+    /**
+     * Deleted slots and the space of deleted records are reused, and records keep
+     * their ids as they are updated to different lengths.
+     */
+    @Test
+    public void testSlottedDeletesAndUpdates() {
+        Schema schema = new Schema().add("id", Type.intType()).add("comment", Type.stringType(200));
+        Table slotted = createTable("slottedtable", schema, PageLayout.SLOTTED);
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            rids.add(slotted.addRecord(new Record(i, repeat('a', 50))));
+        }
+        int numPages = slotted.getNumDataPages();
+
+        // delete every other record, and grow the rest, which needs the space freed
+        for (int i = 0; i < 200; i += 2) {
+            slotted.deleteRecord(rids.get(i));
+        }
+        for (int i = 1; i < 200; i += 2) {
+            assertEquals(new Record(i, repeat('a', 50)), slotted.updateRecord(rids.get(i), new Record(i, repeat('b', 90))));
+        }
+        for (int i = 0; i < 200; ++i) {
+            if (i % 2 == 0) {
+                try {
+                    slotted.getRecord(rids.get(i));
+                    fail();
+                } catch (DatabaseException e) { /* do nothing */ }
+            } else {
+                assertEquals(new Record(i, repeat('b', 90)), slotted.getRecord(rids.get(i)));
+            }
+        }
+
+        // shrink them again, and refill the freed space without new pages
+        for (int i = 1; i < 200; i += 2) {
+            slotted.updateRecord(rids.get(i), new Record(i, "b"));
+        }
+        for (int i = 0; i < 200; i += 2) {
+            rids.set(i, slotted.addRecord(new Record(i, repeat('c', 50))));
+        }
+        assertEquals(numPages, slotted.getNumDataPages());
+        for (int i = 0; i < 200; ++i) {
+            Record expected = i % 2 == 0 ? new Record(i, repeat('c', 50)) : new Record(i, "b");
+            assertEquals(expected, slotted.getRecord(rids.get(i)));
+        }
+
+        // deleting every record frees the pages
+        for (RecordId rid : rids) {
+            slotted.deleteRecord(rid);
+        }
+        assertEquals(0, slotted.getNumDataPages());
+        assertFalse(slotted.iterator().hasNext());
+    }
+
+    /**
+     * An update that makes a record too long for the space left in its page fails,
+     * and leaves the record as it was.
+     */
+    @Test
+    public void testSlottedUpdateDoesNotFit() {
+        Schema schema = new Schema().add("comment", Type.stringType(4000));
+        Table slotted = createTable("slottedtable", schema, PageLayout.SLOTTED);
+        // fill a page with records of 4000 + 2 bytes (and a 4-byte slot), then with
+        // one more record that leaves 20 bytes free
+        int numLarge = (pageDirectory.getEffectivePageSize() - 4) / 4006;
+        int fillerLength = pageDirectory.getEffectivePageSize() - 4 - numLarge * 4006 - 6 - 20;
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < numLarge; ++i) {
+            records.add(new Record(repeat((char) ('a' + i), 4000)));
+        }
+        records.add(new Record(repeat('f', fillerLength)));
+        List<RecordId> rids = new ArrayList<>();
+        for (Record r : records) {
+            rids.add(slotted.addRecord(r));
+        }
+        assertEquals(1, slotted.getNumDataPages());
+
+        RecordId filler = rids.get(numLarge);
+        try {
+            slotted.updateRecord(filler, new Record(repeat('x', fillerLength + 21)));
+            fail();
+        } catch (DatabaseException e) { /* do nothing */ }
+        for (int i = 0; i < records.size(); ++i) {
+            assertEquals(records.get(i), slotted.getRecord(rids.get(i)));
+        }
+
+        slotted.updateRecord(filler, new Record(repeat('x', fillerLength + 20)));
+        records.set(numLarge, new Record(repeat('x', fillerLength + 20)));
+        for (int i = 0; i < records.size(); ++i) {
+            assertEquals(records.get(i), slotted.getRecord(rids.get(i)));
+        }
+    }
+
+    /**
+     * A PAX table holds as many records per page as a bitmap table, with the values
+     * of each column stored together in a minipage.
+     */
+    @Test
+    public void testPAXRecords() {
+        Table pax = createTable("paxtable", schema, PageLayout.PAX);
+        assertEquals(table.getNumRecordsPerPage(), pax.getNumRecordsPerPage());
+        int numRecords = pax.getNumRecordsPerPage() * 2 + 42;
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < numRecords; ++i) {
+            rids.add(pax.addRecord(createRecordWithAllTypes(i)));
+        }
+        assertEquals(3, pax.getNumDataPages());
+        for (int i = 0; i < numRecords; ++i) {
+            assertEquals(createRecordWithAllTypes(i), pax.getRecord(rids.get(i)));
+        }
+
+        // the int column (after a 1-byte boolean column) is the second minipage
+        RecordId rid = rids.get(5);
+        int bitmapSize = (pax.getNumRecordsPerPage() + 7) / 8;
+        BacktrackingIterator<Page> pages = pax.pageIterator();
+        while (pages.hasNext()) {
+            Page page = pages.next();
+            try {
+                if (page.getPageNum() == rid.getPageNum()) {
+                    assertEquals(5, page.getBuffer().getInt(bitmapSize + pax.getNumRecordsPerPage() + 5 * 4));
+                }
+            } finally {
+                page.unpin();
+            }
+        }
+
+        for (int i = 0; i < numRecords; i += 2) {
+            pax.updateRecord(rids.get(i), new Record(true, -i, "b", 2.5f));
+        }
+        for (int i = 1; i < numRecords; i += 4) {
+            pax.deleteRecord(rids.get(i));
+        }
+        BacktrackingIterator<Record> iter = pax.iterator();
+        for (int i = 0; i < numRecords; ++i) {
+            if (i % 4 == 1) continue;
+            Record expected = i % 2 == 0 ? new Record(true, -i, "b", 2.5f) : createRecordWithAllTypes(i);
+            assertEquals(expected, iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    /**
+     * Scans of some of the columns of a table return just those columns, in the
+     * requested order, for every layout.
+     */
+    @Test
+    public void testIteratorOverColumns() {
+        Schema schema = new Schema()
+                .add("id", Type.intType())
+                .add("comment", Type.stringType(20))
+                .add("price", Type.floatType());
+        for (PageLayout layout : PageLayout.values()) {
+            Table t = createTable(layout + "table", schema, layout);
+            int numRecords = 1000;
+            List<RecordId> rids = new ArrayList<>();
+            for (int i = 0; i < numRecords; ++i) {
+                rids.add(t.addRecord(new Record(i, repeat('c', i % 20 + 1), i / 2.0f)));
+            }
+            for (int i = 0; i < numRecords; i += 3) {
+                t.deleteRecord(rids.get(i));
+            }
+
+            List<Record> scanned = new ArrayList<>();
+            t.iterator(AccessPattern.SEQUENTIAL, Arrays.asList(2, 0)).forEachRemaining(scanned::add);
+            scanned.sort(Comparator.comparing(r -> r.getValue(1)));
+            List<Record> expected = new ArrayList<>();
+            for (int i = 0; i < numRecords; ++i) {
+                if (i % 3 != 0) {
+                    expected.add(new Record(i / 2.0f, i));
+                }
+            }
+            assertEquals(layout.toString(), expected, scanned);
+        }
+    }
+
+    /**
+     * Records added in bulk are packed into new pages, after the existing ones, and
+     * can then be read, deleted, and followed by records added one at a time, for
+     * every layout.
+     */
+    @Test
+    public void testAddRecords() {
+        Schema schema = new Schema()
+                .add("id", Type.intType())
+                .add("comment", Type.stringType(20))
+                .add("price", Type.floatType());
+        for (PageLayout layout : PageLayout.values()) {
+            Table t = createTable(layout + "table", schema, layout);
+            RecordId first = t.addRecord(new Record(-1, "first", 0.0f));
+            int numRecords = 5000;
+            List<Record> records = new ArrayList<>();
+            for (int i = 0; i < numRecords; ++i) {
+                records.add(new Record(i, repeat('c', i % 20 + 1), i / 2.0f));
+            }
+            t.addRecords(records.iterator());
+            assertEquals(layout.toString(), numRecords + 1, t.getStats().getNumRecords());
+            if (layout != PageLayout.SLOTTED) {
+                int numPages = (numRecords + t.getNumRecordsPerPage() - 1) / t.getNumRecordsPerPage();
+                assertEquals(layout.toString(), 1 + numPages, t.getNumDataPages());
+            }
+
+            // the records are in new pages, in order
+            List<RecordId> rids = new ArrayList<>();
+            BacktrackingIterator<RecordId> ridIter = t.ridIterator();
+            assertEquals(first, ridIter.next());
+            ridIter.forEachRemaining(rids::add);
+            assertEquals(numRecords, rids.size());
+            for (int i = 0; i < numRecords; ++i) {
+                assertEquals(layout.toString(), records.get(i), t.getRecord(rids.get(i)));
+            }
+
+            // emptied pages are freed, and the space of deleted records is reused
+            for (int i = 0; i < numRecords; i += 2) {
+                t.deleteRecord(rids.get(i));
+            }
+            t.deleteRecord(first);
+            for (int i = 0; i < numRecords; i += 2) {
+                t.addRecord(records.get(i));
+            }
+            List<Record> scanned = new ArrayList<>();
+            t.iterator().forEachRemaining(scanned::add);
+            scanned.sort(Comparator.comparing(r -> r.getValue(0)));
+            assertEquals(layout.toString(), records, scanned);
+        }
+    }
+
+    /**
+     * Adding more pages in bulk than a header page of the page directory can hold
+     * adds header pages.
+     */
+    @Test
+    public void testAddRecordsFullPages() {
+        table.setFullPageRecords();
+        int numRecords = 2 * (BufferManager.EFFECTIVE_PAGE_SIZE / 10);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < numRecords; ++i) {
+            records.add(createRecordWithAllTypes(i));
+        }
+        table.addRecords(records.iterator());
+        assertEquals(numRecords, table.getNumDataPages());
+
+        BacktrackingIterator<Record> iter = table.iterator();
+        checkSequentialRecords(0, numRecords, 1, iter);
+        assertFalse(iter.hasNext());
+    }
+
+    /**
+     * Threads adding records to the same heap file through their own Table and
+     * PageDirectory objects (as Database#tableFromMetadata creates for every access)
+     * do not lose each other's records: a pinned page is used by one thread at a time.
+     */
+    @Test
+    public void testConcurrentAddRecords() throws InterruptedException {
+        int numThreads = 4;
+        int numRecordsPerThread = 2000;
+        Thread[] threads = new Thread[numThreads];
+        Throwable[] errors = new Throwable[numThreads];
+        for (int i = 0; i < numThreads; ++i) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    Table t = new Table(TABLENAME, schema, new PageDirectory(bufferManager, 1, headerPageNum,
+                            (short) 0, new DummyLockContext()), new DummyLockContext());
+                    for (int j = 0; j < numRecordsPerThread; ++j) {
+                        t.addRecord(createRecordWithAllTypes(thread * numRecordsPerThread + j));
+                    }
+                } catch (Throwable e) {
+                    errors[thread] = e;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable error : errors) {
+            assertNull(error);
+        }
+
+        boolean[] found = new boolean[numThreads * numRecordsPerThread];
+        Table t = new Table(TABLENAME, schema, new PageDirectory(bufferManager, 1, headerPageNum, (short) 0,
+                new DummyLockContext()), new DummyLockContext());
+        int numFound = 0;
+        for (Record record : t) {
+            int id = record.getValue(1).getInt();
+            assertFalse(found[id]);
+            found[id] = true;
+            ++numFound;
+        }
+        assertEquals(numThreads * numRecordsPerThread, numFound);
+    }
+
     /**
      * Simple test of TableIterator over three pages of records with no gaps.
      */
@@ -457,4 +813,243 @@ public class TestTable {
         checkSequentialRecords(1, numRecords, 2, iter);
         assertFalse(iter.hasNext());
     }
+
+    /**
+     * Scans with a filter on the zone map skip the pages whose range of values
+     * cannot satisfy a predicate, but read every page with a matching record, even
+     * after records are updated and after the zone map is lost.
+     */
+    @Test
+    public void testZoneMapSkipsPages() {
+        Schema schema = new Schema()
+                .add("id", Type.intType())
+                .add("comment", Type.stringType(20))
+                .add("price", Type.floatType());
+        for (PageLayout layout : PageLayout.values()) {
+            Page headerPage = bufferManager.fetchNewPage(new DummyLockContext(), 1);
+            headerPage.unpin();
+            PageDirectory pageDirectory = new PageDirectory(bufferManager, 1, headerPage.getPageNum(), (short) 0,
+                                                            new DummyLockContext());
+            Table t = new Table(layout + "table", schema, pageDirectory, new DummyLockContext(), new HashMap<>(),
+                                layout);
+            int numRecords = 3000;
+            List<RecordId> rids = new ArrayList<>();
+            for (int i = 0; i < numRecords; ++i) {
+                rids.add(t.addRecord(new Record(i, repeat('c', i % 20 + 1), i / 2.0f)));
+            }
+            int threshold = numRecords - 100;
+            LongPredicate filter = pageNum -> t.getZoneMap().mayMatch(pageNum, 0,
+                    PredicateOperator.GREATER_THAN_EQUALS, new IntDataBox(threshold));
+            int numPages = t.getNumDataPages();
+            assertTrue(layout.toString(), t.getNumDataPages(filter) < numPages / 2);
+            assertEquals(layout.toString(), numRecords - threshold, countAtLeast(t, filter, threshold, true));
+
+            // an updated record widens the range of its page
+            t.updateRecord(rids.get(0), new Record(numRecords, "updated", 0.0f));
+            assertEquals(layout.toString(), numRecords - threshold + 1, countAtLeast(t, filter, threshold, true));
+
+            // a table loaded again reads all pages once, to rebuild its zone map
+            Table reloaded = new Table(t.getName(), schema, new PageDirectory(bufferManager, 1,
+                    headerPage.getPageNum(), (short) 0, new DummyLockContext()), new DummyLockContext(),
+                    new HashMap<>(), layout);
+            LongPredicate reloadedFilter = pageNum -> reloaded.getZoneMap().mayMatch(pageNum, 0,
+                    PredicateOperator.GREATER_THAN_EQUALS, new IntDataBox(threshold));
+            assertEquals(layout.toString(), numPages, reloaded.getNumDataPages(reloadedFilter));
+            assertEquals(layout.toString(), numRecords, countAtLeast(reloaded, reloadedFilter, threshold, false));
+            assertEquals(layout.toString(), t.getNumDataPages(filter), reloaded.getNumDataPages(reloadedFilter));
+        }
+    }
+
+    // Scans the pages of `t` accepted by `filter`, returning the number of records
+    // with an id of at least `threshold` (if `select`) or all of them.
+    private static int countAtLeast(Table t, LongPredicate filter, int threshold, boolean select) {
+        int count = 0;
+        BacktrackingIterator<Record> iter = t.iterator(AccessPattern.SEQUENTIAL, null, filter);
+        while (iter.hasNext()) {
+            Record record = iter.next();
+            if (!select || record.getValue(0).getInt() >= threshold) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testZoneMapMayMatch() {
+        ZoneMap zoneMap = new ZoneMap();
+        zoneMap.setPage(1, Arrays.asList(new Record(10, "b", 0.0f), new Record(20, "d", 1.5f)));
+        zoneMap.addRecord(2, new Record(15, "c", -0.0f), true);
+        zoneMap.addRecord(3, new Record(100, "z", 1.0f), false);
+
+        assertTrue(zoneMap.mayMatch(1, 0, PredicateOperator.EQUALS, new IntDataBox(15)));
+        assertFalse(zoneMap.mayMatch(1, 0, PredicateOperator.EQUALS, new IntDataBox(21)));
+        assertFalse(zoneMap.mayMatch(1, 0, PredicateOperator.LESS_THAN, new IntDataBox(10)));
+        assertTrue(zoneMap.mayMatch(1, 0, PredicateOperator.LESS_THAN_EQUALS, new IntDataBox(10)));
+        assertFalse(zoneMap.mayMatch(1, 0, PredicateOperator.GREATER_THAN, new IntDataBox(20)));
+        assertTrue(zoneMap.mayMatch(1, 0, PredicateOperator.GREATER_THAN_EQUALS, new IntDataBox(20)));
+        assertFalse(zoneMap.mayMatch(1, 1, PredicateOperator.GREATER_THAN, new StringDataBox("d", 1)));
+        assertFalse(zoneMap.mayMatch(2, 0, PredicateOperator.NOT_EQUALS, new IntDataBox(15)));
+        assertTrue(zoneMap.mayMatch(1, 0, PredicateOperator.NOT_EQUALS, new IntDataBox(15)));
+
+        // -0.0 equals 0.0, as in SelectOperator
+        assertTrue(zoneMap.mayMatch(2, 2, PredicateOperator.EQUALS, new FloatDataBox(0.0f)));
+        assertFalse(zoneMap.mayMatch(2, 2, PredicateOperator.NOT_EQUALS, new FloatDataBox(0.0f)));
+        // values of another type than the column's are not compared
+        assertTrue(zoneMap.mayMatch(1, 2, PredicateOperator.GREATER_THAN, new IntDataBox(2)));
+        // pages with unknown ranges may match
+        assertTrue(zoneMap.mayMatch(3, 0, PredicateOperator.LESS_THAN, new IntDataBox(0)));
+        assertTrue(zoneMap.mayMatch(4, 0, PredicateOperator.LESS_THAN, new IntDataBox(0)));
+
+        zoneMap.addRecord(1, new Record(30, "a", 0.0f), false);
+        assertTrue(zoneMap.mayMatch(1, 0, PredicateOperator.GREATER_THAN, new IntDataBox(20)));
+        zoneMap.removePage(1);
+        assertFalse(zoneMap.containsPage(1));
+        assertTrue(zoneMap.mayMatch(1, 0, PredicateOperator.GREATER_THAN, new IntDataBox(100)));
+    }
+
+    /**
+     * Dictionary-encoded columns are stored as codes, so that more fixed-width records
+     * fit in a page, and read back as the same value objects, for every layout; scans with a
+     * filter on the codes of a column only return the matching records, and the
+     * dictionary is read again when a table is loaded again.
+     */
+    @Test
+    public void testDictionaryEncoding() {
+        Schema schema = new Schema()
+                .add("id", Type.intType())
+                .add("mode", Type.stringType(10))
+                .add("comment", Type.stringType(20));
+        String[] modes = {"AIR", "MAIL", "SHIP", "TRUCK", "RAIL", "FOB", "REG AIR"};
+        for (PageLayout layout : PageLayout.values()) {
+            Page headerPage = bufferManager.fetchNewPage(new DummyLockContext(), 1);
+            headerPage.unpin();
+            Page dictionaryPage = bufferManager.fetchNewPage(new DummyLockContext(), 1);
+            dictionaryPage.unpin();
+            Table t = createEncodedTable(layout, schema, headerPage.getPageNum(), dictionaryPage.getPageNum());
+            if (layout != PageLayout.SLOTTED) {
+                assertTrue(layout.toString(), t.getNumRecordsPerPage()
+                           > createTable(layout + "plain", schema, layout).getNumRecordsPerPage());
+            }
+
+            int numRecords = 2000;
+            List<Record> records = new ArrayList<>();
+            List<RecordId> rids = new ArrayList<>();
+            for (int i = 0; i < numRecords / 2; ++i) {
+                records.add(new Record(i, modes[i % modes.length], repeat('c', i % 20 + 1)));
+                rids.add(t.addRecord(records.get(i)));
+            }
+            List<Record> bulk = new ArrayList<>();
+            for (int i = numRecords / 2; i < numRecords; ++i) {
+                bulk.add(new Record(i, modes[(i * 3) % modes.length], repeat('c', i % 20 + 1)));
+            }
+            records.addAll(bulk);
+            t.addRecords(bulk.iterator());
+            t.updateRecord(rids.get(0), new Record(0, "NEW", "updated"));
+            records.set(0, new Record(0, "NEW", "updated"));
+            assertEquals(layout.toString(), modes.length + 1, t.getDictionary().size(1));
+
+            List<Record> scanned = new ArrayList<>();
+            t.iterator().forEachRemaining(scanned::add);
+            scanned.sort(Comparator.comparing(r -> r.getValue(0)));
+            assertEquals(layout.toString(), records, scanned);
+            // records with the same value share it
+            assertSame(layout.toString(), scanned.get(1).getValue(1), scanned.get(1 + modes.length).getValue(1));
+
+            // filtering on codes
+            Map<Integer, IntPredicate> codeFilters = new HashMap<>();
+            codeFilters.put(1, t.getDictionary().codeFilter(1, PredicateOperator.EQUALS, new StringDataBox("SHIP")));
+            List<Record> ship = new ArrayList<>();
+            t.iterator(AccessPattern.SEQUENTIAL, Arrays.asList(0, 1), null, codeFilters).forEachRemaining(ship::add);
+            long numShip = records.stream().filter(r -> r.getValue(1).getString().equals("SHIP")).count();
+            assertEquals(layout.toString(), numShip, ship.size());
+            for (Record record : ship) {
+                assertEquals(layout.toString(), "SHIP", record.getValue(1).getString());
+            }
+            codeFilters.put(1, t.getDictionary().codeFilter(1, PredicateOperator.LESS_THAN, new StringDataBox("M")));
+            long numLess = records.stream().filter(r -> r.getValue(1).getString().compareTo("M") < 0).count();
+            assertEquals(layout.toString(), numLess, countRecords(t.iterator(AccessPattern.SEQUENTIAL, null, null,
+                                                                             codeFilters)));
+
+            // a table loaded again reads its dictionary
+            Table reloaded = createEncodedTable(layout, schema, headerPage.getPageNum(), dictionaryPage.getPageNum());
+            assertEquals(layout.toString(), modes.length + 1, reloaded.getDictionary().size(1));
+            assertEquals(layout.toString(), records.get(5), reloaded.getRecord(rids.get(5)));
+            reloaded.addRecord(new Record(numRecords, "LATE", "c"));
+            assertEquals(layout.toString(), numRecords + 1, countRecords(t.iterator()));
+        }
+    }
+
+    /**
+     * Codes are added to the dictionary outside of the transaction running on the thread:
+     * its writes to the table's pages are logged, but not the writes to the dictionary's
+     * pages, so that rolling the transaction back cannot remove a code that other
+     * transactions may already use.
+     */
+    @Test
+    public void testDictionaryCodesNotLogged() {
+        List<Long> loggedPages = new ArrayList<>();
+        bufferManager.close();
+        DiskSpaceManager diskSpaceManager = new MemoryDiskSpaceManager();
+        diskSpaceManager.allocPart(1);
+        this.bufferManager = new BufferManager(diskSpaceManager, new DummyRecoveryManager() {
+            @Override
+            public long logPageWrite(long transNum, long pageNum, short pageOffset, byte[] before,
+                                     byte[] after) {
+                loggedPages.add(pageNum);
+                return 0L;
+            }
+        }, 1024, new ClockEvictionPolicy());
+        Schema schema = new Schema()
+                .add("id", Type.intType())
+                .add("mode", Type.stringType(10))
+                .add("comment", Type.stringType(20));
+        Page headerPage = bufferManager.fetchNewPage(new DummyLockContext(), 1);
+        headerPage.unpin();
+        Page dictionaryPage = bufferManager.fetchNewPage(new DummyLockContext(), 1);
+        dictionaryPage.unpin();
+        Table t = createEncodedTable(PageLayout.BITMAP, schema, headerPage.getPageNum(),
+                                     dictionaryPage.getPageNum());
+
+        TransactionContext transaction = new DummyTransactionContext(null, 1L);
+        TransactionContext.setTransaction(transaction);
+        try {
+            t.addRecord(new Record(0, "AIR", "a"));
+            t.addRecord(new Record(1, "MAIL", "b"));
+            assertSame(transaction, TransactionContext.getTransaction());
+        } finally {
+            TransactionContext.unsetTransaction();
+        }
+        assertEquals(2, t.getDictionary().size(1));
+
+        List<Long> dictionaryPages = new ArrayList<>();
+        dictionaryPages.add(dictionaryPage.getPageNum());
+        PageDirectory dictionaryDirectory = new PageDirectory(bufferManager, 1, dictionaryPage.getPageNum(),
+                (short) 0, new DummyLockContext());
+        for (Page page : (Iterable<Page>) dictionaryDirectory::iterator) {
+            dictionaryPages.add(page.getPageNum());
+            page.unpin();
+        }
+        assertEquals(2, dictionaryPages.size());
+        assertFalse(loggedPages.isEmpty());
+        for (long pageNum : loggedPages) {
+            assertFalse(dictionaryPages.contains(pageNum));
+        }
+    }
+
+    private Table createEncodedTable(PageLayout layout, Schema schema, long pageNum, long dictionaryPageNum) {
+        TableDictionary dictionary = new TableDictionary(layout + "encoded", schema, Arrays.asList(1),
+                new PageDirectory(bufferManager, 1, dictionaryPageNum, (short) 0, new DummyLockContext()),
+                new DummyLockContext());
+        return new Table(layout + "encoded", schema, new PageDirectory(bufferManager, 1, pageNum, (short) 0,
+                new DummyLockContext()), new DummyLockContext(), new HashMap<>(), new HashMap<>(), layout, dictionary);
+    }
+
+    private static int countRecords(Iterator<Record> iter) {
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            ++count;
+        }
+        return count;
+    }
 }